@@ -25,6 +25,9 @@ dependencies {
     runtimeOnly("org.lwjgl:lwjgl-glfw::$lwjglNatives")
     runtimeOnly("org.lwjgl:lwjgl-opengl::$lwjglNatives")
 
+    testImplementation(platform("org.junit:junit-bom:5.10.2"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
 java {
@@ -33,6 +36,18 @@ java {
     }
 }
 
+tasks.test {
+    useJUnitPlatform()
+}
+
 application {
     mainClass = "com.minecraftclone.App"
 }
+
+tasks.register<JavaExec>("benchmark") {
+    group = "application"
+    description = "Runs a headless benchmark, e.g. --args=\"region-read 4096\"."
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass = "com.minecraftclone.Benchmarks"
+    (findProperty("benchmarkHeap") as String?)?.let { maxHeapSize = it }
+}
@@ -1,5 +1,7 @@
 package com.minecraftclone;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -7,12 +9,43 @@ import java.util.List;
  * Entry point of the toy Minecraft clone.
  */
 public class App {
+    /** Seconds between metrics dumps enabled with {@code --metrics}. */
+    private static final int METRICS_INTERVAL_SECONDS = 10;
+    /** Range the render distance is kept within when adapting to budgets. */
+    private static final int MIN_ADAPTIVE_DISTANCE = 2;
+    private static final int MAX_ADAPTIVE_DISTANCE = 32;
+
     public static void main(String[] args) {
         boolean debugChunks = false;
+        boolean mapRegions = false;
+        boolean deltaSaves = false;
+        Path recordPath = null;
+        boolean dumpMetrics = false;
+        Path metricsPath = null;
+        double heapBudgetMib = 0;
+        double vramBudgetMib = 0;
+        double frameTargetMillis = 0;
         List<String> positional = new ArrayList<>();
         for (String arg : args) {
             if ("--debug-chunks".equalsIgnoreCase(arg)) {
                 debugChunks = true;
+            } else if ("--mmap-regions".equalsIgnoreCase(arg)) {
+                mapRegions = true;
+            } else if ("--delta-saves".equalsIgnoreCase(arg)) {
+                deltaSaves = true;
+            } else if ("--metrics".equalsIgnoreCase(arg)) {
+                dumpMetrics = true;
+            } else if (arg.startsWith("--metrics=")) {
+                dumpMetrics = true;
+                metricsPath = Path.of(arg.substring("--metrics=".length()));
+            } else if (arg.startsWith("--heap-budget=")) {
+                heapBudgetMib = parseBudget(arg, "--heap-budget=");
+            } else if (arg.startsWith("--vram-budget=")) {
+                vramBudgetMib = parseBudget(arg, "--vram-budget=");
+            } else if (arg.startsWith("--frame-target=")) {
+                frameTargetMillis = parseBudget(arg, "--frame-target=");
+            } else if (arg.startsWith("--record-flythrough=")) {
+                recordPath = Path.of(arg.substring("--record-flythrough=".length()));
             } else {
                 positional.add(arg);
             }
@@ -58,7 +91,20 @@ public class App {
         }
 
         ChunkGenerator generator = new ChunkGenerator(seed);
-        World world = new World(generator, debugChunks);
+        WorldOptions options = new WorldOptions()
+                .debug(debugChunks)
+                .saveFormat(deltaSaves ? WorldOptions.SaveFormat.DELTA : WorldOptions.SaveFormat.FULL)
+                .readMode(mapRegions ? RegionStorage.ReadMode.MAPPED : RegionStorage.ReadMode.STREAM);
+        World world = new World(generator, Path.of("world"), options);
+        world.getMetrics().registerMBean("com.minecraftclone:type=Metrics");
+        MetricsReporter reporter = null;
+        if (dumpMetrics) {
+            try {
+                reporter = new MetricsReporter(world.getMetrics(), metricsPath, METRICS_INTERVAL_SECONDS);
+            } catch (IOException e) {
+                System.err.println("Failed to open metrics file " + metricsPath + ": " + e.getMessage());
+            }
+        }
 
         // Generate a tall column of chunks at the spawn location so we can
         // find a reasonable starting Y coordinate even in mountainous terrain.
@@ -71,11 +117,48 @@ public class App {
         int spawnX = spawnChunkX * Chunk.SIZE + Chunk.SIZE / 2;
         int spawnZ = spawnChunkZ * Chunk.SIZE + Chunk.SIZE / 2;
         int surfaceY = generator.findSurfaceY(world, spawnX, spawnZ);
-        Player player = new Player(spawnX, surfaceY + 1, spawnZ);
+        // keep the chunks around spawn resident wherever the player goes
+        world.getTickets().add(ChunkTickets.Type.SPAWN,
+                new ChunkPos(spawnChunkX, Math.floorDiv(surfaceY, Chunk.SIZE), spawnChunkZ), -1, -1, 1);
+        Player player = new Player(spawnX, surfaceY + 1 + Player.EYE_HEIGHT, spawnZ);
         System.out.println("Player starting at " + player);
 
         // Launch the LWJGL-based renderer.
         WorldRenderer renderer = new WorldRenderer(world, player, renderDistance, lod1Start, lod2Start);
+        if (heapBudgetMib > 0 || vramBudgetMib > 0 || frameTargetMillis > 0) {
+            renderer.setDistanceController(new RenderDistanceController((long) (heapBudgetMib * 1048576),
+                    (long) (vramBudgetMib * 1048576), frameTargetMillis, MIN_ADAPTIVE_DISTANCE,
+                    MAX_ADAPTIVE_DISTANCE, renderDistance, lod1Start, lod2Start));
+        }
+        Flythrough recording = recordPath != null ? new Flythrough() : null;
+        if (recording != null) {
+            renderer.record(recording);
+        }
         renderer.run();
+        if (reporter != null) {
+            reporter.close();
+        }
+        if (recording != null) {
+            try {
+                recording.save(recordPath);
+                System.out.println("Saved " + recording.getKeyframeCount() + " flythrough keyframes to " + recordPath);
+            } catch (IOException e) {
+                System.err.println("Failed to save flythrough to " + recordPath + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /** Parses the number after {@code prefix}, returning 0 (no budget) if it is not a positive number. */
+    private static double parseBudget(String arg, String prefix) {
+        try {
+            double value = Double.parseDouble(arg.substring(prefix.length()));
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        System.err.println("Invalid budget '" + arg + "', ignoring it");
+        return 0;
     }
 }
@@ -0,0 +1,764 @@
+package com.minecraftclone;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Headless benchmarks for engine subsystems. Run with
+ * {@code ./gradlew benchmark --args="<name> [options]"}.
+ */
+public class Benchmarks {
+    public static void main(String[] args) throws IOException {
+        String name = args.length > 0 ? args[0] : "";
+        switch (name) {
+            case "region-read" -> regionRead(intArg(args, 1, 4096));
+            case "save-format" -> saveFormat(intArg(args, 1, 12), intArg(args, 2, 5));
+            case "save-all" -> saveAll(intArg(args, 1, 10_000));
+            case "occlusion" -> occlusion(intArg(args, 1, 6), intArg(args, 2, 200));
+            case "frustum" -> frustum(intArg(args, 1, 32), intArg(args, 2, 200));
+            case "mesh-arena" -> meshArena(intArg(args, 1, 20_000), intArg(args, 2, 200_000));
+            case "flythrough" -> flythrough(intArg(args, 1, 12), intArg(args, 2, 60),
+                    args.length > 3 ? Path.of(args[3]) : null);
+            case "raycast" -> raycast(intArg(args, 1, 6), intArg(args, 2, 1_000_000));
+            case "physics" -> physics(intArg(args, 1, 5000), intArg(args, 2, 10));
+            case "lighting" -> lighting(intArg(args, 1, 6), intArg(args, 2, 20_000));
+            case "water" -> water(intArg(args, 1, 6), intArg(args, 2, 500), intArg(args, 3, 20));
+            default -> {
+                System.out.println("Usage: Benchmarks <name> [options]");
+                System.out.println("  region-read [chunks]   cold vs warm chunk loads for each region read mode");
+                System.out.println("  save-format [radius] [edited%]   world size and reload time per save format");
+                System.out.println("  save-all [chunks]      shutdown save time for that many dirty chunks");
+                System.out.println("  occlusion [radius] [frames]   software occlusion culling cost and chunks culled");
+                System.out.println("  frustum [radius] [frames]     per-chunk vs grouped frustum culling");
+                System.out.println("  mesh-arena [meshes] [ops]     mesh allocator churn, fragmentation and compaction");
+                System.out.println("  flythrough [radius] [seconds] [path-file]   headless frame loop along a camera path");
+                System.out.println("  raycast [radius] [rays]       block picking and line-of-sight rays per second");
+                System.out.println("  physics [bodies] [seconds]    colliding bodies walking over terrain, cost per tick");
+                System.out.println("  lighting [radius] [edits]     lighting cost per loaded chunk and light updates per second");
+                System.out.println("  water [radius] [sources] [seconds]   flowing water block ticks, cost per tick");
+            }
+        }
+    }
+
+    /**
+     * Saves {@code count} generated chunks, then times loading them back with
+     * each {@link RegionStorage.ReadMode}. The cold pass uses a fresh storage
+     * instance with no open mappings; the warm pass repeats the reads on the
+     * same instance. Both passes run against the OS page cache.
+     */
+    private static void regionRead(int count) throws IOException {
+        Path dir = Files.createTempDirectory("region-bench");
+        try {
+            int side = (int) Math.ceil(Math.cbrt(count));
+            ChunkGenerator generator = new ChunkGenerator(12345L);
+            RegionStorage writer = new RegionStorage(dir, RegionStorage.ReadMode.STREAM);
+            int[][] positions = new int[count][];
+            for (int i = 0; i < count; i++) {
+                int cx = i % side;
+                int cy = (i / side) % side - side / 2;
+                int cz = i / (side * side);
+                positions[i] = new int[] { cx, cy, cz };
+                Chunk chunk = new Chunk();
+                generator.generate(null, cx, cy, cz, chunk);
+                writer.write(chunk, cx, cy, cz);
+            }
+            System.out.println("Wrote " + count + " chunks");
+            for (RegionStorage.ReadMode mode : RegionStorage.ReadMode.values()) {
+                RegionStorage storage = new RegionStorage(dir, mode);
+                printLatencies(mode + " cold", readAll(storage, positions));
+                printLatencies(mode + " warm", readAll(storage, positions));
+                storage.releaseAll();
+            }
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * Explores a square of chunk columns {@code radius} chunks around the
+     * origin, edits a few blocks in {@code editedPercent} of the chunks, then
+     * compares the resulting world folder size and the time to load every
+     * chunk again for each {@link WorldOptions.SaveFormat}.
+     */
+    private static void saveFormat(int radius, int editedPercent) throws IOException {
+        ChunkGenerator generator = new ChunkGenerator(12345L);
+        for (WorldOptions.SaveFormat format : WorldOptions.SaveFormat.values()) {
+            Path dir = Files.createTempDirectory("save-bench");
+            try {
+                WorldOptions options = new WorldOptions().saveFormat(format);
+                World world = new World(generator, dir, options);
+                Random random = new Random(42);
+                int chunks = 0;
+                int edited = 0;
+                for (int cx = -radius; cx <= radius; cx++) {
+                    for (int cz = -radius; cz <= radius; cz++) {
+                        for (int cy = -3; cy <= 2; cy++) {
+                            world.getChunk(cx, cy, cz);
+                            chunks++;
+                            if (random.nextInt(100) < editedPercent) {
+                                edited++;
+                                for (int i = 0; i < 16; i++) {
+                                    world.setBlock(cx * Chunk.SIZE + random.nextInt(Chunk.SIZE),
+                                            cy * Chunk.SIZE + random.nextInt(Chunk.SIZE),
+                                            cz * Chunk.SIZE + random.nextInt(Chunk.SIZE),
+                                            BlockType.STONE);
+                                }
+                            }
+                        }
+                    }
+                }
+                world.shutdown();
+                long bytes = folderSize(dir);
+
+                World reloaded = new World(generator, dir, options);
+                long start = System.nanoTime();
+                for (int cx = -radius; cx <= radius; cx++) {
+                    for (int cz = -radius; cz <= radius; cz++) {
+                        for (int cy = -3; cy <= 2; cy++) {
+                            reloaded.getChunk(cx, cy, cz);
+                        }
+                    }
+                }
+                long loadNanos = System.nanoTime() - start;
+                reloaded.shutdown();
+                System.out.printf("%-6s chunks=%d edited=%d size=%.1fKiB load=%.1fms (%.1fus/chunk)%n",
+                        format, chunks, edited, bytes / 1024.0, loadNanos / 1e6, loadNanos / 1e3 / chunks);
+            } finally {
+                deleteRecursively(dir);
+            }
+        }
+    }
+
+    /**
+     * Times {@link World#saveAll()} for {@code count} dirty chunks spread over
+     * several regions, once with a single save thread and once with a pool of
+     * at least four. Chunks are empty so the run measures persistence rather
+     * than generation; 100k chunks need a heap of roughly 3 GiB.
+     */
+    private static void saveAll(int count) throws IOException {
+        int side = (int) Math.ceil(Math.cbrt(count));
+        int[] threadCounts = { 1, Math.max(4, new WorldOptions().getSaveThreads()) };
+        for (int threads : threadCounts) {
+            Path dir = Files.createTempDirectory("saveall-bench");
+            try {
+                World world = new World(null, dir, new WorldOptions().saveThreads(threads));
+                for (int i = 0; i < count; i++) {
+                    world.getChunk(i % side, (i / side) % side, i / (side * side));
+                }
+                world.getPersistence().flush();
+                for (int i = 0; i < count; i++) {
+                    // edit through the chunk so the change is only picked up by saveAll
+                    world.getChunkIfLoaded(i % side, (i / side) % side, i / (side * side))
+                            .setBlock(0, 0, 0, BlockType.STONE);
+                }
+                long start = System.nanoTime();
+                world.saveAll();
+                long nanos = System.nanoTime() - start;
+                world.shutdown();
+                System.out.printf("saveThreads=%d chunks=%d time=%.2fs (%.1fus/chunk)%n",
+                        threads, count, nanos / 1e9, nanos / 1e3 / count);
+            } finally {
+                deleteRecursively(dir);
+            }
+        }
+    }
+
+    /**
+     * Generates terrain {@code radius} chunks around the origin, then runs
+     * {@link OcclusionCuller} for {@code frames} frames from a camera above
+     * the surface and from one inside the ground, drawing the nearest chunks'
+     * solid faces as occluders and testing every loaded chunk like the
+     * renderer does.
+     */
+    private static void occlusion(int radius, int frames) throws IOException {
+        Path dir = Files.createTempDirectory("occlusion-bench");
+        try {
+            ChunkGenerator generator = new ChunkGenerator(12345L);
+            World world = new World(generator, dir, new WorldOptions());
+            for (int cx = -radius; cx <= radius; cx++) {
+                for (int cz = -radius; cz <= radius; cz++) {
+                    for (int cy = -4; cy <= 3; cy++) {
+                        world.getChunk(cx, cy, cz);
+                    }
+                }
+            }
+            int surface = generator.findSurfaceY(world, 8, 8);
+            // loaded chunks, nearest to the origin column first, as occluder order
+            int[][] positions = world.getChunkPositions().stream()
+                    .map(p -> new int[] { p.x(), p.y(), p.z() })
+                    .sorted(Comparator.comparingInt(p -> p[0] * p[0] + p[2] * p[2]))
+                    .toArray(int[][]::new);
+            Chunk[] chunks = new Chunk[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                chunks[i] = world.getChunkIfLoaded(positions[i][0], positions[i][1], positions[i][2]);
+            }
+            OcclusionCuller culler = new OcclusionCuller(256, 128);
+            Camera camera = new Camera();
+            camera.setPerspective(70, 2, 0.1f, radius * Chunk.SIZE * 2);
+            double[][] cameras = { { surface + 2, 0 }, { surface - 24, 0 }, { surface + 2, -0.3 } };
+            String[] labels = { "surface", "underground", "surface-down" };
+            for (int c = 0; c < cameras.length; c++) {
+                camera.setView(8, cameras[c][0], 8, 0, cameras[c][1]);
+                float[] clip = camera.getViewProjection();
+                long[] nanos = new long[frames];
+                for (int f = 0; f < frames; f++) {
+                    long start = System.nanoTime();
+                    culler.begin(clip);
+                    for (int i = 0; i < Math.min(256, chunks.length); i++) {
+                        int[] p = positions[i];
+                        culler.addSolidFaces(chunks[i], p[0] * Chunk.SIZE, p[1] * Chunk.SIZE, p[2] * Chunk.SIZE);
+                    }
+                    culler.finish();
+                    for (int[] p : positions) {
+                        float x = p[0] * Chunk.SIZE;
+                        float y = p[1] * Chunk.SIZE;
+                        float z = p[2] * Chunk.SIZE;
+                        culler.isVisible(x, y, z, x + Chunk.SIZE, y + Chunk.SIZE, z + Chunk.SIZE);
+                    }
+                    nanos[f] = System.nanoTime() - start;
+                }
+                System.out.printf("%-12s occluders=%d tested=%d culled=%d%n", labels[c],
+                        culler.getOccluderCount(), culler.getTestedCount(), culler.getCulledCount());
+                printLatencies(labels[c], nanos);
+            }
+            world.shutdown();
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * Times frustum culling of every chunk in a render cube of {@code radius}
+     * chunks, once testing each chunk on its own and once through
+     * {@link ChunkFrustumCuller}'s groups, for cameras turned to several
+     * directions. Both passes must accept the same chunks.
+     */
+    private static void frustum(int radius, int frames) {
+        Camera camera = new Camera();
+        camera.setPerspective(70, 16 / 9f, 0.1f, (radius + 2) * Chunk.SIZE * (float) Math.sqrt(3));
+        Frustum frustum = new Frustum();
+        ChunkFrustumCuller culler = new ChunkFrustumCuller(frustum);
+        long[] flat = new long[frames];
+        long[] grouped = new long[frames];
+        long flatTests = 0;
+        long visible = 0;
+        for (int f = 0; f < frames; f++) {
+            camera.setView(100.5, 40.5, -60.5, f * 0.37, Math.sin(f * 0.11) * 0.8);
+            frustum.update(camera.getViewProjection());
+            int cx0 = Math.floorDiv(100, Chunk.SIZE);
+            int cy0 = Math.floorDiv(40, Chunk.SIZE);
+            int cz0 = Math.floorDiv(-61, Chunk.SIZE);
+            int flatVisible = 0;
+            long start = System.nanoTime();
+            for (int cx = cx0 - radius; cx <= cx0 + radius; cx++) {
+                for (int cy = cy0 - radius; cy <= cy0 + radius; cy++) {
+                    for (int cz = cz0 - radius; cz <= cz0 + radius; cz++) {
+                        float x = cx * Chunk.SIZE;
+                        float y = cy * Chunk.SIZE;
+                        float z = cz * Chunk.SIZE;
+                        flatTests++;
+                        if (frustum.intersects(x, y, z, x + Chunk.SIZE, y + Chunk.SIZE, z + Chunk.SIZE)) {
+                            flatVisible++;
+                        }
+                    }
+                }
+            }
+            flat[f] = System.nanoTime() - start;
+            int groupedVisible = 0;
+            start = System.nanoTime();
+            culler.begin(cx0, cy0, cz0, radius);
+            for (int cx = cx0 - radius; cx <= cx0 + radius; cx++) {
+                for (int cy = cy0 - radius; cy <= cy0 + radius; cy++) {
+                    for (int cz = cz0 - radius; cz <= cz0 + radius; cz++) {
+                        if (culler.isVisible(cx, cy, cz)) {
+                            groupedVisible++;
+                        }
+                    }
+                }
+            }
+            grouped[f] = System.nanoTime() - start;
+            if (flatVisible != groupedVisible) {
+                throw new IllegalStateException("Grouped culling accepted " + groupedVisible
+                        + " chunks instead of " + flatVisible);
+            }
+            visible += flatVisible;
+        }
+        System.out.printf("chunks/frame=%d visible/frame=%d%n", flatTests / frames, visible / frames);
+        System.out.printf("per-chunk tests/frame=%d grouped: group tests/frame=%d chunk tests/frame=%d%n",
+                flatTests / frames, culler.getGroupTests() / frames, culler.getChunkTests() / frames);
+        printLatencies("per-chunk", flat);
+        printLatencies("grouped", grouped);
+    }
+
+    /**
+     * Runs the renderer's frame loop without a display against a fresh world
+     * with the game's default seed, following a recorded path file or, if
+     * none is given, a scripted flight of {@code seconds} seconds from spawn.
+     * Reports per-frame CPU time and the work the frames caused.
+     */
+    private static void flythrough(int radius, int seconds, Path pathFile) throws IOException {
+        Path dir = Files.createTempDirectory("flythrough-bench");
+        try {
+            NullBackend backend = new NullBackend();
+            ChunkMesh.setBackend(backend);
+            ChunkGenerator generator = new ChunkGenerator(0L);
+            World world = new World(generator, dir, new WorldOptions());
+            Flythrough path;
+            if (pathFile != null) {
+                path = Flythrough.load(pathFile);
+            } else {
+                int surfaceY = generator.findSurfaceY(world, Chunk.SIZE / 2, Chunk.SIZE / 2);
+                path = Flythrough.scripted(Chunk.SIZE / 2.0, surfaceY + 1, Chunk.SIZE / 2.0, seconds);
+            }
+            Player player = new Player(0, 0, 0);
+            path.apply(player, 0);
+            WorldRenderer renderer = new WorldRenderer(world, player, radius, 8, 16);
+            long[] frames = renderer.runHeadless(path, 60);
+            ChunkPipeline pipeline = world.getPipeline();
+            long generated = pipeline.generation().getCompleted();
+            long meshes = pipeline.meshing().getCompleted();
+            long uploadedBytes = backend.getUploadedBytes();
+            world.shutdown();
+            long slow = Arrays.stream(frames).filter(n -> n > 1_000_000_000L / 60).count();
+            System.out.printf("Flew %.0fs over %d keyframes at render distance %d%n",
+                    path.getDuration(), path.getKeyframeCount(), radius);
+            printLatencies("frame cpu", frames);
+            System.out.printf("frames over 16.7ms=%d chunks generated=%d meshes built=%d%n", slow, generated, meshes);
+            System.out.printf("uploads=%d (%.1fMiB) compaction copies=%.1fMiB draw calls=%d (%d ranges)%n",
+                    backend.getUploads(), uploadedBytes / 1048576.0, backend.getCopiedBytes() / 1048576.0,
+                    backend.getDrawCalls(), backend.getDrawnRanges());
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * Churns a {@link MeshAllocator} the way remeshing does: fills it with
+     * {@code meshes} ranges of chunk-mesh-like sizes, then {@code ops} times
+     * frees a random mesh and allocates a new one of a different size.
+     * Reports fragmentation and pages before and after compacting every
+     * page.
+     */
+    private static void meshArena(int meshes, int ops) {
+        Random random = new Random(42);
+        MeshAllocator allocator = new MeshAllocator(1 << 19);
+        MeshAllocator.Allocation[] live = new MeshAllocator.Allocation[meshes];
+        for (int i = 0; i < meshes; i++) {
+            live[i] = allocator.allocate(meshSize(random));
+        }
+        long[] nanos = new long[ops];
+        for (int i = 0; i < ops; i++) {
+            int victim = random.nextInt(meshes);
+            int size = meshSize(random);
+            long start = System.nanoTime();
+            allocator.free(live[victim]);
+            live[victim] = allocator.allocate(size);
+            nanos[i] = System.nanoTime() - start;
+        }
+        printLatencies("free+allocate", nanos);
+        System.out.printf("before: pages=%d used=%.1f%% freeRanges=%d fragmentation=%.1f%%%n",
+                allocator.getPages().size(), 100.0 * allocator.getUsed() / allocator.getCapacity(),
+                allocator.getFreeRangeCount(), allocator.getFragmentation() * 100);
+        long start = System.nanoTime();
+        for (MeshAllocator.Page page : allocator.getPages()) {
+            allocator.defragment(page);
+        }
+        long defragNanos = System.nanoTime() - start;
+        System.out.printf("after:  pages=%d freeRanges=%d fragmentation=%.1f%% moved=%d vertices in %.1fms%n",
+                allocator.getPages().size(), allocator.getFreeRangeCount(), allocator.getFragmentation() * 100,
+                allocator.getMovedVertices(), defragNanos / 1e6);
+    }
+
+    /**
+     * Generates terrain {@code radius} chunks around the origin, then casts
+     * {@code rays} rays through it in batches for three kinds of query:
+     * short picking rays from just above the surface, line-of-sight checks
+     * between random points near the surface and long rays into the sky,
+     * which mostly cross empty chunks. Reports rays per second and the bytes
+     * allocated per ray after a warm-up pass.
+     */
+    private static void raycast(int radius, int rays) throws IOException {
+        Path dir = Files.createTempDirectory("raycast-bench");
+        try {
+            ChunkGenerator generator = new ChunkGenerator(12345L);
+            World world = new World(generator, dir, new WorldOptions());
+            for (int cx = -radius; cx <= radius; cx++) {
+                for (int cz = -radius; cz <= radius; cz++) {
+                    for (int cy = -4; cy <= 3; cy++) {
+                        world.getChunk(cx, cy, cz);
+                    }
+                }
+            }
+            int extent = radius * Chunk.SIZE;
+            int[] surface = new int[64];
+            Random random = new Random(42);
+            double[] queries = new double[rays * 7];
+            String[] labels = { "pick", "line-of-sight", "sky" };
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            RaycastHit hit = new RaycastHit();
+            long[] batches = new long[(rays + 999) / 1000];
+            for (int kind = 0; kind < labels.length; kind++) {
+                for (int i = 0; i < surface.length; i++) {
+                    surface[i] = generator.findSurfaceY(world, random.nextInt(2 * extent) - extent,
+                            random.nextInt(2 * extent) - extent);
+                }
+                for (int i = 0; i < rays; i++) {
+                    int q = i * 7;
+                    double x = random.nextDouble() * 2 * extent - extent;
+                    double z = random.nextDouble() * 2 * extent - extent;
+                    double y = surface[i % surface.length] + 1 + random.nextDouble() * 2;
+                    queries[q] = x;
+                    queries[q + 1] = y;
+                    queries[q + 2] = z;
+                    if (kind == 1) {
+                        // towards another point near the surface up to 64 blocks away
+                        queries[q + 3] = random.nextDouble() * 128 - 64;
+                        queries[q + 4] = random.nextDouble() * 8 - 4;
+                        queries[q + 5] = random.nextDouble() * 128 - 64;
+                        queries[q + 6] = Math.sqrt(queries[q + 3] * queries[q + 3] + queries[q + 4] * queries[q + 4]
+                                + queries[q + 5] * queries[q + 5]);
+                    } else {
+                        queries[q + 3] = random.nextGaussian();
+                        queries[q + 4] = kind == 0 ? -Math.abs(random.nextGaussian()) : Math.abs(random.nextGaussian());
+                        queries[q + 5] = random.nextGaussian();
+                        queries[q + 6] = kind == 0 ? 8 : 256;
+                    }
+                }
+                castAll(world, queries, rays, hit, batches);
+                long allocated = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                castAll(world, queries, rays, hit, batches);
+                long elapsed = System.nanoTime() - start;
+                allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+                int hits = 0;
+                long skipped = 0;
+                for (int i = 0; i < rays; i++) {
+                    int q = i * 7;
+                    if (world.raycast(queries[q], queries[q + 1], queries[q + 2], queries[q + 3], queries[q + 4],
+                            queries[q + 5], queries[q + 6], hit)) {
+                        hits++;
+                    }
+                    skipped += hit.getChunksSkipped();
+                }
+                System.out.printf("%-14s rays/s=%.0f hits=%.1f%% chunks skipped/ray=%.2f allocated/ray=%.1fB%n",
+                        labels[kind], rays / (elapsed / 1e9), hits * 100.0 / rays, (double) skipped / rays,
+                        (double) allocated / rays);
+                printLatencies(labels[kind] + " x1000", batches);
+            }
+            world.shutdown();
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * Drops {@code bodies} player-sized bodies over generated terrain and
+     * simulates {@code seconds} seconds of fixed ticks in which each walks
+     * in its own direction, jumping now and then, so bodies fall, land,
+     * climb ledges and run into walls. Reports the time per tick for all
+     * bodies and the bytes allocated per body step.
+     */
+    private static void physics(int bodies, int seconds) throws IOException {
+        Path dir = Files.createTempDirectory("physics-bench");
+        try {
+            ChunkGenerator generator = new ChunkGenerator(12345L);
+            World world = new World(generator, dir, new WorldOptions());
+            int radius = 4;
+            for (int cx = -radius; cx <= radius; cx++) {
+                for (int cz = -radius; cz <= radius; cz++) {
+                    for (int cy = -4; cy <= 3; cy++) {
+                        world.getChunk(cx, cy, cz);
+                    }
+                }
+            }
+            int extent = radius * Chunk.SIZE;
+            Random random = new Random(42);
+            PhysicsBody[] all = new PhysicsBody[bodies];
+            double[] headings = new double[bodies];
+            for (int i = 0; i < bodies; i++) {
+                int x = random.nextInt(2 * extent) - extent;
+                int z = random.nextInt(2 * extent) - extent;
+                all[i] = new PhysicsBody(Player.WIDTH, Player.HEIGHT, Player.STEP_HEIGHT, x + 0.5,
+                        generator.findSurfaceY(world, x, z) + 1 + random.nextInt(8), z + 0.5);
+                headings[i] = random.nextDouble() * 2 * Math.PI;
+            }
+            Physics physics = new Physics(world);
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            int ticks = (int) Math.round(seconds / Physics.TICK_SECONDS);
+            long[] nanos = new long[ticks];
+            long allocated = 0;
+            for (int warm = 0; warm < 2; warm++) {
+                allocated = threads.getCurrentThreadAllocatedBytes();
+                for (int t = 0; t < ticks; t++) {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < bodies; i++) {
+                        PhysicsBody body = all[i];
+                        body.setHorizontalVelocity(Math.sin(headings[i]) * 4, Math.cos(headings[i]) * 4);
+                        if (body.isOnGround() && (t + i) % 90 == 0) {
+                            body.setVerticalVelocity(9);
+                        }
+                        physics.step(body);
+                    }
+                    nanos[t] = System.nanoTime() - start;
+                }
+                allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+            }
+            int grounded = 0;
+            for (PhysicsBody body : all) {
+                if (body.isOnGround()) {
+                    grounded++;
+                }
+            }
+            long total = Arrays.stream(nanos).sum();
+            System.out.printf("%d bodies, %d ticks: body steps/s=%.0f on ground=%d allocated/step=%.1fB%n",
+                    bodies, ticks, (double) bodies * ticks / (total / 1e9), grounded,
+                    (double) allocated / ((long) bodies * ticks));
+            printLatencies("tick", nanos);
+            world.shutdown();
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * Loads a square of chunk columns {@code radius} chunks around the origin
+     * and reports the time to light each chunk as it loads. Then makes
+     * {@code edits} random edits near the surface: placing lamps, removing
+     * them again and digging into the ground. Each edit is first applied on
+     * its own and waited for, giving the latency of one update, then all are
+     * replayed at once so the lighting thread can batch them, giving the
+     * throughput.
+     */
+    private static void lighting(int radius, int edits) throws IOException {
+        Path dir = Files.createTempDirectory("lighting-bench");
+        try {
+            ChunkGenerator generator = new ChunkGenerator(12345L);
+            World world = new World(generator, dir, new WorldOptions());
+            LightEngine lighting = world.getLighting();
+            Metrics metrics = world.getMetrics();
+            long start = System.nanoTime();
+            for (int cx = -radius; cx <= radius; cx++) {
+                for (int cz = -radius; cz <= radius; cz++) {
+                    for (int cy = -4; cy <= 3; cy++) {
+                        world.getChunk(cx, cy, cz);
+                    }
+                }
+            }
+            awaitLighting(lighting);
+            long loadNanos = System.nanoTime() - start;
+            LatencyHistogram init = metrics.histogram("lighting.init_ms", Metrics.Unit.NANOS);
+            LatencyHistogram batches = metrics.histogram("lighting.batch_ms", Metrics.Unit.NANOS);
+            System.out.printf("%d chunks in %.0fms: initial light avg=%.1fus p99=%.1fus,"
+                    + " border exchange total=%.0fms%n", init.getCount(), loadNanos / 1e6, init.getMean() / 1000.0, init.getPercentile(0.99) / 1000.0,
+                    batches.getMean() * batches.getCount() / 1e6);
+
+            int extent = (radius - 1) * Chunk.SIZE;
+            Random random = new Random(42);
+            int[] xs = new int[edits];
+            int[] ys = new int[edits];
+            int[] zs = new int[edits];
+            BlockType[] types = new BlockType[edits];
+            for (int i = 0; i < edits; i += 3) {
+                int x = random.nextInt(2 * extent) - extent;
+                int z = random.nextInt(2 * extent) - extent;
+                int y = generator.findSurfaceY(world, x, z);
+                int lampY = y + 1 + random.nextInt(3);
+                // a lamp, a hole dug next to it, then the lamp removed again
+                for (int k = 0; k < 3 && i + k < edits; k++) {
+                    xs[i + k] = k == 1 ? x + 1 : x;
+                    ys[i + k] = k == 1 ? y : lampY;
+                    zs[i + k] = z;
+                    types[i + k] = k == 0 ? BlockType.LAMP : BlockType.AIR;
+                }
+            }
+            Metrics.Counter cells = metrics.counter("lighting.cells_changed");
+            long[] nanos = new long[edits];
+            long cellsBefore = cells.get();
+            for (int i = 0; i < edits; i++) {
+                long editStart = System.nanoTime();
+                world.setBlock(xs[i], ys[i], zs[i], types[i]);
+                awaitLighting(lighting);
+                nanos[i] = System.nanoTime() - editStart;
+            }
+            long cellsPerEdit = (cells.get() - cellsBefore) / edits;
+            printLatencies("edit+light", nanos);
+
+            long batchesBefore = batches.getCount();
+            start = System.nanoTime();
+            for (int i = 0; i < edits; i++) {
+                world.setBlock(xs[i], ys[i], zs[i], types[i]);
+            }
+            awaitLighting(lighting);
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("%d edits batched: updates/s=%.0f batches=%d light cells changed/edit=%d%n",
+                    edits, edits / (elapsed / 1e9), batches.getCount() - batchesBefore, cellsPerEdit);
+            world.shutdown();
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    /**
+     * Places {@code sources} water sources on the surface of a square of
+     * chunk columns {@code radius} chunks around the origin and lets the
+     * block ticker spread them at its normal rate for {@code seconds}
+     * seconds. Prints the number of active positions each second, then the
+     * time per tick and the blocks and chunks changed.
+     */
+    private static void water(int radius, int sources, int seconds) throws IOException {
+        Path dir = Files.createTempDirectory("water-bench");
+        try {
+            ChunkGenerator generator = new ChunkGenerator(12345L);
+            World world = new World(generator, dir, new WorldOptions());
+            for (int cx = -radius; cx <= radius; cx++) {
+                for (int cz = -radius; cz <= radius; cz++) {
+                    for (int cy = -4; cy <= 3; cy++) {
+                        world.getChunk(cx, cy, cz);
+                    }
+                }
+            }
+            awaitLighting(world.getLighting());
+            Metrics metrics = world.getMetrics();
+            LatencyHistogram tickTime = metrics.histogram("ticks.tick_ms", Metrics.Unit.NANOS);
+            Metrics.Counter ticked = metrics.counter("ticks.blocks_ticked");
+            Metrics.Counter changed = metrics.counter("ticks.blocks_changed");
+            Metrics.Counter chunks = metrics.counter("ticks.chunks_changed");
+            Metrics.Counter skipped = metrics.counter("ticks.skipped");
+            long tickedBefore = ticked.get();
+            long changedBefore = changed.get();
+            long chunksBefore = chunks.get();
+            long skippedBefore = skipped.get();
+            tickTime.reset();
+
+            int extent = (radius - 1) * Chunk.SIZE;
+            Random random = new Random(42);
+            for (int i = 0; i < sources; i++) {
+                int x = random.nextInt(2 * extent) - extent;
+                int z = random.nextInt(2 * extent) - extent;
+                world.setBlock(x, generator.findSurfaceY(world, x, z) + 1, z, BlockType.WATER);
+            }
+            BlockTicker ticks = world.getBlockTicks();
+            StringBuilder active = new StringBuilder();
+            for (int s = 0; s < seconds; s++) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                active.append(s == 0 ? "" : " ").append(ticks.getActiveCount());
+            }
+            long runs = tickTime.getCount();
+            System.out.println("active positions per second: " + active);
+            System.out.printf("%d ticks: avg=%.1fus p50=%.1fus p99=%.1fus max=%.1fus skipped=%d%n", runs,
+                    tickTime.getMean() / 1000.0, tickTime.getPercentile(0.5) / 1000.0,
+                    tickTime.getPercentile(0.99) / 1000.0, tickTime.getMax() / 1000.0, skipped.get() - skippedBefore);
+            System.out.printf("blocks ticked/s=%.0f blocks changed=%d chunk batches=%d changes/batch=%.1f%n",
+                    (ticked.get() - tickedBefore) / (double) seconds, changed.get() - changedBefore,
+                    chunks.get() - chunksBefore,
+                    (changed.get() - changedBefore) / (double) Math.max(1, chunks.get() - chunksBefore));
+            world.shutdown();
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    private static void awaitLighting(LightEngine lighting) {
+        try {
+            lighting.awaitIdle();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Casts every ray in {@code queries}, storing the time taken by each batch of 1000 rays in {@code batches}. */
+    private static void castAll(World world, double[] queries, int rays, RaycastHit hit, long[] batches) {
+        for (int b = 0; b < batches.length; b++) {
+            long start = System.nanoTime();
+            for (int i = b * 1000; i < Math.min(rays, (b + 1) * 1000); i++) {
+                int q = i * 7;
+                world.raycast(queries[q], queries[q + 1], queries[q + 2], queries[q + 3], queries[q + 4],
+                        queries[q + 5], queries[q + 6], hit);
+            }
+            batches[b] = System.nanoTime() - start;
+        }
+    }
+
+    /** A vertex count shaped like chunk meshes: mostly small, with a long tail. */
+    private static int meshSize(Random random) {
+        double r = random.nextDouble();
+        return 4 * (1 + (int) (r * r * r * 2000));
+    }
+
+    /** Sum of the logical sizes of all files below {@code dir}. */
+    private static long folderSize(Path dir) throws IOException {
+        try (var stream = Files.walk(dir)) {
+            long total = 0;
+            for (Path p : stream.filter(Files::isRegularFile).toList()) {
+                total += Files.size(p);
+            }
+            return total;
+        }
+    }
+
+    private static long[] readAll(RegionStorage storage, int[][] positions) {
+        long[] nanos = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            int[] p = positions[i];
+            long start = System.nanoTime();
+            Chunk chunk = storage.read(p[0], p[1], p[2]);
+            nanos[i] = System.nanoTime() - start;
+            if (chunk == null) {
+                throw new IllegalStateException("Missing chunk " + Arrays.toString(p));
+            }
+        }
+        return nanos;
+    }
+
+    static void printLatencies(String label, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long n : sorted) {
+            total += n;
+        }
+        System.out.printf("%-16s n=%d avg=%.1fus p50=%.1fus p99=%.1fus max=%.1fus%n",
+                label, sorted.length,
+                total / 1000.0 / sorted.length,
+                percentile(sorted, 0.50) / 1000.0,
+                percentile(sorted, 0.99) / 1000.0,
+                sorted[sorted.length - 1] / 1000.0);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)));
+        return sorted[index];
+    }
+
+    static int intArg(String[] args, int index, int fallback) {
+        if (args.length <= index) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(args[index]);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid number '" + args[index] + "', using default " + fallback);
+            return fallback;
+        }
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        try (var stream = Files.walk(dir)) {
+            for (Path p : stream.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.minecraftclone;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs scheduled block ticks at a fixed {@link #TICKS_PER_SECOND} on its own
+ * thread, independent of the frame rate. Only positions that were scheduled
+ * are looked at, so a still world costs nothing; there are no chunk scans.
+ * An edit near water schedules it, and every block a tick changes schedules
+ * its neighbours for a later tick, so flowing water advances one block per
+ * {@link #WATER_DELAY} ticks until it settles and the active set drains.
+ * <p>
+ * Each due position decides its new block from its neighbours as they were
+ * at the start of the tick, so the result does not depend on the order
+ * positions are visited in. The changes are then grouped by chunk and
+ * applied together, so remeshing and saving happen once per chunk per tick
+ * however many of its blocks changed. Ticks only turn air and water into
+ * each other, which chunks treat alike for occlusion, so that is never
+ * updated. A change is dropped if the player edited the block in the
+ * meantime; the check and the write happen under the chunk's lock, which
+ * {@link Chunk#setBlock} takes too.
+ * <p>
+ * Water follows simple rules. A source block has strength 8; flowing water
+ * has strength 1 to 7. Air or flowing water below any water becomes flowing
+ * water of strength 7. Otherwise it takes one less than its strongest
+ * horizontal neighbour that rests on something other than air or flowing
+ * water, and dries up when that reaches 0. Sources never change. Positions
+ * in chunks that are not loaded are dropped.
+ */
+public class BlockTicker {
+    public static final int TICKS_PER_SECOND = 20;
+    /** Ticks between water reaching a block and spreading on from it. */
+    public static final int WATER_DELAY = 5;
+    private static final int SOURCE_STRENGTH = 8;
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1) / TICKS_PER_SECOND;
+    /** Ticks run back to back after a stall before the rest are skipped. */
+    private static final int MAX_CATCH_UP = 10;
+    /** Buckets of the schedule ring; delays must be shorter. */
+    private static final int RING = 32;
+    private static final int[][] DIRS = { {1,0,0}, {-1,0,0}, {0,1,0}, {0,-1,0}, {0,0,1}, {0,0,-1} };
+    private static final int[][] HORIZONTAL = { {1,0,0}, {-1,0,0}, {0,0,1}, {0,0,-1} };
+
+    /** A block to set when the tick's changes are applied, unless the block is no longer {@code expected}. */
+    private record Change(int x, int y, int z, BlockType expected, BlockType type, int level) { }
+
+    private final World world;
+    private final Thread worker;
+    private volatile boolean running = true;
+    /** Positions scheduled from other threads, moved into the schedule at the start of each tick. */
+    private final ConcurrentLinkedQueue<Long> incoming = new ConcurrentLinkedQueue<>();
+
+    // state owned by the tick thread
+    /** Positions due in each of the next {@link #RING} ticks, by tick modulo the ring size. */
+    private final List<ArrayDeque<Long>> due = new ArrayList<>();
+    /** Every scheduled position, so one is never queued twice. */
+    private final Set<Long> scheduled = new HashSet<>();
+    private final List<Change> changes = new ArrayList<>();
+    private final Map<ChunkPos, List<Change>> byChunk = new LinkedHashMap<>();
+    private long tick;
+    private volatile int active;
+
+    private final Metrics.Counter ticksRun;
+    private final Metrics.Counter ticksSkipped;
+    private final Metrics.Counter blocksTicked;
+    private final Metrics.Counter blocksChanged;
+    private final Metrics.Counter chunksChanged;
+    private final LatencyHistogram tickTime;
+
+    public BlockTicker(World world, Metrics metrics) {
+        this.world = world;
+        for (int i = 0; i < RING; i++) {
+            due.add(new ArrayDeque<>());
+        }
+        this.ticksRun = metrics.counter("ticks.run");
+        this.ticksSkipped = metrics.counter("ticks.skipped");
+        this.blocksTicked = metrics.counter("ticks.blocks_ticked");
+        this.blocksChanged = metrics.counter("ticks.blocks_changed");
+        this.chunksChanged = metrics.counter("ticks.chunks_changed");
+        this.tickTime = metrics.histogram("ticks.tick_ms", Metrics.Unit.NANOS);
+        metrics.gauge("ticks.active", () -> active);
+        worker = new Thread(this::run, "block-ticks");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedules the edited block and its neighbours if any of them is water,
+     * so water flows into a hole or dries up behind a removed source. Safe to
+     * call from any thread.
+     */
+    public void blockChanged(int x, int y, int z) {
+        boolean wet = world.getBlock(x, y, z).isFluid();
+        for (int i = 0; i < DIRS.length && !wet; i++) {
+            wet = world.getBlock(x + DIRS[i][0], y + DIRS[i][1], z + DIRS[i][2]).isFluid();
+        }
+        if (wet) {
+            incoming.add(pack(x, y, z));
+            for (int[] d : DIRS) {
+                incoming.add(pack(x + d[0], y + d[1], z + d[2]));
+            }
+        }
+    }
+
+    /** Positions waiting for a tick. */
+    public int getActiveCount() {
+        return active;
+    }
+
+    /** Stops the tick thread, waiting briefly for a running tick to finish its changes. */
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long next = System.nanoTime();
+        while (running) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+            if (-wait > MAX_CATCH_UP * TICK_NANOS) {
+                long behind = -wait / TICK_NANOS;
+                ticksSkipped.add(behind);
+                next += behind * TICK_NANOS;
+            }
+            next += TICK_NANOS;
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                System.err.println("Failed to run block tick: " + e);
+            }
+        }
+    }
+
+    private void tick() {
+        long start = System.nanoTime();
+        tick++;
+        for (Long pos; (pos = incoming.poll()) != null; ) {
+            schedule(pos, WATER_DELAY);
+        }
+        ArrayDeque<Long> now = due.get((int) (tick % RING));
+        int count = now.size();
+        for (Long pos; (pos = now.poll()) != null; ) {
+            scheduled.remove(pos);
+            tickWater(unpackX(pos), unpackY(pos), unpackZ(pos));
+        }
+        applyChanges();
+        active = scheduled.size();
+        ticksRun.increment();
+        blocksTicked.add(count);
+        tickTime.record(System.nanoTime() - start);
+    }
+
+    private void schedule(long pos, int delay) {
+        if (scheduled.add(pos)) {
+            due.get((int) ((tick + delay) % RING)).add(pos);
+        }
+    }
+
+    /** Works out what an air or flowing water block becomes and records it as a change. */
+    private void tickWater(int x, int y, int z) {
+        BlockType block = world.getBlock(x, y, z);
+        if (block != BlockType.AIR && block != BlockType.FLOWING_WATER) {
+            return;
+        }
+        int strength;
+        if (world.getBlock(x, y + 1, z).isFluid()) {
+            strength = SOURCE_STRENGTH - 1;
+        } else {
+            strength = 0;
+            for (int[] d : HORIZONTAL) {
+                int nx = x + d[0];
+                int nz = z + d[2];
+                BlockType below = world.getBlock(nx, y - 1, nz);
+                if (below != BlockType.AIR && below != BlockType.FLOWING_WATER) {
+                    strength = Math.max(strength, strength(nx, y, nz) - 1);
+                }
+            }
+        }
+        if (strength > 0) {
+            if (block != BlockType.FLOWING_WATER || strength != strength(x, y, z)) {
+                changes.add(new Change(x, y, z, block, BlockType.FLOWING_WATER, strength));
+            }
+        } else if (block == BlockType.FLOWING_WATER) {
+            changes.add(new Change(x, y, z, block, BlockType.AIR, 0));
+        }
+    }
+
+    /** Strength of the water at a block: 8 for a source, 1 to 7 if flowing, 0 for anything else. */
+    private int strength(int x, int y, int z) {
+        Chunk chunk = world.getChunkIfLoaded(Math.floorDiv(x, Chunk.SIZE), Math.floorDiv(y, Chunk.SIZE),
+                Math.floorDiv(z, Chunk.SIZE));
+        if (chunk == null) {
+            return 0;
+        }
+        int lx = Math.floorMod(x, Chunk.SIZE);
+        int ly = Math.floorMod(y, Chunk.SIZE);
+        int lz = Math.floorMod(z, Chunk.SIZE);
+        return switch (chunk.getBlock(lx, ly, lz)) {
+            case WATER -> SOURCE_STRENGTH;
+            // flowing water read back from disk has no level; count it as the weakest
+            case FLOWING_WATER -> Math.max(1, chunk.getFluidLevel(lx, ly, lz));
+            default -> 0;
+        };
+    }
+
+    /** Applies the tick's changes chunk by chunk and schedules the neighbours of every changed block. */
+    private void applyChanges() {
+        if (changes.isEmpty()) {
+            return;
+        }
+        for (Change change : changes) {
+            ChunkPos pos = new ChunkPos(Math.floorDiv(change.x(), Chunk.SIZE), Math.floorDiv(change.y(), Chunk.SIZE),
+                    Math.floorDiv(change.z(), Chunk.SIZE));
+            byChunk.computeIfAbsent(pos, p -> new ArrayList<>()).add(change);
+        }
+        changes.clear();
+        for (var entry : byChunk.entrySet()) {
+            ChunkPos pos = entry.getKey();
+            Chunk chunk = world.getChunkIfLoaded(pos.x(), pos.y(), pos.z());
+            if (chunk == null) {
+                continue;
+            }
+            int applied = 0;
+            for (Change change : entry.getValue()) {
+                int lx = Math.floorMod(change.x(), Chunk.SIZE);
+                int ly = Math.floorMod(change.y(), Chunk.SIZE);
+                int lz = Math.floorMod(change.z(), Chunk.SIZE);
+                // Chunk.setBlock takes the same lock, so no edit can land between the check and the write
+                synchronized (chunk) {
+                    if (chunk.getBlock(lx, ly, lz) != change.expected()) {
+                        continue;
+                    }
+                    // water and air both let light through, so the lighting needs no update
+                    chunk.setFluidLevel(lx, ly, lz, change.level());
+                    chunk.setBlock(lx, ly, lz, change.type());
+                }
+                applied++;
+                for (int[] d : DIRS) {
+                    schedule(pack(change.x() + d[0], change.y() + d[1], change.z() + d[2]), WATER_DELAY);
+                }
+            }
+            if (applied > 0) {
+                world.finishFluidEdits(pos.x(), pos.y(), pos.z(), chunk);
+                blocksChanged.add(applied);
+                chunksChanged.increment();
+            }
+        }
+        byChunk.clear();
+    }
+
+    /** Packs block coordinates of up to a million blocks from the origin into one long. */
+    private static long pack(int x, int y, int z) {
+        return ((long) x & 0x1FFFFF) << 42 | ((long) y & 0x1FFFFF) << 21 | ((long) z & 0x1FFFFF);
+    }
+
+    private static int unpackX(long pos) {
+        return (int) (pos << 1 >> 43);
+    }
+
+    private static int unpackY(long pos) {
+        return (int) (pos << 22 >> 43);
+    }
+
+    private static int unpackZ(long pos) {
+        return (int) (pos << 43 >> 43);
+    }
+}
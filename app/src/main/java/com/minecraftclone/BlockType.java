@@ -11,12 +11,36 @@ public enum BlockType {
     SAND('A'),
     WATER('W'),
     SNOW('N'),
-    ICE('I');
+    ICE('I'),
+    LAMP('L', 15),
+    /** Water spreading from a source; how far it reaches is kept in {@link Chunk#getFluidLevel}. */
+    FLOWING_WATER('w');
 
     private final char display;
+    private final int lightEmission;
 
     BlockType(char display) {
+        this(display, 0);
+    }
+
+    BlockType(char display, int lightEmission) {
         this.display = display;
+        this.lightEmission = lightEmission;
+    }
+
+    /** Block light level from 0 to 15 the block gives off. */
+    public int getLightEmission() {
+        return lightEmission;
+    }
+
+    /** Returns {@code true} if light passes through the block. */
+    public boolean isTransparent() {
+        return this == AIR || isFluid();
+    }
+
+    /** Returns {@code true} for water sources and flowing water, which bodies pass through. */
+    public boolean isFluid() {
+        return this == WATER || this == FLOWING_WATER;
     }
 
     /**
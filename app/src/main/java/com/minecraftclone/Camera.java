@@ -0,0 +1,102 @@
+package com.minecraftclone;
+
+import java.util.Arrays;
+
+/**
+ * Projection and view matrices computed in Java from the player's position
+ * and orientation, so the renderer can hand them to OpenGL with
+ * {@code glLoadMatrixf} and derive its culling planes without reading
+ * matrices back from the driver. Matrices are column-major as OpenGL expects
+ * and match what {@code glFrustum}, {@code glRotatef} and {@code glTranslatef}
+ * would build.
+ * <p>
+ * The returned arrays are updated in place and must not be modified.
+ */
+public class Camera {
+    private final float[] projection = new float[16];
+    private final float[] view = new float[16];
+    private final float[] viewProjection = new float[16];
+
+    /** Sets a symmetric perspective projection with a vertical field of view in degrees. */
+    public void setPerspective(float fovDegrees, float aspect, float near, float far) {
+        double top = near * Math.tan(Math.toRadians(fovDegrees) / 2.0);
+        double right = top * aspect;
+        float[] p = projection;
+        Arrays.fill(p, 0f);
+        p[0] = (float) (near / right);
+        p[5] = (float) (near / top);
+        p[10] = -(far + near) / (far - near);
+        p[11] = -1f;
+        p[14] = -2f * far * near / (far - near);
+        multiply();
+    }
+
+    /** Places the eye at the player's position looking along their yaw and pitch. */
+    public void update(Player player) {
+        setView(player.getX(), player.getY(), player.getZ(), player.getYaw(), player.getPitch());
+    }
+
+    /**
+     * Places the eye at the given position. Yaw turns left from looking down
+     * -Z and pitch looks up, both in radians, matching {@link Player}.
+     */
+    public void setView(double x, double y, double z, double yaw, double pitch) {
+        double cp = Math.cos(-pitch);
+        double sp = Math.sin(-pitch);
+        double cy = Math.cos(-yaw);
+        double sy = Math.sin(-yaw);
+        // rotation about x by -pitch, then about y by -yaw, then moving the eye to the origin
+        double r0 = cy;
+        double r1 = sp * sy;
+        double r2 = -cp * sy;
+        double r5 = cp;
+        double r6 = sp;
+        double r8 = sy;
+        double r9 = -sp * cy;
+        double r10 = cp * cy;
+        float[] v = view;
+        v[0] = (float) r0;
+        v[1] = (float) r1;
+        v[2] = (float) r2;
+        v[3] = 0f;
+        v[4] = 0f;
+        v[5] = (float) r5;
+        v[6] = (float) r6;
+        v[7] = 0f;
+        v[8] = (float) r8;
+        v[9] = (float) r9;
+        v[10] = (float) r10;
+        v[11] = 0f;
+        v[12] = (float) -(r0 * x + r8 * z);
+        v[13] = (float) -(r1 * x + r5 * y + r9 * z);
+        v[14] = (float) -(r2 * x + r6 * y + r10 * z);
+        v[15] = 1f;
+        multiply();
+    }
+
+    private void multiply() {
+        float[] p = projection;
+        float[] v = view;
+        for (int col = 0; col < 4; col++) {
+            for (int row = 0; row < 4; row++) {
+                viewProjection[col * 4 + row] = p[row] * v[col * 4] + p[4 + row] * v[col * 4 + 1]
+                        + p[8 + row] * v[col * 4 + 2] + p[12 + row] * v[col * 4 + 3];
+            }
+        }
+    }
+
+    /** Eye to clip space. */
+    public float[] getProjection() {
+        return projection;
+    }
+
+    /** World to eye space. */
+    public float[] getView() {
+        return view;
+    }
+
+    /** World to clip space, the projection applied after the view. */
+    public float[] getViewProjection() {
+        return viewProjection;
+    }
+}
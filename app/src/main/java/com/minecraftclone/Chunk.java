@@ -1,5 +1,7 @@
 package com.minecraftclone;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -10,20 +12,56 @@ import java.util.Set;
  */
 public class Chunk {
     public static final int SIZE = 16;
+    /**
+     * Approximate heap used by one chunk's block data: the nested block
+     * arrays with compressed references, plus the edit set and bookkeeping.
+     */
+    public static final int ESTIMATED_BYTES = 16 + SIZE * 4 + SIZE * (16 + SIZE * 4) + SIZE * SIZE * (16 + SIZE * 4)
+            + SIZE * SIZE * SIZE / 8 + 3 * NibbleArray.estimatedBytes() + 512;
     private final BlockType[][][] blocks = new BlockType[SIZE][SIZE][SIZE];
+    /**
+     * Number of blocks that are not air, so empty chunks can be skipped
+     * without scanning them. Only written under the chunk's lock, like
+     * {@link #version}.
+     */
+    private volatile int nonAirCount;
+    /** Light from the sky and from glowing blocks, 0 to 15 per block; written by {@link LightEngine} only. */
+    private final NibbleArray skyLight = new NibbleArray();
+    private final NibbleArray blockLight = new NibbleArray();
+    /** Strength of {@link BlockType#FLOWING_WATER} blocks, 1 to 7; written by {@link BlockTicker} only. */
+    private final NibbleArray fluidLevels = new NibbleArray();
     private ChunkMesh mesh;
     private final Map<Integer, ChunkMesh> lodMeshes = new HashMap<>();
     private final Set<Integer> emptyLodSteps = new HashSet<>();
     private final Set<Integer> dirtyLodSteps = new HashSet<>();
-    private boolean dirty = true;
+    private volatile boolean dirty = true;
+    // incremented whenever the mesh goes stale so a mesh built in the background can tell it is outdated
+    private volatile int meshRevision;
     // whether the chunk's block data differs from its last on-disk save
-    private boolean needsSave = true;
-    public enum Origin { GENERATED, LOADED }
+    private volatile boolean needsSave = true;
+    // incremented on every edit, under the chunk's lock, so a background save can tell whether it wrote the latest data
+    private volatile int version;
+    /**
+     * Where the chunk's blocks came from: fresh terrain generation, a full
+     * copy on disk, or regenerated terrain with saved edits reapplied.
+     */
+    public enum Origin { GENERATED, LOADED, RESTORED }
     private Origin origin = Origin.GENERATED;
-    /** True if every block on each of the six faces is solid. Indexed as +X,-X,+Y,-Y,+Z,-Z. */
+    /** Blocks changed through {@link #setBlock} since the generated baseline, by block index. */
+    private final BitSet edits = new BitSet(SIZE * SIZE * SIZE);
+    /**
+     * True if every block on each of the six faces is solid. Indexed as
+     * +X,-X,+Y,-Y,+Z,-Z. Water counts as open, like air, so flowing water
+     * never changes what a chunk hides.
+     */
     private final boolean[] solidFaces = new boolean[6];
-    /** Whether this chunk is completely hidden by neighbors. */
-    private boolean occluded;
+    /**
+     * Bit {@code from * 6 + to} is set if air or water connects face
+     * {@code from} to face {@code to}, with faces indexed like
+     * {@link #solidFaces}. Starts fully connected so chunks are never culled
+     * before it is computed.
+     */
+    private volatile long faceConnections = (1L << 36) - 1;
 
     public Chunk() {
         // initialize all blocks to AIR
@@ -41,10 +79,15 @@ public class Chunk {
         return blocks[x][y][z];
     }
 
-    public void setBlock(int x, int y, int z, BlockType type) {
+    public synchronized void setBlock(int x, int y, int z, BlockType type) {
         check(x, y, z);
-        blocks[x][y][z] = type;
+        replace(x, y, z, type);
+        synchronized (edits) {
+            edits.set(blockIndex(x, y, z));
+        }
         dirty = true;
+        meshRevision++;
+        version++;
         needsSave = true;
         clearLods();
     }
@@ -54,8 +97,99 @@ public class Chunk {
      * Intended for bulk loading from disk where the chunk will be marked dirty
      * once after all blocks are populated.
      */
-    void setBlockUnchecked(int x, int y, int z, BlockType type) {
+    synchronized void setBlockUnchecked(int x, int y, int z, BlockType type) {
+        replace(x, y, z, type);
+    }
+
+    /** Stores a block and keeps {@link #nonAirCount} in step. */
+    private void replace(int x, int y, int z, BlockType type) {
+        BlockType old = blocks[x][y][z];
         blocks[x][y][z] = type;
+        if ((old == BlockType.AIR) != (type == BlockType.AIR)) {
+            nonAirCount += type == BlockType.AIR ? -1 : 1;
+        }
+    }
+
+    public int getSkyLight(int x, int y, int z) {
+        return skyLight.get(blockIndex(x, y, z));
+    }
+
+    void setSkyLight(int x, int y, int z, int level) {
+        skyLight.set(blockIndex(x, y, z), level);
+    }
+
+    /** Sets the sky light of every block, as for a chunk of open air. */
+    void fillSkyLight(int level) {
+        skyLight.fill(level);
+    }
+
+    public int getBlockLight(int x, int y, int z) {
+        return blockLight.get(blockIndex(x, y, z));
+    }
+
+    void setBlockLight(int x, int y, int z, int level) {
+        blockLight.set(blockIndex(x, y, z), level);
+    }
+
+    /**
+     * Strength of flowing water at the block, falling by one per block it
+     * spreads from its source, or 0 if unknown. Levels are not saved, so
+     * flowing water read back from disk has level 0 until a tick recomputes it.
+     */
+    public int getFluidLevel(int x, int y, int z) {
+        return fluidLevels.get(blockIndex(x, y, z));
+    }
+
+    void setFluidLevel(int x, int y, int z, int level) {
+        fluidLevels.set(blockIndex(x, y, z), level);
+    }
+
+    /** Brightest of the sky and block light at the block. */
+    public int getLight(int x, int y, int z) {
+        int index = blockIndex(x, y, z);
+        return Math.max(skyLight.get(index), blockLight.get(index));
+    }
+
+    /** Returns {@code true} if every block in the chunk is air. */
+    public boolean isEmpty() {
+        return nonAirCount == 0;
+    }
+
+    /** Index of a block within the chunk, matching the order blocks are stored on disk. */
+    static int blockIndex(int x, int y, int z) {
+        return (x * SIZE + y) * SIZE + z;
+    }
+
+    /** Returns {@code true} if any block was edited since the generated baseline. */
+    public boolean hasEdits() {
+        synchronized (edits) {
+            return !edits.isEmpty();
+        }
+    }
+
+    /** Returns the indices of blocks edited since the generated baseline. */
+    int[] editedIndices() {
+        synchronized (edits) {
+            return edits.stream().toArray();
+        }
+    }
+
+    /** Forgets recorded edits, making the current blocks the baseline. */
+    void clearEdits() {
+        synchronized (edits) {
+            edits.clear();
+        }
+    }
+
+    /** Restores a previously saved edit without marking the chunk dirty. */
+    void applyEdit(int index, BlockType type) {
+        int x = index / (SIZE * SIZE);
+        int y = (index / SIZE) % SIZE;
+        int z = index % SIZE;
+        replace(x, y, z, type);
+        synchronized (edits) {
+            edits.set(index);
+        }
     }
 
     public boolean isDirty() {
@@ -71,6 +205,21 @@ public class Chunk {
         needsSave = false;
     }
 
+    /** Returns a counter that changes whenever the chunk's blocks are edited. */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Marks the chunk saved if no edits happened since {@code savedVersion}
+     * was read, so a concurrent edit is never lost by a background write.
+     */
+    synchronized void markSaved(int savedVersion) {
+        if (version == savedVersion) {
+            needsSave = false;
+        }
+    }
+
     public ChunkMesh getMesh() {
         return mesh;
     }
@@ -80,6 +229,20 @@ public class Chunk {
         this.dirty = false;
     }
 
+    /**
+     * Installs a mesh built from the blocks as they were at {@code revision}.
+     * The chunk stays dirty if it changed while the mesh was being built.
+     */
+    public void setMesh(ChunkMesh mesh, int revision) {
+        this.mesh = mesh;
+        this.dirty = meshRevision != revision;
+    }
+
+    /** Returns a counter that changes whenever the chunk's mesh goes stale. */
+    public int getMeshRevision() {
+        return meshRevision;
+    }
+
     public ChunkMesh getLodMesh(int step) {
         return lodMeshes.get(step);
     }
@@ -115,12 +278,28 @@ public class Chunk {
     }
 
     /** Marks the chunk as needing its mesh rebuilt. */
-    public void markDirty() {
+    public synchronized void markDirty() {
         this.dirty = true;
+        meshRevision++;
         dirtyLodSteps.addAll(lodMeshes.keySet());
         emptyLodSteps.clear();
     }
 
+    /** Frees the full-detail mesh; it is rebuilt if the chunk needs it again. */
+    public void disposeMesh() {
+        if (mesh != null) {
+            mesh.dispose();
+            mesh = null;
+            dirty = true;
+        }
+    }
+
+    /** Frees the full-detail and every LOD mesh. */
+    public void disposeMeshes() {
+        disposeMesh();
+        clearLods();
+    }
+
     private void clearLods() {
         for (ChunkMesh m : lodMeshes.values()) {
             m.dispose();
@@ -134,13 +313,14 @@ public class Chunk {
         return dirtyLodSteps.contains(step);
     }
 
-    /** Recomputes whether each face of the chunk is fully solid. */
-    public void updateFaceSolidity() {
+    /** Recomputes whether each face of the chunk is fully solid and returns whether any face changed. */
+    public boolean updateFaceSolidity() {
+        boolean[] before = solidFaces.clone();
         // +X face
         solidFaces[0] = true;
         outer0: for (int y = 0; y < SIZE; y++) {
             for (int z = 0; z < SIZE; z++) {
-                if (blocks[SIZE - 1][y][z] == BlockType.AIR) {
+                if (blocks[SIZE - 1][y][z].isTransparent()) {
                     solidFaces[0] = false;
                     break outer0;
                 }
@@ -150,7 +330,7 @@ public class Chunk {
         solidFaces[1] = true;
         outer1: for (int y = 0; y < SIZE; y++) {
             for (int z = 0; z < SIZE; z++) {
-                if (blocks[0][y][z] == BlockType.AIR) {
+                if (blocks[0][y][z].isTransparent()) {
                     solidFaces[1] = false;
                     break outer1;
                 }
@@ -160,7 +340,7 @@ public class Chunk {
         solidFaces[2] = true;
         outer2: for (int x = 0; x < SIZE; x++) {
             for (int z = 0; z < SIZE; z++) {
-                if (blocks[x][SIZE - 1][z] == BlockType.AIR) {
+                if (blocks[x][SIZE - 1][z].isTransparent()) {
                     solidFaces[2] = false;
                     break outer2;
                 }
@@ -170,7 +350,7 @@ public class Chunk {
         solidFaces[3] = true;
         outer3: for (int x = 0; x < SIZE; x++) {
             for (int z = 0; z < SIZE; z++) {
-                if (blocks[x][0][z] == BlockType.AIR) {
+                if (blocks[x][0][z].isTransparent()) {
                     solidFaces[3] = false;
                     break outer3;
                 }
@@ -180,7 +360,7 @@ public class Chunk {
         solidFaces[4] = true;
         outer4: for (int x = 0; x < SIZE; x++) {
             for (int y = 0; y < SIZE; y++) {
-                if (blocks[x][y][SIZE - 1] == BlockType.AIR) {
+                if (blocks[x][y][SIZE - 1].isTransparent()) {
                     solidFaces[4] = false;
                     break outer4;
                 }
@@ -190,24 +370,100 @@ public class Chunk {
         solidFaces[5] = true;
         outer5: for (int x = 0; x < SIZE; x++) {
             for (int y = 0; y < SIZE; y++) {
-                if (blocks[x][y][0] == BlockType.AIR) {
+                if (blocks[x][y][0].isTransparent()) {
                     solidFaces[5] = false;
                     break outer5;
                 }
             }
         }
+        return !Arrays.equals(before, solidFaces);
     }
 
-    public boolean isFaceSolid(int face) {
-        return solidFaces[face];
+    /**
+     * Flood-fills the chunk's air and water and records which pairs of faces
+     * each open pocket touches, so visibility can only pass between faces an opening
+     * actually joins. Call after the chunk's blocks change; returns whether
+     * any pair of faces was joined or separated.
+     */
+    public boolean updateConnectivity() {
+        final int volume = SIZE * SIZE * SIZE;
+        BitSet visited = new BitSet(volume);
+        int[] queue = new int[volume];
+        long connections = 0;
+        for (int start = 0; start < volume; start++) {
+            if (visited.get(start) || !blockAt(start).isTransparent()) {
+                continue;
+            }
+            int touched = 0;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            visited.set(start);
+            while (head < tail) {
+                int index = queue[head++];
+                int x = index / (SIZE * SIZE);
+                int y = (index / SIZE) % SIZE;
+                int z = index % SIZE;
+                touched |= boundaryFaces(x, y, z);
+                if (x + 1 < SIZE) tail = visit(index + SIZE * SIZE, visited, queue, tail);
+                if (x > 0) tail = visit(index - SIZE * SIZE, visited, queue, tail);
+                if (y + 1 < SIZE) tail = visit(index + SIZE, visited, queue, tail);
+                if (y > 0) tail = visit(index - SIZE, visited, queue, tail);
+                if (z + 1 < SIZE) tail = visit(index + 1, visited, queue, tail);
+                if (z > 0) tail = visit(index - 1, visited, queue, tail);
+            }
+            for (int from = 0; from < 6; from++) {
+                if ((touched & (1 << from)) == 0) {
+                    continue;
+                }
+                for (int to = 0; to < 6; to++) {
+                    if ((touched & (1 << to)) != 0) {
+                        connections |= 1L << (from * 6 + to);
+                    }
+                }
+            }
+        }
+        boolean changed = connections != faceConnections;
+        faceConnections = connections;
+        return changed;
     }
 
-    public boolean isOccluded() {
-        return occluded;
+    /** Bit {@code from * 6 + to} is set if {@link #canSeeThrough} those faces. */
+    long getFaceConnections() {
+        return faceConnections;
     }
 
-    public void setOccluded(boolean occluded) {
-        this.occluded = occluded;
+    private int visit(int index, BitSet visited, int[] queue, int tail) {
+        if (!visited.get(index) && blockAt(index).isTransparent()) {
+            visited.set(index);
+            queue[tail++] = index;
+        }
+        return tail;
+    }
+
+    private BlockType blockAt(int index) {
+        return blocks[index / (SIZE * SIZE)][(index / SIZE) % SIZE][index % SIZE];
+    }
+
+    /** Faces of the chunk the block lies on, as a bit mask indexed like {@link #solidFaces}. */
+    private static int boundaryFaces(int x, int y, int z) {
+        int mask = 0;
+        if (x == SIZE - 1) mask |= 1;
+        if (x == 0) mask |= 1 << 1;
+        if (y == SIZE - 1) mask |= 1 << 2;
+        if (y == 0) mask |= 1 << 3;
+        if (z == SIZE - 1) mask |= 1 << 4;
+        if (z == 0) mask |= 1 << 5;
+        return mask;
+    }
+
+    /** Returns {@code true} if something entering through one face can see out of the other. */
+    public boolean canSeeThrough(int from, int to) {
+        return (faceConnections & (1L << (from * 6 + to))) != 0;
+    }
+
+    public boolean isFaceSolid(int face) {
+        return solidFaces[face];
     }
 
     private void check(int x, int y, int z) {
@@ -0,0 +1,147 @@
+package com.minecraftclone;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events covering a chunk's life: requested, read from
+ * disk or generated, saved, meshed, uploaded and its mesh disposed, plus one
+ * event per rendered frame to line them up against. Start a
+ * recording with {@code -XX:StartFlightRecording} and view the events by
+ * thread in JDK Mission Control to see which stage caused a hitch.
+ * <p>
+ * Events are created, timed and committed on the spot. While no recording
+ * has them enabled, {@code shouldCommit()} is false and the JIT removes the
+ * allocations, so leaving them in costs next to nothing. Stack traces are
+ * off to keep enabled recordings cheap as well.
+ */
+final class ChunkEvents {
+    private static final String CATEGORY = "Minecraft Clone";
+
+    private ChunkEvents() {
+    }
+
+    /** Fields shared by every event about one chunk. */
+    abstract static class ChunkEvent extends Event {
+        @Label("Chunk X")
+        int chunkX;
+        @Label("Chunk Y")
+        int chunkY;
+        @Label("Chunk Z")
+        int chunkZ;
+
+        void setChunk(int cx, int cy, int cz) {
+            chunkX = cx;
+            chunkY = cy;
+            chunkZ = cz;
+        }
+    }
+
+    @Name("minecraftclone.ChunkRequest")
+    @Label("Chunk Request")
+    @Category({ CATEGORY, "Chunks" })
+    @Description("A missing chunk was queued for loading")
+    @StackTrace(false)
+    static final class Request extends ChunkEvent {
+        @Label("Priority")
+        String priority;
+    }
+
+    @Name("minecraftclone.ChunkLoad")
+    @Label("Chunk Load")
+    @Category({ CATEGORY, "Chunks" })
+    @Description("Reading a chunk from storage, whether or not it was found")
+    @StackTrace(false)
+    static final class Load extends ChunkEvent {
+        @Label("Found")
+        boolean found;
+    }
+
+    @Name("minecraftclone.ChunkGenerate")
+    @Label("Chunk Generate")
+    @Category({ CATEGORY, "Chunks" })
+    @Description("Generating a chunk's terrain from the seed")
+    @StackTrace(false)
+    static final class Generate extends ChunkEvent {
+    }
+
+    @Name("minecraftclone.ChunkSave")
+    @Label("Chunk Save")
+    @Category({ CATEGORY, "Chunks" })
+    @Description("Writing a batch of chunks to one region")
+    @StackTrace(false)
+    static final class Save extends Event {
+        @Label("Region X")
+        int regionX;
+        @Label("Region Y")
+        int regionY;
+        @Label("Region Z")
+        int regionZ;
+        @Label("Chunks Queued")
+        int queued;
+        @Label("Chunks Written")
+        int written;
+    }
+
+    @Name("minecraftclone.MeshBuild")
+    @Label("Mesh Build")
+    @Category({ CATEGORY, "Meshes" })
+    @Description("Building a chunk's full-detail or LOD vertex data")
+    @StackTrace(false)
+    static final class MeshBuild extends ChunkEvent {
+        @Label("Step")
+        @Description("1 for a full-detail mesh, otherwise the LOD step")
+        int step;
+        @Label("Vertices")
+        int vertices;
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("minecraftclone.MeshUpload")
+    @Label("Mesh Upload")
+    @Category({ CATEGORY, "Meshes" })
+    @Description("Copying built vertex data into the mesh arena on the render thread")
+    @StackTrace(false)
+    static final class MeshUpload extends ChunkEvent {
+        @Label("Step")
+        int step;
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("minecraftclone.MeshDispose")
+    @Label("Mesh Dispose")
+    @Category({ CATEGORY, "Meshes" })
+    @Description("Releasing a mesh's range of the mesh arena")
+    @StackTrace(false)
+    static final class MeshDispose extends Event {
+        @Label("LOD")
+        boolean lod;
+        @Label("Size")
+        @DataAmount
+        long bytes;
+        @Label("Deferred")
+        @Description("Disposed off the render thread and freed at the end of the next frame")
+        boolean deferred;
+    }
+
+    @Name("minecraftclone.Frame")
+    @Label("Frame")
+    @Category({ CATEGORY, "Rendering" })
+    @Description("The renderer's CPU work for one frame, from uploads to unloading")
+    @StackTrace(false)
+    static final class Frame extends Event {
+        @Label("Chunks Drawn")
+        int chunksDrawn;
+        @Label("Meshes Uploaded")
+        long uploads;
+    }
+}
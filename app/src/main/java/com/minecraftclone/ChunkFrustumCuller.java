@@ -0,0 +1,88 @@
+package com.minecraftclone;
+
+import java.util.Arrays;
+
+/**
+ * Frustum culling for the chunks of the render cube, tested in groups of
+ * {@link #GROUP_SIZE}^3 chunks first. A group entirely outside the frustum
+ * rejects all its chunks with one test and a group entirely inside accepts
+ * them; only chunks in groups crossing a plane are tested on their own.
+ * Group results are computed on first use and kept for the rest of the frame.
+ */
+public class ChunkFrustumCuller {
+    /** Chunks per group along each axis. */
+    public static final int GROUP_SIZE = 8;
+    private static final int GROUP_SHIFT = Integer.numberOfTrailingZeros(GROUP_SIZE);
+    private static final byte UNKNOWN = 0;
+
+    private final Frustum frustum;
+    private int minX;
+    private int minY;
+    private int minZ;
+    private int radius = -1;
+    private int groupsPerAxis;
+    /** Per group: {@link #UNKNOWN} or 1 + the ordinal of its {@link Frustum.Result} this frame. */
+    private byte[] groups = new byte[0];
+    private long groupTests;
+    private long chunkTests;
+
+    public ChunkFrustumCuller(Frustum frustum) {
+        this.frustum = frustum;
+    }
+
+    /**
+     * Starts a frame for the render cube of {@code radius} chunks around the
+     * given chunk. Must be called after the frustum was updated.
+     */
+    public void begin(int centerX, int centerY, int centerZ, int radius) {
+        if (radius != this.radius) {
+            this.radius = radius;
+            groupsPerAxis = (2 * radius + GROUP_SIZE) / GROUP_SIZE;
+            groups = new byte[groupsPerAxis * groupsPerAxis * groupsPerAxis];
+        } else {
+            Arrays.fill(groups, UNKNOWN);
+        }
+        minX = centerX - radius;
+        minY = centerY - radius;
+        minZ = centerZ - radius;
+    }
+
+    /** Returns {@code true} if the chunk, which must lie in the render cube, may be in view. */
+    public boolean isVisible(int cx, int cy, int cz) {
+        int gx = (cx - minX) >> GROUP_SHIFT;
+        int gy = (cy - minY) >> GROUP_SHIFT;
+        int gz = (cz - minZ) >> GROUP_SHIFT;
+        int index = (gx * groupsPerAxis + gy) * groupsPerAxis + gz;
+        int state = groups[index];
+        if (state == UNKNOWN) {
+            int size = GROUP_SIZE * Chunk.SIZE;
+            float x = (minX + gx * GROUP_SIZE) * Chunk.SIZE;
+            float y = (minY + gy * GROUP_SIZE) * Chunk.SIZE;
+            float z = (minZ + gz * GROUP_SIZE) * Chunk.SIZE;
+            state = frustum.classify(x, y, z, x + size, y + size, z + size).ordinal() + 1;
+            groups[index] = (byte) state;
+            groupTests++;
+        }
+        if (state == Frustum.Result.OUTSIDE.ordinal() + 1) {
+            return false;
+        }
+        if (state == Frustum.Result.INSIDE.ordinal() + 1) {
+            return true;
+        }
+        chunkTests++;
+        float x = cx * Chunk.SIZE;
+        float y = cy * Chunk.SIZE;
+        float z = cz * Chunk.SIZE;
+        return frustum.intersects(x, y, z, x + Chunk.SIZE, y + Chunk.SIZE, z + Chunk.SIZE);
+    }
+
+    /** Groups classified since creation. */
+    public long getGroupTests() {
+        return groupTests;
+    }
+
+    /** Chunks tested on their own since creation. */
+    public long getChunkTests() {
+        return chunkTests;
+    }
+}
@@ -98,15 +98,9 @@ public class ChunkGenerator {
                 int wx = cx * Chunk.SIZE + x;
                 int wz = cz * Chunk.SIZE + z;
 
-                double regionScale = (regionNoise.noise(wx * regionFrequency, wz * regionFrequency) + 1.0) / 2.0;
-
-                double contAmp = continentAmplitude * (0.3 + 0.7 * regionScale);
-                double mountAmp = mountainAmplitude * regionScale;
+                double regionScale = regionScale(wx, wz);
                 double detailAmp = detailAmplitude * (0.5 + 0.5 * regionScale);
-
-                double continent = continentNoise.noise(wx * continentFrequency, wz * continentFrequency) * contAmp;
-                double mountains = mountainNoise.noise(wx * mountainFrequency, wz * mountainFrequency) * mountAmp;
-                double surface = baseHeight + continent + mountains;
+                double surface = surfaceHeight(wx, wz, regionScale);
 
                 int depth = -1; // Tracks distance below the surface for dirt placement.
                 for (int y = Chunk.SIZE - 1; y >= 0; y--) {
@@ -189,6 +183,28 @@ public class ChunkGenerator {
         return chunk;
     }
 
+    private double regionScale(int wx, int wz) {
+        return (regionNoise.noise(wx * regionFrequency, wz * regionFrequency) + 1.0) / 2.0;
+    }
+
+    private double surfaceHeight(int wx, int wz, double regionScale) {
+        double contAmp = continentAmplitude * (0.3 + 0.7 * regionScale);
+        double mountAmp = mountainAmplitude * regionScale;
+        double continent = continentNoise.noise(wx * continentFrequency, wz * continentFrequency) * contAmp;
+        double mountains = mountainNoise.noise(wx * mountainFrequency, wz * mountainFrequency) * mountAmp;
+        return baseHeight + continent + mountains;
+    }
+
+    /**
+     * Height the terrain at the column is built around before 3D detail,
+     * overhangs and caves are added. Blocks well above it are usually open
+     * to the sky, which the lighting uses as a first guess for columns whose
+     * upper chunks are not loaded.
+     */
+    public double surfaceHeight(int wx, int wz) {
+        return surfaceHeight(wx, wz, regionScale(wx, wz));
+    }
+
     /**
      * Finds the highest non-air block at the given world column within
      * the generated chunks. Returns -1 if none found.
@@ -0,0 +1,264 @@
+package com.minecraftclone;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Dense view of the loaded chunks in a cube around the player, so the render
+ * path and the meshers can look chunks and their neighbours up by array
+ * index instead of hashing a {@link ChunkPos}. Cells are addressed
+ * toroidally: a chunk's cell is its coordinates modulo the cube side, so
+ * when the centre moves only the slabs entering the cube are refilled.
+ * <p>
+ * Whether each position is fully enclosed by solid neighbour faces is kept
+ * in a bitset alongside the cells. Updates come from {@link World} whenever
+ * a chunk is published, unloaded or edited. {@link #get}, {@link #isOccluded}
+ * and {@link #contains} are lock-free and must only be called from the
+ * thread that calls {@link #recenter}, which is the only one changing the
+ * layout; other threads use {@link #neighbourhood}.
+ */
+public class ChunkGrid {
+    private static final int[][] DIRS = { {1,0,0}, {-1,0,0}, {0,1,0}, {0,-1,0}, {0,0,1}, {0,0,-1} };
+    private static final int[] OPPOSITE = {1,0,3,2,5,4};
+    /** Face connections of a position with no chunk, which the visibility search treats as open. */
+    private static final long OPEN = (1L << 36) - 1;
+
+    private final World world;
+    private int side;
+    private int half = -1;
+    private int centerX;
+    private int centerY;
+    private int centerZ;
+    private AtomicReferenceArray<Chunk> cells = new AtomicReferenceArray<>(0);
+    private AtomicLongArray occluded = new AtomicLongArray(0);
+    /**
+     * Incremented when the grid moves or when the openings between the faces
+     * of a position inside the search cube change.
+     */
+    private volatile int version;
+
+    public ChunkGrid(World world) {
+        this.world = world;
+    }
+
+    /**
+     * Centres the grid on the given chunk, covering {@code radius} chunks in
+     * each direction plus a one-chunk border so chunks at the edge still see
+     * their neighbours. Only cells that enter the cube are refilled from the
+     * world unless the radius changed or the centre jumped across the cube.
+     */
+    public synchronized void recenter(int cx, int cy, int cz, int radius) {
+        int newHalf = radius + 1;
+        if (newHalf != half) {
+            half = newHalf;
+            side = 2 * half + 1;
+            cells = new AtomicReferenceArray<>(side * side * side);
+            occluded = new AtomicLongArray((side * side * side + 63) / 64);
+            moveTo(cx, cy, cz);
+            refill(cx - half, cy - half, cz - half, cx + half, cy + half, cz + half);
+            return;
+        }
+        int oldX = centerX;
+        int oldY = centerY;
+        int oldZ = centerZ;
+        if (cx == oldX && cy == oldY && cz == oldZ) {
+            return;
+        }
+        moveTo(cx, cy, cz);
+        if (Math.abs(cx - oldX) >= side || Math.abs(cy - oldY) >= side || Math.abs(cz - oldZ) >= side) {
+            refill(cx - half, cy - half, cz - half, cx + half, cy + half, cz + half);
+            return;
+        }
+        // refill the slabs that entered along each axis; corners may be refilled twice
+        int minX = cx - half;
+        int maxX = cx + half;
+        int minY = cy - half;
+        int maxY = cy + half;
+        int minZ = cz - half;
+        int maxZ = cz + half;
+        if (cx > oldX) {
+            refill(Math.max(minX, oldX + half + 1), minY, minZ, maxX, maxY, maxZ);
+        } else if (cx < oldX) {
+            refill(minX, minY, minZ, Math.min(maxX, oldX - half - 1), maxY, maxZ);
+        }
+        if (cy > oldY) {
+            refill(minX, Math.max(minY, oldY + half + 1), minZ, maxX, maxY, maxZ);
+        } else if (cy < oldY) {
+            refill(minX, minY, minZ, maxX, Math.min(maxY, oldY - half - 1), maxZ);
+        }
+        if (cz > oldZ) {
+            refill(minX, minY, Math.max(minZ, oldZ + half + 1), maxX, maxY, maxZ);
+        } else if (cz < oldZ) {
+            refill(minX, minY, minZ, maxX, maxY, Math.min(maxZ, oldZ - half - 1));
+        }
+    }
+
+    private void moveTo(int cx, int cy, int cz) {
+        version++;
+        centerX = cx;
+        centerY = cy;
+        centerZ = cz;
+    }
+
+    /** Reloads the cells in the box from the world, then their occlusion bits and those of their neighbours. */
+    private void refill(int x1, int y1, int z1, int x2, int y2, int z2) {
+        for (int x = x1; x <= x2; x++) {
+            for (int y = y1; y <= y2; y++) {
+                for (int z = z1; z <= z2; z++) {
+                    cells.set(index(x, y, z), world.getChunkIfLoaded(x, y, z));
+                }
+            }
+        }
+        for (int x = x1 - 1; x <= x2 + 1; x++) {
+            for (int y = y1 - 1; y <= y2 + 1; y++) {
+                for (int z = z1 - 1; z <= z2 + 1; z++) {
+                    updateOcclusion(x, y, z);
+                }
+            }
+        }
+    }
+
+    /** Records that the chunk at the position was published or replaced. */
+    public synchronized void set(int cx, int cy, int cz, Chunk chunk) {
+        if (!contains(cx, cy, cz)) {
+            return;
+        }
+        Chunk old = cells.getAndSet(index(cx, cy, cz), chunk);
+        if (connections(old) != connections(chunk)) {
+            connectivityChanged(cx, cy, cz);
+        }
+        updateOcclusion(cx, cy, cz);
+        updateNeighbourOcclusion(cx, cy, cz);
+    }
+
+    /**
+     * Returns a counter that changes whenever the grid moves or the openings
+     * of a chunk in the search cube change, so visibility derived from them
+     * can be cached.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /** Records that the chunk was unloaded, unless its cell already holds a newer chunk. */
+    public synchronized void remove(int cx, int cy, int cz, Chunk chunk) {
+        if (!contains(cx, cy, cz)) {
+            return;
+        }
+        if (cells.compareAndSet(index(cx, cy, cz), chunk, null)) {
+            if (connections(chunk) != OPEN) {
+                connectivityChanged(cx, cy, cz);
+            }
+            updateOcclusion(cx, cy, cz);
+            updateNeighbourOcclusion(cx, cy, cz);
+        }
+    }
+
+    /** Empties every cell, for when the world's chunks are dropped wholesale. */
+    public synchronized void clear() {
+        if (half < 0) {
+            return;
+        }
+        version++;
+        refill(centerX - half, centerY - half, centerZ - half, centerX + half, centerY + half, centerZ + half);
+    }
+
+    /** Recomputes occlusion around a chunk whose face solidity or connectivity changed. */
+    public synchronized void updateOcclusionAround(int cx, int cy, int cz) {
+        connectivityChanged(cx, cy, cz);
+        updateOcclusion(cx, cy, cz);
+        updateNeighbourOcclusion(cx, cy, cz);
+    }
+
+    private void updateNeighbourOcclusion(int cx, int cy, int cz) {
+        for (int[] d : DIRS) {
+            updateOcclusion(cx + d[0], cy + d[1], cz + d[2]);
+        }
+    }
+
+    /** Invalidates cached visibility if the position lies in the search cube, which excludes the border. */
+    private void connectivityChanged(int cx, int cy, int cz) {
+        int h = half - 1;
+        if (h >= 0 && Math.abs(cx - centerX) <= h && Math.abs(cy - centerY) <= h && Math.abs(cz - centerZ) <= h) {
+            version++;
+        }
+    }
+
+    private static long connections(Chunk chunk) {
+        return chunk == null ? OPEN : chunk.getFaceConnections();
+    }
+
+    private void updateOcclusion(int cx, int cy, int cz) {
+        if (!contains(cx, cy, cz)) {
+            return;
+        }
+        boolean occ = true;
+        for (int i = 0; i < DIRS.length && occ; i++) {
+            int[] d = DIRS[i];
+            int nx = cx + d[0];
+            int ny = cy + d[1];
+            int nz = cz + d[2];
+            // neighbours outside the grid are unknown, which never hides anything
+            Chunk n = contains(nx, ny, nz) ? cells.get(index(nx, ny, nz)) : null;
+            occ = n != null && n.isFaceSolid(OPPOSITE[i]);
+        }
+        int bit = index(cx, cy, cz);
+        long mask = 1L << bit;
+        long word;
+        do {
+            word = occluded.get(bit >>> 6);
+        } while (!occluded.compareAndSet(bit >>> 6, word, occ ? word | mask : word & ~mask));
+    }
+
+    /** Returns {@code true} if the position lies within the grid. */
+    public boolean contains(int cx, int cy, int cz) {
+        int h = half;
+        return h >= 0 && Math.abs(cx - centerX) <= h && Math.abs(cy - centerY) <= h && Math.abs(cz - centerZ) <= h;
+    }
+
+    /** Returns the loaded chunk at the position, or {@code null} if it is not loaded or outside the grid. */
+    public Chunk get(int cx, int cy, int cz) {
+        if (!contains(cx, cy, cz)) {
+            return null;
+        }
+        return cells.get(index(cx, cy, cz));
+    }
+
+    /**
+     * Returns {@code true} if every neighbour of the position is loaded and
+     * solid on the face touching it. Positions outside the grid are never
+     * occluded.
+     */
+    public boolean isOccluded(int cx, int cy, int cz) {
+        if (!contains(cx, cy, cz)) {
+            return false;
+        }
+        int bit = index(cx, cy, cz);
+        return (occluded.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    /**
+     * Fills {@code out} with the 3x3x3 chunks around the position, indexed
+     * {@code (dx + 1) * 9 + (dy + 1) * 3 + (dz + 1)}. Neighbours outside the
+     * grid are looked up in the world instead.
+     */
+    public synchronized void neighbourhood(int cx, int cy, int cz, Chunk[] out) {
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    int x = cx + dx;
+                    int y = cy + dy;
+                    int z = cz + dz;
+                    out[(dx + 1) * 9 + (dy + 1) * 3 + (dz + 1)] = contains(x, y, z)
+                            ? cells.get(index(x, y, z))
+                            : world.getChunkIfLoaded(x, y, z);
+                }
+            }
+        }
+    }
+
+    private int index(int cx, int cy, int cz) {
+        int s = side;
+        return (Math.floorMod(cx, s) * s + Math.floorMod(cy, s)) * s + Math.floorMod(cz, s);
+    }
+}
@@ -1,42 +1,64 @@
 package com.minecraftclone;
 
-import static org.lwjgl.opengl.GL11.*;
-import static org.lwjgl.opengl.GL15.*;
-
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.lwjgl.BufferUtils;
-import org.lwjgl.glfw.GLFW;
-import org.lwjgl.system.MemoryUtil;
 
 /**
- * Represents a cached mesh for a chunk using a single VBO.
+ * Represents a cached mesh for a chunk, stored as a range of the shared
+ * {@link MeshArena}.
  */
 public class ChunkMesh {
-    private static final Queue<Integer> pendingDeletes = new ConcurrentLinkedQueue<>();
-    private final int vbo;
+    /** Vertices per arena buffer; about 12 MiB, ten times the largest possible chunk mesh. */
+    private static final int ARENA_PAGE_VERTICES = 1 << 19;
+    private static volatile MeshArena arena = new MeshArena(new OpenGlBackend(), ARENA_PAGE_VERTICES);
+    private static final Queue<MeshAllocator.Allocation> pendingDeletes = new ConcurrentLinkedQueue<>();
+    /** Number of face directions, indexed like {@link Chunk#isFaceSolid}. */
+    static final int DIRECTIONS = 6;
+    private static final int VERTEX_BYTES = 6 * Float.BYTES;
+    /** Bytes of live meshes in the arena, indexed by the log2 of their step. */
+    private static final AtomicLongArray residentBytes = new AtomicLongArray(5);
+    /** {@link #brightness} by light level. */
+    private static final float[] BRIGHTNESS = new float[LightEngine.MAX_LIGHT + 1];
+
+    static {
+        for (int level = 0; level <= LightEngine.MAX_LIGHT; level++) {
+            BRIGHTNESS[level] = (float) Math.max(0.08, Math.pow(0.8, LightEngine.MAX_LIGHT - level));
+        }
+    }
+    /** The mesh's vertices in the arena, or {@code null} if it has none. */
+    private final MeshAllocator.Allocation allocation;
     private final int vertexCount;
+    /**
+     * First vertex of each face direction's range followed by the vertex
+     * count, or {@code null} if the directions are mixed.
+     */
+    private final int[] directionStarts;
+    /** {@link ChunkPipeline#FULL_DETAIL} or the LOD step the mesh was built with. */
+    private final int step;
+    private boolean disposed;
 
-    private ChunkMesh(int vbo, int vertexCount) {
-        this.vbo = vbo;
+    private ChunkMesh(MeshAllocator.Allocation allocation, int vertexCount, int[] directionStarts, int step) {
+        this.allocation = allocation;
         this.vertexCount = vertexCount;
+        this.directionStarts = directionStarts;
+        this.step = step;
+        if (allocation != null) {
+            residentBytes.addAndGet(level(step), (long) vertexCount * VERTEX_BYTES);
+        }
     }
 
     /**
      * Builds a mesh for the given chunk at the specified world origin.
      */
     public static ChunkMesh build(World world, Chunk chunk, int baseX, int baseY, int baseZ) {
-        FloatBuffer buffer = buildBuffer(world, chunk, baseX, baseY, baseZ);
-        int vertexCount = buffer.limit() / 6;
-        int vbo = glGenBuffers();
-        glBindBuffer(GL_ARRAY_BUFFER, vbo);
-        glBufferData(GL_ARRAY_BUFFER, buffer, GL_STATIC_DRAW);
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        return new ChunkMesh(vbo, vertexCount);
+        int[] directionStarts = new int[DIRECTIONS + 1];
+        return upload(buildBuffer(world, chunk, baseX, baseY, baseZ, directionStarts), directionStarts);
     }
 
     /**
@@ -49,42 +71,70 @@ public class ChunkMesh {
         if (buffer.limit() == 0) {
             return null;
         }
-        return upload(buffer);
+        return uploadLod(buffer, step);
     }
 
     /**
-     * Uploads the given vertex buffer to the GPU and returns a mesh.
+     * Uploads a LOD mesh built with the given step into the mesh arena and
+     * returns it.
      */
-    public static ChunkMesh upload(FloatBuffer buffer) {
-        int vertexCount = buffer.limit() / 6;
-        int vbo = glGenBuffers();
-        glBindBuffer(GL_ARRAY_BUFFER, vbo);
-        glBufferData(GL_ARRAY_BUFFER, buffer, GL_STATIC_DRAW);
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        return new ChunkMesh(vbo, vertexCount);
+    public static ChunkMesh uploadLod(FloatBuffer buffer, int step) {
+        return new ChunkMesh(arena.upload(buffer), buffer.limit() / 6, null, step);
     }
 
-    private static FloatBuffer buildBuffer(World world, Chunk chunk, int baseX, int baseY, int baseZ) {
+    /**
+     * Uploads vertex data laid out in one range per face direction, as
+     * returned by {@link #buildBuffer}, so ranges facing away from the eye
+     * can be skipped when drawing.
+     */
+    public static ChunkMesh upload(FloatBuffer buffer, int[] directionStarts) {
+        return new ChunkMesh(arena.upload(buffer), buffer.limit() / 6, directionStarts, ChunkPipeline.FULL_DETAIL);
+    }
+
+    /**
+     * Builds the full-detail vertex data for a chunk without touching OpenGL,
+     * so it can run off the render thread. Faces are grouped by direction in
+     * the order of {@link Chunk#isFaceSolid}; {@code directionStarts} receives
+     * the first vertex of each direction followed by the vertex count.
+     */
+    static FloatBuffer buildBuffer(World world, Chunk chunk, int baseX, int baseY, int baseZ, int[] directionStarts) {
+        ChunkEvents.MeshBuild event = new ChunkEvents.MeshBuild();
+        event.begin();
+        long start = System.nanoTime();
         List<Float> data = new ArrayList<>();
+        Chunk[] around = neighbourhood(world, baseX, baseY, baseZ);
 
         // Greedy mesh each pair of parallel faces
-        meshXY(data, world, chunk, baseX, baseY, baseZ, true);   // +Z
-        meshXY(data, world, chunk, baseX, baseY, baseZ, false);  // -Z
-        meshYZ(data, world, chunk, baseX, baseY, baseZ, true);   // +X
-        meshYZ(data, world, chunk, baseX, baseY, baseZ, false);  // -X
-        meshXZ(data, world, chunk, baseX, baseY, baseZ, true);   // +Y
-        meshXZ(data, world, chunk, baseX, baseY, baseZ, false);  // -Y
+        directionStarts[0] = 0;
+        meshYZ(data, around, chunk, baseX, baseY, baseZ, true);   // +X
+        directionStarts[1] = data.size() / 6;
+        meshYZ(data, around, chunk, baseX, baseY, baseZ, false);  // -X
+        directionStarts[2] = data.size() / 6;
+        meshXZ(data, around, chunk, baseX, baseY, baseZ, true);   // +Y
+        directionStarts[3] = data.size() / 6;
+        meshXZ(data, around, chunk, baseX, baseY, baseZ, false);  // -Y
+        directionStarts[4] = data.size() / 6;
+        meshXY(data, around, chunk, baseX, baseY, baseZ, true);   // +Z
+        directionStarts[5] = data.size() / 6;
+        meshXY(data, around, chunk, baseX, baseY, baseZ, false);  // -Z
+        directionStarts[6] = data.size() / 6;
 
         FloatBuffer buf = BufferUtils.createFloatBuffer(data.size());
         for (Float f : data) {
             buf.put(f);
         }
         buf.flip();
+        recordBuild(world, "mesh.build_ms", "mesh.vertices", start, buf, event, baseX, baseY, baseZ,
+                ChunkPipeline.FULL_DETAIL);
         return buf;
     }
 
     static FloatBuffer buildLodBuffer(World world, Chunk chunk, int baseX, int baseY, int baseZ, int step) {
+        ChunkEvents.MeshBuild event = new ChunkEvents.MeshBuild();
+        event.begin();
+        long start = System.nanoTime();
         List<Float> data = new ArrayList<>();
+        Chunk[] around = neighbourhood(world, baseX, baseY, baseZ);
         int cells = (Chunk.SIZE + step - 1) / step;
         int[][] heights = new int[cells][cells];
         BlockType[][] types = new BlockType[cells][cells];
@@ -96,7 +146,7 @@ public class ChunkMesh {
                     for (int dz = 0; dz < step && z + dz < Chunk.SIZE; dz++) {
                         for (int y = Chunk.SIZE - 1; y >= 0; y--) {
                             BlockType t = chunk.getBlock(x + dx, y, z + dz);
-                            if (t != BlockType.AIR && isAirForLod(world, baseX + x + dx, baseY + y + 1, baseZ + z + dz)) {
+                            if (t != BlockType.AIR && isAirForLod(around, baseX, baseY, baseZ, baseX + x + dx, baseY + y + 1, baseZ + z + dz)) {
                                 if (y > topY) {
                                     topY = y;
                                     topType = t;
@@ -159,10 +209,33 @@ public class ChunkMesh {
             buf.put(f);
         }
         buf.flip();
+        recordBuild(world, "mesh.lod_build_ms", "mesh.lod_vertices", start, buf, event, baseX, baseY, baseZ,
+                step);
         return buf;
     }
 
-    private static void meshXY(List<Float> data, World world, Chunk chunk,
+    /**
+     * Records the time since {@code start} and the vertex count of a finished
+     * build, and commits its event if it is being recorded.
+     */
+    private static void recordBuild(World world, String timeMetric, String vertexMetric, long start,
+            FloatBuffer buffer, ChunkEvents.MeshBuild event, int baseX, int baseY, int baseZ, int step) {
+        long end = System.nanoTime();
+        int vertices = buffer.limit() / 6;
+        Metrics metrics = world.getMetrics();
+        metrics.histogram(timeMetric, Metrics.Unit.NANOS).record(end - start);
+        metrics.histogram(vertexMetric, Metrics.Unit.COUNT).record(vertices);
+        if (event.shouldCommit()) {
+            event.setChunk(Math.floorDiv(baseX, Chunk.SIZE), Math.floorDiv(baseY, Chunk.SIZE),
+                    Math.floorDiv(baseZ, Chunk.SIZE));
+            event.step = step;
+            event.vertices = vertices;
+            event.bytes = (long) buffer.limit() * Float.BYTES;
+            event.commit();
+        }
+    }
+
+    private static void meshXY(List<Float> data, Chunk[] around, Chunk chunk,
             int baseX, int baseY, int baseZ, boolean positive) {
         float shadeFactor = positive ? 0.9f : 0.8f;
         for (int z = 0; z < Chunk.SIZE; z++) {
@@ -176,15 +249,17 @@ public class ChunkMesh {
                     int nx = baseX + x;
                     int ny = baseY + y;
                     int nz = baseZ + z + (positive ? 1 : -1);
-                    if (type == BlockType.AIR || !isAir(world, nx, ny, nz)) {
+                    if (type == BlockType.AIR || !isAir(around, baseX, baseY, baseZ, nx, ny, nz)) {
                         visited[x][y] = true;
                         continue;
                     }
+                    int light = faceLight(around, baseX, baseY, baseZ, type, nx, ny, nz);
 
                     int width = 1;
                     while (x + width < Chunk.SIZE && !visited[x + width][y]) {
                         BlockType t = chunk.getBlock(x + width, y, z);
-                        if (t != type || !isAir(world, baseX + x + width, ny, nz)) {
+                        if (t != type || !isAir(around, baseX, baseY, baseZ, baseX + x + width, ny, nz)
+                                || faceLight(around, baseX, baseY, baseZ, t, baseX + x + width, ny, nz) != light) {
                             break;
                         }
                         width++;
@@ -197,7 +272,9 @@ public class ChunkMesh {
                                 break outer;
                             }
                             BlockType t = chunk.getBlock(x + w, y + height, z);
-                            if (t != type || !isAir(world, baseX + x + w, baseY + y + height, nz)) {
+                            if (t != type || !isAir(around, baseX, baseY, baseZ, baseX + x + w, baseY + y + height, nz)
+                                    || faceLight(around, baseX, baseY, baseZ, t,
+                                            baseX + x + w, baseY + y + height, nz) != light) {
                                 break outer;
                             }
                         }
@@ -210,7 +287,7 @@ public class ChunkMesh {
                         }
                     }
 
-                    float[] color = shade(colorFor(type), shadeFactor);
+                    float[] color = shade(colorFor(type), shadeFactor * brightness(light));
                     float x1 = baseX + x;
                     float x2 = baseX + x + width;
                     float y1 = baseY + y;
@@ -226,7 +303,7 @@ public class ChunkMesh {
         }
     }
 
-    private static void meshYZ(List<Float> data, World world, Chunk chunk,
+    private static void meshYZ(List<Float> data, Chunk[] around, Chunk chunk,
             int baseX, int baseY, int baseZ, boolean positive) {
         for (int x = 0; x < Chunk.SIZE; x++) {
             boolean[][] visited = new boolean[Chunk.SIZE][Chunk.SIZE]; // [y][z]
@@ -239,15 +316,17 @@ public class ChunkMesh {
                     int nx = baseX + x + (positive ? 1 : -1);
                     int ny = baseY + y;
                     int nz = baseZ + z;
-                    if (type == BlockType.AIR || !isAir(world, nx, ny, nz)) {
+                    if (type == BlockType.AIR || !isAir(around, baseX, baseY, baseZ, nx, ny, nz)) {
                         visited[y][z] = true;
                         continue;
                     }
+                    int light = faceLight(around, baseX, baseY, baseZ, type, nx, ny, nz);
 
                     int width = 1;
                     while (y + width < Chunk.SIZE && !visited[y + width][z]) {
                         BlockType t = chunk.getBlock(x, y + width, z);
-                        if (t != type || !isAir(world, nx, baseY + y + width, nz)) {
+                        if (t != type || !isAir(around, baseX, baseY, baseZ, nx, baseY + y + width, nz)
+                                || faceLight(around, baseX, baseY, baseZ, t, nx, baseY + y + width, nz) != light) {
                             break;
                         }
                         width++;
@@ -260,7 +339,9 @@ public class ChunkMesh {
                                 break outer;
                             }
                             BlockType t = chunk.getBlock(x, y + w, z + height);
-                            if (t != type || !isAir(world, nx, baseY + y + w, baseZ + z + height)) {
+                            if (t != type || !isAir(around, baseX, baseY, baseZ, nx, baseY + y + w, baseZ + z + height)
+                                    || faceLight(around, baseX, baseY, baseZ, t,
+                                            nx, baseY + y + w, baseZ + z + height) != light) {
                                 break outer;
                             }
                         }
@@ -273,7 +354,7 @@ public class ChunkMesh {
                         }
                     }
 
-                    float[] color = shade(colorFor(type), 0.7f);
+                    float[] color = shade(colorFor(type), 0.7f * brightness(light));
                     float xPlane = baseX + x + (positive ? 1 : 0);
                     float y1 = baseY + y;
                     float y2 = baseY + y + width;
@@ -289,7 +370,7 @@ public class ChunkMesh {
         }
     }
 
-    private static void meshXZ(List<Float> data, World world, Chunk chunk,
+    private static void meshXZ(List<Float> data, Chunk[] around, Chunk chunk,
             int baseX, int baseY, int baseZ, boolean positive) {
         float shadeFactor = positive ? 1.0f : 0.5f;
         for (int y = 0; y < Chunk.SIZE; y++) {
@@ -303,15 +384,17 @@ public class ChunkMesh {
                     int nx = baseX + x;
                     int ny = baseY + y + (positive ? 1 : -1);
                     int nz = baseZ + z;
-                    if (type == BlockType.AIR || !isAir(world, nx, ny, nz)) {
+                    if (type == BlockType.AIR || !isAir(around, baseX, baseY, baseZ, nx, ny, nz)) {
                         visited[x][z] = true;
                         continue;
                     }
+                    int light = faceLight(around, baseX, baseY, baseZ, type, nx, ny, nz);
 
                     int width = 1;
                     while (x + width < Chunk.SIZE && !visited[x + width][z]) {
                         BlockType t = chunk.getBlock(x + width, y, z);
-                        if (t != type || !isAir(world, baseX + x + width, ny, nz)) {
+                        if (t != type || !isAir(around, baseX, baseY, baseZ, baseX + x + width, ny, nz)
+                                || faceLight(around, baseX, baseY, baseZ, t, baseX + x + width, ny, nz) != light) {
                             break;
                         }
                         width++;
@@ -324,7 +407,9 @@ public class ChunkMesh {
                                 break outer;
                             }
                             BlockType t = chunk.getBlock(x + w, y, z + height);
-                            if (t != type || !isAir(world, baseX + x + w, ny, baseZ + z + height)) {
+                            if (t != type || !isAir(around, baseX, baseY, baseZ, baseX + x + w, ny, baseZ + z + height)
+                                    || faceLight(around, baseX, baseY, baseZ, t,
+                                            baseX + x + w, ny, baseZ + z + height) != light) {
                                 break outer;
                             }
                         }
@@ -337,7 +422,7 @@ public class ChunkMesh {
                         }
                     }
 
-                    float[] color = shade(colorFor(type), shadeFactor);
+                    float[] color = shade(colorFor(type), shadeFactor * brightness(light));
                     float x1 = baseX + x;
                     float x2 = baseX + x + width;
                     float z1 = baseZ + z;
@@ -377,33 +462,65 @@ public class ChunkMesh {
         return new float[] { base[0] * factor, base[1] * factor, base[2] * factor };
     }
 
-    private static boolean isAir(World world, int x, int y, int z) {
-        int cx = Math.floorDiv(x, Chunk.SIZE);
-        int cy = Math.floorDiv(y, Chunk.SIZE);
-        int cz = Math.floorDiv(z, Chunk.SIZE);
-        Chunk chunk = world.getChunkIfLoaded(cx, cy, cz);
+    /**
+     * Collects the chunk at the given origin and its 26 neighbours once, so
+     * face tests across chunk borders are array lookups.
+     */
+    private static Chunk[] neighbourhood(World world, int baseX, int baseY, int baseZ) {
+        Chunk[] around = new Chunk[27];
+        world.getGrid().neighbourhood(Math.floorDiv(baseX, Chunk.SIZE), Math.floorDiv(baseY, Chunk.SIZE),
+                Math.floorDiv(baseZ, Chunk.SIZE), around);
+        return around;
+    }
+
+    /** Returns the block at world coordinates within one chunk of the origin, or {@code null} if not loaded. */
+    private static BlockType blockAt(Chunk[] around, int baseX, int baseY, int baseZ, int x, int y, int z) {
+        int lx = x - baseX;
+        int ly = y - baseY;
+        int lz = z - baseZ;
+        int ox = lx < 0 ? 0 : lx >= Chunk.SIZE ? 2 : 1;
+        int oy = ly < 0 ? 0 : ly >= Chunk.SIZE ? 2 : 1;
+        int oz = lz < 0 ? 0 : lz >= Chunk.SIZE ? 2 : 1;
+        Chunk chunk = around[ox * 9 + oy * 3 + oz];
         if (chunk == null) {
-            // Treat missing chunks as solid to avoid temporary seams.
-            return false;
+            return null;
         }
-        int lx = Math.floorMod(x, Chunk.SIZE);
-        int ly = Math.floorMod(y, Chunk.SIZE);
-        int lz = Math.floorMod(z, Chunk.SIZE);
-        return chunk.getBlock(lx, ly, lz) == BlockType.AIR;
+        return chunk.getBlock(lx - (ox - 1) * Chunk.SIZE, ly - (oy - 1) * Chunk.SIZE, lz - (oz - 1) * Chunk.SIZE);
     }
 
-    private static boolean isAirForLod(World world, int x, int y, int z) {
-        int cx = Math.floorDiv(x, Chunk.SIZE);
-        int cy = Math.floorDiv(y, Chunk.SIZE);
-        int cz = Math.floorDiv(z, Chunk.SIZE);
-        Chunk chunk = world.getChunkIfLoaded(cx, cy, cz);
+    private static boolean isAir(Chunk[] around, int baseX, int baseY, int baseZ, int x, int y, int z) {
+        // Treat missing chunks as solid to avoid temporary seams.
+        return blockAt(around, baseX, baseY, baseZ, x, y, z) == BlockType.AIR;
+    }
+
+    /**
+     * Light level a face is drawn with: the light in the block it faces, or
+     * the block's own glow if brighter. Faces towards chunks that are not
+     * loaded are drawn fully lit until the neighbour arrives.
+     */
+    private static int faceLight(Chunk[] around, int baseX, int baseY, int baseZ, BlockType type, int x, int y, int z) {
+        int lx = x - baseX;
+        int ly = y - baseY;
+        int lz = z - baseZ;
+        int ox = lx < 0 ? 0 : lx >= Chunk.SIZE ? 2 : 1;
+        int oy = ly < 0 ? 0 : ly >= Chunk.SIZE ? 2 : 1;
+        int oz = lz < 0 ? 0 : lz >= Chunk.SIZE ? 2 : 1;
+        Chunk chunk = around[ox * 9 + oy * 3 + oz];
         if (chunk == null) {
-            return true;
+            return LightEngine.MAX_LIGHT;
         }
-        int lx = Math.floorMod(x, Chunk.SIZE);
-        int ly = Math.floorMod(y, Chunk.SIZE);
-        int lz = Math.floorMod(z, Chunk.SIZE);
-        return chunk.getBlock(lx, ly, lz) == BlockType.AIR;
+        int light = chunk.getLight(lx - (ox - 1) * Chunk.SIZE, ly - (oy - 1) * Chunk.SIZE, lz - (oz - 1) * Chunk.SIZE);
+        return Math.max(light, type.getLightEmission());
+    }
+
+    /** Colour multiplier for a light level; each level below full is 20% darker, never quite black. */
+    private static float brightness(int light) {
+        return BRIGHTNESS[light];
+    }
+
+    private static boolean isAirForLod(Chunk[] around, int baseX, int baseY, int baseZ, int x, int y, int z) {
+        BlockType type = blockAt(around, baseX, baseY, baseZ, x, y, z);
+        return type == null || type == BlockType.AIR;
     }
 
     private static float[] colorFor(BlockType type) {
@@ -412,51 +529,138 @@ public class ChunkMesh {
             case DIRT -> new float[] { 0.545f, 0.27f, 0.075f };
             case STONE -> new float[] { 0.5f, 0.5f, 0.5f };
             case SAND -> new float[] { 0.96f, 0.87f, 0.7f };
-            case WATER -> new float[] { 0f, 0.3f, 0.8f };
+            case WATER, FLOWING_WATER -> new float[] { 0f, 0.3f, 0.8f };
             case SNOW -> new float[] { 1f, 1f, 1f };
             case ICE -> new float[] { 0.75f, 0.94f, 1f };
+            case LAMP -> new float[] { 1f, 0.85f, 0.45f };
             default -> new float[] { 1f, 1f, 1f };
         };
     }
 
     /**
-     * Renders the mesh using the cached VBO.
+     * Queues the mesh to be drawn by the next {@link #drawQueued()}, together
+     * with every other mesh in the same arena buffer.
      */
     public void render() {
-        glBindBuffer(GL_ARRAY_BUFFER, vbo);
-        glEnableClientState(GL_VERTEX_ARRAY);
-        glEnableClientState(GL_COLOR_ARRAY);
-        glVertexPointer(3, GL_FLOAT, 24, 0);
-        glColorPointer(3, GL_FLOAT, 24, 12);
-        glDrawArrays(GL_QUADS, 0, vertexCount);
-        glDisableClientState(GL_COLOR_ARRAY);
-        glDisableClientState(GL_VERTEX_ARRAY);
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        if (allocation != null) {
+            arena.queue(allocation, 0, vertexCount);
+        }
+    }
+
+    /**
+     * Queues the mesh like {@link #render()}, leaving out the ranges of face
+     * directions that face away from the eye. The mesh belongs to the chunk
+     * whose lowest corner is at the given block position. A direction is only
+     * skipped when the eye is behind every plane its faces can lie on.
+     */
+    public void render(double eyeX, double eyeY, double eyeZ, int baseX, int baseY, int baseZ) {
+        if (allocation == null) {
+            return;
+        }
+        if (directionStarts == null) {
+            render();
+            return;
+        }
+        int size = Chunk.SIZE;
+        // +X faces lie on planes baseX + 1 .. baseX + SIZE and face +X, and so on
+        int visible = (eyeX > baseX ? 1 : 0)
+                | (eyeX < baseX + size ? 1 << 1 : 0)
+                | (eyeY > baseY ? 1 << 2 : 0)
+                | (eyeY < baseY + size ? 1 << 3 : 0)
+                | (eyeZ > baseZ ? 1 << 4 : 0)
+                | (eyeZ < baseZ + size ? 1 << 5 : 0);
+        int runStart = -1;
+        int skipped = 0;
+        for (int dir = 0; dir <= DIRECTIONS; dir++) {
+            boolean draw = dir < DIRECTIONS && (visible & (1 << dir)) != 0;
+            if (draw && runStart < 0) {
+                runStart = directionStarts[dir];
+            } else if (!draw && runStart >= 0) {
+                // adjacent visible directions are drawn as one range
+                arena.queue(allocation, runStart, directionStarts[dir] - runStart);
+                runStart = -1;
+            }
+            if (dir < DIRECTIONS && !draw) {
+                skipped += directionStarts[dir + 1] - directionStarts[dir];
+            }
+        }
+        arena.recordSkipped(skipped);
+    }
+
+    /** Draws every mesh queued with {@link #render()} this frame. */
+    public static void drawQueued() {
+        arena.drawQueued();
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
     }
 
     /**
-     * Releases the underlying GL resources.
+     * Releases the mesh's range of the arena.
      */
-    public void dispose() {
+    public synchronized void dispose() {
+        if (allocation == null || disposed) {
+            return;
+        }
+        disposed = true;
+        residentBytes.addAndGet(level(step), -(long) vertexCount * VERTEX_BYTES);
         // Chunk meshes may be disposed from worker threads without an active
         // OpenGL context. Attempting to invoke GL calls in that state throws an
         // exception, so defer deletion until the render thread flushes pending
         // buffers.
-        if (GLFW.glfwGetCurrentContext() != MemoryUtil.NULL) {
-            glDeleteBuffers(vbo);
+        boolean deferred = !arena.getBackend().isContextCurrent();
+        if (deferred) {
+            pendingDeletes.add(allocation);
         } else {
-            pendingDeletes.add(vbo);
+            arena.free(allocation);
+        }
+        ChunkEvents.MeshDispose event = new ChunkEvents.MeshDispose();
+        if (event.shouldCommit()) {
+            event.lod = step != ChunkPipeline.FULL_DETAIL;
+            event.bytes = (long) vertexCount * VERTEX_BYTES;
+            event.deferred = deferred;
+            event.commit();
         }
     }
 
     /**
-     * Deletes any queued VBOs on the current OpenGL context. Should be invoked
-     * on the render thread each frame.
+     * Frees meshes disposed off the render thread and lets the arena compact
+     * a fragmented buffer. Should be invoked on the render thread each frame
+     * after drawing.
      */
     public static void flushDeletes() {
-        Integer id;
-        while ((id = pendingDeletes.poll()) != null) {
-            glDeleteBuffers(id);
+        MeshAllocator.Allocation allocation;
+        while ((allocation = pendingDeletes.poll()) != null) {
+            arena.free(allocation);
         }
+        arena.endFrame();
+    }
+
+    /**
+     * Stores meshes through the given backend from now on, such as a
+     * {@link NullBackend} to run without a display. Must be called on the
+     * render thread before any mesh is uploaded.
+     */
+    public static void setBackend(GpuBackend backend) {
+        arena = new MeshArena(backend, ARENA_PAGE_VERTICES);
+    }
+
+    /**
+     * Bytes of vertex data held in the arena by live meshes built with the
+     * given step, {@link ChunkPipeline#FULL_DETAIL} for full-detail meshes.
+     */
+    public static long getResidentBytes(int step) {
+        return residentBytes.get(level(step));
+    }
+
+    /** Steps are powers of two up to 16, so each gets its own slot. */
+    private static int level(int step) {
+        return Integer.numberOfTrailingZeros(step);
+    }
+
+    /** The arena all chunk meshes are stored in. */
+    public static MeshArena getArena() {
+        return arena;
     }
 }
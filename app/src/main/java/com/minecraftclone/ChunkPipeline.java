@@ -0,0 +1,376 @@
+package com.minecraftclone;
+
+import java.nio.FloatBuffer;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs chunk work as a chain of stages, each sized for the kind of work it
+ * does: disk reads block on virtual threads, terrain generation runs on a
+ * fork-join pool sized to the CPU, meshes are built on their own pool and
+ * the finished vertex data is uploaded on the render thread within a
+ * per-frame time budget. Every stage admits a bounded number of tasks, so a
+ * slow stage makes the one feeding it wait instead of letting work pile up.
+ */
+public class ChunkPipeline {
+    /** Mesh step used for full-detail meshes; larger steps are LOD meshes. */
+    public static final int FULL_DETAIL = 1;
+    /** Generation and meshing tasks admitted per pool thread. */
+    private static final int TASKS_PER_THREAD = 4;
+    /** Built meshes allowed to wait for upload before mesh threads stall. */
+    private static final int UPLOAD_CAPACITY = 64;
+
+    private final World world;
+    private final Stage io;
+    private final Stage generation;
+    private final Stage meshing;
+    private final Stage upload;
+    private final long uploadBudgetNanos;
+    private final Set<MeshKey> pendingMeshes = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Queue<MeshResult> readyMeshes = new ConcurrentLinkedQueue<>();
+    /** Bytes of built vertex data waiting in {@link #readyMeshes}. */
+    private final AtomicLong readyBytes = new AtomicLong();
+
+    public ChunkPipeline(World world, WorldOptions options) {
+        this.world = world;
+        int ioConcurrency = Math.max(1, options.getIoConcurrency());
+        int generationThreads = Math.max(1, options.getGenerationThreads());
+        int meshThreads = Math.max(1, options.getMeshThreads());
+        this.io = new Stage("io", Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("chunk-read-", 0).factory()), ioConcurrency);
+        AtomicInteger generationIds = new AtomicInteger();
+        this.generation = new Stage("generation", new ForkJoinPool(generationThreads, pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("chunk-gen-" + generationIds.getAndIncrement());
+            return t;
+        }, null, false), generationThreads * TASKS_PER_THREAD);
+        AtomicInteger meshIds = new AtomicInteger();
+        this.meshing = new Stage("meshing", Executors.newFixedThreadPool(meshThreads, r -> {
+            Thread t = new Thread(r, "chunk-mesh-" + meshIds.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }), meshThreads * TASKS_PER_THREAD);
+        this.upload = new Stage("upload", null, UPLOAD_CAPACITY);
+        this.uploadBudgetNanos = (long) (options.getUploadBudgetMillis() * 1_000_000L);
+    }
+
+    /**
+     * One step of the pipeline. A stage admits at most {@code capacity} tasks
+     * at a time, queued or running, and records how long tasks waited to
+     * start, how long they ran and how many finished.
+     */
+    public static final class Stage {
+        private final String name;
+        private final ExecutorService executor;
+        private final Semaphore slots;
+        private final int capacity;
+        private final LatencyHistogram waitTime = new LatencyHistogram();
+        private final LatencyHistogram runTime = new LatencyHistogram();
+        private final AtomicLong completed = new AtomicLong();
+        private long sampledCompleted;
+        private long sampledNanos = System.nanoTime();
+
+        Stage(String name, ExecutorService executor, int capacity) {
+            this.name = name;
+            this.executor = executor;
+            this.capacity = capacity;
+            this.slots = new Semaphore(capacity);
+        }
+
+        /**
+         * Runs the task on this stage, waiting for a free slot first. Throws
+         * {@link RejectedExecutionException} if the stage is shut down or the
+         * caller is interrupted while waiting.
+         */
+        public void submit(Runnable task) {
+            long queued = System.nanoTime();
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted waiting for the " + name + " stage");
+            }
+            dispatch(task, queued);
+        }
+
+        /** Runs the task on this stage if a slot is free and returns whether it was accepted. */
+        public boolean trySubmit(Runnable task) {
+            if (!slots.tryAcquire()) {
+                return false;
+            }
+            dispatch(task, System.nanoTime());
+            return true;
+        }
+
+        private void dispatch(Runnable task, long queued) {
+            try {
+                executor.execute(() -> {
+                    long start = System.nanoTime();
+                    waitTime.record(start - queued);
+                    try {
+                        task.run();
+                    } finally {
+                        finish(start);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                slots.release();
+                throw e;
+            }
+        }
+
+        /** Claims a slot for work this stage runs on a caller's thread instead of an executor. */
+        void acquire() throws InterruptedException {
+            slots.acquire();
+        }
+
+        /** Releases a slot claimed with {@link #acquire()} once its work ran from {@code start}. */
+        void finish(long start) {
+            runTime.record(System.nanoTime() - start);
+            completed.incrementAndGet();
+            slots.release();
+        }
+
+        void recordWait(long nanos) {
+            waitTime.record(nanos);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** Tasks admitted to the stage that have not finished yet. */
+        public int getInFlight() {
+            return capacity - slots.availablePermits();
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        /** Time tasks waited between submission and starting, in nanoseconds. */
+        public LatencyHistogram getWaitTime() {
+            return waitTime;
+        }
+
+        /** Time tasks spent running, in nanoseconds. */
+        public LatencyHistogram getRunTime() {
+            return runTime;
+        }
+
+        public long getCompleted() {
+            return completed.get();
+        }
+
+        /** Tasks finished per second since the previous call. */
+        public synchronized double sampleThroughput() {
+            long now = System.nanoTime();
+            long done = completed.get();
+            double rate = now == sampledNanos ? 0 : (done - sampledCompleted) * 1e9 / (now - sampledNanos);
+            sampledCompleted = done;
+            sampledNanos = now;
+            return rate;
+        }
+    }
+
+    /** Bytes of built vertex data held in memory until the render thread uploads it. */
+    public long getReadyBytes() {
+        return readyBytes.get();
+    }
+
+    /** Meshes requested and not yet uploaded or dropped. */
+    public int getPendingMeshCount() {
+        return pendingMeshes.size();
+    }
+
+    /** LOD meshes requested and not yet uploaded or dropped. */
+    public int getPendingLodMeshCount() {
+        int count = 0;
+        for (MeshKey key : pendingMeshes) {
+            if (key.step != FULL_DETAIL) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Disk reads, run on virtual threads. */
+    public Stage io() {
+        return io;
+    }
+
+    /** Terrain generation, run on a CPU-sized fork-join pool. */
+    public Stage generation() {
+        return generation;
+    }
+
+    /** Mesh building, run on its own thread pool. */
+    public Stage meshing() {
+        return meshing;
+    }
+
+    /** Vertex data upload, run on the render thread. */
+    public Stage upload() {
+        return upload;
+    }
+
+    /**
+     * Builds a mesh for the chunk in the background unless one is already on
+     * its way. {@code step} is {@link #FULL_DETAIL} for a full mesh or the LOD
+     * step size. Never blocks: if the meshing stage is full the request is
+     * dropped and the caller simply asks again next frame.
+     */
+    public void requestMesh(Chunk chunk, int baseX, int baseY, int baseZ, int step) {
+        MeshKey key = new MeshKey(chunk, step);
+        if (!pendingMeshes.add(key)) {
+            return;
+        }
+        int revision = chunk.getMeshRevision();
+        boolean accepted;
+        try {
+            accepted = meshing.trySubmit(() -> buildMesh(key, revision, baseX, baseY, baseZ));
+        } catch (RejectedExecutionException e) {
+            accepted = false;
+        }
+        if (!accepted) {
+            pendingMeshes.remove(key);
+        }
+    }
+
+    private void buildMesh(MeshKey key, int revision, int baseX, int baseY, int baseZ) {
+        FloatBuffer buffer;
+        int[] directionStarts = null;
+        try {
+            if (key.step == FULL_DETAIL) {
+                directionStarts = new int[ChunkMesh.DIRECTIONS + 1];
+                buffer = ChunkMesh.buildBuffer(world, key.chunk, baseX, baseY, baseZ, directionStarts);
+            } else {
+                buffer = ChunkMesh.buildLodBuffer(world, key.chunk, baseX, baseY, baseZ, key.step);
+            }
+            // hold the mesh thread until the render thread has room, so built buffers cannot pile up
+            upload.acquire();
+        } catch (InterruptedException e) {
+            pendingMeshes.remove(key);
+            Thread.currentThread().interrupt();
+            return;
+        } catch (RuntimeException e) {
+            pendingMeshes.remove(key);
+            System.err.println("Failed to build chunk mesh: " + e);
+            return;
+        }
+        ChunkPos pos = new ChunkPos(Math.floorDiv(baseX, Chunk.SIZE), Math.floorDiv(baseY, Chunk.SIZE),
+                Math.floorDiv(baseZ, Chunk.SIZE));
+        readyBytes.addAndGet((long) buffer.capacity() * Float.BYTES);
+        readyMeshes.add(new MeshResult(key, pos, revision, buffer, directionStarts, System.nanoTime()));
+    }
+
+    /**
+     * Uploads built meshes to the GPU until the per-frame budget is spent.
+     * At least one mesh is uploaded per call so progress is always made.
+     * Must be called on the render thread.
+     */
+    public void uploadReady() {
+        long deadline = System.nanoTime() + uploadBudgetNanos;
+        MeshResult result;
+        while ((result = readyMeshes.poll()) != null) {
+            readyBytes.addAndGet(-(long) result.buffer.capacity() * Float.BYTES);
+            long start = System.nanoTime();
+            upload.recordWait(start - result.readyNanos);
+            try {
+                apply(result);
+            } finally {
+                upload.finish(start);
+                pendingMeshes.remove(result.key);
+            }
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+    }
+
+    private void apply(MeshResult result) {
+        Chunk chunk = result.key.chunk;
+        int step = result.key.step;
+        ChunkPos pos = result.pos;
+        if (world.getChunkIfLoaded(pos.x(), pos.y(), pos.z()) != chunk) {
+            // unloaded while the mesh was being built
+            return;
+        }
+        ChunkEvents.MeshUpload event = new ChunkEvents.MeshUpload();
+        event.begin();
+        if (step == FULL_DETAIL) {
+            ChunkMesh old = chunk.getMesh();
+            if (old != null) {
+                old.dispose();
+            }
+            chunk.setMesh(ChunkMesh.upload(result.buffer, result.directionStarts), result.revision);
+        } else if (result.buffer.limit() == 0) {
+            chunk.markLodStepEmpty(step);
+        } else {
+            chunk.setLodMesh(step, ChunkMesh.uploadLod(result.buffer, step));
+        }
+        if (event.shouldCommit()) {
+            event.setChunk(pos.x(), pos.y(), pos.z());
+            event.step = step;
+            event.bytes = (long) result.buffer.limit() * Float.BYTES;
+            event.commit();
+        }
+    }
+
+    /**
+     * Stops accepting work, lets queued disk reads and generation finish
+     * until the deadline and abandons meshes that were not uploaded.
+     */
+    public void shutdown(long deadlineNanos) {
+        meshing.executor.shutdownNow();
+        io.executor.shutdown();
+        try {
+            // reads still running may hand chunks on to generation, so it closes second
+            io.executor.awaitTermination(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            generation.executor.shutdown();
+            generation.executor.awaitTermination(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        readyMeshes.clear();
+        readyBytes.set(0);
+        pendingMeshes.clear();
+    }
+
+    private static final class MeshKey {
+        final Chunk chunk;
+        final int step;
+
+        MeshKey(Chunk chunk, int step) {
+            this.chunk = chunk;
+            this.step = step;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MeshKey other)) return false;
+            return chunk == other.chunk && step == other.step;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(chunk) * 31 + step;
+        }
+    }
+
+    private record MeshResult(MeshKey key, ChunkPos pos, int revision, FloatBuffer buffer, int[] directionStarts,
+            long readyNanos) { }
+}
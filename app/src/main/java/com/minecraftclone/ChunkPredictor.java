@@ -0,0 +1,166 @@
+package com.minecraftclone;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Requests chunks the player is about to see so they are generated before
+ * they come into view. Each update follows the player's velocity and, at
+ * the same speed, the direction they are looking, a configurable number of
+ * seconds ahead and requests the chunks around both paths at
+ * {@link ChunkRequestScheduler.Priority#PREDICTED} priority. Visible chunks
+ * are always served first.
+ * <p>
+ * The renderer reports each chunk the first time it becomes visible, which
+ * gives the fraction of chunks that were ready in time.
+ */
+public class ChunkPredictor {
+    /** Chunks around each sampled path point to request, per axis. */
+    private static final int PATH_RADIUS = 1;
+
+    private final World world;
+    private final double lookaheadSeconds;
+    private int lastFromX = Integer.MIN_VALUE;
+    private int lastFromY;
+    private int lastFromZ;
+    private int lastMoveX;
+    private int lastMoveY;
+    private int lastMoveZ;
+    private int lastLookX;
+    private int lastLookY;
+    private int lastLookZ;
+
+    /** Chunks already seen in view while the player stayed nearby. */
+    private final Set<ChunkPos> seen = new HashSet<>();
+    private int seenCenterX = Integer.MIN_VALUE;
+    private int seenCenterY;
+    private int seenCenterZ;
+
+    private long predictedRequests;
+    private long firstSeen;
+    private long readyWhenSeen;
+
+    public ChunkPredictor(World world, double lookaheadSeconds) {
+        this.world = world;
+        this.lookaheadSeconds = lookaheadSeconds;
+    }
+
+    /**
+     * Requests chunks along the player's predicted path. Does nothing when
+     * both paths still start and end in the same chunks as last time. When
+     * standing still there is no path, so the prediction margin drops back
+     * to 0 and the next re-score cancels predicted requests beyond the
+     * radius. Must be called after the request focus was updated for this
+     * frame.
+     */
+    public void update(Player player) {
+        double vx = player.getVelocityX();
+        double vy = player.getVelocityY();
+        double vz = player.getVelocityZ();
+        double distance = Math.sqrt(vx * vx + vy * vy + vz * vz) * lookaheadSeconds;
+        if (lookaheadSeconds <= 0 || distance < 1e-3) {
+            if (lastFromX != Integer.MIN_VALUE) {
+                world.getRequestScheduler().setPredictionMargin(0);
+                // forget the old path so moving again requests it afresh with its margin
+                lastFromX = Integer.MIN_VALUE;
+            }
+            return;
+        }
+        int fromX = chunkCoord(player.getX());
+        int fromY = chunkCoord(player.getY());
+        int fromZ = chunkCoord(player.getZ());
+        int moveX = chunkCoord(player.getX() + vx * lookaheadSeconds);
+        int moveY = chunkCoord(player.getY() + vy * lookaheadSeconds);
+        int moveZ = chunkCoord(player.getZ() + vz * lookaheadSeconds);
+        int lookX = chunkCoord(player.getX() + player.getLookX() * distance);
+        int lookY = chunkCoord(player.getY() + player.getLookY() * distance);
+        int lookZ = chunkCoord(player.getZ() + player.getLookZ() * distance);
+        if (fromX == lastFromX && fromY == lastFromY && fromZ == lastFromZ
+                && moveX == lastMoveX && moveY == lastMoveY && moveZ == lastMoveZ
+                && lookX == lastLookX && lookY == lastLookY && lookZ == lastLookZ) {
+            return;
+        }
+        lastFromX = fromX;
+        lastFromY = fromY;
+        lastFromZ = fromZ;
+        lastMoveX = moveX;
+        lastMoveY = moveY;
+        lastMoveZ = moveZ;
+        lastLookX = lookX;
+        lastLookY = lookY;
+        lastLookZ = lookZ;
+
+        int margin = (int) Math.ceil(distance / Chunk.SIZE) + PATH_RADIUS;
+        world.getRequestScheduler().setPredictionMargin(margin);
+        requestAlong(fromX, fromY, fromZ, moveX, moveY, moveZ);
+        requestAlong(fromX, fromY, fromZ, lookX, lookY, lookZ);
+    }
+
+    /** Requests the chunks around evenly spaced points from the start chunk to the end chunk. */
+    private void requestAlong(int fromX, int fromY, int fromZ, int toX, int toY, int toZ) {
+        int steps = Math.max(Math.abs(toX - fromX), Math.max(Math.abs(toY - fromY), Math.abs(toZ - fromZ)));
+        // the player's own chunk and its neighbours are requested by the renderer anyway
+        for (int s = 1; s <= steps; s++) {
+            double t = (double) s / steps;
+            int px = (int) Math.round(fromX + (toX - fromX) * t);
+            int py = (int) Math.round(fromY + (toY - fromY) * t);
+            int pz = (int) Math.round(fromZ + (toZ - fromZ) * t);
+            for (int cx = px - PATH_RADIUS; cx <= px + PATH_RADIUS; cx++) {
+                for (int cy = py - PATH_RADIUS; cy <= py + PATH_RADIUS; cy++) {
+                    for (int cz = pz - PATH_RADIUS; cz <= pz + PATH_RADIUS; cz++) {
+                        if (world.requestChunk(cx, cy, cz, ChunkRequestScheduler.Priority.PREDICTED)) {
+                            predictedRequests++;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Records that a chunk is in view this frame. Only the first sighting
+     * while the player stays within {@code radius} chunks counts towards
+     * the ready ratio.
+     */
+    public void recordVisible(int cx, int cy, int cz, boolean ready, int playerCx, int playerCy, int playerCz,
+            int radius) {
+        if (playerCx != seenCenterX || playerCy != seenCenterY || playerCz != seenCenterZ) {
+            seenCenterX = playerCx;
+            seenCenterY = playerCy;
+            seenCenterZ = playerCz;
+            seen.removeIf(p -> Math.abs(p.x() - playerCx) > radius
+                    || Math.abs(p.y() - playerCy) > radius
+                    || Math.abs(p.z() - playerCz) > radius);
+        }
+        if (seen.add(new ChunkPos(cx, cy, cz))) {
+            firstSeen++;
+            if (ready) {
+                readyWhenSeen++;
+            }
+        }
+    }
+
+    /** Number of requests made for chunks on the predicted path. */
+    public long getPredictedRequests() {
+        return predictedRequests;
+    }
+
+    /** Number of chunks that came into view. */
+    public long getFirstSeenCount() {
+        return firstSeen;
+    }
+
+    /** Number of chunks that were already loaded when they first came into view. */
+    public long getReadyWhenSeenCount() {
+        return readyWhenSeen;
+    }
+
+    /** Fraction of chunks that were loaded when they first came into view. */
+    public double getReadyRatio() {
+        return firstSeen == 0 ? 1.0 : (double) readyWhenSeen / firstSeen;
+    }
+
+    private static int chunkCoord(double c) {
+        return (int) Math.floor(c / Chunk.SIZE);
+    }
+}
@@ -0,0 +1,328 @@
+package com.minecraftclone;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Orders pending chunk requests by how useful they are right now. Requests
+ * are scored against the current focus (the player's chunk and view
+ * direction) rather than where the player was when the request was made:
+ * whenever the player crosses a chunk boundary or turns far enough, every
+ * pending request is re-scored and those that left the render radius are
+ * cancelled. Requests for chunks the player is only expected to see soon
+ * are queued in a lower priority class and always run after visible ones.
+ * When the queue is full the least useful request is evicted, never a more
+ * useful one.
+ */
+public class ChunkRequestScheduler {
+    /** Rotation in radians after which pending work is re-scored. */
+    private static final double RESCORE_ANGLE = Math.toRadians(20);
+    private static final double RESCORE_COS = Math.cos(RESCORE_ANGLE);
+
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Map<ChunkPos, Request> queued = new HashMap<>();
+    private static final Comparator<Request> ORDER = Comparator.comparing((Request r) -> r.priority)
+            .thenComparingDouble(r -> r.score)
+            .thenComparingLong(r -> r.sequence);
+    private final TreeSet<Request> order = new TreeSet<>(ORDER);
+    /** Requests taken by a worker that have not finished yet. */
+    private final Set<ChunkPos> running = new HashSet<>();
+    private long nextSequence;
+    private boolean closed;
+
+    private int focusX;
+    private int focusY;
+    private int focusZ;
+    private double lookX;
+    private double lookY;
+    private double lookZ = -1;
+    private int radius = Integer.MAX_VALUE;
+    /** Extra chunks beyond the radius that predicted requests may reach. */
+    private int predictionMargin;
+
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong rescores = new AtomicLong();
+
+    /** Priority classes, most urgent first. */
+    public enum Priority {
+        /** The chunk is in view now. */
+        VISIBLE,
+        /** The chunk lies on the player's predicted path. */
+        PREDICTED
+    }
+
+    /** A queued chunk request. */
+    public static final class Request {
+        final ChunkPos pos;
+        final long sequence;
+        final long submittedNanos;
+        Priority priority;
+        double score;
+
+        Request(ChunkPos pos, Priority priority, long sequence, long submittedNanos) {
+            this.pos = pos;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.submittedNanos = submittedNanos;
+        }
+
+        public ChunkPos pos() {
+            return pos;
+        }
+    }
+
+    public ChunkRequestScheduler(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Updates the position and view direction requests are scored against.
+     * Pending work is only re-scored when the focus chunk changes or the view
+     * turned more than {@link #RESCORE_ANGLE} since the last re-score.
+     */
+    public void updateFocus(int cx, int cy, int cz, double dirX, double dirY, double dirZ, int radius) {
+        double len = Math.sqrt(dirX * dirX + dirY * dirY + dirZ * dirZ);
+        if (len > 0) {
+            dirX /= len;
+            dirY /= len;
+            dirZ /= len;
+        }
+        lock.lock();
+        try {
+            boolean moved = cx != focusX || cy != focusY || cz != focusZ || radius != this.radius;
+            boolean turned = dirX * lookX + dirY * lookY + dirZ * lookZ < RESCORE_COS;
+            if (!moved && !turned) {
+                return;
+            }
+            focusX = cx;
+            focusY = cy;
+            focusZ = cz;
+            lookX = dirX;
+            lookY = dirY;
+            lookZ = dirZ;
+            this.radius = radius;
+            rescore();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Queues a request for a visible chunk. See {@link #submit(ChunkPos, Priority)}. */
+    public boolean submit(ChunkPos pos) {
+        return submit(pos, Priority.VISIBLE);
+    }
+
+    /**
+     * Queues a request for the chunk unless it is already queued or running.
+     * A queued request is raised to {@code priority} if that is more urgent.
+     * Returns {@code false} if the request was ignored.
+     */
+    public boolean submit(ChunkPos pos, Priority priority) {
+        lock.lock();
+        try {
+            if (closed || running.contains(pos) || !inRadius(pos, priority)) {
+                return false;
+            }
+            Request existing = queued.get(pos);
+            if (existing != null) {
+                if (priority.compareTo(existing.priority) < 0) {
+                    order.remove(existing);
+                    existing.priority = priority;
+                    order.add(existing);
+                }
+                return false;
+            }
+            Request request = new Request(pos, priority, nextSequence++, System.nanoTime());
+            request.score = score(pos);
+            if (queued.size() >= capacity) {
+                Request worst = order.last();
+                if (ORDER.compare(worst, request) <= 0) {
+                    return false;
+                }
+                order.pollLast();
+                queued.remove(worst.pos);
+                evicted.incrementAndGet();
+            }
+            queued.put(pos, request);
+            order.add(request);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the most useful pending request and marks it running. Returns
+     * {@code null} once the scheduler is closed.
+     */
+    public Request take() {
+        lock.lock();
+        try {
+            while (order.isEmpty()) {
+                if (closed) {
+                    return null;
+                }
+                notEmpty.awaitUninterruptibly();
+            }
+            Request request = order.pollFirst();
+            queued.remove(request.pos);
+            running.add(request.pos);
+            queueLatency.record(System.nanoTime() - request.submittedNanos);
+            return request;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Marks a request returned by {@link #take()} as finished. */
+    public void complete(Request request) {
+        lock.lock();
+        try {
+            running.remove(request.pos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns {@code true} if the chunk is queued or being worked on. */
+    public boolean isPending(ChunkPos pos) {
+        lock.lock();
+        try {
+            return queued.containsKey(pos) || running.contains(pos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Drops every queued request. Running requests still finish. */
+    public void clear() {
+        lock.lock();
+        try {
+            cancelled.addAndGet(queued.size());
+            queued.clear();
+            order.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Wakes waiting workers and makes {@link #take()} return {@code null}. */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            queued.clear();
+            order.clear();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rescore() {
+        rescores.incrementAndGet();
+        order.clear();
+        var it = queued.values().iterator();
+        while (it.hasNext()) {
+            Request request = it.next();
+            if (!inRadius(request.pos, request.priority)) {
+                it.remove();
+                cancelled.incrementAndGet();
+                continue;
+            }
+            request.score = score(request.pos);
+            order.add(request);
+        }
+    }
+
+    /**
+     * Sets how many chunks beyond the radius predicted requests may lie, so
+     * the path ahead can be requested before it enters the render radius.
+     */
+    public void setPredictionMargin(int margin) {
+        lock.lock();
+        try {
+            predictionMargin = Math.max(0, margin);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getPredictionMargin() {
+        lock.lock();
+        try {
+            return predictionMargin;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean inRadius(ChunkPos pos, Priority priority) {
+        if (radius == Integer.MAX_VALUE) {
+            return true;
+        }
+        int limit = priority == Priority.PREDICTED ? radius + predictionMargin : radius;
+        return Math.abs(pos.x() - focusX) <= limit
+                && Math.abs(pos.y() - focusY) <= limit
+                && Math.abs(pos.z() - focusZ) <= limit;
+    }
+
+    /**
+     * Squared distance to the focus, scaled from 1x for chunks straight ahead
+     * up to 2x for chunks directly behind so visible work goes first without
+     * starving nearby chunks out of view.
+     */
+    private double score(ChunkPos pos) {
+        int dx = pos.x() - focusX;
+        int dy = pos.y() - focusY;
+        int dz = pos.z() - focusZ;
+        int distSq = dx * dx + dy * dy + dz * dz;
+        if (distSq == 0) {
+            return 0;
+        }
+        double cos = (dx * lookX + dy * lookY + dz * lookZ) / Math.sqrt(distSq);
+        return distSq * (1.5 - 0.5 * cos);
+    }
+
+    /** Number of requests waiting for a worker. */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queued.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Time requests spent queued before a worker picked them up, in nanoseconds. */
+    public LatencyHistogram getQueueLatency() {
+        return queueLatency;
+    }
+
+    /** Requests dropped because they left the render radius. */
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    /** Requests dropped to make room for more useful ones. */
+    public long getEvictedCount() {
+        return evicted.get();
+    }
+
+    /** Number of times pending requests were re-scored. */
+    public long getRescoreCount() {
+        return rescores.get();
+    }
+}
@@ -0,0 +1,37 @@
+package com.minecraftclone;
+
+import java.util.Map;
+
+/**
+ * On-disk persistence for chunk data, grouped into regions of
+ * {@link RegionStorage#REGION_SIZE} chunks per axis.
+ */
+public interface ChunkStorage {
+    /**
+     * Reads the chunk at the given chunk coordinates, or returns {@code null}
+     * if nothing was saved for it and it should be generated.
+     */
+    Chunk read(int cx, int cy, int cz);
+
+    /**
+     * Saves the chunks of a single region that still need saving and returns
+     * how many were written. Each chunk is marked saved only if it was not
+     * edited while being written.
+     */
+    int writeBatch(RegionPos region, Map<ChunkPos, Chunk> batch);
+
+    /** Whether freshly generated chunks must be written to be recovered later. */
+    boolean storesGeneratedChunks();
+
+    /** Drops cached state for a region once none of its chunks are resident. */
+    void release(RegionPos region);
+
+    /** Drops all cached region state. */
+    void releaseAll();
+
+    /** Deletes the data saved for a region. */
+    void deleteRegion(RegionPos region);
+
+    /** Deletes all saved data. */
+    void deleteAll();
+}
@@ -0,0 +1,161 @@
+package com.minecraftclone;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks why chunks are loaded. Each ticket holds chunks around a centre at
+ * a {@link LoadLevel} that weakens with distance, and a chunk's level is the
+ * strongest level any ticket gives it. Chunks no ticket covers are unloaded.
+ * <p>
+ * Tickets covering an area are kept in a list since there are only ever a
+ * few of them; single-chunk temporary tickets, of which there can be many,
+ * are kept in a map by position together with their expiry time.
+ */
+public class ChunkTickets {
+    /** Why a chunk is being kept loaded. */
+    public enum Type {
+        /** Follows the player and covers the render distance. */
+        PLAYER,
+        /** Keeps the area around the spawn point resident. */
+        SPAWN,
+        /** Keeps an area loaded until the ticket is removed. */
+        FORCED,
+        /** Keeps a single chunk loaded for a short time after it was accessed directly. */
+        TEMPORARY
+    }
+
+    /** What work a chunk receives, from most to least. */
+    public enum LoadLevel {
+        /** Block data and a full-detail mesh. */
+        FULL,
+        /** Block data and a simplified LOD mesh. */
+        LOD,
+        /** Block data only, for neighbour lookups and edits. */
+        DATA,
+        /** Not wanted; the chunk is saved and dropped from memory. */
+        UNLOADED;
+
+        LoadLevel strongest(LoadLevel other) {
+            return other.ordinal() < ordinal() ? other : this;
+        }
+    }
+
+    /**
+     * Holds chunks around a centre: within {@code fullRadius} chunks at
+     * {@link LoadLevel#FULL}, then within {@code lodRadius} at
+     * {@link LoadLevel#LOD} and within {@code dataRadius} at
+     * {@link LoadLevel#DATA}. A negative radius skips that level. Distances
+     * are measured per axis, matching the render cube.
+     */
+    public static final class Ticket {
+        private final Type type;
+        private int centerX;
+        private int centerY;
+        private int centerZ;
+        private int fullRadius;
+        private int lodRadius;
+        private int dataRadius;
+
+        private Ticket(Type type) {
+            this.type = type;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        LoadLevel levelAt(int cx, int cy, int cz) {
+            int dist = Math.max(Math.max(Math.abs(cx - centerX), Math.abs(cy - centerY)), Math.abs(cz - centerZ));
+            if (dist <= fullRadius) {
+                return LoadLevel.FULL;
+            }
+            if (dist <= lodRadius) {
+                return LoadLevel.LOD;
+            }
+            if (dist <= dataRadius) {
+                return LoadLevel.DATA;
+            }
+            return LoadLevel.UNLOADED;
+        }
+    }
+
+    private final List<Ticket> tickets = new ArrayList<>();
+    /** Expiry times of temporary tickets in {@link System#nanoTime()} units. */
+    private final Map<ChunkPos, Long> temporary = new HashMap<>();
+    private boolean changed;
+
+    /** Adds a ticket. See {@link Ticket} for how the radii are used. */
+    public synchronized Ticket add(Type type, ChunkPos center, int fullRadius, int lodRadius, int dataRadius) {
+        Ticket ticket = new Ticket(type);
+        set(ticket, center, fullRadius, lodRadius, dataRadius);
+        tickets.add(ticket);
+        changed = true;
+        return ticket;
+    }
+
+    /** Moves or resizes a ticket. Does nothing if nothing changed. */
+    public synchronized void update(Ticket ticket, ChunkPos center, int fullRadius, int lodRadius, int dataRadius) {
+        if (ticket.centerX == center.x() && ticket.centerY == center.y() && ticket.centerZ == center.z()
+                && ticket.fullRadius == fullRadius && ticket.lodRadius == lodRadius
+                && ticket.dataRadius == dataRadius) {
+            return;
+        }
+        set(ticket, center, fullRadius, lodRadius, dataRadius);
+        changed = true;
+    }
+
+    private static void set(Ticket ticket, ChunkPos center, int fullRadius, int lodRadius, int dataRadius) {
+        ticket.centerX = center.x();
+        ticket.centerY = center.y();
+        ticket.centerZ = center.z();
+        ticket.fullRadius = fullRadius;
+        ticket.lodRadius = Math.max(fullRadius, lodRadius);
+        ticket.dataRadius = Math.max(ticket.lodRadius, dataRadius);
+    }
+
+    public synchronized void remove(Ticket ticket) {
+        if (tickets.remove(ticket)) {
+            changed = true;
+        }
+    }
+
+    /**
+     * Keeps a single chunk at {@link LoadLevel#DATA} for the given time,
+     * extending any temporary ticket it already has.
+     */
+    public synchronized void addTemporary(ChunkPos pos, long durationNanos) {
+        long expiry = System.nanoTime() + durationNanos;
+        temporary.merge(pos, expiry, Math::max);
+    }
+
+    /** Returns the strongest level any ticket gives the chunk. */
+    public synchronized LoadLevel levelOf(int cx, int cy, int cz) {
+        LoadLevel level = temporary.containsKey(new ChunkPos(cx, cy, cz)) ? LoadLevel.DATA : LoadLevel.UNLOADED;
+        for (Ticket ticket : tickets) {
+            level = level.strongest(ticket.levelAt(cx, cy, cz));
+            if (level == LoadLevel.FULL) {
+                break;
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Drops temporary tickets that expired and returns whether any ticket was
+     * added, moved, removed or expired since the previous call.
+     */
+    public synchronized boolean expireAndCheckChanged(long nowNanos) {
+        boolean expired = temporary.values().removeIf(expiry -> expiry - nowNanos <= 0);
+        boolean result = changed || expired;
+        changed = false;
+        return result;
+    }
+
+    /** Number of tickets, counting temporary ones. */
+    public synchronized int size() {
+        return tickets.size() + temporary.size();
+    }
+}
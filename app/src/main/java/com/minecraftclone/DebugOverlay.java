@@ -0,0 +1,109 @@
+package com.minecraftclone;
+
+import static org.lwjgl.opengl.GL11.*;
+
+import java.util.List;
+
+/**
+ * Draws lines of text over the scene with a built-in 3x5 pixel font, one
+ * quad per lit pixel, so the debug screen needs no textures or font files.
+ * Lowercase letters are drawn as uppercase and characters without a glyph
+ * as a question mark. Lines that do not fit the window's height continue in
+ * another column.
+ */
+public class DebugOverlay {
+    /** Screen pixels per font pixel. */
+    private static final int SCALE = 2;
+    private static final int ADVANCE = 4 * SCALE;
+    private static final int LINE_HEIGHT = 7 * SCALE;
+    private static final int MARGIN = 4;
+    /**
+     * Characters followed by their glyph: fifteen bits, three per row from
+     * the top, the highest bit of each row on the left.
+     */
+    private static final int[] GLYPH_TABLE = {
+            '0', 0x7b6f, '1', 0x2c97, '2', 0x73e7, '3', 0x72cf, '4', 0x5bc9, '5', 0x79cf, '6', 0x79ef,
+            '7', 0x7252, '8', 0x7bef, '9', 0x7bcf, 'A', 0x2bed, 'B', 0x6bae, 'C', 0x3923, 'D', 0x6b6e,
+            'E', 0x79a7, 'F', 0x79a4, 'G', 0x396b, 'H', 0x5bed, 'I', 0x7497, 'J', 0x126a, 'K', 0x5bad,
+            'L', 0x4927, 'M', 0x5fed, 'N', 0x6b6d, 'O', 0x2b6a, 'P', 0x6ba4, 'Q', 0x2b7b, 'R', 0x6bad,
+            'S', 0x388e, 'T', 0x7492, 'U', 0x5b6f, 'V', 0x5b6a, 'W', 0x5bfd, 'X', 0x5aad, 'Y', 0x5a92,
+            'Z', 0x72a7, '.', 0x0002, ',', 0x0014, ':', 0x0410, '/', 0x12a4, '%', 0x52a5, '-', 0x01c0,
+            '_', 0x0007, '(', 0x2922, ')', 0x224a, '=', 0x0e38, '+', 0x05d0, '[', 0x6926, ']', 0x324b,
+            '?', 0x7282
+    };
+    private static final int[] GLYPHS = new int[128];
+
+    static {
+        for (int i = 0; i < GLYPH_TABLE.length; i += 2) {
+            GLYPHS[GLYPH_TABLE[i]] = GLYPH_TABLE[i + 1];
+        }
+    }
+
+    /** Draws the lines at the top left of a window of the given size. */
+    public void draw(List<String> lines, int width, int height) {
+        glMatrixMode(GL_PROJECTION);
+        glPushMatrix();
+        glLoadIdentity();
+        glOrtho(0, width, height, 0, -1, 1);
+        glMatrixMode(GL_MODELVIEW);
+        glPushMatrix();
+        glLoadIdentity();
+        glDisable(GL_DEPTH_TEST);
+        glDisable(GL_CULL_FACE);
+        glEnable(GL_BLEND);
+        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+
+        int perColumn = Math.max(1, (height - 2 * MARGIN) / LINE_HEIGHT);
+        int x = MARGIN;
+        for (int first = 0; first < lines.size(); first += perColumn) {
+            int last = Math.min(lines.size(), first + perColumn);
+            int longest = 0;
+            for (int i = first; i < last; i++) {
+                longest = Math.max(longest, lines.get(i).length());
+            }
+            int columnWidth = longest * ADVANCE + SCALE;
+            glColor4f(0f, 0f, 0f, 0.5f);
+            glBegin(GL_QUADS);
+            quad(x - SCALE, MARGIN - SCALE, columnWidth + SCALE, (last - first) * LINE_HEIGHT + SCALE);
+            glEnd();
+            glColor4f(1f, 1f, 1f, 1f);
+            glBegin(GL_QUADS);
+            for (int i = first; i < last; i++) {
+                drawString(lines.get(i), x, MARGIN + (i - first) * LINE_HEIGHT);
+            }
+            glEnd();
+            x += columnWidth + 3 * MARGIN;
+        }
+
+        glDisable(GL_BLEND);
+        glEnable(GL_CULL_FACE);
+        glEnable(GL_DEPTH_TEST);
+        glColor3f(1f, 1f, 1f);
+        glPopMatrix();
+        glMatrixMode(GL_PROJECTION);
+        glPopMatrix();
+        glMatrixMode(GL_MODELVIEW);
+    }
+
+    private static void drawString(String text, int x, int y) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toUpperCase(text.charAt(i));
+            if (c != ' ') {
+                int glyph = c < GLYPHS.length && GLYPHS[c] != 0 ? GLYPHS[c] : GLYPHS['?'];
+                for (int bit = 0; bit < 15; bit++) {
+                    if ((glyph & (1 << (14 - bit))) != 0) {
+                        quad(x + (bit % 3) * SCALE, y + (bit / 3) * SCALE, SCALE, SCALE);
+                    }
+                }
+            }
+            x += ADVANCE;
+        }
+    }
+
+    private static void quad(int x, int y, int w, int h) {
+        glVertex2f(x, y);
+        glVertex2f(x, y + h);
+        glVertex2f(x + w, y + h);
+        glVertex2f(x + w, y);
+    }
+}
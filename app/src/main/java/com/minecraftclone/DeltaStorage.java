@@ -0,0 +1,236 @@
+package com.minecraftclone;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores only the blocks players changed. Untouched chunks are never written
+ * because {@link ChunkGenerator} recreates them from the seed; edited chunks
+ * are regenerated on load and their saved edits reapplied.
+ * <p>
+ * Each region has one {@code .dl} file holding, per edited chunk, its index in
+ * the region followed by the edited block indices and types. A region's edits
+ * stay in memory while the region is resident and the file is rewritten as a
+ * whole when any of its chunks are saved.
+ */
+public class DeltaStorage implements ChunkStorage {
+    /** Produces the generated terrain a chunk's edits are applied on top of. */
+    @FunctionalInterface
+    public interface BaselineSource {
+        Chunk generate(int cx, int cy, int cz);
+    }
+
+    private static final BlockType[] BLOCK_TYPES = BlockType.values();
+
+    private final Path dir;
+    private final BaselineSource baseline;
+    /** Edits per region, keyed by chunk index within the region. */
+    private final Map<RegionPos, Map<Integer, ChunkDelta>> regions = new ConcurrentHashMap<>();
+
+    /** Saved edits of a single chunk as parallel arrays of block index and type ordinal. */
+    record ChunkDelta(short[] indices, byte[] types) { }
+
+    public DeltaStorage(Path dir, BaselineSource baseline) {
+        this.dir = dir;
+        this.baseline = baseline;
+    }
+
+    @Override
+    public Chunk read(int cx, int cy, int cz) {
+        ChunkDelta delta = readDelta(cx, cy, cz);
+        return delta == null ? null : restore(baseline.generate(cx, cy, cz), delta);
+    }
+
+    /**
+     * Returns the saved edits of the chunk, or {@code null} if it was never
+     * edited. Unlike {@link #read} this generates nothing, so the caller can
+     * regenerate the terrain wherever generation runs and then
+     * {@link #restore} it.
+     */
+    ChunkDelta readDelta(int cx, int cy, int cz) {
+        Map<Integer, ChunkDelta> deltas = region(RegionPos.ofChunk(cx, cy, cz));
+        synchronized (deltas) {
+            return deltas.get(RegionStorage.chunkIndex(cx, cy, cz));
+        }
+    }
+
+    /** Reapplies saved edits to freshly generated terrain of the same chunk and returns it, marked saved. */
+    static Chunk restore(Chunk chunk, ChunkDelta delta) {
+        chunk.clearEdits();
+        for (int i = 0; i < delta.indices().length; i++) {
+            chunk.applyEdit(delta.indices()[i], BLOCK_TYPES[delta.types()[i] & 0xFF]);
+        }
+        chunk.setOrigin(Chunk.Origin.RESTORED);
+        chunk.markSaved();
+        chunk.updateFaceSolidity();
+        return chunk;
+    }
+
+    /** Records the current edits of every chunk in the batch and rewrites the region file. */
+    @Override
+    public int writeBatch(RegionPos region, Map<ChunkPos, Chunk> batch) {
+        Map<Integer, ChunkDelta> deltas = region(region);
+        Chunk[] written = new Chunk[batch.size()];
+        int[] versions = new int[batch.size()];
+        int count = 0;
+        synchronized (deltas) {
+            for (Map.Entry<ChunkPos, Chunk> entry : batch.entrySet()) {
+                ChunkPos pos = entry.getKey();
+                Chunk chunk = entry.getValue();
+                if (!chunk.needsSave()) {
+                    continue;
+                }
+                versions[count] = chunk.getVersion();
+                int index = RegionStorage.chunkIndex(pos.x(), pos.y(), pos.z());
+                ChunkDelta delta = snapshot(chunk);
+                if (delta == null) {
+                    deltas.remove(index);
+                } else {
+                    deltas.put(index, delta);
+                }
+                written[count++] = chunk;
+            }
+            try {
+                writeRegion(region, deltas);
+            } catch (IOException e) {
+                System.err.println("Failed to save region " + region.x() + "," + region.y() + "," + region.z()
+                        + ": " + e.getMessage());
+                return 0;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            written[i].markSaved(versions[i]);
+        }
+        return count;
+    }
+
+    @Override
+    public boolean storesGeneratedChunks() {
+        return false;
+    }
+
+    @Override
+    public void release(RegionPos region) {
+        regions.remove(region);
+    }
+
+    @Override
+    public void releaseAll() {
+        regions.clear();
+    }
+
+    @Override
+    public void deleteRegion(RegionPos region) {
+        regions.remove(region);
+        try {
+            Files.deleteIfExists(regionPath(region));
+        } catch (IOException e) {
+            System.err.println("Failed to delete region " + region.x() + "," + region.y() + "," + region.z()
+                    + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        regions.clear();
+        try (var stream = Files.list(dir)) {
+            stream.filter(p -> p.getFileName().toString().endsWith(".dl")).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    System.err.println("Failed to delete region file " + p + ": " + e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Failed to clear world: " + e.getMessage());
+        }
+    }
+
+    private static ChunkDelta snapshot(Chunk chunk) {
+        int[] edited = chunk.editedIndices();
+        if (edited.length == 0) {
+            return null;
+        }
+        short[] indices = new short[edited.length];
+        byte[] types = new byte[edited.length];
+        for (int i = 0; i < edited.length; i++) {
+            int index = edited[i];
+            indices[i] = (short) index;
+            types[i] = (byte) chunk.getBlock(index / (Chunk.SIZE * Chunk.SIZE),
+                    (index / Chunk.SIZE) % Chunk.SIZE, index % Chunk.SIZE).ordinal();
+        }
+        return new ChunkDelta(indices, types);
+    }
+
+    /** Returns the resident edits for a region, reading its file on first use. */
+    private Map<Integer, ChunkDelta> region(RegionPos region) {
+        return regions.computeIfAbsent(region, r -> {
+            try {
+                return readRegion(r);
+            } catch (IOException e) {
+                System.err.println("Failed to load region " + r.x() + "," + r.y() + "," + r.z()
+                        + ": " + e.getMessage());
+                return new HashMap<>();
+            }
+        });
+    }
+
+    private Map<Integer, ChunkDelta> readRegion(RegionPos region) throws IOException {
+        Map<Integer, ChunkDelta> deltas = new HashMap<>();
+        Path path = regionPath(region);
+        if (!Files.exists(path)) {
+            return deltas;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            int chunkCount = in.readInt();
+            for (int c = 0; c < chunkCount; c++) {
+                int index = in.readUnsignedShort();
+                int editCount = in.readUnsignedShort();
+                short[] indices = new short[editCount];
+                byte[] types = new byte[editCount];
+                for (int i = 0; i < editCount; i++) {
+                    indices[i] = in.readShort();
+                    types[i] = in.readByte();
+                }
+                deltas.put(index, new ChunkDelta(indices, types));
+            }
+        }
+        return deltas;
+    }
+
+    /** Rewrites the region file through a temporary file so a crash never leaves it truncated. */
+    private void writeRegion(RegionPos region, Map<Integer, ChunkDelta> deltas) throws IOException {
+        Path path = regionPath(region);
+        if (deltas.isEmpty()) {
+            Files.deleteIfExists(path);
+            return;
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(deltas.size());
+            for (Map.Entry<Integer, ChunkDelta> entry : deltas.entrySet()) {
+                ChunkDelta delta = entry.getValue();
+                out.writeShort(entry.getKey());
+                out.writeShort(delta.indices().length);
+                for (int i = 0; i < delta.indices().length; i++) {
+                    out.writeShort(delta.indices()[i]);
+                    out.writeByte(delta.types()[i]);
+                }
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path regionPath(RegionPos region) {
+        return dir.resolve("r_" + region.x() + "_" + region.y() + "_" + region.z() + ".dl");
+    }
+}
@@ -0,0 +1,144 @@
+package com.minecraftclone;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A camera path of timed player poses, either scripted or recorded from a
+ * play session, that can drive the {@link Player} without input. Poses
+ * between keyframes are interpolated linearly.
+ * <p>
+ * Paths are stored as text with one keyframe per line as
+ * {@code time,x,y,z,yaw,pitch}, time in seconds and angles in radians.
+ * Blank lines and lines starting with {@code #} are ignored.
+ */
+public class Flythrough {
+    /** Forward speed of the scripted path in blocks per second, roughly a sprinting flight. */
+    private static final double SCRIPTED_SPEED = 12.0;
+
+    /** A pose the player passes through at {@code time} seconds. */
+    public record Keyframe(double time, double x, double y, double z, double yaw, double pitch) { }
+
+    private final List<Keyframe> keyframes = new ArrayList<>();
+    /** Keyframe the previous lookup ended in; paths are usually played forward. */
+    private int cursor;
+
+    /**
+     * A path flying forward along -Z from the given position for
+     * {@code seconds} seconds, weaving sideways, climbing and dipping toward
+     * the terrain and looking around, so it crosses fresh terrain, turns
+     * the view and revisits nothing.
+     */
+    public static Flythrough scripted(double startX, double startY, double startZ, double seconds) {
+        Flythrough path = new Flythrough();
+        for (double t = 0; t <= seconds + 0.5; t += 0.5) {
+            double x = startX + 48 * Math.sin(t / 8);
+            double y = startY + 12 + 10 * Math.sin(t / 5);
+            double z = startZ - SCRIPTED_SPEED * t;
+            // face along the weave, then glance left and right
+            double heading = Math.atan2(-48 / 8.0 * Math.cos(t / 8), SCRIPTED_SPEED);
+            double yaw = heading + 0.6 * Math.sin(t / 3);
+            double pitch = -0.2 + 0.15 * Math.sin(t / 4);
+            path.add(new Keyframe(t, x, y, z, yaw, pitch));
+        }
+        return path;
+    }
+
+    /** Reads a path saved by {@link #save(Path)}. */
+    public static Flythrough load(Path file) throws IOException {
+        Flythrough path = new Flythrough();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(file)) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split(",");
+            if (parts.length != 6) {
+                throw new IOException(file + ":" + lineNumber + ": expected time,x,y,z,yaw,pitch");
+            }
+            try {
+                path.add(new Keyframe(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]),
+                        Double.parseDouble(parts[2]), Double.parseDouble(parts[3]),
+                        Double.parseDouble(parts[4]), Double.parseDouble(parts[5])));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(file + ":" + lineNumber + ": " + e.getMessage());
+            }
+        }
+        if (path.keyframes.isEmpty()) {
+            throw new IOException(file + ": no keyframes");
+        }
+        return path;
+    }
+
+    /** Writes the path in the format read by {@link #load(Path)}. */
+    public void save(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("# time,x,y,z,yaw,pitch");
+            out.newLine();
+            for (Keyframe k : keyframes) {
+                out.write(String.format(Locale.ROOT, "%.3f,%.3f,%.3f,%.3f,%.4f,%.4f",
+                        k.time(), k.x(), k.y(), k.z(), k.yaw(), k.pitch()));
+                out.newLine();
+            }
+        }
+    }
+
+    /** Appends the player's current pose at {@code time} seconds. */
+    public void record(double time, Player player) {
+        add(new Keyframe(time, player.getX(), player.getY(), player.getZ(), player.getYaw(), player.getPitch()));
+    }
+
+    /**
+     * Appends a keyframe. Throws {@link IllegalArgumentException} if it is
+     * earlier than the last one.
+     */
+    public void add(Keyframe keyframe) {
+        if (!keyframes.isEmpty() && keyframe.time() < keyframes.get(keyframes.size() - 1).time()) {
+            throw new IllegalArgumentException("Keyframe at " + keyframe.time() + "s is earlier than the previous one");
+        }
+        keyframes.add(keyframe);
+    }
+
+    /** Time of the last keyframe in seconds, counted from the path's start. */
+    public double getDuration() {
+        return keyframes.isEmpty() ? 0 : keyframes.get(keyframes.size() - 1).time() - keyframes.get(0).time();
+    }
+
+    public int getKeyframeCount() {
+        return keyframes.size();
+    }
+
+    /**
+     * Moves the player to the pose {@code time} seconds after the path's
+     * start, holding the first or last pose outside the path.
+     */
+    public void apply(Player player, double time) {
+        if (keyframes.isEmpty()) {
+            return;
+        }
+        double t = keyframes.get(0).time() + time;
+        if (cursor >= keyframes.size() || keyframes.get(cursor).time() > t) {
+            cursor = 0;
+        }
+        while (cursor < keyframes.size() - 1 && keyframes.get(cursor + 1).time() <= t) {
+            cursor++;
+        }
+        Keyframe a = keyframes.get(cursor);
+        if (cursor == keyframes.size() - 1 || t <= a.time()) {
+            player.setPosition(a.x(), a.y(), a.z());
+            player.setRotation(a.yaw(), a.pitch());
+            return;
+        }
+        Keyframe b = keyframes.get(cursor + 1);
+        double f = (t - a.time()) / (b.time() - a.time());
+        player.setPosition(a.x() + (b.x() - a.x()) * f, a.y() + (b.y() - a.y()) * f, a.z() + (b.z() - a.z()) * f);
+        player.setRotation(a.yaw() + (b.yaw() - a.yaw()) * f, a.pitch() + (b.pitch() - a.pitch()) * f);
+    }
+}
@@ -0,0 +1,73 @@
+package com.minecraftclone;
+
+/**
+ * The six planes of a view frustum, extracted from a world to clip space
+ * matrix. Boxes are classified with one corner per plane, the one furthest
+ * along the plane normal, which lets callers reject or accept a whole group
+ * of chunks with a single test and only test the chunks of groups that
+ * straddle a plane.
+ */
+public class Frustum {
+    /** How a box relates to the frustum. */
+    public enum Result {
+        /** Entirely outside; nothing in it can be seen. */
+        OUTSIDE,
+        /** Crosses at least one plane. */
+        INTERSECTS,
+        /** Entirely inside; nothing in it needs testing again. */
+        INSIDE
+    }
+
+    /** Planes as a, b, c, d quadruples with inward-facing unit normals. */
+    private final float[] planes = new float[24];
+
+    /** Extracts the planes from a column-major world to clip space matrix. */
+    public void update(float[] clip) {
+        setPlane(0, clip[3] - clip[0], clip[7] - clip[4], clip[11] - clip[8], clip[15] - clip[12]); // right
+        setPlane(1, clip[3] + clip[0], clip[7] + clip[4], clip[11] + clip[8], clip[15] + clip[12]); // left
+        setPlane(2, clip[3] + clip[1], clip[7] + clip[5], clip[11] + clip[9], clip[15] + clip[13]); // bottom
+        setPlane(3, clip[3] - clip[1], clip[7] - clip[5], clip[11] - clip[9], clip[15] - clip[13]); // top
+        setPlane(4, clip[3] - clip[2], clip[7] - clip[6], clip[11] - clip[10], clip[15] - clip[14]); // far
+        setPlane(5, clip[3] + clip[2], clip[7] + clip[6], clip[11] + clip[10], clip[15] + clip[14]); // near
+    }
+
+    private void setPlane(int i, float a, float b, float c, float d) {
+        float t = (float) Math.sqrt(a * a + b * b + c * c);
+        planes[i * 4] = a / t;
+        planes[i * 4 + 1] = b / t;
+        planes[i * 4 + 2] = c / t;
+        planes[i * 4 + 3] = d / t;
+    }
+
+    /** Returns {@code true} if any part of the box may be inside the frustum. */
+    public boolean intersects(float x1, float y1, float z1, float x2, float y2, float z2) {
+        for (int i = 0; i < 24; i += 4) {
+            float a = planes[i];
+            float b = planes[i + 1];
+            float c = planes[i + 2];
+            // the corner furthest along the normal is outside only if the whole box is
+            if (a * (a > 0 ? x2 : x1) + b * (b > 0 ? y2 : y1) + c * (c > 0 ? z2 : z1) + planes[i + 3] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Classifies the box as outside, crossing or inside the frustum. */
+    public Result classify(float x1, float y1, float z1, float x2, float y2, float z2) {
+        Result result = Result.INSIDE;
+        for (int i = 0; i < 24; i += 4) {
+            float a = planes[i];
+            float b = planes[i + 1];
+            float c = planes[i + 2];
+            float d = planes[i + 3];
+            if (a * (a > 0 ? x2 : x1) + b * (b > 0 ? y2 : y1) + c * (c > 0 ? z2 : z1) + d < 0) {
+                return Result.OUTSIDE;
+            }
+            if (a * (a > 0 ? x1 : x2) + b * (b > 0 ? y1 : y2) + c * (c > 0 ? z1 : z2) + d < 0) {
+                result = Result.INTERSECTS;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,35 @@
+package com.minecraftclone;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * The GPU operations the {@link MeshArena} needs to store and draw chunk
+ * meshes. {@link OpenGlBackend} issues them to OpenGL; {@link NullBackend}
+ * only counts them so the frame loop can run without a display. Buffers are
+ * identified by non-zero names and sized and addressed in bytes.
+ */
+public interface GpuBackend {
+    /** Creates an uninitialised vertex buffer of the given size and returns its name. */
+    int createBuffer(long bytes);
+
+    /** Writes the remaining floats of {@code data} into the buffer starting at {@code offset}. */
+    void uploadBuffer(int buffer, long offset, FloatBuffer data);
+
+    /** Copies {@code bytes} bytes from one buffer to another on the GPU. */
+    void copyBuffer(int from, int to, long fromOffset, long toOffset, long bytes);
+
+    void deleteBuffer(int buffer);
+
+    /**
+     * Draws quads from the buffer, one vertex range per entry between the
+     * buffers' positions and limits.
+     */
+    void drawRanges(int buffer, IntBuffer firsts, IntBuffer counts);
+
+    /**
+     * Returns {@code true} if the calling thread may issue commands. Meshes
+     * disposed on other threads are freed later on the render thread.
+     */
+    boolean isContextCurrent();
+}
@@ -0,0 +1,540 @@
+package com.minecraftclone;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Computes sky light and block light, each a level from 0 to 15 stored per
+ * block in its chunk. Light spreads by flood fill, losing one level per
+ * block through air and water, except that full sky light travels straight
+ * down without fading.
+ * <p>
+ * A chunk's own light is computed by {@link #initialize} on the thread that
+ * loads it, before it is published. Sky light enters at the top of each
+ * column that the chunk above lets through, or, if that chunk is not loaded,
+ * where the top lies above the generator's base surface height. Everything
+ * that crosses chunks is done afterwards on the lighting thread: light
+ * flowing across the borders of a newly published chunk, correcting columns
+ * that were wrongly guessed to be open to the sky, and edits. Each edit
+ * first removes the light that depended on the old block, then lets light
+ * flow back in from what remains. Queued work is handled in batches, and
+ * every chunk whose light or whose neighbours' border light changed is
+ * remeshed once per batch.
+ */
+public class LightEngine {
+    public static final int MAX_LIGHT = 15;
+    /** Neighbour offsets indexed like {@link Chunk#isFaceSolid}. */
+    private static final int[][] DIRS = { {1,0,0}, {-1,0,0}, {0,1,0}, {0,-1,0}, {0,0,1}, {0,0,-1} };
+    private static final int DOWN = 3;
+    /** Most queued edits and chunk loads handled in one batch. */
+    private static final int MAX_BATCH = 4096;
+
+    /** An edited block or a published chunk whose borders need light exchanged. */
+    private record Task(boolean chunkLoaded, int x, int y, int z) { }
+
+    private final World world;
+    private final ChunkGenerator generator;
+    private final LinkedBlockingQueue<Task> tasks = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    /** Tasks submitted and not yet processed, guarded by {@code this}. */
+    private int outstanding;
+
+    private final Metrics.Counter updates;
+    private final Metrics.Counter chunkUpdates;
+    private final Metrics.Counter cellsChanged;
+    private final LatencyHistogram batchTime;
+    private final LatencyHistogram initTime;
+
+    // scratch state owned by the lighting thread
+    private final IntQueue addQueue = new IntQueue();
+    private final IntQueue removeQueue = new IntQueue();
+    private final IntQueue relight = new IntQueue();
+    private final Set<ChunkPos> touched = new HashSet<>();
+    private Chunk cachedChunk;
+    private int cachedX;
+    private int cachedY;
+    private int cachedZ;
+    private boolean cacheValid;
+
+    public LightEngine(World world, ChunkGenerator generator, Metrics metrics) {
+        this.world = world;
+        this.generator = generator;
+        this.updates = metrics.counter("lighting.updates");
+        this.chunkUpdates = metrics.counter("lighting.chunk_updates");
+        this.cellsChanged = metrics.counter("lighting.cells_changed");
+        this.batchTime = metrics.histogram("lighting.batch_ms", Metrics.Unit.NANOS);
+        this.initTime = metrics.histogram("lighting.init_ms", Metrics.Unit.NANOS);
+        metrics.gauge("lighting.queued", tasks::size);
+        worker = new Thread(this::run, "lighting");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Computes the light of a chunk that is not yet published from its own
+     * blocks, the chunk above it and the generator's surface height. Runs on
+     * the calling thread.
+     */
+    public void initialize(Chunk chunk, int cx, int cy, int cz) {
+        long start = System.nanoTime();
+        Chunk above = world.getChunkIfLoaded(cx, cy + 1, cz);
+        int top = (cy + 1) * Chunk.SIZE;
+        boolean[] open = new boolean[Chunk.SIZE * Chunk.SIZE];
+        boolean allOpen = true;
+        for (int x = 0; x < Chunk.SIZE; x++) {
+            for (int z = 0; z < Chunk.SIZE; z++) {
+                boolean sky;
+                if (above != null) {
+                    sky = above.getSkyLight(x, 0, z) == MAX_LIGHT && above.getBlock(x, 0, z).isTransparent();
+                } else {
+                    sky = generator == null
+                            || top > generator.surfaceHeight(cx * Chunk.SIZE + x, cz * Chunk.SIZE + z);
+                }
+                open[x * Chunk.SIZE + z] = sky;
+                allOpen &= sky;
+            }
+        }
+        if (chunk.isEmpty() && allOpen) {
+            // open air: everything is in full sky light and there is nothing to spread
+            chunk.fillSkyLight(MAX_LIGHT);
+            initTime.record(System.nanoTime() - start);
+            return;
+        }
+
+        IntQueue sky = new IntQueue();
+        IntQueue block = new IntQueue();
+        for (int x = 0; x < Chunk.SIZE; x++) {
+            for (int z = 0; z < Chunk.SIZE; z++) {
+                if (!open[x * Chunk.SIZE + z]) {
+                    continue;
+                }
+                for (int y = Chunk.SIZE - 1; y >= 0 && chunk.getBlock(x, y, z).isTransparent(); y--) {
+                    chunk.setSkyLight(x, y, z, MAX_LIGHT);
+                    sky.push(Chunk.blockIndex(x, y, z));
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            for (int x = 0; x < Chunk.SIZE; x++) {
+                for (int y = 0; y < Chunk.SIZE; y++) {
+                    for (int z = 0; z < Chunk.SIZE; z++) {
+                        int emission = chunk.getBlock(x, y, z).getLightEmission();
+                        if (emission > 0) {
+                            chunk.setBlockLight(x, y, z, emission);
+                            block.push(Chunk.blockIndex(x, y, z));
+                        }
+                    }
+                }
+            }
+        }
+        spreadWithin(chunk, sky, true);
+        spreadWithin(chunk, block, false);
+        initTime.record(System.nanoTime() - start);
+    }
+
+    /** Flood fills light from the queued blocks without leaving the chunk. */
+    private static void spreadWithin(Chunk chunk, IntQueue queue, boolean sky) {
+        while (!queue.isEmpty()) {
+            int index = queue.pop();
+            int x = index / (Chunk.SIZE * Chunk.SIZE);
+            int y = (index / Chunk.SIZE) % Chunk.SIZE;
+            int z = index % Chunk.SIZE;
+            int level = sky ? chunk.getSkyLight(x, y, z) : chunk.getBlockLight(x, y, z);
+            for (int d = 0; d < DIRS.length; d++) {
+                int nx = x + DIRS[d][0];
+                int ny = y + DIRS[d][1];
+                int nz = z + DIRS[d][2];
+                if (nx < 0 || ny < 0 || nz < 0 || nx >= Chunk.SIZE || ny >= Chunk.SIZE || nz >= Chunk.SIZE
+                        || !chunk.getBlock(nx, ny, nz).isTransparent()) {
+                    continue;
+                }
+                int next = spread(level, d, sky);
+                if (sky ? chunk.getSkyLight(nx, ny, nz) < next : chunk.getBlockLight(nx, ny, nz) < next) {
+                    if (sky) {
+                        chunk.setSkyLight(nx, ny, nz, next);
+                    } else {
+                        chunk.setBlockLight(nx, ny, nz, next);
+                    }
+                    queue.push(Chunk.blockIndex(nx, ny, nz));
+                }
+            }
+        }
+    }
+
+    /** Level reaching a neighbour in direction {@code d} from a block lit at {@code level}. */
+    private static int spread(int level, int d, boolean sky) {
+        return sky && d == DOWN && level == MAX_LIGHT ? MAX_LIGHT : level - 1;
+    }
+
+    /** Queues light to flow across the borders of a chunk that was just published. */
+    public void chunkLoaded(int cx, int cy, int cz) {
+        submit(new Task(true, cx, cy, cz));
+    }
+
+    /** Queues the light around an edited block to be updated. */
+    public void blockChanged(int x, int y, int z) {
+        submit(new Task(false, x, y, z));
+    }
+
+    private void submit(Task task) {
+        synchronized (this) {
+            outstanding++;
+        }
+        tasks.add(task);
+    }
+
+    /** Waits until every queued task has been processed. */
+    public synchronized void awaitIdle() throws InterruptedException {
+        while (outstanding > 0) {
+            wait();
+        }
+    }
+
+    /** Stops the lighting thread; queued work is dropped. */
+    public void shutdown() {
+        worker.interrupt();
+    }
+
+    private void run() {
+        List<Task> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(tasks.take());
+                tasks.drainTo(batch, MAX_BATCH - 1);
+                try {
+                    process(batch);
+                } catch (RuntimeException e) {
+                    System.err.println("Failed to update lighting: " + e);
+                }
+                synchronized (this) {
+                    outstanding -= batch.size();
+                    notifyAll();
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // shutting down
+        }
+    }
+
+    private void process(List<Task> batch) {
+        long start = System.nanoTime();
+        cacheValid = false;
+        for (int channel = 0; channel < 2; channel++) {
+            boolean sky = channel == 0;
+            for (Task task : batch) {
+                if (task.chunkLoaded()) {
+                    if (sky) {
+                        seedColumnRemovals(task.x(), task.y(), task.z());
+                    }
+                } else {
+                    seedRemoval(task.x(), task.y(), task.z(), sky);
+                }
+            }
+            unspread(sky);
+            for (Task task : batch) {
+                if (task.chunkLoaded()) {
+                    seedBorders(task.x(), task.y(), task.z(), sky);
+                } else {
+                    seedAddition(task.x(), task.y(), task.z(), sky);
+                }
+            }
+            spread(sky);
+        }
+        for (Task task : batch) {
+            (task.chunkLoaded() ? chunkUpdates : updates).increment();
+        }
+        for (ChunkPos pos : touched) {
+            Chunk chunk = world.getChunkIfLoaded(pos.x(), pos.y(), pos.z());
+            if (chunk != null) {
+                chunk.markDirty();
+            }
+        }
+        touched.clear();
+        batchTime.record(System.nanoTime() - start);
+    }
+
+    /** Clears the old light of an edited block if the new block blocks or gives off less of it. */
+    private void seedRemoval(int x, int y, int z, boolean sky) {
+        BlockType block = blockAt(x, y, z);
+        if (block == null) {
+            return;
+        }
+        int old = light(x, y, z, sky);
+        int kept = sky ? 0 : block.getLightEmission();
+        if (old > kept && (!sky || !block.isTransparent())) {
+            setLight(x, y, z, sky, 0);
+            removeQueue.push(x, y, z, old);
+            if (kept > 0) {
+                relight.push(x, y, z);
+            }
+        }
+    }
+
+    /** Lights a new light source and lets surrounding light flow into a block that no longer blocks it. */
+    private void seedAddition(int x, int y, int z, boolean sky) {
+        BlockType block = blockAt(x, y, z);
+        if (block == null) {
+            return;
+        }
+        if (!sky && block.getLightEmission() > light(x, y, z, false)) {
+            setLight(x, y, z, false, block.getLightEmission());
+            addQueue.push(x, y, z);
+        }
+        if (block.isTransparent()) {
+            for (int[] d : DIRS) {
+                if (light(x + d[0], y + d[1], z + d[2], sky) > 0) {
+                    addQueue.push(x + d[0], y + d[1], z + d[2]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes full sky light from the top of columns under the new chunk, or
+     * from the top of its own columns, where it was assumed while the chunk
+     * above was not loaded but is now known to be blocked.
+     */
+    private void seedColumnRemovals(int cx, int cy, int cz) {
+        if (world.getChunkIfLoaded(cx, cy, cz) == null) {
+            return;
+        }
+        int bottom = cy * Chunk.SIZE;
+        for (int x = cx * Chunk.SIZE; x < (cx + 1) * Chunk.SIZE; x++) {
+            for (int z = cz * Chunk.SIZE; z < (cz + 1) * Chunk.SIZE; z++) {
+                checkColumn(x, bottom + Chunk.SIZE - 1, z);
+                checkColumn(x, bottom - 1, z);
+            }
+        }
+    }
+
+    /** Removes full sky light from a block whose block above does not pass it down. */
+    private void checkColumn(int x, int y, int z) {
+        if (light(x, y, z, true) != MAX_LIGHT) {
+            return;
+        }
+        BlockType above = blockAt(x, y + 1, z);
+        if (above != null && (!above.isTransparent() || light(x, y + 1, z, true) != MAX_LIGHT)) {
+            setLight(x, y, z, true, 0);
+            removeQueue.push(x, y, z, MAX_LIGHT);
+        }
+    }
+
+    /** Queues the lit blocks on both sides of every face of a new chunk so light flows across. */
+    private void seedBorders(int cx, int cy, int cz, boolean sky) {
+        if (world.getChunkIfLoaded(cx, cy, cz) == null) {
+            return;
+        }
+        int x0 = cx * Chunk.SIZE;
+        int y0 = cy * Chunk.SIZE;
+        int z0 = cz * Chunk.SIZE;
+        int last = Chunk.SIZE - 1;
+        for (int a = 0; a < Chunk.SIZE; a++) {
+            for (int b = 0; b < Chunk.SIZE; b++) {
+                seedPair(x0, y0 + a, z0 + b, -1, 0, 0, sky);
+                seedPair(x0 + last, y0 + a, z0 + b, 1, 0, 0, sky);
+                seedPair(x0 + a, y0, z0 + b, 0, -1, 0, sky);
+                seedPair(x0 + a, y0 + last, z0 + b, 0, 1, 0, sky);
+                seedPair(x0 + a, y0 + b, z0, 0, 0, -1, sky);
+                seedPair(x0 + a, y0 + b, z0 + last, 0, 0, 1, sky);
+            }
+        }
+    }
+
+    private void seedPair(int x, int y, int z, int dx, int dy, int dz, boolean sky) {
+        if (light(x, y, z, sky) > 1) {
+            addQueue.push(x, y, z);
+        }
+        if (light(x + dx, y + dy, z + dz, sky) > 1) {
+            addQueue.push(x + dx, y + dy, z + dz);
+        }
+    }
+
+    /**
+     * Takes the queued light away from every block that got its light
+     * through the removed blocks, queueing blocks lit from elsewhere to
+     * spread back into the gap.
+     */
+    private void unspread(boolean sky) {
+        while (!removeQueue.isEmpty()) {
+            int x = removeQueue.pop();
+            int y = removeQueue.pop();
+            int z = removeQueue.pop();
+            int level = removeQueue.pop();
+            for (int d = 0; d < DIRS.length; d++) {
+                int nx = x + DIRS[d][0];
+                int ny = y + DIRS[d][1];
+                int nz = z + DIRS[d][2];
+                int neighbour = light(nx, ny, nz, sky);
+                if (neighbour <= 0) {
+                    continue;
+                }
+                if (neighbour < level || sky && d == DOWN && level == MAX_LIGHT && neighbour == MAX_LIGHT) {
+                    setLight(nx, ny, nz, sky, 0);
+                    removeQueue.push(nx, ny, nz, neighbour);
+                    if (!sky && blockAt(nx, ny, nz).getLightEmission() > 0) {
+                        relight.push(nx, ny, nz);
+                    }
+                } else {
+                    addQueue.push(nx, ny, nz);
+                }
+            }
+        }
+        while (!relight.isEmpty()) {
+            int x = relight.pop();
+            int y = relight.pop();
+            int z = relight.pop();
+            int emission = blockAt(x, y, z).getLightEmission();
+            if (light(x, y, z, false) < emission) {
+                setLight(x, y, z, false, emission);
+            }
+            addQueue.push(x, y, z);
+        }
+    }
+
+    /** Flood fills light outwards from the queued blocks into loaded chunks. */
+    private void spread(boolean sky) {
+        while (!addQueue.isEmpty()) {
+            int x = addQueue.pop();
+            int y = addQueue.pop();
+            int z = addQueue.pop();
+            int level = light(x, y, z, sky);
+            if (level <= 1) {
+                continue;
+            }
+            for (int d = 0; d < DIRS.length; d++) {
+                int nx = x + DIRS[d][0];
+                int ny = y + DIRS[d][1];
+                int nz = z + DIRS[d][2];
+                BlockType block = blockAt(nx, ny, nz);
+                if (block == null || !block.isTransparent()) {
+                    continue;
+                }
+                int next = spread(level, d, sky);
+                if (light(nx, ny, nz, sky) < next) {
+                    setLight(nx, ny, nz, sky, next);
+                    addQueue.push(nx, ny, nz);
+                }
+            }
+        }
+    }
+
+    /** Looks up the chunk holding a block, remembering the last one since neighbours share it. */
+    private Chunk chunkAt(int x, int y, int z) {
+        int cx = Math.floorDiv(x, Chunk.SIZE);
+        int cy = Math.floorDiv(y, Chunk.SIZE);
+        int cz = Math.floorDiv(z, Chunk.SIZE);
+        if (!cacheValid || cx != cachedX || cy != cachedY || cz != cachedZ) {
+            cachedChunk = world.getChunkIfLoaded(cx, cy, cz);
+            cachedX = cx;
+            cachedY = cy;
+            cachedZ = cz;
+            cacheValid = true;
+        }
+        return cachedChunk;
+    }
+
+    private BlockType blockAt(int x, int y, int z) {
+        Chunk chunk = chunkAt(x, y, z);
+        return chunk == null ? null : chunk.getBlock(Math.floorMod(x, Chunk.SIZE), Math.floorMod(y, Chunk.SIZE),
+                Math.floorMod(z, Chunk.SIZE));
+    }
+
+    /** Light level at a block, or -1 if its chunk is not loaded. */
+    private int light(int x, int y, int z, boolean sky) {
+        Chunk chunk = chunkAt(x, y, z);
+        if (chunk == null) {
+            return -1;
+        }
+        int lx = Math.floorMod(x, Chunk.SIZE);
+        int ly = Math.floorMod(y, Chunk.SIZE);
+        int lz = Math.floorMod(z, Chunk.SIZE);
+        return sky ? chunk.getSkyLight(lx, ly, lz) : chunk.getBlockLight(lx, ly, lz);
+    }
+
+    /** Sets the light at a block in a loaded chunk and remembers which meshes show it. */
+    private void setLight(int x, int y, int z, boolean sky, int level) {
+        Chunk chunk = chunkAt(x, y, z);
+        if (chunk == null) {
+            return;
+        }
+        int lx = Math.floorMod(x, Chunk.SIZE);
+        int ly = Math.floorMod(y, Chunk.SIZE);
+        int lz = Math.floorMod(z, Chunk.SIZE);
+        if (sky) {
+            chunk.setSkyLight(lx, ly, lz, level);
+        } else {
+            chunk.setBlockLight(lx, ly, lz, level);
+        }
+        cellsChanged.increment();
+        touched.add(new ChunkPos(cachedX, cachedY, cachedZ));
+        // faces of the neighbouring chunk that look into this block are lit by it as well
+        if (lx == 0 || lx == Chunk.SIZE - 1 || ly == 0 || ly == Chunk.SIZE - 1 || lz == 0 || lz == Chunk.SIZE - 1) {
+            int cx = cachedX;
+            int cy = cachedY;
+            int cz = cachedZ;
+            if (lx == 0) {
+                touched.add(new ChunkPos(cx - 1, cy, cz));
+            } else if (lx == Chunk.SIZE - 1) {
+                touched.add(new ChunkPos(cx + 1, cy, cz));
+            }
+            if (ly == 0) {
+                touched.add(new ChunkPos(cx, cy - 1, cz));
+            } else if (ly == Chunk.SIZE - 1) {
+                touched.add(new ChunkPos(cx, cy + 1, cz));
+            }
+            if (lz == 0) {
+                touched.add(new ChunkPos(cx, cy, cz - 1));
+            } else if (lz == Chunk.SIZE - 1) {
+                touched.add(new ChunkPos(cx, cy, cz + 1));
+            }
+        }
+    }
+
+    /** A growable first-in first-out queue of ints. */
+    private static final class IntQueue {
+        private int[] data = new int[1024];
+        private int head;
+        private int size;
+
+        void push(int value) {
+            if (size == data.length) {
+                int[] grown = new int[data.length * 2];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = data[(head + i) % data.length];
+                }
+                data = grown;
+                head = 0;
+            }
+            data[(head + size) % data.length] = value;
+            size++;
+        }
+
+        void push(int x, int y, int z) {
+            push(x);
+            push(y);
+            push(z);
+        }
+
+        void push(int x, int y, int z, int level) {
+            push(x);
+            push(y);
+            push(z);
+            push(level);
+        }
+
+        int pop() {
+            int value = data[head];
+            head = (head + 1) % data.length;
+            size--;
+            return value;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.minecraftclone;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Sub-allocates ranges of vertices from a few large fixed-size pages, so
+ * many chunk meshes can share one GPU buffer. Free ranges are indexed both
+ * by size across all pages, so allocation takes the smallest free range that
+ * fits without scanning, and by offset within their page, so freeing can
+ * merge a range with its free neighbours. Pages that
+ * become empty are released, keeping at least one.
+ * <p>
+ * Holes left by freed meshes are removed by {@link #defragment(Page)}, which
+ * packs a page's live ranges to its start and returns where each one went,
+ * so the owner of the storage can copy the data. The allocator only does
+ * bookkeeping and never touches OpenGL. Not thread-safe.
+ */
+public class MeshAllocator {
+    private final int pageCapacity;
+    private final List<Page> pages = new ArrayList<>();
+    /** Every free range of every page, smallest first. */
+    private final TreeSet<FreeRange> bySize = new TreeSet<>(Comparator.comparingInt(FreeRange::size)
+            .thenComparingInt(FreeRange::pageId)
+            .thenComparingInt(FreeRange::offset));
+    private int nextPageId;
+    private long pagesAdded;
+    private long pagesReleased;
+    private long defragmentations;
+    private long movedVertices;
+
+    /** A fixed-size block of storage that ranges are carved from. */
+    public static final class Page {
+        private final int id;
+        /** Free ranges as offset to size, ordered by offset. */
+        private final TreeMap<Integer, Integer> free = new TreeMap<>();
+        /** Live ranges ordered by offset. */
+        private final TreeMap<Integer, Allocation> live = new TreeMap<>();
+        private int used;
+        /** Opaque handle for whoever owns the page's storage, such as a GL buffer name. */
+        private int handle;
+
+        private Page(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public int getHandle() {
+            return handle;
+        }
+
+        public void setHandle(int handle) {
+            this.handle = handle;
+        }
+
+        /** Vertices in live ranges. */
+        public int getUsed() {
+            return used;
+        }
+
+        /** Size of the largest free range. */
+        public int getLargestFree() {
+            int largest = 0;
+            for (int size : free.values()) {
+                largest = Math.max(largest, size);
+            }
+            return largest;
+        }
+
+        /**
+         * Share of the free space that is not part of the largest free range,
+         * from 0 when all free space is contiguous to nearly 1 when it is
+         * scattered over many small holes.
+         */
+        public double getFragmentation(int capacity) {
+            int totalFree = capacity - used;
+            return totalFree == 0 ? 0 : 1.0 - (double) getLargestFree() / totalFree;
+        }
+    }
+
+    /** A range of vertices within a page. Its offset changes when the page is defragmented. */
+    public static final class Allocation {
+        private final int size;
+        private final Page page;
+        private int offset;
+        private boolean freed;
+
+        private Allocation(Page page, int offset, int size) {
+            this.page = page;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        public Page getPage() {
+            return page;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getSize() {
+            return size;
+        }
+    }
+
+    private record FreeRange(int size, int pageId, int offset, Page page) { }
+
+    /** Where {@link #defragment(Page)} moved a live range of {@code size} vertices. */
+    public record Move(int from, int to, int size) { }
+
+    /** Creates an allocator whose pages each hold {@code pageCapacity} vertices. */
+    public MeshAllocator(int pageCapacity) {
+        if (pageCapacity <= 0) {
+            throw new IllegalArgumentException("Page capacity must be positive: " + pageCapacity);
+        }
+        this.pageCapacity = pageCapacity;
+    }
+
+    /**
+     * Allocates {@code size} vertices, adding a page if none has a free range
+     * large enough. Throws {@link IllegalArgumentException} if the size is not
+     * positive or exceeds the page capacity.
+     */
+    public Allocation allocate(int size) {
+        if (size <= 0 || size > pageCapacity) {
+            throw new IllegalArgumentException("Cannot allocate " + size + " vertices from pages of " + pageCapacity);
+        }
+        FreeRange range = bySize.ceiling(new FreeRange(size, Integer.MIN_VALUE, Integer.MIN_VALUE, null));
+        if (range == null) {
+            Page page = new Page(nextPageId++);
+            pages.add(page);
+            pagesAdded++;
+            addFree(page, 0, pageCapacity);
+            range = bySize.ceiling(new FreeRange(size, Integer.MIN_VALUE, Integer.MIN_VALUE, null));
+        }
+        Page bestPage = range.page();
+        int bestOffset = range.offset();
+        removeFree(bestPage, bestOffset, range.size());
+        if (range.size() > size) {
+            addFree(bestPage, bestOffset + size, range.size() - size);
+        }
+        Allocation allocation = new Allocation(bestPage, bestOffset, size);
+        bestPage.live.put(bestOffset, allocation);
+        bestPage.used += size;
+        return allocation;
+    }
+
+    /**
+     * Returns the allocation's range to its page, merging it with adjacent
+     * free ranges. Returns the page if it became empty and was released, in
+     * which case its storage should be freed too; otherwise {@code null}.
+     * Freeing an allocation twice does nothing.
+     */
+    public Page free(Allocation allocation) {
+        if (allocation.freed) {
+            return null;
+        }
+        allocation.freed = true;
+        Page page = allocation.page;
+        page.live.remove(allocation.offset);
+        page.used -= allocation.size;
+        int offset = allocation.offset;
+        int size = allocation.size;
+        Map.Entry<Integer, Integer> before = page.free.floorEntry(offset);
+        if (before != null && before.getKey() + before.getValue() == offset) {
+            removeFree(page, before.getKey(), before.getValue());
+            offset = before.getKey();
+            size += before.getValue();
+        }
+        Integer after = page.free.get(offset + size);
+        if (after != null) {
+            removeFree(page, offset + size, after);
+            size += after;
+        }
+        addFree(page, offset, size);
+        if (page.used == 0 && pages.size() > 1) {
+            removeFree(page, offset, size);
+            pages.remove(page);
+            pagesReleased++;
+            return page;
+        }
+        return null;
+    }
+
+    /**
+     * Packs the page's live ranges to its start in offset order, leaving one
+     * free range at the end. Returns one move per live range, including those
+     * that stay in place, so the page can be rebuilt into fresh storage, or an
+     * empty list if the page was already packed.
+     */
+    public List<Move> defragment(Page page) {
+        if (page.free.size() <= 1 && (page.free.isEmpty() || page.free.lastKey() == page.used)) {
+            return Collections.emptyList();
+        }
+        List<Move> moves = new ArrayList<>();
+        TreeMap<Integer, Allocation> packed = new TreeMap<>();
+        int cursor = 0;
+        for (Allocation allocation : page.live.values()) {
+            moves.add(new Move(allocation.offset, cursor, allocation.size));
+            if (allocation.offset != cursor) {
+                movedVertices += allocation.size;
+                allocation.offset = cursor;
+            }
+            packed.put(cursor, allocation);
+            cursor += allocation.size;
+        }
+        page.live.clear();
+        page.live.putAll(packed);
+        for (Map.Entry<Integer, Integer> range : new ArrayList<>(page.free.entrySet())) {
+            removeFree(page, range.getKey(), range.getValue());
+        }
+        if (cursor < pageCapacity) {
+            addFree(page, cursor, pageCapacity - cursor);
+        }
+        defragmentations++;
+        return moves;
+    }
+
+    private void addFree(Page page, int offset, int size) {
+        page.free.put(offset, size);
+        bySize.add(new FreeRange(size, page.id, offset, page));
+    }
+
+    private void removeFree(Page page, int offset, int size) {
+        page.free.remove(offset);
+        bySize.remove(new FreeRange(size, page.id, offset, page));
+    }
+
+    /**
+     * Returns the page whose fragmentation is highest and above
+     * {@code threshold}, counting only pages with at least
+     * {@code minFreeShare} of their capacity free, or {@code null}.
+     */
+    public Page mostFragmented(double threshold, double minFreeShare) {
+        Page worst = null;
+        double worstFragmentation = threshold;
+        for (Page page : pages) {
+            if (pageCapacity - page.used < pageCapacity * minFreeShare) {
+                continue;
+            }
+            double fragmentation = page.getFragmentation(pageCapacity);
+            if (fragmentation > worstFragmentation) {
+                worst = page;
+                worstFragmentation = fragmentation;
+            }
+        }
+        return worst;
+    }
+
+    public List<Page> getPages() {
+        return Collections.unmodifiableList(pages);
+    }
+
+    public int getPageCapacity() {
+        return pageCapacity;
+    }
+
+    /** Vertices held by all pages together. */
+    public long getCapacity() {
+        return (long) pageCapacity * pages.size();
+    }
+
+    /** Vertices in live ranges across all pages. */
+    public long getUsed() {
+        long used = 0;
+        for (Page page : pages) {
+            used += page.used;
+        }
+        return used;
+    }
+
+    /** Number of free ranges across all pages. */
+    public int getFreeRangeCount() {
+        return bySize.size();
+    }
+
+    /**
+     * Share of all free space outside each page's largest free range, as in
+     * {@link Page#getFragmentation(int)} but over every page.
+     */
+    public double getFragmentation() {
+        long totalFree = 0;
+        long largest = 0;
+        for (Page page : pages) {
+            totalFree += pageCapacity - page.used;
+            largest += page.getLargestFree();
+        }
+        return totalFree == 0 ? 0 : 1.0 - (double) largest / totalFree;
+    }
+
+    public long getPagesAdded() {
+        return pagesAdded;
+    }
+
+    public long getPagesReleased() {
+        return pagesReleased;
+    }
+
+    public long getDefragmentations() {
+        return defragmentations;
+    }
+
+    /** Vertices copied by defragmentation since creation. */
+    public long getMovedVertices() {
+        return movedVertices;
+    }
+}
@@ -0,0 +1,212 @@
+package com.minecraftclone;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lwjgl.BufferUtils;
+
+/**
+ * Keeps chunk meshes in a few large vertex buffers, one per
+ * {@link MeshAllocator} page, instead of one buffer per mesh. Meshes queued
+ * during a frame are drawn with one multi-draw per page. Fragmented pages are
+ * compacted one at a time by copying their live ranges into a fresh buffer on
+ * the GPU. Buffers are created, filled and drawn through a {@link GpuBackend}.
+ * <p>
+ * Must only be used on the render thread, except for {@link #getSnapshot}.
+ */
+public class MeshArena {
+    /** Three position and three colour floats per vertex. */
+    private static final int VERTEX_BYTES = 24;
+    /** Pages are compacted once this share of their free space is outside the largest hole. */
+    private static final double DEFRAGMENT_THRESHOLD = 0.5;
+    /** Pages with less free space than this share of their capacity are left alone. */
+    private static final double DEFRAGMENT_MIN_FREE = 0.25;
+
+    private final GpuBackend backend;
+    private final MeshAllocator allocator;
+    private final Map<MeshAllocator.Page, Batch> batches = new IdentityHashMap<>();
+    private int drawCalls;
+    private int drawnMeshes;
+    private int frameDrawCalls;
+    private int frameDrawnMeshes;
+    private long skippedQuads;
+    private long frameSkippedVertices;
+    private long uploadedBytes;
+    private volatile Snapshot snapshot = new Snapshot(0, 0, 0, 0, 0);
+
+    /** The arena's figures as of the end of a frame, for readers on other threads. */
+    public record Snapshot(long usedBytes, long capacityBytes, double fragmentation, int drawCalls,
+            long uploadedBytes) { }
+
+    /** Draw ranges queued for one page this frame. */
+    private static final class Batch {
+        IntBuffer firsts = BufferUtils.createIntBuffer(256);
+        IntBuffer counts = BufferUtils.createIntBuffer(256);
+
+        void add(int first, int count) {
+            if (!firsts.hasRemaining()) {
+                firsts = grow(firsts);
+                counts = grow(counts);
+            }
+            firsts.put(first);
+            counts.put(count);
+        }
+
+        private static IntBuffer grow(IntBuffer buffer) {
+            IntBuffer larger = BufferUtils.createIntBuffer(buffer.capacity() * 2);
+            buffer.flip();
+            larger.put(buffer);
+            return larger;
+        }
+    }
+
+    /** Creates an arena whose buffers each hold {@code pageVertices} vertices. */
+    public MeshArena(GpuBackend backend, int pageVertices) {
+        this.backend = backend;
+        this.allocator = new MeshAllocator(pageVertices);
+    }
+
+    /**
+     * Copies the vertex data into the arena and returns its range, or
+     * {@code null} if the buffer is empty.
+     */
+    public MeshAllocator.Allocation upload(FloatBuffer buffer) {
+        int vertices = buffer.limit() / 6;
+        if (vertices == 0) {
+            return null;
+        }
+        MeshAllocator.Allocation allocation = allocator.allocate(vertices);
+        MeshAllocator.Page page = allocation.getPage();
+        if (page.getHandle() == 0) {
+            page.setHandle(backend.createBuffer((long) allocator.getPageCapacity() * VERTEX_BYTES));
+        }
+        backend.uploadBuffer(page.getHandle(), (long) allocation.getOffset() * VERTEX_BYTES, buffer);
+        uploadedBytes += (long) vertices * VERTEX_BYTES;
+        return allocation;
+    }
+
+    /** Returns the range to the arena, deleting its buffer if the page became empty. */
+    public void free(MeshAllocator.Allocation allocation) {
+        MeshAllocator.Page released = allocator.free(allocation);
+        if (released != null) {
+            batches.remove(released);
+            if (released.getHandle() != 0) {
+                backend.deleteBuffer(released.getHandle());
+            }
+        }
+    }
+
+    /** Adds {@code count} vertices of the range starting at {@code first} to this frame's draws. */
+    public void queue(MeshAllocator.Allocation allocation, int first, int count) {
+        if (count <= 0) {
+            return;
+        }
+        batches.computeIfAbsent(allocation.getPage(), p -> new Batch())
+                .add(allocation.getOffset() + first, count);
+    }
+
+    /** Records vertices left out of this frame's draws because they faced away from the eye. */
+    public void recordSkipped(int vertices) {
+        frameSkippedVertices += vertices;
+    }
+
+    /** Draws every queued range, binding each page's buffer once. */
+    public void drawQueued() {
+        for (Map.Entry<MeshAllocator.Page, Batch> entry : batches.entrySet()) {
+            Batch batch = entry.getValue();
+            if (batch.firsts.position() == 0) {
+                continue;
+            }
+            frameDrawnMeshes += batch.firsts.position();
+            frameDrawCalls++;
+            batch.firsts.flip();
+            batch.counts.flip();
+            backend.drawRanges(entry.getKey().getHandle(), batch.firsts, batch.counts);
+            batch.firsts.clear();
+            batch.counts.clear();
+        }
+    }
+
+    /**
+     * Ends the frame: records its draw counts, compacts the most fragmented
+     * page if one is fragmented enough and publishes a new
+     * {@link #getSnapshot snapshot}. Must not be called while draws are
+     * queued.
+     */
+    public void endFrame() {
+        drawCalls = frameDrawCalls;
+        drawnMeshes = frameDrawnMeshes;
+        skippedQuads = frameSkippedVertices / 4;
+        frameDrawCalls = 0;
+        frameDrawnMeshes = 0;
+        frameSkippedVertices = 0;
+        compactMostFragmented();
+        snapshot = new Snapshot(getUsedBytes(), getCapacityBytes(), allocator.getFragmentation(), drawCalls,
+                uploadedBytes);
+    }
+
+    private void compactMostFragmented() {
+        MeshAllocator.Page page = allocator.mostFragmented(DEFRAGMENT_THRESHOLD, DEFRAGMENT_MIN_FREE);
+        if (page == null) {
+            return;
+        }
+        List<MeshAllocator.Move> moves = allocator.defragment(page);
+        if (moves.isEmpty()) {
+            return;
+        }
+        int old = page.getHandle();
+        int vbo = backend.createBuffer((long) allocator.getPageCapacity() * VERTEX_BYTES);
+        for (MeshAllocator.Move move : moves) {
+            backend.copyBuffer(old, vbo, (long) move.from() * VERTEX_BYTES,
+                    (long) move.to() * VERTEX_BYTES, (long) move.size() * VERTEX_BYTES);
+        }
+        backend.deleteBuffer(old);
+        page.setHandle(vbo);
+    }
+
+    /** Bytes of vertex data in live ranges. */
+    public long getUsedBytes() {
+        return allocator.getUsed() * VERTEX_BYTES;
+    }
+
+    /** Bytes of GPU memory held by the arena's buffers. */
+    public long getCapacityBytes() {
+        return allocator.getCapacity() * VERTEX_BYTES;
+    }
+
+    /** Vertex bytes uploaded since creation, not counting compaction copies. */
+    public long getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    /** The figures published by the last {@link #endFrame}; safe to call from any thread. */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public GpuBackend getBackend() {
+        return backend;
+    }
+
+    public MeshAllocator getAllocator() {
+        return allocator;
+    }
+
+    /** Buffer binds with a multi-draw in the previous frame. */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    /** Ranges drawn in the previous frame; a mesh drawn in parts counts once per part. */
+    public int getDrawnMeshes() {
+        return drawnMeshes;
+    }
+
+    /** Quads left out of the previous frame because they faced away from the eye. */
+    public long getSkippedQuads() {
+        return skippedQuads;
+    }
+}
@@ -0,0 +1,140 @@
+package com.minecraftclone;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Named runtime metrics: counters, gauges read on demand and histograms.
+ * Names are dotted paths such as {@code world.chunks.generated}, with the
+ * unit as a suffix where there is one, e.g. {@code mesh.build_ms}.
+ * <p>
+ * Recording is cheap and lock-free, so hot paths can hold on to a counter or
+ * histogram and update it from any thread. Reading goes through
+ * {@link #snapshot()}, which flattens every metric into name and value
+ * pairs for the on-screen overlay, the periodic {@link MetricsReporter} and
+ * JMX.
+ */
+public class Metrics {
+    /** What a histogram's recorded values measure. */
+    public enum Unit {
+        /** Durations recorded in nanoseconds and reported in milliseconds. */
+        NANOS,
+        /** Plain quantities such as vertex counts. */
+        COUNT
+    }
+
+    /** A monotonically increasing count that many threads can add to without contention. */
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    private record Histogram(LatencyHistogram values, Unit unit) { }
+
+    /** Counters, gauges and histograms by name, sorted so related metrics are listed together. */
+    private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+
+    /** Returns the counter with the given name, creating it on first use. */
+    public Counter counter(String name) {
+        return (Counter) metrics.computeIfAbsent(name, n -> new Counter());
+    }
+
+    /** Returns the histogram with the given name, creating it on first use. */
+    public LatencyHistogram histogram(String name, Unit unit) {
+        return ((Histogram) metrics.computeIfAbsent(name, n -> new Histogram(new LatencyHistogram(), unit))).values();
+    }
+
+    /** Publishes an existing histogram, such as one kept by a subsystem for its own use. */
+    public void register(String name, LatencyHistogram histogram, Unit unit) {
+        metrics.put(name, new Histogram(histogram, unit));
+    }
+
+    /** Publishes a value that is read whenever the metrics are. */
+    public void gauge(String name, DoubleSupplier value) {
+        metrics.put(name, value);
+    }
+
+    /**
+     * Returns the current value of every metric in name order. Histograms
+     * contribute {@code .count}, {@code .p50}, {@code .p99} and {@code .max}
+     * entries, durations converted to milliseconds.
+     */
+    public Map<String, Double> snapshot() {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            String name = entry.getKey();
+            Object metric = entry.getValue();
+            if (metric instanceof Counter counter) {
+                values.put(name, (double) counter.get());
+            } else if (metric instanceof DoubleSupplier gauge) {
+                values.put(name, gauge.getAsDouble());
+            } else if (metric instanceof Histogram histogram) {
+                LatencyHistogram h = histogram.values();
+                double scale = histogram.unit() == Unit.NANOS ? 1e-6 : 1;
+                values.put(name + ".count", (double) h.getCount());
+                values.put(name + ".p50", h.getPercentile(0.50) * scale);
+                values.put(name + ".p99", h.getPercentile(0.99) * scale);
+                values.put(name + ".max", h.getMax() * scale);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns one line per metric for display, with each histogram's
+     * percentiles on a single line.
+     */
+    public List<String> lines() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            String name = entry.getKey();
+            Object metric = entry.getValue();
+            if (metric instanceof Counter counter) {
+                lines.add(name + " " + counter.get());
+            } else if (metric instanceof DoubleSupplier gauge) {
+                lines.add(name + " " + MetricsReporter.format(gauge.getAsDouble()));
+            } else if (metric instanceof Histogram histogram) {
+                LatencyHistogram h = histogram.values();
+                double scale = histogram.unit() == Unit.NANOS ? 1e-6 : 1;
+                lines.add(String.format(Locale.ROOT, "%s p50 %.3g p99 %.3g max %.3g n %d", name,
+                        h.getPercentile(0.50) * scale, h.getPercentile(0.99) * scale, h.getMax() * scale,
+                        h.getCount()));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Exposes the metrics as attributes of an MBean with the given name, such
+     * as {@code com.minecraftclone:type=Metrics}, so they can be watched from
+     * JConsole or VisualVM.
+     */
+    public void registerMBean(String objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), new ObjectName(objectName));
+        } catch (JMException e) {
+            System.err.println("Failed to register metrics MBean " + objectName + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.minecraftclone;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dumps a {@link Metrics} snapshot at a fixed interval on a background
+ * thread, either as one log line on standard output or appended to a CSV
+ * file with one {@code seconds,metric,value} row per metric, which stays
+ * valid as metrics are added while the game runs.
+ */
+public class MetricsReporter implements AutoCloseable {
+    private final Metrics metrics;
+    private final BufferedWriter csv;
+    private final ScheduledExecutorService executor;
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Starts dumping every {@code intervalSeconds} seconds to {@code csvFile},
+     * or to standard output if it is {@code null}. Throws
+     * {@link IOException} if the file cannot be created.
+     */
+    public MetricsReporter(Metrics metrics, Path csvFile, int intervalSeconds) throws IOException {
+        this.metrics = metrics;
+        if (csvFile != null) {
+            csv = Files.newBufferedWriter(csvFile);
+            csv.write("seconds,metric,value");
+            csv.newLine();
+        } else {
+            csv = null;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleAtFixedRate(this::dump, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes one snapshot. Failures are logged rather than thrown, since an
+     * exception would stop the executor from ever running the dump again.
+     */
+    private synchronized void dump() {
+        try {
+            write(metrics.snapshot());
+        } catch (IOException e) {
+            System.err.println("Failed to write metrics: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Failed to dump metrics: " + e);
+        }
+    }
+
+    private void write(Map<String, Double> snapshot) throws IOException {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        if (csv == null) {
+            StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "[metrics %.0fs]", seconds));
+            snapshot.forEach((name, value) -> line.append(' ').append(name).append('=').append(format(value)));
+            System.out.println(line);
+            return;
+        }
+        for (Map.Entry<String, Double> entry : snapshot.entrySet()) {
+            csv.write(String.format(Locale.ROOT, "%.1f,%s,%s", seconds, entry.getKey(), format(entry.getValue())));
+            csv.newLine();
+        }
+        csv.flush();
+    }
+
+    /** Formats whole numbers without a fraction and everything else with three decimals. */
+    static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /** Stops the reporter after writing a final dump. */
+    @Override
+    public synchronized void close() {
+        executor.shutdownNow();
+        dump();
+        if (csv != null) {
+            try {
+                csv.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close metrics file: " + e.getMessage());
+            }
+        }
+    }
+}
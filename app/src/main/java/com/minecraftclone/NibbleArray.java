@@ -0,0 +1,34 @@
+package com.minecraftclone;
+
+import java.util.Arrays;
+
+/**
+ * Values from 0 to 15 packed two to a byte, one per block of a chunk and
+ * indexed like {@link Chunk#blockIndex}. Writes are not atomic, so only one
+ * thread may write at a time; readers may run concurrently and see either
+ * value of a nibble being changed.
+ */
+public class NibbleArray {
+    private final byte[] data = new byte[Chunk.SIZE * Chunk.SIZE * Chunk.SIZE / 2];
+
+    public int get(int index) {
+        int b = data[index >> 1];
+        return (index & 1) == 0 ? b & 0xF : (b >> 4) & 0xF;
+    }
+
+    public void set(int index, int value) {
+        int i = index >> 1;
+        int b = data[i];
+        data[i] = (byte) ((index & 1) == 0 ? (b & 0xF0) | value : (b & 0x0F) | (value << 4));
+    }
+
+    /** Sets every value to {@code value}. */
+    public void fill(int value) {
+        Arrays.fill(data, (byte) (value | (value << 4)));
+    }
+
+    /** Bytes of heap held by one array, for memory estimates. */
+    static int estimatedBytes() {
+        return 16 + 16 + Chunk.SIZE * Chunk.SIZE * Chunk.SIZE / 2;
+    }
+}
@@ -0,0 +1,81 @@
+package com.minecraftclone;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * A GPU backend that keeps no data and only counts what would have been sent
+ * to the GPU, so the renderer's per-frame CPU work can be measured without a
+ * display. The thread that creates it plays the render thread.
+ */
+public class NullBackend implements GpuBackend {
+    private final Thread owner = Thread.currentThread();
+    private int nextBuffer = 1;
+    private int liveBuffers;
+    private long uploads;
+    private long uploadedBytes;
+    private long copiedBytes;
+    private long drawCalls;
+    private long drawnRanges;
+
+    @Override
+    public int createBuffer(long bytes) {
+        liveBuffers++;
+        return nextBuffer++;
+    }
+
+    @Override
+    public void uploadBuffer(int buffer, long offset, FloatBuffer data) {
+        uploads++;
+        uploadedBytes += (long) data.remaining() * Float.BYTES;
+    }
+
+    @Override
+    public void copyBuffer(int from, int to, long fromOffset, long toOffset, long bytes) {
+        copiedBytes += bytes;
+    }
+
+    @Override
+    public void deleteBuffer(int buffer) {
+        liveBuffers--;
+    }
+
+    @Override
+    public void drawRanges(int buffer, IntBuffer firsts, IntBuffer counts) {
+        drawCalls++;
+        drawnRanges += firsts.remaining();
+    }
+
+    @Override
+    public boolean isContextCurrent() {
+        return Thread.currentThread() == owner;
+    }
+
+    /** Buffers created and not yet deleted. */
+    public int getLiveBuffers() {
+        return liveBuffers;
+    }
+
+    /** Meshes uploaded since creation. */
+    public long getUploads() {
+        return uploads;
+    }
+
+    /** Vertex bytes that would have been uploaded since creation. */
+    public long getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    /** Bytes that would have been copied between buffers by compaction. */
+    public long getCopiedBytes() {
+        return copiedBytes;
+    }
+
+    public long getDrawCalls() {
+        return drawCalls;
+    }
+
+    public long getDrawnRanges() {
+        return drawnRanges;
+    }
+}
@@ -0,0 +1,298 @@
+package com.minecraftclone;
+
+import java.util.Arrays;
+
+/**
+ * Software occlusion culling on the CPU. Each frame the nearest chunks'
+ * fully solid faces are rasterised into a small depth buffer, a depth
+ * pyramid holding the farthest depth of each 2x2 block of the level below is
+ * built from it, and chunk boxes are tested against the pyramid before they
+ * are drawn.
+ * <p>
+ * Everything is kept conservative so a visible chunk is never rejected:
+ * occluders only cover pixels they cover completely, are written at the
+ * depth of their farthest corner, and any box crossing the near plane counts
+ * as visible. Depth is the clip-space w, which for a perspective projection
+ * is the distance along the view direction.
+ * <p>
+ * Uses no OpenGL, so it can be benchmarked headlessly. Not thread-safe.
+ */
+public class OcclusionCuller {
+    /** Points closer to the eye than this cannot be projected reliably. */
+    private static final float NEAR_W = 0.05f;
+
+    private final int width;
+    private final int height;
+    /** Depth pyramid; level 0 is the rasterised buffer at full resolution. */
+    private final float[][] levels;
+    private final int[] levelWidths;
+    private final int[] levelHeights;
+    private final float[] clip = new float[16];
+    /** Projected corners of the current occluder or box as x, y, w triples. */
+    private final float[] projected = new float[24];
+    /** Per-edge increments and row start values used while rasterising a quad. */
+    private final float[] stepX = new float[4];
+    private final float[] stepY = new float[4];
+    private final float[] rowStart = new float[4];
+
+    private int occluders;
+    private int tested;
+    private int culled;
+
+    /** Creates a culler rendering occluders at the given resolution, both powers of two. */
+    public OcclusionCuller(int width, int height) {
+        if (Integer.bitCount(width) != 1 || Integer.bitCount(height) != 1) {
+            throw new IllegalArgumentException("Occlusion buffer size must be a power of two: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        int count = Integer.numberOfTrailingZeros(Math.max(width, height)) + 1;
+        levels = new float[count][];
+        levelWidths = new int[count];
+        levelHeights = new int[count];
+        for (int i = 0; i < count; i++) {
+            levelWidths[i] = Math.max(1, width >> i);
+            levelHeights[i] = Math.max(1, height >> i);
+            levels[i] = new float[levelWidths[i] * levelHeights[i]];
+        }
+    }
+
+    /**
+     * Clears the depth buffer for a new frame seen through {@code viewProjection},
+     * a column-major matrix from world to clip space as OpenGL uses.
+     */
+    public void begin(float[] viewProjection) {
+        System.arraycopy(viewProjection, 0, clip, 0, 16);
+        Arrays.fill(levels[0], Float.MAX_VALUE);
+        occluders = 0;
+        tested = 0;
+        culled = 0;
+    }
+
+    /**
+     * Rasterises the faces of the chunk at the given block position that are
+     * completely solid and face the eye. Returns the number of faces drawn.
+     */
+    public int addSolidFaces(Chunk chunk, int baseX, int baseY, int baseZ) {
+        int drawn = 0;
+        float x1 = baseX;
+        float y1 = baseY;
+        float z1 = baseZ;
+        float x2 = baseX + Chunk.SIZE;
+        float y2 = baseY + Chunk.SIZE;
+        float z2 = baseZ + Chunk.SIZE;
+        for (int face = 0; face < 6; face++) {
+            if (!chunk.isFaceSolid(face)) {
+                continue;
+            }
+            boolean drawnFace = switch (face) {
+                case 0 -> addQuad(x2, y1, z1, x2, y2, z1, x2, y2, z2, x2, y1, z2);
+                case 1 -> addQuad(x1, y1, z1, x1, y1, z2, x1, y2, z2, x1, y2, z1);
+                case 2 -> addQuad(x1, y2, z1, x1, y2, z2, x2, y2, z2, x2, y2, z1);
+                case 3 -> addQuad(x1, y1, z1, x2, y1, z1, x2, y1, z2, x1, y1, z2);
+                case 4 -> addQuad(x1, y1, z2, x2, y1, z2, x2, y2, z2, x1, y2, z2);
+                default -> addQuad(x1, y1, z1, x1, y2, z1, x2, y2, z1, x2, y1, z1);
+            };
+            if (drawnFace) {
+                drawn++;
+            }
+        }
+        return drawn;
+    }
+
+    /**
+     * Rasterises an opaque planar convex quad whose corners are given
+     * counter-clockwise as seen from its front. Quads seen from behind or
+     * reaching behind the near plane are skipped. Returns whether the quad
+     * covered any pixel.
+     */
+    public boolean addQuad(float ax, float ay, float az, float bx, float by, float bz,
+            float cx, float cy, float cz, float dx, float dy, float dz) {
+        if (!project(0, ax, ay, az) || !project(1, bx, by, bz)
+                || !project(2, cx, cy, cz) || !project(3, dx, dy, dz)) {
+            return false;
+        }
+        float[] p = projected;
+        float area = 0;
+        float depth = 0;
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int j = (i + 1) & 3;
+            area += p[i * 3] * p[j * 3 + 1] - p[j * 3] * p[i * 3 + 1];
+            depth = Math.max(depth, p[i * 3 + 2]);
+            minX = Math.min(minX, p[i * 3]);
+            minY = Math.min(minY, p[i * 3 + 1]);
+            maxX = Math.max(maxX, p[i * 3]);
+            maxY = Math.max(maxY, p[i * 3 + 1]);
+        }
+        if (area < 1e-3f) {
+            return false;
+        }
+        int px0 = Math.max(0, (int) Math.floor(minX));
+        int py0 = Math.max(0, (int) Math.floor(minY));
+        int px1 = Math.min(width - 1, (int) Math.ceil(maxX) - 1);
+        int py1 = Math.min(height - 1, (int) Math.ceil(maxY) - 1);
+        if (px0 > px1 || py0 > py1) {
+            return false;
+        }
+        // edge functions evaluated at the pixel corner furthest outside, so only fully covered pixels pass
+        for (int i = 0; i < 4; i++) {
+            int j = (i + 1) & 3;
+            float ex = p[j * 3] - p[i * 3];
+            float ey = p[j * 3 + 1] - p[i * 3 + 1];
+            stepX[i] = -ey;
+            stepY[i] = ex;
+            float centreX = px0 + 0.5f;
+            float centreY = py0 + 0.5f;
+            rowStart[i] = ex * (centreY - p[i * 3 + 1]) - ey * (centreX - p[i * 3])
+                    - 0.5f * (Math.abs(ex) + Math.abs(ey));
+        }
+        float[] depths = levels[0];
+        boolean covered = false;
+        for (int y = py0; y <= py1; y++) {
+            float e0 = rowStart[0];
+            float e1 = rowStart[1];
+            float e2 = rowStart[2];
+            float e3 = rowStart[3];
+            int row = y * width;
+            for (int x = px0; x <= px1; x++) {
+                if (e0 >= 0 && e1 >= 0 && e2 >= 0 && e3 >= 0) {
+                    int index = row + x;
+                    if (depth < depths[index]) {
+                        depths[index] = depth;
+                    }
+                    covered = true;
+                }
+                e0 += stepX[0];
+                e1 += stepX[1];
+                e2 += stepX[2];
+                e3 += stepX[3];
+            }
+            for (int i = 0; i < 4; i++) {
+                rowStart[i] += stepY[i];
+            }
+        }
+        if (covered) {
+            occluders++;
+        }
+        return covered;
+    }
+
+    /** Builds the depth pyramid once every occluder of the frame was added. */
+    public void finish() {
+        for (int level = 1; level < levels.length; level++) {
+            float[] src = levels[level - 1];
+            float[] dst = levels[level];
+            int srcWidth = levelWidths[level - 1];
+            int srcHeight = levelHeights[level - 1];
+            int dstWidth = levelWidths[level];
+            int dstHeight = levelHeights[level];
+            for (int y = 0; y < dstHeight; y++) {
+                int y0 = Math.min(y * 2, srcHeight - 1) * srcWidth;
+                int y1 = Math.min(y * 2 + 1, srcHeight - 1) * srcWidth;
+                for (int x = 0; x < dstWidth; x++) {
+                    int x0 = Math.min(x * 2, srcWidth - 1);
+                    int x1 = Math.min(x * 2 + 1, srcWidth - 1);
+                    dst[y * dstWidth + x] = Math.max(Math.max(src[y0 + x0], src[y0 + x1]),
+                            Math.max(src[y1 + x0], src[y1 + x1]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns {@code false} if the box is certainly hidden behind the
+     * occluders drawn this frame. Must be called after {@link #finish()}.
+     */
+    public boolean isVisible(float x1, float y1, float z1, float x2, float y2, float z2) {
+        tested++;
+        if (!project(0, x1, y1, z1) || !project(1, x2, y1, z1) || !project(2, x1, y2, z1)
+                || !project(3, x2, y2, z1) || !project(4, x1, y1, z2) || !project(5, x2, y1, z2)
+                || !project(6, x1, y2, z2) || !project(7, x2, y2, z2)) {
+            return true;
+        }
+        float[] p = projected;
+        float nearest = Float.MAX_VALUE;
+        float minX = Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE;
+        float maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < 8; i++) {
+            minX = Math.min(minX, p[i * 3]);
+            minY = Math.min(minY, p[i * 3 + 1]);
+            maxX = Math.max(maxX, p[i * 3]);
+            maxY = Math.max(maxY, p[i * 3 + 1]);
+            nearest = Math.min(nearest, p[i * 3 + 2]);
+        }
+        int px0 = Math.max(0, (int) Math.floor(minX));
+        int py0 = Math.max(0, (int) Math.floor(minY));
+        int px1 = Math.min(width - 1, (int) Math.floor(maxX));
+        int py1 = Math.min(height - 1, (int) Math.floor(maxY));
+        if (px0 > px1 || py0 > py1) {
+            return true;
+        }
+        // pick the level at which the box spans at most a few texels per axis
+        int size = Math.max(px1 - px0, py1 - py0) + 1;
+        int level = Math.min(levels.length - 1, Math.max(0, 31 - Integer.numberOfLeadingZeros(size - 1)));
+        float[] depths = levels[level];
+        int levelWidth = levelWidths[level];
+        int levelHeight = levelHeights[level];
+        int tx0 = Math.min(px0 >> level, levelWidth - 1);
+        int tx1 = Math.min(px1 >> level, levelWidth - 1);
+        int ty0 = Math.min(py0 >> level, levelHeight - 1);
+        int ty1 = Math.min(py1 >> level, levelHeight - 1);
+        for (int y = ty0; y <= ty1; y++) {
+            for (int x = tx0; x <= tx1; x++) {
+                if (depths[y * levelWidth + x] >= nearest) {
+                    return true;
+                }
+            }
+        }
+        culled++;
+        return false;
+    }
+
+    /**
+     * Projects a point into corner slot {@code slot} as screen pixels and
+     * clip w. Returns {@code false} if it lies too close to or behind the eye.
+     */
+    private boolean project(int slot, float x, float y, float z) {
+        float[] m = clip;
+        float w = m[3] * x + m[7] * y + m[11] * z + m[15];
+        if (w < NEAR_W) {
+            return false;
+        }
+        float cx = m[0] * x + m[4] * y + m[8] * z + m[12];
+        float cy = m[1] * x + m[5] * y + m[9] * z + m[13];
+        projected[slot * 3] = (cx / w * 0.5f + 0.5f) * width;
+        projected[slot * 3 + 1] = (cy / w * 0.5f + 0.5f) * height;
+        projected[slot * 3 + 2] = w;
+        return true;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** Occluders that covered at least one pixel this frame. */
+    public int getOccluderCount() {
+        return occluders;
+    }
+
+    /** Boxes tested this frame. */
+    public int getTestedCount() {
+        return tested;
+    }
+
+    /** Boxes found hidden this frame. */
+    public int getCulledCount() {
+        return culled;
+    }
+}
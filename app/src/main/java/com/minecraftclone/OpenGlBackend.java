@@ -0,0 +1,71 @@
+package com.minecraftclone;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL14.glMultiDrawArrays;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL31.GL_COPY_READ_BUFFER;
+import static org.lwjgl.opengl.GL31.GL_COPY_WRITE_BUFFER;
+import static org.lwjgl.opengl.GL31.glCopyBufferSubData;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.lwjgl.glfw.GLFW;
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * Stores meshes in OpenGL vertex buffers holding three position and three
+ * colour floats per vertex, drawn with {@code glMultiDrawArrays}. Must only
+ * be used on the thread owning the GL context.
+ */
+public class OpenGlBackend implements GpuBackend {
+    private static final int VERTEX_BYTES = 24;
+
+    @Override
+    public int createBuffer(long bytes) {
+        int vbo = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        glBufferData(GL_ARRAY_BUFFER, bytes, GL_STATIC_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        return vbo;
+    }
+
+    @Override
+    public void uploadBuffer(int buffer, long offset, FloatBuffer data) {
+        glBindBuffer(GL_ARRAY_BUFFER, buffer);
+        glBufferSubData(GL_ARRAY_BUFFER, offset, data);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    @Override
+    public void copyBuffer(int from, int to, long fromOffset, long toOffset, long bytes) {
+        glBindBuffer(GL_COPY_READ_BUFFER, from);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, to);
+        glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, fromOffset, toOffset, bytes);
+        glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+    }
+
+    @Override
+    public void deleteBuffer(int buffer) {
+        glDeleteBuffers(buffer);
+    }
+
+    @Override
+    public void drawRanges(int buffer, IntBuffer firsts, IntBuffer counts) {
+        glEnableClientState(GL_VERTEX_ARRAY);
+        glEnableClientState(GL_COLOR_ARRAY);
+        glBindBuffer(GL_ARRAY_BUFFER, buffer);
+        glVertexPointer(3, GL_FLOAT, VERTEX_BYTES, 0);
+        glColorPointer(3, GL_FLOAT, VERTEX_BYTES, 12);
+        glMultiDrawArrays(GL_QUADS, firsts, counts);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glDisableClientState(GL_COLOR_ARRAY);
+        glDisableClientState(GL_VERTEX_ARRAY);
+    }
+
+    @Override
+    public boolean isContextCurrent() {
+        return GLFW.glfwGetCurrentContext() != MemoryUtil.NULL;
+    }
+}
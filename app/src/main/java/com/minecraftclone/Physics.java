@@ -0,0 +1,192 @@
+package com.minecraftclone;
+
+/**
+ * Moves {@link PhysicsBody} boxes through the world on a fixed timestep,
+ * stopping them at solid blocks. Each tick applies gravity, then sweeps the
+ * box along Y, X and Z in turn, cutting each axis's movement short at the
+ * first solid block layer it would enter. A body on the ground that is
+ * blocked sideways also tries the move raised by its step height and keeps
+ * whichever attempt got further, so it walks up low ledges.
+ * <p>
+ * Only the blocks the swept box touches are looked up, through a small
+ * cache of the chunks they lie in that is cleared every tick, and nothing
+ * is allocated while stepping. Chunks that are not loaded count as solid so
+ * bodies wait at the edge of the loaded world instead of falling through
+ * it. Air and water are passable. An instance keeps scratch state and must
+ * only be used by one thread.
+ */
+public class Physics {
+    /** Length of one tick in seconds. */
+    public static final double TICK_SECONDS = 1.0 / 60;
+    /** Downward acceleration in blocks per second squared. */
+    public static final double GRAVITY = 32;
+    /** Fastest a body falls, in blocks per second. */
+    public static final double TERMINAL_VELOCITY = 78;
+    /** Keeps boxes resting exactly on a block boundary from counting as inside the block. */
+    private static final double EPSILON = 1e-7;
+    /** Chunks remembered per tick; a small box moving a fraction of a block per tick touches at most eight. */
+    private static final int CACHE_SIZE = 8;
+
+    private final World world;
+    /** Lower and upper corner of the box being swept, indexed by axis. */
+    private final double[] min = new double[3];
+    private final double[] max = new double[3];
+    private final int[] cell = new int[3];
+    private final int[] cacheKeys = new int[CACHE_SIZE * 3];
+    private final Chunk[] cacheChunks = new Chunk[CACHE_SIZE];
+    private int cacheCount;
+    private int cacheNext;
+
+    public Physics(World world) {
+        this.world = world;
+    }
+
+    /** Advances the body by one tick of {@link #TICK_SECONDS}. */
+    public void step(PhysicsBody body) {
+        cacheCount = 0;
+        body.previousX = body.x;
+        body.previousY = body.y;
+        body.previousZ = body.z;
+        if (!body.isFlying()) {
+            body.velocityY = Math.max(-TERMINAL_VELOCITY, body.velocityY - GRAVITY * TICK_SECONDS);
+        }
+        double dx = body.velocityX * TICK_SECONDS;
+        double dy = body.velocityY * TICK_SECONDS;
+        double dz = body.velocityZ * TICK_SECONDS;
+
+        setBox(body, body.x, body.y, body.z);
+        double movedY = sweep(1, dy);
+        boolean landed = dy < 0 && movedY > dy;
+        double movedX = sweep(0, dx);
+        double movedZ = sweep(2, dz);
+        if ((landed || body.onGround) && (movedX != dx || movedZ != dz) && body.getStepHeight() > 0) {
+            // retry the horizontal move from a raised box and settle back down afterwards
+            double baseY = body.y + movedY;
+            setBox(body, body.x, baseY, body.z);
+            double up = sweep(1, body.getStepHeight());
+            double steppedX = sweep(0, dx);
+            double steppedZ = sweep(2, dz);
+            double down = sweep(1, -up);
+            if (steppedX * steppedX + steppedZ * steppedZ > movedX * movedX + movedZ * movedZ) {
+                movedX = steppedX;
+                movedZ = steppedZ;
+                movedY += up + down;
+                landed = true;
+            } else {
+                setBox(body, body.x + movedX, baseY, body.z + movedZ);
+            }
+        }
+        body.x = (min[0] + max[0]) / 2;
+        body.y = min[1];
+        body.z = (min[2] + max[2]) / 2;
+        if (movedX != dx) {
+            body.velocityX = 0;
+        }
+        if (movedZ != dz) {
+            body.velocityZ = 0;
+        }
+        if (landed || movedY != dy) {
+            body.velocityY = 0;
+        }
+        // gravity pulls a resting body down a little every tick, so being stopped means standing
+        body.onGround = landed;
+    }
+
+    private void setBox(PhysicsBody body, double x, double y, double z) {
+        double half = body.getHalfWidth();
+        min[0] = x - half;
+        max[0] = x + half;
+        min[1] = y;
+        max[1] = y + body.getHeight();
+        min[2] = z - half;
+        max[2] = z + half;
+    }
+
+    /**
+     * Moves the box up to {@code move} blocks along {@code axis}, stopping at
+     * the first layer of blocks with a solid block in the box's cross section,
+     * and returns the distance actually moved.
+     */
+    private double sweep(int axis, double move) {
+        if (move != 0) {
+            move = clip(axis, move);
+            min[axis] += move;
+            max[axis] += move;
+        }
+        return move;
+    }
+
+    private double clip(int axis, double move) {
+        int a1 = (axis + 1) % 3;
+        int a2 = (axis + 2) % 3;
+        int from1 = (int) Math.floor(min[a1] + EPSILON);
+        int to1 = (int) Math.ceil(max[a1] - EPSILON) - 1;
+        int from2 = (int) Math.floor(min[a2] + EPSILON);
+        int to2 = (int) Math.ceil(max[a2] - EPSILON) - 1;
+        if (move > 0) {
+            for (int layer = (int) Math.ceil(max[axis] - EPSILON); layer < max[axis] + move; layer++) {
+                if (isLayerSolid(axis, layer, a1, from1, to1, a2, from2, to2)) {
+                    return layer - max[axis];
+                }
+            }
+        } else {
+            for (int layer = (int) Math.floor(min[axis] + EPSILON) - 1; layer + 1 > min[axis] + move; layer--) {
+                if (isLayerSolid(axis, layer, a1, from1, to1, a2, from2, to2)) {
+                    return layer + 1 - min[axis];
+                }
+            }
+        }
+        return move;
+    }
+
+    private boolean isLayerSolid(int axis, int layer, int a1, int from1, int to1, int a2, int from2, int to2) {
+        cell[axis] = layer;
+        for (int i = from1; i <= to1; i++) {
+            cell[a1] = i;
+            for (int j = from2; j <= to2; j++) {
+                cell[a2] = j;
+                if (isSolid(cell[0], cell[1], cell[2])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isSolid(int x, int y, int z) {
+        int cx = Math.floorDiv(x, Chunk.SIZE);
+        int cy = Math.floorDiv(y, Chunk.SIZE);
+        int cz = Math.floorDiv(z, Chunk.SIZE);
+        Chunk chunk = chunk(cx, cy, cz);
+        if (chunk == null) {
+            return true;
+        }
+        if (chunk.isEmpty()) {
+            return false;
+        }
+        BlockType block = chunk.getBlock(x - cx * Chunk.SIZE, y - cy * Chunk.SIZE, z - cz * Chunk.SIZE);
+        return block != BlockType.AIR && !block.isFluid();
+    }
+
+    /** Looks a chunk up through the per-tick cache, which also remembers chunks that are not loaded. */
+    private Chunk chunk(int cx, int cy, int cz) {
+        for (int i = 0; i < cacheCount; i++) {
+            if (cacheKeys[i * 3] == cx && cacheKeys[i * 3 + 1] == cy && cacheKeys[i * 3 + 2] == cz) {
+                return cacheChunks[i];
+            }
+        }
+        Chunk chunk = world.getChunkIfLoaded(cx, cy, cz);
+        int slot;
+        if (cacheCount < CACHE_SIZE) {
+            slot = cacheCount++;
+        } else {
+            slot = cacheNext;
+            cacheNext = (cacheNext + 1) % CACHE_SIZE;
+        }
+        cacheKeys[slot * 3] = cx;
+        cacheKeys[slot * 3 + 1] = cy;
+        cacheKeys[slot * 3 + 2] = cz;
+        cacheChunks[slot] = chunk;
+        return chunk;
+    }
+}
@@ -0,0 +1,135 @@
+package com.minecraftclone;
+
+/**
+ * An axis-aligned box moved by {@link Physics}: the player or, later, an
+ * entity. The position is the centre of the box's bottom face. The previous
+ * tick's position is kept so frames drawn between ticks can interpolate.
+ */
+public class PhysicsBody {
+    private final double halfWidth;
+    private final double height;
+    private final double stepHeight;
+    double x;
+    double y;
+    double z;
+    double previousX;
+    double previousY;
+    double previousZ;
+    /** Velocity in blocks per second. */
+    double velocityX;
+    double velocityY;
+    double velocityZ;
+    boolean onGround;
+    private boolean flying;
+
+    /**
+     * Creates a body {@code width} blocks wide and deep and {@code height}
+     * tall that walks up ledges of at most {@code stepHeight} blocks.
+     */
+    public PhysicsBody(double width, double height, double stepHeight, double x, double y, double z) {
+        this.halfWidth = width / 2;
+        this.height = height;
+        this.stepHeight = stepHeight;
+        setPosition(x, y, z);
+    }
+
+    /** Moves the body without collision, as when teleporting; also resets interpolation. */
+    public void setPosition(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        previousX = x;
+        previousY = y;
+        previousZ = z;
+    }
+
+    public void setVelocity(double vx, double vy, double vz) {
+        velocityX = vx;
+        velocityY = vy;
+        velocityZ = vz;
+    }
+
+    /** Sets the horizontal velocity, leaving falling or jumping untouched. */
+    public void setHorizontalVelocity(double vx, double vz) {
+        velocityX = vx;
+        velocityZ = vz;
+    }
+
+    public void setVerticalVelocity(double vy) {
+        velocityY = vy;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    /** Position between the previous tick ({@code alpha} 0) and the latest one (1). */
+    public double getInterpolatedX(double alpha) {
+        return previousX + (x - previousX) * alpha;
+    }
+
+    public double getInterpolatedY(double alpha) {
+        return previousY + (y - previousY) * alpha;
+    }
+
+    public double getInterpolatedZ(double alpha) {
+        return previousZ + (z - previousZ) * alpha;
+    }
+
+    public double getVelocityX() {
+        return velocityX;
+    }
+
+    public double getVelocityY() {
+        return velocityY;
+    }
+
+    public double getVelocityZ() {
+        return velocityZ;
+    }
+
+    public double getHalfWidth() {
+        return halfWidth;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    public double getStepHeight() {
+        return stepHeight;
+    }
+
+    /** Returns {@code true} if the box overlaps the block at the given coordinates. */
+    public boolean intersectsBlock(int bx, int by, int bz) {
+        return bx < x + halfWidth && bx + 1 > x - halfWidth && by < y + height && by + 1 > y
+                && bz < z + halfWidth && bz + 1 > z - halfWidth;
+    }
+
+    /** Returns {@code true} if the last tick ended standing on a block. */
+    public boolean isOnGround() {
+        return onGround;
+    }
+
+    /** Returns {@code true} if gravity is off for the body. */
+    public boolean isFlying() {
+        return flying;
+    }
+
+    public void setFlying(boolean flying) {
+        this.flying = flying;
+    }
+
+    @Override
+    public String toString() {
+        return "PhysicsBody{" + "x=" + x + ", y=" + y + ", z=" + z + ", onGround=" + onGround + '}';
+    }
+}
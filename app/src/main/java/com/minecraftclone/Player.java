@@ -4,6 +4,13 @@ package com.minecraftclone;
  * Represents the player in the world.
  */
 public class Player {
+    /** Size of the player's collision box in blocks. */
+    public static final double WIDTH = 0.6;
+    public static final double HEIGHT = 1.8;
+    /** Height of the eyes, and so of the player's position, above the feet. */
+    public static final double EYE_HEIGHT = 1.62;
+    /** Tallest ledge the player walks up without jumping; terrain rises in whole blocks. */
+    public static final double STEP_HEIGHT = 1.0;
     private double x;
     private double y;
     private double z;
@@ -13,10 +20,17 @@ public class Player {
      */
     private double yaw;
     /**
-     * Player pitch in radians. 0 means looking horizontally. Positive looks downward.
+     * Player pitch in radians. 0 means looking horizontally. Positive looks upward.
 
      */
     private double pitch;
+    /** Velocity in world units per second, estimated from recent movement. */
+    private double velocityX;
+    private double velocityY;
+    private double velocityZ;
+    private double sampledX;
+    private double sampledY;
+    private double sampledZ;
 
     public Player(double x, double y, double z) {
         this.x = x;
@@ -24,6 +38,9 @@ public class Player {
         this.z = z;
         this.yaw = 0;
         this.pitch = 0;
+        this.sampledX = x;
+        this.sampledY = y;
+        this.sampledZ = z;
     }
 
     public void move(double dx, double dy, double dz) {
@@ -32,6 +49,46 @@ public class Player {
         this.z += dz;
     }
 
+    /** Moves the player to the given position, as when following a recorded path. */
+    public void setPosition(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /** Sets yaw and pitch in radians; pitch is clamped like {@link #pitch(double)}. */
+    public void setRotation(double yaw, double pitch) {
+        this.yaw = yaw;
+        this.pitch = Math.max(-Math.PI / 2, Math.min(Math.PI / 2, pitch));
+    }
+
+    /**
+     * Updates the velocity estimate from the distance moved since the previous
+     * sample. Should be called once per frame with the frame's duration.
+     */
+    public void sampleVelocity(double deltaTime) {
+        if (deltaTime > 0) {
+            velocityX = (x - sampledX) / deltaTime;
+            velocityY = (y - sampledY) / deltaTime;
+            velocityZ = (z - sampledZ) / deltaTime;
+        }
+        sampledX = x;
+        sampledY = y;
+        sampledZ = z;
+    }
+
+    public double getVelocityX() {
+        return velocityX;
+    }
+
+    public double getVelocityY() {
+        return velocityY;
+    }
+
+    public double getVelocityZ() {
+        return velocityZ;
+    }
+
     public double getX() {
         return x;
     }
@@ -56,6 +113,21 @@ public class Player {
         return pitch;
     }
 
+    /** X component of the unit vector the player is looking along. */
+    public double getLookX() {
+        return -Math.sin(yaw) * Math.cos(pitch);
+    }
+
+    /** Y component of the unit vector the player is looking along. */
+    public double getLookY() {
+        return Math.sin(pitch);
+    }
+
+    /** Z component of the unit vector the player is looking along. */
+    public double getLookZ() {
+        return -Math.cos(yaw) * Math.cos(pitch);
+    }
+
 
     public void pitch(double dpitch) {
         this.pitch = Math.max(-Math.PI / 2, Math.min(Math.PI / 2, this.pitch + dpitch));
@@ -0,0 +1,84 @@
+package com.minecraftclone;
+
+/**
+ * Result of {@link World#raycast}. Instances are mutable and overwritten by
+ * each query so a caller casting many rays can reuse one without allocating.
+ */
+public class RaycastHit {
+    private boolean hit;
+    private int x;
+    private int y;
+    private int z;
+    private int face;
+    private double distance;
+    private BlockType block;
+    private int chunksSkipped;
+
+    void set(int x, int y, int z, int face, double distance, BlockType block) {
+        this.hit = true;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.face = face;
+        this.distance = distance;
+        this.block = block;
+    }
+
+    void reset() {
+        hit = false;
+        face = -1;
+        distance = Double.POSITIVE_INFINITY;
+        block = BlockType.AIR;
+        chunksSkipped = 0;
+    }
+
+    void addSkippedChunk() {
+        chunksSkipped++;
+    }
+
+    /** Returns {@code true} if the ray hit a block within its range. */
+    public boolean isHit() {
+        return hit;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    /**
+     * Face of the hit block the ray entered through, indexed like
+     * {@link Chunk#isFaceSolid}, or -1 if the ray started inside the block.
+     */
+    public int getFace() {
+        return face;
+    }
+
+    /** Distance from the ray's origin to where it entered the hit block. */
+    public double getDistance() {
+        return distance;
+    }
+
+    /** Type of the hit block, or {@link BlockType#AIR} if nothing was hit. */
+    public BlockType getBlock() {
+        return block;
+    }
+
+    /** Empty or unloaded chunks the ray crossed in a single step. */
+    public int getChunksSkipped() {
+        return chunksSkipped;
+    }
+
+    @Override
+    public String toString() {
+        return hit ? "RaycastHit{" + block + " at " + x + "," + y + "," + z + " face " + face + " distance "
+                + distance + '}' : "RaycastHit{miss}";
+    }
+}
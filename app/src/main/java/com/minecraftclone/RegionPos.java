@@ -0,0 +1,15 @@
+package com.minecraftclone;
+
+/**
+ * Position of a region file in region coordinates. Each region covers
+ * {@link RegionStorage#REGION_SIZE} chunks along every axis.
+ */
+public record RegionPos(int x, int y, int z) {
+    /** Returns the region containing the chunk at the given chunk coordinates. */
+    public static RegionPos ofChunk(int cx, int cy, int cz) {
+        return new RegionPos(
+                Math.floorDiv(cx, RegionStorage.REGION_SIZE),
+                Math.floorDiv(cy, RegionStorage.REGION_SIZE),
+                Math.floorDiv(cz, RegionStorage.REGION_SIZE));
+    }
+}
@@ -0,0 +1,126 @@
+package com.minecraftclone;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reads region data ahead of the player so that crossing into an explored
+ * area does not turn into thousands of single-chunk reads. Each update
+ * predicts where the player will be a short time ahead from their velocity,
+ * collects the unloaded chunks around the path there and reads them from
+ * disk as contiguous z runs of region slots on a background thread. Decoded
+ * chunks land in the {@link RegionStorage} read-ahead cache where
+ * {@link World} picks them up when the chunk is requested.
+ */
+public class RegionPrefetcher {
+    /** How far ahead along the velocity vector to read, in seconds. */
+    private static final double LOOKAHEAD_SECONDS = 2.0;
+    /** Chunks around each sampled path point to read, per axis. */
+    private static final int RADIUS = 2;
+
+    private final World world;
+    private final RegionStorage storage;
+    private final ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private int lastFromX = Integer.MIN_VALUE;
+    private int lastFromY;
+    private int lastFromZ;
+    private int lastToX;
+    private int lastToY;
+    private int lastToZ;
+
+    public RegionPrefetcher(World world, RegionStorage storage) {
+        this.world = world;
+        this.storage = storage;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "region-prefetch");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Schedules read-ahead for the player's predicted path. Does nothing if
+     * the path still starts and ends in the same chunks as last time or a
+     * previous read-ahead is still running.
+     */
+    public void update(Player player) {
+        int fromX = chunkCoord(player.getX());
+        int fromY = chunkCoord(player.getY());
+        int fromZ = chunkCoord(player.getZ());
+        int toX = chunkCoord(player.getX() + player.getVelocityX() * LOOKAHEAD_SECONDS);
+        int toY = chunkCoord(player.getY() + player.getVelocityY() * LOOKAHEAD_SECONDS);
+        int toZ = chunkCoord(player.getZ() + player.getVelocityZ() * LOOKAHEAD_SECONDS);
+        if (fromX == lastFromX && fromY == lastFromY && fromZ == lastFromZ
+                && toX == lastToX && toY == lastToY && toZ == lastToZ) {
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        lastFromX = fromX;
+        lastFromY = fromY;
+        lastFromZ = fromZ;
+        lastToX = toX;
+        lastToY = toY;
+        lastToZ = toZ;
+        executor.execute(() -> {
+            try {
+                readAlong(fromX, fromY, fromZ, toX, toY, toZ);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    /** Reads the chunks around evenly spaced points from the start chunk to the predicted chunk. */
+    private void readAlong(int fromX, int fromY, int fromZ, int toX, int toY, int toZ) {
+        // z runs keyed by region and local x/y column, stored as [minLz, maxLz]
+        Map<Column, int[]> runs = new HashMap<>();
+        int steps = Math.max(Math.abs(toX - fromX), Math.max(Math.abs(toY - fromY), Math.abs(toZ - fromZ)));
+        for (int s = 0; s <= steps; s++) {
+            double t = steps == 0 ? 0 : (double) s / steps;
+            int px = (int) Math.round(fromX + (toX - fromX) * t);
+            int py = (int) Math.round(fromY + (toY - fromY) * t);
+            int pz = (int) Math.round(fromZ + (toZ - fromZ) * t);
+            for (int cx = px - RADIUS; cx <= px + RADIUS; cx++) {
+                for (int cy = py - RADIUS; cy <= py + RADIUS; cy++) {
+                    for (int cz = pz - RADIUS; cz <= pz + RADIUS; cz++) {
+                        if (world.getChunkIfLoaded(cx, cy, cz) != null) {
+                            continue;
+                        }
+                        RegionPos region = RegionPos.ofChunk(cx, cy, cz);
+                        Column column = new Column(region,
+                                Math.floorMod(cx, RegionStorage.REGION_SIZE),
+                                Math.floorMod(cy, RegionStorage.REGION_SIZE));
+                        int lz = Math.floorMod(cz, RegionStorage.REGION_SIZE);
+                        int[] run = runs.computeIfAbsent(column, c -> new int[] { lz, lz });
+                        run[0] = Math.min(run[0], lz);
+                        run[1] = Math.max(run[1], lz);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<Column, int[]> entry : runs.entrySet()) {
+            Column c = entry.getKey();
+            int[] run = entry.getValue();
+            storage.readAhead(c.region(), c.lx(), c.ly(), run[0], run[1],
+                    pos -> world.getChunkIfLoaded(pos.x(), pos.y(), pos.z()) != null || storage.isReadAhead(pos));
+        }
+    }
+
+    /** Stops the background thread. */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static int chunkCoord(double c) {
+        return (int) Math.floor(c / Chunk.SIZE);
+    }
+
+    /** A run of region slots sharing region-local x and y, contiguous along z. */
+    private record Column(RegionPos region, int lx, int ly) { }
+}
@@ -0,0 +1,531 @@
+package com.minecraftclone;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Stores chunk block data in fixed-layout region files. Each region covers
+ * 32x32x32 chunks and starts with a presence bitmap followed by one
+ * {@link #CHUNK_BYTES} slot per chunk holding the block ordinals.
+ * <p>
+ * Reads either go through a {@link RandomAccessFile} per request or, in
+ * {@link ReadMode#MAPPED} mode, through a read-only mapping of the region that
+ * stays open while the region is resident so repeated loads avoid syscalls.
+ * <p>
+ * {@link #readAhead} reads a contiguous run of chunk slots in one request and
+ * keeps the decoded chunks in a small cache that {@link #read} consults first.
+ */
+public class RegionStorage implements ChunkStorage {
+    /** How chunk data is read back from region files. */
+    public enum ReadMode { STREAM, MAPPED }
+
+    static final int REGION_SIZE = 32;
+    static final int CHUNK_BYTES = Chunk.SIZE * Chunk.SIZE * Chunk.SIZE;
+    static final int REGION_CHUNK_COUNT = REGION_SIZE * REGION_SIZE * REGION_SIZE;
+    static final int HEADER_BYTES = REGION_CHUNK_COUNT / 8;
+
+    private static final BlockType[] BLOCK_TYPES = BlockType.values();
+    /** Maximum number of decoded chunks kept by {@link #readAhead}. */
+    private static final int READ_AHEAD_CAPACITY = 1024;
+
+    private final Path dir;
+    private final ReadMode readMode;
+    private final Map<RegionPos, MappedRegion> mappedRegions = new ConcurrentHashMap<>();
+
+    /** Decoded chunks read ahead of demand, least recently prefetched first. Guarded by itself. */
+    private final LinkedHashMap<ChunkPos, Chunk> readAheadCache = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ChunkPos, Chunk> eldest) {
+            if (size() > READ_AHEAD_CAPACITY) {
+                readAheadEvictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+    /** Positions written while a read-ahead was in progress; its results for them may be stale. */
+    private final Set<ChunkPos> writtenDuringReadAhead = new HashSet<>();
+    private int activeReadAheads;
+    private final AtomicLong readAheadHits = new AtomicLong();
+    private final AtomicLong readAheadMisses = new AtomicLong();
+    private final AtomicLong readAheadBytes = new AtomicLong();
+    private final AtomicLong readAheadChunks = new AtomicLong();
+    private final AtomicLong readAheadEvictions = new AtomicLong();
+
+    public RegionStorage(Path dir, ReadMode readMode) {
+        this.dir = dir;
+        this.readMode = readMode;
+    }
+
+    public ReadMode getReadMode() {
+        return readMode;
+    }
+
+    /**
+     * Reads the chunk at the given chunk coordinates, or returns {@code null}
+     * if it has never been saved.
+     */
+    @Override
+    public Chunk read(int cx, int cy, int cz) {
+        Chunk cached;
+        synchronized (readAheadCache) {
+            cached = readAheadCache.remove(new ChunkPos(cx, cy, cz));
+        }
+        if (cached != null) {
+            readAheadHits.incrementAndGet();
+            return cached;
+        }
+        byte[] data = new byte[CHUNK_BYTES];
+        boolean found;
+        try {
+            found = readMode == ReadMode.MAPPED
+                    ? readMapped(cx, cy, cz, data)
+                    : readStream(cx, cy, cz, data);
+        } catch (IOException e) {
+            System.err.println("Failed to load chunk " + cx + "," + cy + "," + cz + ": " + e.getMessage());
+            return null;
+        }
+        if (!found) {
+            return null;
+        }
+        readAheadMisses.incrementAndGet();
+        return loadedChunk(data, 0);
+    }
+
+    private static Chunk loadedChunk(byte[] data, int offset) {
+        Chunk chunk = new Chunk();
+        chunk.setOrigin(Chunk.Origin.LOADED);
+        decode(data, offset, chunk);
+        chunk.markSaved();
+        chunk.clearEmptyLodSteps();
+        chunk.updateFaceSolidity();
+        return chunk;
+    }
+
+    /**
+     * Reads the saved chunks at local z {@code lzFrom..lzTo} of the column at
+     * local {@code lx, ly} of a region with a single read, since those slots
+     * are contiguous in the file, and caches them decoded for {@link #read}.
+     * Positions reported by {@code skip} (e.g. chunks already loaded) are not
+     * decoded. Returns the number of chunks cached.
+     */
+    public int readAhead(RegionPos region, int lx, int ly, int lzFrom, int lzTo, Predicate<ChunkPos> skip) {
+        Path path = regionPath(region);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        int firstIndex = (lx * REGION_SIZE + ly) * REGION_SIZE + lzFrom;
+        int lastIndex = firstIndex + (lzTo - lzFrom);
+        int flagBase = firstIndex & ~7;
+        List<ChunkPos> positions = new ArrayList<>();
+        List<Chunk> decoded = new ArrayList<>();
+        int cached = 0;
+        synchronized (readAheadCache) {
+            activeReadAheads++;
+        }
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "r")) {
+                long length = raf.length();
+                if (length < HEADER_BYTES) {
+                    return 0;
+                }
+                byte[] flags = new byte[(lastIndex >>> 3) - (firstIndex >>> 3) + 1];
+                raf.seek(firstIndex >>> 3);
+                raf.readFully(flags);
+                // trim the run to the slots that actually hold a chunk
+                while (firstIndex <= lastIndex && !present(flags, firstIndex, flagBase)) {
+                    firstIndex++;
+                }
+                while (lastIndex >= firstIndex && !present(flags, lastIndex, flagBase)) {
+                    lastIndex--;
+                }
+                if (firstIndex > lastIndex || chunkOffset(lastIndex) + CHUNK_BYTES > length) {
+                    return 0;
+                }
+                byte[] slab = new byte[(lastIndex - firstIndex + 1) * CHUNK_BYTES];
+                raf.seek(chunkOffset(firstIndex));
+                raf.readFully(slab);
+                readAheadBytes.addAndGet(slab.length + flags.length);
+                int cx = region.x() * REGION_SIZE + lx;
+                int cy = region.y() * REGION_SIZE + ly;
+                for (int index = firstIndex; index <= lastIndex; index++) {
+                    ChunkPos pos = new ChunkPos(cx, cy, region.z() * REGION_SIZE + (index & (REGION_SIZE - 1)));
+                    if (!present(flags, index, flagBase) || skip.test(pos)) {
+                        continue;
+                    }
+                    positions.add(pos);
+                    decoded.add(loadedChunk(slab, (index - firstIndex) * CHUNK_BYTES));
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to read ahead in region " + region.x() + "," + region.y() + ","
+                        + region.z() + ": " + e.getMessage());
+                return 0;
+            }
+        } finally {
+            synchronized (readAheadCache) {
+                for (int i = 0; i < positions.size(); i++) {
+                    ChunkPos pos = positions.get(i);
+                    if (!writtenDuringReadAhead.contains(pos) && !readAheadCache.containsKey(pos)) {
+                        readAheadCache.put(pos, decoded.get(i));
+                        cached++;
+                    }
+                }
+                if (--activeReadAheads == 0) {
+                    writtenDuringReadAhead.clear();
+                }
+            }
+        }
+        readAheadChunks.addAndGet(cached);
+        return cached;
+    }
+
+    private static boolean present(byte[] flags, int index, int flagBase) {
+        return (flags[(index - flagBase) >>> 3] & (1 << (index & 7))) != 0;
+    }
+
+    /** Returns whether a decoded copy of the chunk is waiting in the read-ahead cache. */
+    public boolean isReadAhead(ChunkPos pos) {
+        synchronized (readAheadCache) {
+            return readAheadCache.containsKey(pos);
+        }
+    }
+
+    /** Drops cached read-ahead copies of chunks that were just written to disk. */
+    private void invalidateReadAhead(Iterable<ChunkPos> written) {
+        synchronized (readAheadCache) {
+            for (ChunkPos pos : written) {
+                readAheadCache.remove(pos);
+                if (activeReadAheads > 0) {
+                    writtenDuringReadAhead.add(pos);
+                }
+            }
+        }
+    }
+
+    private boolean readStream(int cx, int cy, int cz, byte[] dst) throws IOException {
+        Path path = regionPath(RegionPos.ofChunk(cx, cy, cz));
+        if (!Files.exists(path)) {
+            return false;
+        }
+        int index = chunkIndex(cx, cy, cz);
+        long offset = chunkOffset(index);
+        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "r")) {
+            if (raf.length() < HEADER_BYTES || offset + CHUNK_BYTES > raf.length()) {
+                return false;
+            }
+            raf.seek(index >>> 3);
+            int flags = raf.read();
+            if (flags < 0 || (flags & (1 << (index & 7))) == 0) {
+                return false;
+            }
+            raf.seek(offset);
+            raf.readFully(dst);
+        }
+        return true;
+    }
+
+    private boolean readMapped(int cx, int cy, int cz, byte[] dst) throws IOException {
+        RegionPos region = RegionPos.ofChunk(cx, cy, cz);
+        while (true) {
+            MappedRegion mapped = mappedRegions.get(region);
+            if (mapped == null) {
+                Path path = regionPath(region);
+                if (!Files.exists(path)) {
+                    return false;
+                }
+                mapped = mappedRegions.computeIfAbsent(region, r -> new MappedRegion(path));
+            }
+            synchronized (mapped) {
+                // release() may have closed it since the lookup; it is out of the map by then, so look again
+                if (!mapped.closed) {
+                    return mapped.read(chunkIndex(cx, cy, cz), dst);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the chunk's blocks to its region file and marks it saved.
+     * Returns {@code false} if the write failed.
+     */
+    public boolean write(Chunk chunk, int cx, int cy, int cz) {
+        byte[] data = new byte[CHUNK_BYTES];
+        encode(chunk, data, 0);
+        Path path = regionPath(RegionPos.ofChunk(cx, cy, cz));
+        int index = chunkIndex(cx, cy, cz);
+        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
+            if (raf.length() < HEADER_BYTES) {
+                raf.setLength(HEADER_BYTES);
+            }
+            raf.seek(chunkOffset(index));
+            raf.write(data);
+            int byteIndex = index >>> 3;
+            raf.seek(byteIndex);
+            int flags = raf.read();
+            if (flags < 0) {
+                flags = 0;
+            }
+            raf.seek(byteIndex);
+            raf.write(flags | (1 << (index & 7)));
+        } catch (IOException e) {
+            System.err.println("Failed to save chunk " + cx + "," + cy + "," + cz + ": " + e.getMessage());
+            return false;
+        }
+        invalidateReadAhead(List.of(new ChunkPos(cx, cy, cz)));
+        chunk.markSaved();
+        chunk.clearEmptyLodSteps();
+        return true;
+    }
+
+    @Override
+    public boolean storesGeneratedChunks() {
+        return true;
+    }
+
+    /**
+     * Writes the batch while holding the region file open once, updating the
+     * presence bitmap in a single write.
+     */
+    @Override
+    public int writeBatch(RegionPos region, Map<ChunkPos, Chunk> batch) {
+        Path path = regionPath(region);
+        byte[] data = new byte[CHUNK_BYTES];
+        Chunk[] written = new Chunk[batch.size()];
+        int[] versions = new int[batch.size()];
+        int count = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
+            if (raf.length() < HEADER_BYTES) {
+                raf.setLength(HEADER_BYTES);
+            }
+            byte[] header = new byte[HEADER_BYTES];
+            raf.seek(0);
+            raf.readFully(header);
+            // write slots in file order so a large batch streams through the file front to back
+            List<Map.Entry<ChunkPos, Chunk>> entries = new ArrayList<>(batch.entrySet());
+            entries.sort(Comparator.comparingInt(e -> chunkIndex(e.getKey().x(), e.getKey().y(), e.getKey().z())));
+            for (Map.Entry<ChunkPos, Chunk> entry : entries) {
+                ChunkPos pos = entry.getKey();
+                Chunk chunk = entry.getValue();
+                if (!chunk.needsSave()) {
+                    continue;
+                }
+                versions[count] = chunk.getVersion();
+                encode(chunk, data, 0);
+                int index = chunkIndex(pos.x(), pos.y(), pos.z());
+                raf.seek(chunkOffset(index));
+                raf.write(data);
+                header[index >>> 3] |= (byte) (1 << (index & 7));
+                written[count++] = chunk;
+            }
+            raf.seek(0);
+            raf.write(header);
+        } catch (IOException e) {
+            System.err.println("Failed to save region " + region.x() + "," + region.y() + "," + region.z()
+                    + ": " + e.getMessage());
+            return 0;
+        }
+        invalidateReadAhead(batch.keySet());
+        for (int i = 0; i < count; i++) {
+            written[i].markSaved(versions[i]);
+        }
+        return count;
+    }
+
+    /** Drops the mapping for a region once none of its chunks are resident. */
+    @Override
+    public void release(RegionPos region) {
+        MappedRegion mapped = mappedRegions.remove(region);
+        if (mapped != null) {
+            mapped.close();
+        }
+    }
+
+    /** Drops every open mapping. */
+    @Override
+    public void releaseAll() {
+        for (RegionPos region : mappedRegions.keySet()) {
+            release(region);
+        }
+    }
+
+    /**
+     * Deletes the file backing the given region. On Windows a mapped file
+     * cannot be deleted, so this fails there until the garbage collector has
+     * freed the released mapping.
+     */
+    @Override
+    public void deleteRegion(RegionPos region) {
+        release(region);
+        synchronized (readAheadCache) {
+            readAheadCache.keySet().removeIf(pos -> RegionPos.ofChunk(pos.x(), pos.y(), pos.z()).equals(region));
+        }
+        try {
+            Files.deleteIfExists(regionPath(region));
+        } catch (IOException e) {
+            System.err.println("Failed to delete region " + region.x() + "," + region.y() + "," + region.z()
+                    + ": " + e.getMessage());
+        }
+    }
+
+    /** Deletes every region file in the storage directory; see {@link #deleteRegion} about Windows. */
+    @Override
+    public void deleteAll() {
+        releaseAll();
+        synchronized (readAheadCache) {
+            readAheadCache.clear();
+        }
+        try (var stream = Files.list(dir)) {
+            stream.filter(p -> p.getFileName().toString().endsWith(".rg")).forEach(p -> {
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    System.err.println("Failed to delete region file " + p + ": " + e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Failed to clear world: " + e.getMessage());
+        }
+    }
+
+    Path regionPath(RegionPos region) {
+        return dir.resolve("r_" + region.x() + "_" + region.y() + "_" + region.z() + ".rg");
+    }
+
+    static int chunkIndex(int cx, int cy, int cz) {
+        int lx = Math.floorMod(cx, REGION_SIZE);
+        int ly = Math.floorMod(cy, REGION_SIZE);
+        int lz = Math.floorMod(cz, REGION_SIZE);
+        return (lx * REGION_SIZE + ly) * REGION_SIZE + lz;
+    }
+
+    static long chunkOffset(int index) {
+        return HEADER_BYTES + (long) index * CHUNK_BYTES;
+    }
+
+    /** Copies the chunk's block ordinals into {@code dst} in x, y, z order. */
+    static void encode(Chunk chunk, byte[] dst, int offset) {
+        int i = offset;
+        for (int x = 0; x < Chunk.SIZE; x++) {
+            for (int y = 0; y < Chunk.SIZE; y++) {
+                for (int z = 0; z < Chunk.SIZE; z++) {
+                    dst[i++] = (byte) chunk.getBlock(x, y, z).ordinal();
+                }
+            }
+        }
+    }
+
+    /** Fills the chunk from block ordinals previously written by {@link #encode}. */
+    static void decode(byte[] src, int offset, Chunk chunk) {
+        int i = offset;
+        for (int x = 0; x < Chunk.SIZE; x++) {
+            for (int y = 0; y < Chunk.SIZE; y++) {
+                for (int z = 0; z < Chunk.SIZE; z++) {
+                    chunk.setBlockUnchecked(x, y, z, BLOCK_TYPES[src[i++] & 0xFF]);
+                }
+            }
+        }
+    }
+
+    /** Loads served from the read-ahead cache. */
+    public long getReadAheadHits() {
+        return readAheadHits.get();
+    }
+
+    /** Loads of saved chunks that had to go to disk because they were not read ahead. */
+    public long getReadAheadMisses() {
+        return readAheadMisses.get();
+    }
+
+    /** Bytes read by {@link #readAhead}. */
+    public long getReadAheadBytes() {
+        return readAheadBytes.get();
+    }
+
+    /** Chunks decoded into the read-ahead cache. */
+    public long getReadAheadChunks() {
+        return readAheadChunks.get();
+    }
+
+    /** Read-ahead chunks dropped from the cache before anything asked for them. */
+    public long getReadAheadEvictions() {
+        return readAheadEvictions.get();
+    }
+
+    /**
+     * Read-only mapping of a single region file. The mapping covers the file
+     * as it was when last mapped and is widened when chunks are appended past
+     * its end. Writes go through regular file I/O and show up in the mapping
+     * because both share the OS page cache. Once closed it is never mapped
+     * again; readers that still hold it must look the region up anew.
+     */
+    private static final class MappedRegion {
+        private final Path path;
+        private FileChannel channel;
+        private MappedByteBuffer buffer;
+        /** Set under the region's lock by {@link #close}. */
+        private boolean closed;
+
+        MappedRegion(Path path) {
+            this.path = path;
+        }
+
+        /** Reads a chunk; callers must hold the region's lock and have checked that it is not closed. */
+        synchronized boolean read(int index, byte[] dst) throws IOException {
+            long offset = chunkOffset(index);
+            if (buffer == null || offset + CHUNK_BYTES > buffer.capacity()) {
+                if (!remap(offset + CHUNK_BYTES)) {
+                    return false;
+                }
+            }
+            int flags = buffer.get(index >>> 3) & 0xFF;
+            if ((flags & (1 << (index & 7))) == 0) {
+                return false;
+            }
+            buffer.get((int) offset, dst);
+            return true;
+        }
+
+        /** Maps the current file contents, returning whether {@code required} bytes are available. */
+        private boolean remap(long required) throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+            long size = channel.size();
+            if (size < HEADER_BYTES || size < required) {
+                return false;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return true;
+        }
+
+        synchronized void close() {
+            // Java has no public way to unmap, so the mapping itself is only
+            // released once the garbage collector frees the buffer.
+            closed = true;
+            buffer = null;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to close region " + path + ": " + e.getMessage());
+                }
+                channel = null;
+            }
+        }
+    }
+}
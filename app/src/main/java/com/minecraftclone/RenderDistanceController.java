@@ -0,0 +1,144 @@
+package com.minecraftclone;
+
+/**
+ * Adjusts the render distance and LOD start distances to keep memory and
+ * frame time within budgets. Once per interval the controller compares the
+ * heap held by chunk data and buffered meshes, the GPU memory held by the
+ * mesh arena and the 95th percentile frame time with their budgets. If any
+ * is over, the render distance shrinks by one chunk; if everything would
+ * still fit after growing by one, it grows again after a calmer wait.
+ * Memory is assumed to grow with the cube of the distance and frame time
+ * with its square. Chunks take a while to load and unload, so while the
+ * pressure is already falling after a shrink the controller waits for it
+ * to settle instead of shrinking further.
+ * <p>
+ * The LOD starts keep their configured proportion to the render distance,
+ * so shrinking the view also moves the cheaper LOD meshes closer. A budget
+ * of zero is ignored.
+ */
+public class RenderDistanceController {
+    /** Time between decisions. */
+    private static final long INTERVAL_NANOS = 1_000_000_000L;
+    /** Time to wait after any change before growing, so chunks loaded by the last step are counted. */
+    private static final long GROW_COOLDOWN_NANOS = 5_000_000_000L;
+    /** Time to wait after a change before shrinking, so unloading can catch up. */
+    private static final long SHRINK_COOLDOWN_NANOS = 2_000_000_000L;
+    /** Time after a change beyond which the controller shrinks even if the pressure is falling. */
+    private static final long SETTLE_NANOS = 5_000_000_000L;
+    /** Growing must leave this much headroom under every budget. */
+    private static final double GROW_MARGIN = 0.9;
+
+    private final long heapBudgetBytes;
+    private final long vramBudgetBytes;
+    private final long frameTargetNanos;
+    private final int minDistance;
+    private final int maxDistance;
+    private final int configuredDistance;
+    private final int configuredLod1Start;
+    private final int configuredLod2Start;
+    private final LatencyHistogram frameTimes = new LatencyHistogram();
+
+    private int renderDistance;
+    private int lod1Start;
+    private int lod2Start;
+    private long lastDecision;
+    private long lastChange;
+    private double pressure;
+    private double previousPressure;
+    private long changes;
+
+    /**
+     * Creates a controller starting from the configured distances, which
+     * also fix the proportion of the LOD starts to the render distance.
+     */
+    public RenderDistanceController(long heapBudgetBytes, long vramBudgetBytes, double frameTargetMillis,
+            int minDistance, int maxDistance, int renderDistance, int lod1Start, int lod2Start) {
+        if (minDistance < 1 || maxDistance < minDistance) {
+            throw new IllegalArgumentException("Invalid render distance range " + minDistance + ".." + maxDistance);
+        }
+        this.heapBudgetBytes = heapBudgetBytes;
+        this.vramBudgetBytes = vramBudgetBytes;
+        this.frameTargetNanos = (long) (frameTargetMillis * 1_000_000);
+        this.minDistance = minDistance;
+        this.maxDistance = maxDistance;
+        this.configuredDistance = Math.max(1, renderDistance);
+        this.configuredLod1Start = lod1Start;
+        this.configuredLod2Start = lod2Start;
+        this.renderDistance = Math.max(minDistance, Math.min(maxDistance, renderDistance));
+        this.lod1Start = scaledStart(configuredLod1Start);
+        this.lod2Start = scaledStart(configuredLod2Start);
+    }
+
+    /** Records the CPU time of a frame in nanoseconds. */
+    public void recordFrame(long nanos) {
+        frameTimes.record(nanos);
+    }
+
+    /**
+     * Decides whether to change the distances if an interval has passed
+     * since the last decision. Returns {@code true} if they changed.
+     */
+    public boolean update(long nowNanos, long heapBytes, long vramBytes) {
+        if (nowNanos - lastDecision < INTERVAL_NANOS) {
+            return false;
+        }
+        lastDecision = nowNanos;
+        double memory = Math.max(share(heapBytes, heapBudgetBytes), share(vramBytes, vramBudgetBytes));
+        double frames = frameTimes.getCount() == 0 ? 0 : share(frameTimes.getPercentile(0.95), frameTargetNanos);
+        frameTimes.reset();
+        previousPressure = pressure;
+        pressure = Math.max(memory, frames);
+        long sinceChange = nowNanos - lastChange;
+        boolean falling = pressure < previousPressure && sinceChange < SETTLE_NANOS;
+        int next = renderDistance;
+        if (pressure > 1) {
+            if (renderDistance > minDistance && sinceChange >= SHRINK_COOLDOWN_NANOS && !falling) {
+                next = renderDistance - 1;
+            }
+        } else if (renderDistance < maxDistance && sinceChange >= GROW_COOLDOWN_NANOS) {
+            double growth = (renderDistance + 1.0) / renderDistance;
+            if (memory * growth * growth * growth < GROW_MARGIN && frames * growth * growth < GROW_MARGIN) {
+                next = renderDistance + 1;
+            }
+        }
+        if (next == renderDistance) {
+            return false;
+        }
+        renderDistance = next;
+        lod1Start = scaledStart(configuredLod1Start);
+        lod2Start = scaledStart(configuredLod2Start);
+        lastChange = nowNanos;
+        changes++;
+        return true;
+    }
+
+    private int scaledStart(int configured) {
+        return Math.max(1, (int) Math.round((double) configured * renderDistance / configuredDistance));
+    }
+
+    private static double share(long used, long budget) {
+        return budget <= 0 ? 0 : (double) used / budget;
+    }
+
+    public int getRenderDistance() {
+        return renderDistance;
+    }
+
+    public int getLod1Start() {
+        return lod1Start;
+    }
+
+    public int getLod2Start() {
+        return lod2Start;
+    }
+
+    /** Largest share of a budget in use at the last decision; above 1 means over budget. */
+    public double getPressure() {
+        return pressure;
+    }
+
+    /** Number of times the distances changed. */
+    public long getChanges() {
+        return changes;
+    }
+}
@@ -1,40 +1,61 @@
 package com.minecraftclone;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.Comparator;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents the game world as a set of chunks.
  */
 public class World {
     private final Map<ChunkPos, Chunk> chunks = new ConcurrentHashMap<>();
-    private final Set<ChunkPos> pending = Collections.newSetFromMap(new ConcurrentHashMap<>());
-    private final ThreadPoolExecutor workers;
-    private final int maxQueueSize;
+    /** Loads in progress; callers asking for the same chunk share its future. */
+    private final Map<ChunkPos, CompletableFuture<Chunk>> loading = new ConcurrentHashMap<>();
+    private final ChunkRequestScheduler scheduler = new ChunkRequestScheduler(MAX_PENDING_REQUESTS);
+    private final Thread dispatcher;
+    private final ChunkPipeline pipeline;
+    private final LightEngine lighting;
+    private final BlockTicker blockTicks;
     private final ChunkGenerator generator;
-    private final Path saveDir;
+    private final ChunkStorage storage;
+    private final WriteBehindQueue persistence;
+    private final RegionPrefetcher prefetcher;
+    private final ChunkPredictor predictor;
+    private final ChunkTickets tickets = new ChunkTickets();
+    private final ChunkGrid grid = new ChunkGrid(this);
+    private final Metrics metrics = new Metrics();
+    private final Metrics.Counter generatedCount = metrics.counter("world.chunks.generated");
+    private final Metrics.Counter readCount = metrics.counter("world.chunks.read");
+    private final LatencyHistogram generateTime = metrics.histogram("world.generate_ms", Metrics.Unit.NANOS);
+    private final LatencyHistogram readTime = metrics.histogram("world.read_ms", Metrics.Unit.NANOS);
+    private ChunkTickets.Ticket playerTicket;
+    private long lastUnloadPass;
+    private long unloadedCount;
     private final boolean debug;
+    private final int saveThreads;
 
     private static final int[][] DIRS = { {1,0,0}, {-1,0,0}, {0,1,0}, {0,-1,0}, {0,0,1}, {0,0,-1} };
-    private static final int[] OPPOSITE = {1,0,3,2,5,4};
-
-    private static final int REGION_SIZE = 32;
-    private static final int CHUNK_BYTES = Chunk.SIZE * Chunk.SIZE * Chunk.SIZE;
-    private static final int REGION_CHUNK_COUNT = REGION_SIZE * REGION_SIZE * REGION_SIZE;
-    private static final int HEADER_BYTES = REGION_CHUNK_COUNT / 8;
+    private static final long SAVE_PROGRESS_INTERVAL_MS = 1000;
+    /** How long a chunk loaded through {@link #getChunk} stays resident without other tickets. */
+    private static final long TEMPORARY_TICKET_NANOS = TimeUnit.SECONDS.toNanos(10);
+    /** Chunks beyond the render distance kept loaded so turning back does not reload them. */
+    private static final int UNLOAD_MARGIN = 2;
+    /** Longest time between unload passes when no ticket changed. */
+    private static final long UNLOAD_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /** Upper bound on queued chunk requests; beyond it the farthest request is dropped. */
+    private static final int MAX_PENDING_REQUESTS = 1 << 16;
 
     public World(ChunkGenerator generator) {
         this(generator, Path.of("world"), false);
@@ -49,19 +70,28 @@ public class World {
     }
 
     public World(ChunkGenerator generator, Path saveDir, boolean debug) {
+        this(generator, saveDir, new WorldOptions().debug(debug));
+    }
+
+    public World(ChunkGenerator generator, Path saveDir, WorldOptions options) {
         this.generator = generator;
-        this.saveDir = saveDir;
-        this.debug = debug;
-        int threads = Runtime.getRuntime().availableProcessors();
-        this.maxQueueSize = threads * 4;
-        BlockingQueue<Runnable> queue = new PriorityBlockingQueue<>(maxQueueSize,
-                Comparator.comparingInt(r -> ((ChunkRequest) r).distanceSq));
-        this.workers = new ThreadPoolExecutor(
-                threads,
-                threads,
-                0L,
-                TimeUnit.MILLISECONDS,
-                queue);
+        this.storage = options.getSaveFormat() == WorldOptions.SaveFormat.DELTA
+                ? new DeltaStorage(saveDir, this::generateChunk)
+                : new RegionStorage(saveDir, options.getReadMode());
+        this.persistence = new WriteBehindQueue(storage, options.getIoThreads(), options.getWriteQueueCapacity());
+        this.prefetcher = options.isPrefetch() && storage instanceof RegionStorage regions
+                ? new RegionPrefetcher(this, regions)
+                : null;
+        this.predictor = new ChunkPredictor(this, options.getPredictionSeconds());
+        this.debug = options.isDebug();
+        this.saveThreads = Math.max(1, options.getSaveThreads());
+        this.pipeline = new ChunkPipeline(this, options);
+        this.lighting = new LightEngine(this, generator, metrics);
+        this.blockTicks = new BlockTicker(this, metrics);
+        registerMetrics();
+        this.dispatcher = new Thread(this::requestLoop, "chunk-dispatch");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
         try {
             Files.createDirectories(saveDir);
         } catch (IOException e) {
@@ -69,43 +99,287 @@ public class World {
         }
     }
 
+    /** Publishes the state of the world's loading, request and saving machinery. */
+    private void registerMetrics() {
+        metrics.gauge("world.chunks.resident", chunks::size);
+        metrics.gauge("world.chunks.loading", loading::size);
+        metrics.gauge("world.chunks.unloaded", () -> unloadedCount);
+        metrics.gauge("world.requests.queued", scheduler::getQueueDepth);
+        metrics.gauge("world.requests.cancelled", scheduler::getCancelledCount);
+        metrics.gauge("world.requests.evicted", scheduler::getEvictedCount);
+        metrics.register("world.requests.wait_ms", scheduler.getQueueLatency(), Metrics.Unit.NANOS);
+        metrics.gauge("world.predictor.ready_ratio", predictor::getReadyRatio);
+        metrics.gauge("world.save.queued", persistence::getQueueDepth);
+        metrics.gauge("world.save.written", persistence::getChunksWritten);
+        metrics.gauge("world.save.coalesced", persistence::getCoalescedCount);
+        metrics.gauge("world.save.back_pressure_waits", persistence::getBackPressureWaits);
+        metrics.register("world.save.batch_ms", persistence.getBatchLatency(), Metrics.Unit.NANOS);
+        for (ChunkPipeline.Stage stage : List.of(pipeline.io(), pipeline.generation(), pipeline.meshing(),
+                pipeline.upload())) {
+            String prefix = "pipeline." + stage.getName();
+            metrics.gauge(prefix + ".completed", stage::getCompleted);
+            metrics.gauge(prefix + ".in_flight", stage::getInFlight);
+            metrics.register(prefix + ".wait_ms", stage.getWaitTime(), Metrics.Unit.NANOS);
+            metrics.register(prefix + ".run_ms", stage.getRunTime(), Metrics.Unit.NANOS);
+        }
+        metrics.gauge("pipeline.meshes_pending", pipeline::getPendingMeshCount);
+        metrics.gauge("pipeline.lod_meshes_pending", pipeline::getPendingLodMeshCount);
+        metrics.gauge("memory.blocks_mib", () -> getResidentBlockBytes() / 1048576.0);
+        metrics.gauge("memory.cpu_buffers_mib", () -> pipeline.getReadyBytes() / 1048576.0);
+    }
+
+    /**
+     * Approximate heap held by the block data of resident chunks, from
+     * {@link Chunk#ESTIMATED_BYTES}.
+     */
+    public long getResidentBlockBytes() {
+        return (long) chunks.size() * Chunk.ESTIMATED_BYTES;
+    }
+
+    /** Approximate heap held by chunk data and by meshes built but not yet uploaded. */
+    public long getResidentHeapBytes() {
+        return getResidentBlockBytes() + pipeline.getReadyBytes();
+    }
+
+    /** Counters, gauges and timings of this world and everything rendering it. */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /** The engine keeping sky and block light up to date as chunks load and blocks change. */
+    public LightEngine getLighting() {
+        return lighting;
+    }
+
+    /** The fixed-rate simulation of blocks that change over time, such as flowing water. */
+    public BlockTicker getBlockTicks() {
+        return blockTicks;
+    }
+
     /**
      * Retrieves a chunk at the given chunk coordinates, creating and generating
      * it if necessary. This method executes generation on the calling thread and
      * is primarily intended for synchronous access such as spawn setup or block
-     * modification.
+     * modification. If another thread is already loading the chunk this call
+     * waits for that load instead of starting a second one. Chunks loaded
+     * here get a temporary ticket so they are not unloaded straight away.
      */
     public Chunk getChunk(int cx, int cy, int cz) {
         ChunkPos pos = new ChunkPos(cx, cy, cz);
-        return chunks.computeIfAbsent(pos, p -> {
-            Chunk chunk = loadChunk(p.x(), p.y(), p.z());
-            if (chunk == null) {
-                if (debug) {
-                    System.out.println("Generating chunk " + p.x() + "," + p.y() + "," + p.z());
-                }
-                chunk = new Chunk();
-                chunk.setOrigin(Chunk.Origin.GENERATED);
-                if (generator != null) {
-                    generator.generate(this, p.x(), p.y(), p.z(), chunk);
+        Chunk chunk = chunks.get(pos);
+        if (chunk != null) {
+            return chunk;
+        }
+        CompletableFuture<Chunk> future = new CompletableFuture<>();
+        CompletableFuture<Chunk> existing = claimLoad(pos, future);
+        if (existing != null) {
+            return existing.join();
+        }
+        tickets.addTemporary(pos, TEMPORARY_TICKET_NANOS);
+        load(pos, future);
+        return future.join();
+    }
+
+    /**
+     * Returns a future for the chunk at the given coordinates. Loaded chunks
+     * complete immediately; otherwise the chunk goes through the pipeline's
+     * read and generation stages, sharing the load with any other caller
+     * asking for the same chunk.
+     */
+    public CompletableFuture<Chunk> getChunkAsync(int cx, int cy, int cz) {
+        ChunkPos pos = new ChunkPos(cx, cy, cz);
+        Chunk chunk = chunks.get(pos);
+        if (chunk != null) {
+            return CompletableFuture.completedFuture(chunk);
+        }
+        CompletableFuture<Chunk> future = new CompletableFuture<>();
+        CompletableFuture<Chunk> existing = claimLoad(pos, future);
+        if (existing != null) {
+            return existing;
+        }
+        // wait for a read slot on a virtual thread so the caller never blocks
+        Thread.ofVirtual().name("chunk-async").start(() -> startLoad(pos, future));
+        return future;
+    }
+
+    /**
+     * Registers {@code future} as the in-flight load for the position. Returns
+     * the future to wait on instead if the chunk is already loaded or being
+     * loaded, or {@code null} if the caller now owns the load.
+     */
+    private CompletableFuture<Chunk> claimLoad(ChunkPos pos, CompletableFuture<Chunk> future) {
+        CompletableFuture<Chunk> existing = loading.putIfAbsent(pos, future);
+        if (existing != null) {
+            return existing;
+        }
+        // a load may have finished between the caller's map lookup and the claim
+        Chunk chunk = chunks.get(pos);
+        if (chunk != null) {
+            loading.remove(pos, future);
+            future.complete(chunk);
+            return future;
+        }
+        return null;
+    }
+
+    /**
+     * Loads or generates the chunk on the calling thread, outside any map
+     * lock, and publishes it.
+     */
+    private void load(ChunkPos pos, CompletableFuture<Chunk> future) {
+        try {
+            Chunk chunk = loadChunk(pos.x(), pos.y(), pos.z());
+            boolean generated = chunk == null;
+            if (generated) {
+                chunk = generate(pos);
+            }
+            publish(pos, chunk, generated, future);
+        } catch (Throwable t) {
+            fail(pos, future, t);
+        }
+    }
+
+    /**
+     * Hands the load to the pipeline's read stage, waiting while that stage
+     * is full. Chunks not found on disk continue to the generation stage.
+     * With delta saves the read stage only looks up a chunk's edits; its
+     * terrain is regenerated on the generation stage like any other, and the
+     * edits are reapplied there.
+     */
+    private void startLoad(ChunkPos pos, CompletableFuture<Chunk> future) {
+        try {
+            pipeline.io().submit(() -> {
+                try {
+                    Chunk chunk;
+                    DeltaStorage.ChunkDelta delta = null;
+                    if (storage instanceof DeltaStorage deltas) {
+                        chunk = persistence.getPending(pos);
+                        if (chunk == null) {
+                            delta = loadDelta(deltas, pos);
+                        }
+                    } else {
+                        chunk = loadChunk(pos.x(), pos.y(), pos.z());
+                    }
+                    if (chunk != null) {
+                        publish(pos, chunk, false, future);
+                    } else {
+                        submitGeneration(pos, delta, future);
+                    }
+                } catch (Throwable t) {
+                    fail(pos, future, t);
                 }
-                // persist newly generated chunk immediately
-                writeChunk(chunk, p.x(), p.y(), p.z());
-            } else {
-                if (debug) {
-                    System.out.println("Loaded chunk " + p.x() + "," + p.y() + "," + p.z());
+            });
+        } catch (RejectedExecutionException e) {
+            fail(pos, future, e);
+        }
+    }
+
+    /** Generates the chunk on the generation stage and reapplies its saved edits, if it has any. */
+    private void submitGeneration(ChunkPos pos, DeltaStorage.ChunkDelta delta, CompletableFuture<Chunk> future) {
+        pipeline.generation().submit(() -> {
+            try {
+                if (delta != null) {
+                    publish(pos, DeltaStorage.restore(generate(pos), delta), false, future);
+                } else {
+                    publish(pos, generate(pos), true, future);
                 }
+            } catch (Throwable t) {
+                fail(pos, future, t);
             }
-            chunk.updateFaceSolidity();
-            markNeighborsDirty(p.x(), p.y(), p.z());
-            updateVisibilityAround(p.x(), p.y(), p.z());
-            return chunk;
         });
     }
 
+    private Chunk generate(ChunkPos pos) {
+        if (debug) {
+            System.out.println("Generating chunk " + pos.x() + "," + pos.y() + "," + pos.z());
+        }
+        ChunkEvents.Generate event = new ChunkEvents.Generate();
+        event.begin();
+        long start = System.nanoTime();
+        Chunk chunk = generateChunk(pos.x(), pos.y(), pos.z());
+        generateTime.record(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.setChunk(pos.x(), pos.y(), pos.z());
+            event.commit();
+        }
+        if (!storage.storesGeneratedChunks()) {
+            // the generator can recreate it from the seed, so there is nothing to save yet
+            chunk.markSaved();
+        }
+        return chunk;
+    }
+
+    /**
+     * Lights the chunk from its own blocks and makes it visible. Light
+     * exchange with neighbours and neighbour remeshing run once the chunk is
+     * in the world, newly generated chunks are then handed to the
+     * write-behind queue, and the future is completed last. A failure after
+     * the chunk is in the world is logged rather than failing the load, since
+     * the chunk is already there for everyone to use.
+     */
+    private void publish(ChunkPos pos, Chunk chunk, boolean generated, CompletableFuture<Chunk> future) {
+        if (!generated && debug) {
+            System.out.println("Loaded chunk " + pos.x() + "," + pos.y() + "," + pos.z());
+        }
+        lighting.initialize(chunk, pos.x(), pos.y(), pos.z());
+        chunk.updateFaceSolidity();
+        chunk.updateConnectivity();
+        chunks.put(pos, chunk);
+        grid.set(pos.x(), pos.y(), pos.z(), chunk);
+        try {
+            lighting.chunkLoaded(pos.x(), pos.y(), pos.z());
+            markNeighborsDirty(pos.x(), pos.y(), pos.z());
+            if (generated && storage.storesGeneratedChunks()) {
+                persistence.enqueue(pos, chunk);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Failed to finish publishing chunk " + pos + ": " + e);
+        }
+        (generated ? generatedCount : readCount).increment();
+        loading.remove(pos, future);
+        future.complete(chunk);
+    }
+
+    private void fail(ChunkPos pos, CompletableFuture<Chunk> future, Throwable t) {
+        loading.remove(pos, future);
+        future.completeExceptionally(t);
+    }
+
+    /** Number of chunks currently being loaded or generated. */
+    public int getLoadingCount() {
+        return loading.size();
+    }
+
+    /** Creates a chunk filled with freshly generated terrain and no recorded edits. */
+    private Chunk generateChunk(int cx, int cy, int cz) {
+        Chunk chunk = new Chunk();
+        chunk.setOrigin(Chunk.Origin.GENERATED);
+        if (generator != null) {
+            generator.generate(this, cx, cy, cz, chunk);
+        }
+        chunk.clearEdits();
+        return chunk;
+    }
+
     public boolean isDebug() {
         return debug;
     }
 
+    /** Returns the storage chunks are loaded from and saved to. */
+    public ChunkStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Reads saved chunks along the player's predicted path into memory ahead
+     * of time. Cheap to call every frame.
+     */
+    public void prefetch(Player player) {
+        if (prefetcher != null) {
+            prefetcher.update(player);
+        }
+    }
+
     /**
      * Retrieves a chunk if it has already been generated, or {@code null}
      * otherwise.
@@ -116,50 +390,203 @@ public class World {
 
     /**
      * Queues asynchronous generation for the specified chunk if it has not been
-     * loaded yet. Multiple requests for the same chunk are coalesced. The player
-     * chunk coordinates are provided so requests can be prioritized by proximity.
+     * loaded yet. Multiple requests for the same chunk are coalesced, and
+     * requests are prioritized against the focus last passed to
+     * {@link #updateRequestFocus}. Returns whether a new request was queued.
      */
-    public void requestChunk(int cx, int cy, int cz, int pcx, int pcy, int pcz) {
+    public boolean requestChunk(int cx, int cy, int cz) {
+        return requestChunk(cx, cy, cz, ChunkRequestScheduler.Priority.VISIBLE);
+    }
+
+    /** Like {@link #requestChunk(int, int, int)} but in the given priority class. */
+    public boolean requestChunk(int cx, int cy, int cz, ChunkRequestScheduler.Priority priority) {
         ChunkPos pos = new ChunkPos(cx, cy, cz);
-        if (chunks.containsKey(pos) || pending.contains(pos)) {
-            return;
+        if (chunks.containsKey(pos) || loading.containsKey(pos)) {
+            return false;
         }
-        if (workers.getQueue().size() >= maxQueueSize) {
-            return; // Too many pending tasks, drop this request.
+        boolean queued = scheduler.submit(pos, priority);
+        if (queued) {
+            ChunkEvents.Request event = new ChunkEvents.Request();
+            if (event.shouldCommit()) {
+                event.setChunk(cx, cy, cz);
+                event.priority = priority.name();
+                event.commit();
+            }
         }
-        int dx = cx - pcx;
-        int dy = cy - pcy;
-        int dz = cz - pcz;
-        int distSq = dx * dx + dy * dy + dz * dz;
-        pending.add(pos);
-        try {
-            workers.execute(new ChunkRequest(cx, cy, cz, pos, distSq));
-        } catch (RejectedExecutionException e) {
-            pending.remove(pos); // Executor shutting down or queue full; drop the task.
+        return queued;
+    }
+
+    /**
+     * Requests chunks along the player's predicted path at a lower priority
+     * than visible chunks. Cheap to call every frame.
+     */
+    public void predictChunks(Player player) {
+        predictor.update(player);
+    }
+
+    /** Returns the predictor requesting chunks ahead of the player. */
+    public ChunkPredictor getPredictor() {
+        return predictor;
+    }
+
+    /**
+     * Re-centres chunk request priorities on the player. Pending requests are
+     * re-scored when the player enters a new chunk or turns far enough, and
+     * requests farther than {@code radius} chunks are cancelled.
+     */
+    public void updateRequestFocus(Player player, int radius) {
+        scheduler.updateFocus(
+                (int) Math.floor(player.getX() / Chunk.SIZE),
+                (int) Math.floor(player.getY() / Chunk.SIZE),
+                (int) Math.floor(player.getZ() / Chunk.SIZE),
+                player.getLookX(), player.getLookY(), player.getLookZ(),
+                radius);
+    }
+
+    /**
+     * Returns the dense view of chunks around the player used by the render
+     * path. The renderer keeps it centred through {@link ChunkGrid#recenter}.
+     */
+    public ChunkGrid getGrid() {
+        return grid;
+    }
+
+    /** Returns the tickets deciding which chunks stay loaded and at what level. */
+    public ChunkTickets getTickets() {
+        return tickets;
+    }
+
+    /** Returns the level the chunk's tickets give it. */
+    public ChunkTickets.LoadLevel getLoadLevel(int cx, int cy, int cz) {
+        return tickets.levelOf(cx, cy, cz);
+    }
+
+    /**
+     * Moves the player's ticket to the player: chunks within
+     * {@code fullRadius} get full-detail meshes, the rest of the render
+     * distance {@code viewRadius} gets LOD meshes, and chunks a little further
+     * out, including those requested ahead of the player, keep their data.
+     */
+    public void updatePlayerTicket(Player player, int fullRadius, int viewRadius) {
+        ChunkPos center = new ChunkPos(
+                (int) Math.floor(player.getX() / Chunk.SIZE),
+                (int) Math.floor(player.getY() / Chunk.SIZE),
+                (int) Math.floor(player.getZ() / Chunk.SIZE));
+        int dataRadius = viewRadius + Math.max(UNLOAD_MARGIN, scheduler.getPredictionMargin());
+        if (playerTicket == null) {
+            playerTicket = tickets.add(ChunkTickets.Type.PLAYER, center, fullRadius, viewRadius, dataRadius);
+        } else {
+            tickets.update(playerTicket, center, fullRadius, viewRadius, dataRadius);
         }
     }
 
-    /** Simple task wrapper carrying distance information for prioritization. */
-    private class ChunkRequest implements Runnable {
-        final int cx, cy, cz;
-        final ChunkPos pos;
-        final int distanceSq;
+    /**
+     * Keeps the chunks within {@code radius} of the centre loaded at full
+     * detail until the ticket is removed, and starts loading them.
+     */
+    public ChunkTickets.Ticket forceLoad(ChunkPos center, int radius) {
+        ChunkTickets.Ticket ticket = tickets.add(ChunkTickets.Type.FORCED, center, radius, radius, radius);
+        for (int cx = center.x() - radius; cx <= center.x() + radius; cx++) {
+            for (int cy = center.y() - radius; cy <= center.y() + radius; cy++) {
+                for (int cz = center.z() - radius; cz <= center.z() + radius; cz++) {
+                    getChunkAsync(cx, cy, cz);
+                }
+            }
+        }
+        return ticket;
+    }
 
-        ChunkRequest(int cx, int cy, int cz, ChunkPos pos, int distanceSq) {
-            this.cx = cx;
-            this.cy = cy;
-            this.cz = cz;
-            this.pos = pos;
-            this.distanceSq = distanceSq;
+    /**
+     * Brings loaded chunks in line with their tickets: chunks that dropped to
+     * LOD level lose their full-detail mesh, data-only chunks lose every mesh
+     * and chunks no ticket covers are queued for saving and removed. Regions
+     * left without resident chunks are released. Runs when tickets changed,
+     * and otherwise at most once per {@link #UNLOAD_INTERVAL_NANOS} to pick up
+     * chunks that finished loading after they were no longer wanted. Must be
+     * called on the render thread since it frees meshes. Returns the number
+     * of chunks unloaded.
+     */
+    public int unloadChunks() {
+        long now = System.nanoTime();
+        if (!tickets.expireAndCheckChanged(now) && now - lastUnloadPass < UNLOAD_INTERVAL_NANOS) {
+            return 0;
+        }
+        lastUnloadPass = now;
+        Map<ChunkPos, Chunk> unsaved = new HashMap<>();
+        Set<RegionPos> touched = new HashSet<>();
+        int unloaded = 0;
+        for (var it = chunks.entrySet().iterator(); it.hasNext();) {
+            var entry = it.next();
+            ChunkPos pos = entry.getKey();
+            Chunk chunk = entry.getValue();
+            switch (tickets.levelOf(pos.x(), pos.y(), pos.z())) {
+                case FULL -> { }
+                case LOD -> chunk.disposeMesh();
+                case DATA -> chunk.disposeMeshes();
+                case UNLOADED -> {
+                    it.remove();
+                    grid.remove(pos.x(), pos.y(), pos.z(), chunk);
+                    chunk.disposeMeshes();
+                    if (chunk.needsSave()) {
+                        unsaved.put(pos, chunk);
+                    }
+                    touched.add(RegionPos.ofChunk(pos.x(), pos.y(), pos.z()));
+                    unloaded++;
+                }
+            }
+        }
+        if (!unsaved.isEmpty()) {
+            persistence.enqueueAll(unsaved);
+        }
+        if (!touched.isEmpty()) {
+            for (ChunkPos pos : chunks.keySet()) {
+                touched.remove(RegionPos.ofChunk(pos.x(), pos.y(), pos.z()));
+            }
+            for (RegionPos region : touched) {
+                storage.release(region);
+            }
         }
+        unloadedCount += unloaded;
+        return unloaded;
+    }
 
-        @Override
-        public void run() {
-            try {
-                getChunk(cx, cy, cz);
-            } finally {
-                pending.remove(pos);
+    /** Number of chunks unloaded because no ticket covered them. */
+    public long getUnloadedCount() {
+        return unloadedCount;
+    }
+
+    /** Returns the scheduler ordering asynchronous chunk requests. */
+    public ChunkRequestScheduler getRequestScheduler() {
+        return scheduler;
+    }
+
+    /** Returns the stages chunks are read, generated, meshed and uploaded through. */
+    public ChunkPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Feeds the most useful requests into the pipeline. Waiting for a free
+     * read slot here, rather than queueing every request in the pipeline,
+     * keeps the remaining work ordered by the scheduler.
+     */
+    private void requestLoop() {
+        ChunkRequestScheduler.Request request;
+        while ((request = scheduler.take()) != null) {
+            ChunkPos pos = request.pos();
+            CompletableFuture<Chunk> future = new CompletableFuture<>();
+            if (claimLoad(pos, future) != null) {
+                scheduler.complete(request);
+                continue;
             }
+            ChunkRequestScheduler.Request taken = request;
+            future.whenComplete((chunk, e) -> {
+                if (e != null) {
+                    System.err.println("Failed to load chunk " + pos.x() + "," + pos.y() + "," + pos.z() + ": " + e);
+                }
+                scheduler.complete(taken);
+            });
+            startLoad(pos, future);
         }
     }
 
@@ -182,205 +609,294 @@ public class World {
     }
 
     /**
-     * Sets a block at world coordinates and writes the enclosing chunk back to disk.
+     * Sets a block at world coordinates and queues the enclosing chunk to be
+     * written back to disk.
      */
     public void setBlock(int x, int y, int z, BlockType type) {
         int cx = worldToChunk(x);
         int cy = worldToChunk(y);
         int cz = worldToChunk(z);
         Chunk chunk = getChunk(cx, cy, cz);
+        tickets.addTemporary(new ChunkPos(cx, cy, cz), TEMPORARY_TICKET_NANOS);
         chunk.setBlock(mod(x), mod(y), mod(z), type);
-        chunk.updateFaceSolidity();
+        lighting.blockChanged(x, y, z);
+        blockTicks.blockChanged(x, y, z);
+        finishEdits(cx, cy, cz, chunk);
+    }
+
+    /**
+     * Updates occlusion if the chunk's faces or the openings between them
+     * changed, remeshes the chunk and its neighbours and queues the
+     * chunk to be saved after one or more of its blocks were set, so a batch
+     * of edits to one chunk pays for this once.
+     */
+    void finishEdits(int cx, int cy, int cz, Chunk chunk) {
+        boolean solidityChanged = chunk.updateFaceSolidity();
+        boolean connectivityChanged = chunk.updateConnectivity();
         markNeighborsDirty(cx, cy, cz);
-        updateVisibilityAround(cx, cy, cz);
-        // persist the chunk immediately so modifications survive crashes
-        saveChunk(cx, cy, cz);
+        if (solidityChanged || connectivityChanged) {
+            grid.updateOcclusionAround(cx, cy, cz);
+        }
+        // queue the chunk right away so modifications survive crashes, even if it was unloaded meanwhile
+        persistence.enqueue(new ChunkPos(cx, cy, cz), chunk);
     }
 
     /**
-     * Stops the worker threads. Should be invoked on application shutdown.
+     * Like {@link #finishEdits}, for edits that only swapped air and water.
+     * Both count as open for face solidity and connectivity, so neither can
+     * have changed and the chunk's occlusion is left alone.
+     */
+    void finishFluidEdits(int cx, int cy, int cz, Chunk chunk) {
+        markNeighborsDirty(cx, cy, cz);
+        persistence.enqueue(new ChunkPos(cx, cy, cz), chunk);
+    }
+
+    /**
+     * Casts a ray from the origin along the direction, which need not be of
+     * unit length, and stores the first block that is not air within
+     * {@code maxDistance} in {@code hit}. Returns whether a block was hit.
+     * <p>
+     * Blocks are visited in order with Amanatides and Woo's grid traversal.
+     * Chunks that are empty or not loaded are crossed in a single step to
+     * where the ray leaves them, so long rays through the sky or unexplored
+     * terrain stay cheap. The only work besides arithmetic is one chunk
+     * lookup per chunk crossed; nothing is retained, so a caller reusing
+     * {@code hit} can cast rays in a tight loop without garbage. Safe to call
+     * from any thread; a ray racing an edit sees the block before or after it.
+     */
+    public boolean raycast(double ox, double oy, double oz, double dx, double dy, double dz, double maxDistance,
+            RaycastHit hit) {
+        hit.reset();
+        double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (length == 0 || !(maxDistance >= 0)) {
+            return false;
+        }
+        dx /= length;
+        dy /= length;
+        dz /= length;
+        int x = (int) Math.floor(ox);
+        int y = (int) Math.floor(oy);
+        int z = (int) Math.floor(oz);
+        int stepX = (int) Math.signum(dx);
+        int stepY = (int) Math.signum(dy);
+        int stepZ = (int) Math.signum(dz);
+        // distance along the ray between block boundaries on each axis
+        double deltaX = Math.abs(1 / dx);
+        double deltaY = Math.abs(1 / dy);
+        double deltaZ = Math.abs(1 / dz);
+        // distance along the ray to the next block boundary on each axis
+        double maxX = nextBoundary(ox, x, stepX, dx);
+        double maxY = nextBoundary(oy, y, stepY, dy);
+        double maxZ = nextBoundary(oz, z, stepZ, dz);
+        double t = 0;
+        int face = -1;
+        int cx = worldToChunk(x);
+        int cy = worldToChunk(y);
+        int cz = worldToChunk(z);
+        Chunk chunk = getChunkIfLoaded(cx, cy, cz);
+        while (t <= maxDistance) {
+            if (worldToChunk(x) != cx || worldToChunk(y) != cy || worldToChunk(z) != cz) {
+                cx = worldToChunk(x);
+                cy = worldToChunk(y);
+                cz = worldToChunk(z);
+                chunk = getChunkIfLoaded(cx, cy, cz);
+            }
+            if (chunk == null || chunk.isEmpty()) {
+                // jump straight to the block where the ray enters the next chunk
+                int last = Chunk.SIZE - 1;
+                double exitX = nextBoundary(ox, cx * Chunk.SIZE + (stepX > 0 ? last : 0), stepX, dx);
+                double exitY = nextBoundary(oy, cy * Chunk.SIZE + (stepY > 0 ? last : 0), stepY, dy);
+                double exitZ = nextBoundary(oz, cz * Chunk.SIZE + (stepZ > 0 ? last : 0), stepZ, dz);
+                t = Math.min(exitX, Math.min(exitY, exitZ));
+                if (t > maxDistance) {
+                    return false;
+                }
+                hit.addSkippedChunk();
+                // on the axes the ray does not leave through it stays within the chunk
+                x = clampToChunk((int) Math.floor(ox + dx * t), cx);
+                y = clampToChunk((int) Math.floor(oy + dy * t), cy);
+                z = clampToChunk((int) Math.floor(oz + dz * t), cz);
+                if (exitX <= exitY && exitX <= exitZ) {
+                    x = stepX > 0 ? (cx + 1) * Chunk.SIZE : cx * Chunk.SIZE - 1;
+                    face = stepX > 0 ? 1 : 0;
+                } else if (exitY <= exitZ) {
+                    y = stepY > 0 ? (cy + 1) * Chunk.SIZE : cy * Chunk.SIZE - 1;
+                    face = stepY > 0 ? 3 : 2;
+                } else {
+                    z = stepZ > 0 ? (cz + 1) * Chunk.SIZE : cz * Chunk.SIZE - 1;
+                    face = stepZ > 0 ? 5 : 4;
+                }
+                maxX = nextBoundary(ox, x, stepX, dx);
+                maxY = nextBoundary(oy, y, stepY, dy);
+                maxZ = nextBoundary(oz, z, stepZ, dz);
+                continue;
+            }
+            BlockType block = chunk.getBlock(x - cx * Chunk.SIZE, y - cy * Chunk.SIZE, z - cz * Chunk.SIZE);
+            if (block != BlockType.AIR) {
+                hit.set(x, y, z, face, t, block);
+                return true;
+            }
+            // entering a block while moving along +X means entering through its -X face, and so on
+            if (maxX <= maxY && maxX <= maxZ) {
+                t = maxX;
+                x += stepX;
+                maxX += deltaX;
+                face = stepX > 0 ? 1 : 0;
+            } else if (maxY <= maxZ) {
+                t = maxY;
+                y += stepY;
+                maxY += deltaY;
+                face = stepY > 0 ? 3 : 2;
+            } else {
+                t = maxZ;
+                z += stepZ;
+                maxZ += deltaZ;
+                face = stepZ > 0 ? 5 : 4;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Distance along a unit ray from {@code origin} to where it leaves block
+     * {@code block} on one axis, or infinity if it does not move on that axis.
+     */
+    private static double nextBoundary(double origin, int block, int step, double direction) {
+        if (step == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return ((step > 0 ? block + 1 : block) - origin) / direction;
+    }
+
+    private static int clampToChunk(int c, int chunk) {
+        return Math.max(chunk * Chunk.SIZE, Math.min(chunk * Chunk.SIZE + Chunk.SIZE - 1, c));
+    }
+
+    /**
+     * Stops the chunk pipeline and flushes every unsaved chunk to disk. Should
+     * be invoked on application shutdown.
      */
     public void shutdown() {
-        workers.shutdown();
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+        }
+        scheduler.close();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
         try {
-            if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
-                workers.shutdownNow();
-            }
+            dispatcher.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
         } catch (InterruptedException e) {
-            workers.shutdownNow();
             Thread.currentThread().interrupt();
         }
+        // loads already in the pipeline finish; work still running after the deadline is abandoned
+        pipeline.shutdown(deadline);
+        blockTicks.shutdown();
+        lighting.shutdown();
         saveAll();
+        persistence.close();
+        storage.releaseAll();
     }
 
-    /** Saves all loaded chunks whose data changed since the last write, with progress output. */
+    /**
+     * Writes all loaded chunks whose data changed since the last write. Dirty
+     * chunks are queued in one go and flushed region by region across a
+     * bounded pool of helper threads, with progress reported at a fixed
+     * interval.
+     */
     public void saveAll() {
-        var positions = new ArrayList<ChunkPos>();
-        for (var pos : chunks.keySet()) {
-            Chunk chunk = chunks.get(pos);
-            if (chunk != null && chunk.needsSave()) {
-                positions.add(pos);
+        Map<ChunkPos, Chunk> dirty = new HashMap<>();
+        for (var entry : chunks.entrySet()) {
+            if (entry.getValue().needsSave()) {
+                dirty.put(entry.getKey(), entry.getValue());
             }
         }
-        int total = positions.size();
-        if (total == 0) {
+        persistence.enqueueAll(dirty);
+        int total = dirty.size();
+        if (total == 0 && persistence.awaitIdle(0, TimeUnit.MILLISECONDS)) {
             return;
         }
         System.out.println("Saving " + total + " chunks...");
         long start = System.nanoTime();
-        for (int i = 0; i < total; i++) {
-            ChunkPos pos = positions.get(i);
-            saveChunk(pos.x(), pos.y(), pos.z());
+        long writtenBefore = persistence.getChunksWritten();
+        ExecutorService helpers = Executors.newFixedThreadPool(saveThreads);
+        for (int i = 0; i < saveThreads; i++) {
+            helpers.execute(persistence::drainAvailable);
+        }
+        while (!persistence.awaitIdle(SAVE_PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            long done = persistence.getChunksWritten() - writtenBefore;
             long elapsed = System.nanoTime() - start;
-            long avg = elapsed / (i + 1);
-            long eta = avg * (total - i - 1);
-            System.out.printf("Saved %d/%d chunks (ETA %.1fs)%n", i + 1, total, eta / 1_000_000_000.0);
+            // there is no rate to extrapolate from until the first chunk is written
+            String eta = done == 0 ? "?"
+                    : String.format("%.1fs", (double) elapsed / done * Math.max(0, total - done) / 1e9);
+            System.out.printf("Saved %d/%d chunks (ETA %s)%n", Math.min(done, total), total, eta);
         }
-        System.out.println("Finished saving chunks.");
+        helpers.shutdown();
+        System.out.printf("Finished saving chunks in %.1fs.%n", (System.nanoTime() - start) / 1e9);
     }
 
-    /** Saves a single chunk if it has unsaved changes. */
+    /** Queues a single chunk for saving if it has unsaved changes. */
     public void saveChunk(int cx, int cy, int cz) {
-        Chunk chunk = getChunkIfLoaded(cx, cy, cz);
+        ChunkPos pos = new ChunkPos(cx, cy, cz);
+        Chunk chunk = chunks.get(pos);
         if (chunk == null || !chunk.needsSave()) {
             return;
         }
-        writeChunk(chunk, cx, cy, cz);
+        persistence.enqueue(pos, chunk);
     }
 
-    /** Writes the provided chunk data to its region file. */
-    private void writeChunk(Chunk chunk, int cx, int cy, int cz) {
-        Path path = regionPath(cx, cy, cz);
-        long index = chunkIndex(cx, cy, cz);
-        long offset = chunkOffset(cx, cy, cz);
-        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
-            if (raf.length() < HEADER_BYTES) {
-                raf.setLength(HEADER_BYTES);
-            }
-            raf.seek(offset);
-            for (int x = 0; x < Chunk.SIZE; x++) {
-                for (int y = 0; y < Chunk.SIZE; y++) {
-                    for (int z = 0; z < Chunk.SIZE; z++) {
-                        raf.writeByte(chunk.getBlock(x, y, z).ordinal());
-                    }
-                }
-            }
-            int byteIndex = (int) (index >>> 3);
-            int bitMask = 1 << (index & 7);
-            raf.seek(byteIndex);
-            int flags = raf.read();
-            if (flags < 0) {
-                flags = 0;
-            }
-            raf.seek(byteIndex);
-            raf.write(flags | bitMask);
-            chunk.markSaved();
-            chunk.clearEmptyLodSteps();
-        } catch (IOException e) {
-            System.err.println("Failed to save chunk " + cx + "," + cy + "," + cz + ": " + e.getMessage());
-        }
+    /** Returns the queue that writes chunks to disk in the background. */
+    public WriteBehindQueue getPersistence() {
+        return persistence;
     }
 
     private Chunk loadChunk(int cx, int cy, int cz) {
-        Path path = regionPath(cx, cy, cz);
-        if (!Files.exists(path)) {
-            return null;
+        Chunk queued = persistence.getPending(new ChunkPos(cx, cy, cz));
+        if (queued != null) {
+            return queued;
         }
-        long index = chunkIndex(cx, cy, cz);
-        long offset = chunkOffset(cx, cy, cz);
-        Chunk chunk = new Chunk();
-        chunk.setOrigin(Chunk.Origin.LOADED);
-        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "r")) {
-            if (raf.length() < HEADER_BYTES) {
-                return null;
-            }
-            int byteIndex = (int) (index >>> 3);
-            int bitMask = 1 << (index & 7);
-            raf.seek(byteIndex);
-            int flags = raf.read();
-            if (flags < 0 || (flags & bitMask) == 0) {
-                return null;
-            }
-            if (offset + CHUNK_BYTES > raf.length()) {
-                return null;
-            }
-            raf.seek(offset);
-            for (int x = 0; x < Chunk.SIZE; x++) {
-                for (int y = 0; y < Chunk.SIZE; y++) {
-                    for (int z = 0; z < Chunk.SIZE; z++) {
-                        int ord = raf.readUnsignedByte();
-                        chunk.setBlockUnchecked(x, y, z, BlockType.values()[ord]);
-                    }
-                }
-            }
-            chunk.markSaved();
-            chunk.clearEmptyLodSteps();
-            chunk.updateFaceSolidity();
-        } catch (IOException e) {
-            System.err.println("Failed to load chunk " + cx + "," + cy + "," + cz + ": " + e.getMessage());
-            return null;
+        ChunkEvents.Load event = new ChunkEvents.Load();
+        event.begin();
+        long start = System.nanoTime();
+        Chunk chunk = storage.read(cx, cy, cz);
+        readTime.record(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.setChunk(cx, cy, cz);
+            event.found = chunk != null;
+            event.commit();
         }
         return chunk;
     }
 
-    private Path regionPath(int cx, int cy, int cz) {
-        int rx = regionCoord(cx);
-        int ry = regionCoord(cy);
-        int rz = regionCoord(cz);
-        return saveDir.resolve("r_" + rx + "_" + ry + "_" + rz + ".rg");
-    }
-
-    private Path regionPathFromCoords(int rx, int ry, int rz) {
-        return saveDir.resolve("r_" + rx + "_" + ry + "_" + rz + ".rg");
-    }
-
-    private long chunkIndex(int cx, int cy, int cz) {
-        int lx = regionMod(cx);
-        int ly = regionMod(cy);
-        int lz = regionMod(cz);
-        return ((long) lx * REGION_SIZE + ly) * REGION_SIZE + lz;
-    }
-
-    private long chunkOffset(int cx, int cy, int cz) {
-        return HEADER_BYTES + chunkIndex(cx, cy, cz) * CHUNK_BYTES;
+    /** Looks up the saved edits of a chunk for delta saves, recording it like {@link #loadChunk}. */
+    private DeltaStorage.ChunkDelta loadDelta(DeltaStorage deltas, ChunkPos pos) {
+        ChunkEvents.Load event = new ChunkEvents.Load();
+        event.begin();
+        long start = System.nanoTime();
+        DeltaStorage.ChunkDelta delta = deltas.readDelta(pos.x(), pos.y(), pos.z());
+        readTime.record(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.setChunk(pos.x(), pos.y(), pos.z());
+            event.found = delta != null;
+            event.commit();
+        }
+        return delta;
     }
 
     /** Deletes the region file at the given region coordinates and unloads its chunks. */
     public void deleteRegion(int rx, int ry, int rz) {
-        chunks.keySet().removeIf(pos ->
-                regionCoord(pos.x()) == rx &&
-                regionCoord(pos.y()) == ry &&
-                regionCoord(pos.z()) == rz);
-        try {
-            Files.deleteIfExists(regionPathFromCoords(rx, ry, rz));
-        } catch (IOException e) {
-            System.err.println("Failed to delete region " + rx + "," + ry + "," + rz + ": " + e.getMessage());
-        }
+        RegionPos region = new RegionPos(rx, ry, rz);
+        chunks.keySet().removeIf(pos -> RegionPos.ofChunk(pos.x(), pos.y(), pos.z()).equals(region));
+        grid.clear();
+        persistence.discardRegion(region);
+        storage.deleteRegion(region);
     }
 
     /** Deletes all region files and unloads every chunk. */
     public void clearWorld() {
         chunks.clear();
-        pending.clear();
-        try (var stream = Files.list(saveDir)) {
-            stream.filter(p -> p.getFileName().toString().endsWith(".rg")).forEach(p -> {
-                try {
-                    Files.deleteIfExists(p);
-                } catch (IOException e) {
-                    System.err.println("Failed to delete region file " + p + ": " + e.getMessage());
-                }
-            });
-        } catch (IOException e) {
-            System.err.println("Failed to clear world: " + e.getMessage());
-        }
-    }
-
-    private int regionCoord(int c) {
-        return Math.floorDiv(c, REGION_SIZE);
-    }
-
-    private int regionMod(int c) {
-        return Math.floorMod(c, REGION_SIZE);
+        grid.clear();
+        scheduler.clear();
+        persistence.discardAll();
+        storage.deleteAll();
     }
 
     private int worldToChunk(int c) {
@@ -399,45 +915,4 @@ public class World {
             }
         }
     }
-
-    /** Updates occlusion state for the chunk at the given position and its neighbors. */
-    private void updateVisibilityAround(int cx, int cy, int cz) {
-        updateChunkVisibility(cx, cy, cz);
-        for (int[] d : DIRS) {
-            updateChunkVisibility(cx + d[0], cy + d[1], cz + d[2]);
-        }
-    }
-
-    private void updateChunkVisibility(int cx, int cy, int cz) {
-        Chunk chunk = getChunkIfLoaded(cx, cy, cz);
-        if (chunk == null) {
-            return;
-        }
-        boolean occ = true;
-        for (int i = 0; i < DIRS.length; i++) {
-            int[] d = DIRS[i];
-            Chunk n = getChunkIfLoaded(cx + d[0], cy + d[1], cz + d[2]);
-            if (n == null || !n.isFaceSolid(OPPOSITE[i])) {
-                occ = false;
-                break;
-            }
-        }
-        chunk.setOccluded(occ);
-    }
-
-    /** Returns {@code true} if the chunk at the position is fully hidden by neighbors. */
-    public boolean isChunkOccluded(int cx, int cy, int cz) {
-        Chunk chunk = getChunkIfLoaded(cx, cy, cz);
-        if (chunk != null) {
-            return chunk.isOccluded();
-        }
-        for (int i = 0; i < DIRS.length; i++) {
-            int[] d = DIRS[i];
-            Chunk n = getChunkIfLoaded(cx + d[0], cy + d[1], cz + d[2]);
-            if (n == null || !n.isFaceSolid(OPPOSITE[i])) {
-                return false;
-            }
-        }
-        return true;
-    }
 }
@@ -0,0 +1,150 @@
+package com.minecraftclone;
+
+/**
+ * Tunable settings for a {@link World}. The defaults match the behaviour of
+ * the plain {@code World} constructors so callers only override what they
+ * need.
+ */
+public class WorldOptions {
+    /**
+     * How chunks are persisted: {@code FULL} writes every chunk's blocks,
+     * {@code DELTA} writes only player edits and regenerates the rest.
+     */
+    public enum SaveFormat { FULL, DELTA }
+
+    private boolean debug;
+    private SaveFormat saveFormat = SaveFormat.FULL;
+    private RegionStorage.ReadMode readMode = RegionStorage.ReadMode.STREAM;
+    private boolean prefetch = true;
+    private int ioThreads = 2;
+    private int writeQueueCapacity = 4096;
+    private int saveThreads = Runtime.getRuntime().availableProcessors();
+    private int ioConcurrency = 64;
+    private int generationThreads = Runtime.getRuntime().availableProcessors();
+    private int meshThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private double uploadBudgetMillis = 2.0;
+    private double predictionSeconds = 3.0;
+
+    public boolean isDebug() {
+        return debug;
+    }
+
+    /** Logs chunk generation and loading and outlines chunks by origin. */
+    public WorldOptions debug(boolean debug) {
+        this.debug = debug;
+        return this;
+    }
+
+    public SaveFormat getSaveFormat() {
+        return saveFormat;
+    }
+
+    /** Selects how chunks are persisted. */
+    public WorldOptions saveFormat(SaveFormat saveFormat) {
+        this.saveFormat = saveFormat;
+        return this;
+    }
+
+    public RegionStorage.ReadMode getReadMode() {
+        return readMode;
+    }
+
+    /** Selects how region files are read back from disk in {@link SaveFormat#FULL} mode. */
+    public WorldOptions readMode(RegionStorage.ReadMode readMode) {
+        this.readMode = readMode;
+        return this;
+    }
+
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Reads saved chunks ahead of the player's movement in {@link SaveFormat#FULL}
+     * mode. Delta saves regenerate chunks instead, so there is nothing to read.
+     */
+    public WorldOptions prefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    /** Number of threads writing queued chunks to disk. */
+    public WorldOptions ioThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    public int getWriteQueueCapacity() {
+        return writeQueueCapacity;
+    }
+
+    /** Number of distinct chunks that may wait for saving before callers block. */
+    public WorldOptions writeQueueCapacity(int writeQueueCapacity) {
+        this.writeQueueCapacity = writeQueueCapacity;
+        return this;
+    }
+
+    public int getSaveThreads() {
+        return saveThreads;
+    }
+
+    /** Number of helper threads flushing regions in parallel when saving everything at once. */
+    public WorldOptions saveThreads(int saveThreads) {
+        this.saveThreads = saveThreads;
+        return this;
+    }
+
+    public int getIoConcurrency() {
+        return ioConcurrency;
+    }
+
+    /** Number of chunk reads that may be in progress at once. Reads run on virtual threads. */
+    public WorldOptions ioConcurrency(int ioConcurrency) {
+        this.ioConcurrency = ioConcurrency;
+        return this;
+    }
+
+    public int getGenerationThreads() {
+        return generationThreads;
+    }
+
+    /** Number of threads generating terrain. */
+    public WorldOptions generationThreads(int generationThreads) {
+        this.generationThreads = generationThreads;
+        return this;
+    }
+
+    public int getMeshThreads() {
+        return meshThreads;
+    }
+
+    /** Number of threads building chunk meshes. */
+    public WorldOptions meshThreads(int meshThreads) {
+        this.meshThreads = meshThreads;
+        return this;
+    }
+
+    public double getUploadBudgetMillis() {
+        return uploadBudgetMillis;
+    }
+
+    /** Render thread time per frame spent uploading finished meshes to the GPU. */
+    public WorldOptions uploadBudgetMillis(double uploadBudgetMillis) {
+        this.uploadBudgetMillis = uploadBudgetMillis;
+        return this;
+    }
+
+    public double getPredictionSeconds() {
+        return predictionSeconds;
+    }
+
+    /** How far ahead along the player's movement to request chunks, in seconds. Zero disables it. */
+    public WorldOptions predictionSeconds(double predictionSeconds) {
+        this.predictionSeconds = predictionSeconds;
+        return this;
+    }
+}
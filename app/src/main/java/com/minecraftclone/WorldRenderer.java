@@ -6,15 +6,9 @@ import static org.lwjgl.system.MemoryUtil.NULL;
 
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Queue;
-import java.util.Set;
-import java.util.Collections;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
 
 import org.lwjgl.BufferUtils;
 import org.lwjgl.glfw.Callbacks;
@@ -39,9 +33,31 @@ public class WorldRenderer {
     private int windowedHeight = DEFAULT_HEIGHT;
     /** Movement speed in world units per second. */
     private static final double MOVE_SPEED = 6.0;
+    /** Upward speed of a jump, enough to clear one block. */
+    private static final double JUMP_VELOCITY = 9.0;
+    /** Most simulated time caught up in one frame, so a long stall does not run hundreds of ticks. */
+    private static final double MAX_PHYSICS_CATCH_UP = 0.25;
     private static final double MOUSE_SENSITIVITY = 0.002;
+    /** Farthest block the player can break or place against, in blocks. */
+    private static final double REACH = 6.0;
+    private static final int[][] FACE_NORMALS = { {1,0,0}, {-1,0,0}, {0,1,0}, {0,-1,0}, {0,0,1}, {0,0,-1} };
+    /** Blocks the number keys 1 to 5 select for placing. */
+    private static final BlockType[] PLACEABLE = {
+            BlockType.DIRT, BlockType.STONE, BlockType.SAND, BlockType.LAMP, BlockType.WATER
+    };
     private static final int LOD1_STEP = 2;
     private static final int LOD2_STEP = 4;
+    /** Vertical field of view in degrees. */
+    private static final float FOV = 70f;
+    /** Rotation after which the candidate chunk list is rebuilt. */
+    private static final double CANDIDATE_ANGLE = Math.toRadians(10);
+    /** Resolution of the software occlusion buffer. */
+    private static final int OCCLUSION_WIDTH = 256;
+    private static final int OCCLUSION_HEIGHT = 128;
+    /** Nearest chunks in view whose solid faces are drawn as occluders each frame. */
+    private static final int MAX_OCCLUDER_CHUNKS = 256;
+    /** Seconds between refreshes of the metrics overlay's text. */
+    private static final double OVERLAY_REFRESH = 0.25;
     /** Number of chunks to render in each direction from the player. */
     private int renderDistance;
 
@@ -58,18 +74,84 @@ public class WorldRenderer {
     private boolean showCoordinates;
     /** Tracks whether the F3 key is currently pressed for debug shortcuts. */
     private boolean debugShortcutActive;
+    /** Whether a shortcut was used while F3 was held, so releasing it does not toggle the overlay. */
+    private boolean debugShortcutUsed;
+    /** Whether the metrics overlay is drawn; toggled by pressing F3 on its own. */
+    private boolean showOverlay;
+    private final DebugOverlay overlay = new DebugOverlay();
+    /** Reused for the block under the crosshair. */
+    private final RaycastHit target = new RaycastHit();
+    private BlockType selectedBlock = BlockType.DIRT;
+    private final Physics physics;
+    /** The player's collision box; the camera follows it between ticks. */
+    private final PhysicsBody body;
+    /** Frame time not yet simulated, less than one tick after each frame. */
+    private double physicsTime;
+    private List<String> overlayLines = List.of();
+    private double overlayRefreshed = Double.NEGATIVE_INFINITY;
+    private int lastFps;
 
     /** Number of chunks rendered in the most recent frame. */
     private int lastRenderedChunkCount;
     /** Scratch counter reset each frame before rendering. */
     private int renderedChunkCount;
 
-    private final ExecutorService lodWorkers;
-    private final Set<LodKey> pendingLods;
-    private final Queue<LodResult> completedLods;
-
-    /** View frustum planes computed each frame. Each plane is stored as [A,B,C,D]. */
-    private final float[][] frustum = new float[6][4];
+    /** Every chunk offset within the render distance, nearest first, as x,y,z triples. */
+    private int[] offsets = new int[0];
+    private int offsetsRadius = -1;
+    /** Offsets that may be in view, nearest first, as x,y,z triples. */
+    private int[] candidates = new int[0];
+    private int candidateCount;
+    private int candidatesX = Integer.MIN_VALUE;
+    private int candidatesY;
+    private int candidatesZ;
+    private double candidatesLookX;
+    private double candidatesLookY;
+    private double candidatesLookZ;
+    private int candidatesWidth;
+    private int candidatesHeight;
+    private long candidateRebuilds;
+    /** Chunks that passed culling this frame and their positions as x,y,z triples. */
+    private Chunk[] frameChunks = new Chunk[0];
+    private int[] framePositions = new int[0];
+    private int frameChunkCount;
+    /**
+     * Faces through which the cave-culling search entered each cell of the
+     * render cube, as a bit mask indexed like {@link Chunk#isFaceSolid}. A
+     * cell the search never entered cannot be seen from the player's chunk.
+     */
+    private byte[] entered = new byte[0];
+    private int[] searchQueue = new int[0];
+    private int searchX = Integer.MIN_VALUE;
+    private int searchY;
+    private int searchZ;
+    private int searchRadius = -1;
+    private int searchVersion;
+    private int caveCulledCount;
+    private final OcclusionCuller occlusion = new OcclusionCuller(OCCLUSION_WIDTH, OCCLUSION_HEIGHT);
+    private int occlusionCulledCount;
+    /** CPU time spent each frame deciding which chunks to draw, in nanoseconds. */
+    private final LatencyHistogram visibilityTime = new LatencyHistogram();
+
+    private final Camera camera = new Camera();
+    /** View frustum planes computed each frame from the camera. */
+    private final Frustum frustum = new Frustum();
+    private final ChunkFrustumCuller frustumCuller = new ChunkFrustumCuller(frustum);
+    /** Reused to hand matrices to OpenGL. */
+    private final FloatBuffer matrixBuffer = BufferUtils.createFloatBuffer(16);
+    /** Path the player's poses are appended to each frame, or {@code null} when not recording. */
+    private Flythrough recording;
+    /** Adjusts the render and LOD distances to fit the budgets, or {@code null} to keep them fixed. */
+    private RenderDistanceController distanceController;
+
+    private final Metrics metrics;
+    /** CPU time of each frame phase, in nanoseconds; the frame excludes waiting for the buffer swap. */
+    private final LatencyHistogram frameTime;
+    private final LatencyHistogram uploadTime;
+    private final LatencyHistogram cullTime;
+    private final LatencyHistogram drawTime;
+    private final LatencyHistogram unloadTime;
+    private final LatencyHistogram swapTime;
 
     public WorldRenderer(World world, Player player, int renderDistance, int lod1Start, int lod2Start) {
         this.world = world;
@@ -79,10 +161,49 @@ public class WorldRenderer {
         this.lod2Start = lod2Start;
         this.showChunkBorders = world.isDebug();
         this.showCoordinates = world.isDebug();
-        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
-        this.lodWorkers = Executors.newFixedThreadPool(threads);
-        this.pendingLods = Collections.newSetFromMap(new ConcurrentHashMap<>());
-        this.completedLods = new ConcurrentLinkedQueue<>();
+        this.metrics = world.getMetrics();
+        this.physics = new Physics(world);
+        this.body = new PhysicsBody(Player.WIDTH, Player.HEIGHT, Player.STEP_HEIGHT, player.getX(),
+                player.getY() - Player.EYE_HEIGHT, player.getZ());
+        this.frameTime = metrics.histogram("render.frame_ms", Metrics.Unit.NANOS);
+        this.uploadTime = metrics.histogram("render.upload_ms", Metrics.Unit.NANOS);
+        this.cullTime = metrics.histogram("render.cull_ms", Metrics.Unit.NANOS);
+        this.drawTime = metrics.histogram("render.draw_ms", Metrics.Unit.NANOS);
+        this.unloadTime = metrics.histogram("render.unload_ms", Metrics.Unit.NANOS);
+        this.swapTime = metrics.histogram("render.swap_ms", Metrics.Unit.NANOS);
+        metrics.gauge("render.chunks_drawn", () -> lastRenderedChunkCount);
+        metrics.gauge("render.cave_culled", () -> caveCulledCount);
+        metrics.gauge("render.occluded", () -> occlusionCulledCount);
+        metrics.gauge("render.candidate_rebuilds", () -> candidateRebuilds);
+        metrics.gauge("render.distance", () -> this.renderDistance);
+        // gauges are read on other threads, so they use the arena's published snapshot; the arena is
+        // looked up on each read because a backend change replaces it
+        metrics.gauge("mesh.arena.used_mib", () -> ChunkMesh.getArena().getSnapshot().usedBytes() / 1048576.0);
+        metrics.gauge("mesh.arena.capacity_mib",
+                () -> ChunkMesh.getArena().getSnapshot().capacityBytes() / 1048576.0);
+        metrics.gauge("mesh.arena.fragmentation", () -> ChunkMesh.getArena().getSnapshot().fragmentation());
+        metrics.gauge("mesh.arena.draw_calls", () -> ChunkMesh.getArena().getSnapshot().drawCalls());
+        metrics.gauge("mesh.arena.uploaded_mib",
+                () -> ChunkMesh.getArena().getSnapshot().uploadedBytes() / 1048576.0);
+        metrics.gauge("render.lod1_start", () -> this.lod1Start);
+        metrics.gauge("render.lod2_start", () -> this.lod2Start);
+        metrics.gauge("memory.mesh_full_mib", () -> ChunkMesh.getResidentBytes(ChunkPipeline.FULL_DETAIL) / 1048576.0);
+        metrics.gauge("memory.mesh_lod1_mib", () -> ChunkMesh.getResidentBytes(LOD1_STEP) / 1048576.0);
+        metrics.gauge("memory.mesh_lod2_mib", () -> ChunkMesh.getResidentBytes(LOD2_STEP) / 1048576.0);
+        metrics.gauge("memory.vram_mib", () -> ChunkMesh.getArena().getSnapshot().capacityBytes() / 1048576.0);
+    }
+
+    /**
+     * Lets {@code controller} change the render and LOD distances each frame
+     * to stay within its budgets, starting from its current choice.
+     */
+    public void setDistanceController(RenderDistanceController controller) {
+        this.distanceController = controller;
+        renderDistance = controller.getRenderDistance();
+        lod1Start = controller.getLod1Start();
+        lod2Start = controller.getLod2Start();
+        metrics.gauge("render.budget_pressure", controller::getPressure);
+        metrics.gauge("render.distance_changes", controller::getChanges);
     }
 
     /** Launches the rendering loop. */
@@ -90,12 +211,59 @@ public class WorldRenderer {
         init();
         loop();
         world.shutdown();
-        lodWorkers.shutdown();
         Callbacks.glfwFreeCallbacks(window);
         glfwDestroyWindow(window);
         glfwTerminate();
     }
 
+    /**
+     * Appends the player's pose to {@code path} every frame of {@link #run()},
+     * so the session can be replayed with {@link #runHeadless}.
+     */
+    public void record(Flythrough path) {
+        this.recording = path;
+    }
+
+    /**
+     * Runs the frame loop without a window while the player follows
+     * {@code path}, and returns the CPU time of each frame in nanoseconds.
+     * Everything {@link #run()} does per frame happens except drawing, so
+     * meshes must be stored through a {@link NullBackend} set with
+     * {@link ChunkMesh#setBackend} beforehand. Frames are paced at
+     * {@code fps} so background generation and meshing get as much time
+     * between frames as in a real session.
+     */
+    public long[] runHeadless(Flythrough path, int fps) {
+        showChunkBorders = false;
+        updateCamera();
+        double deltaTime = 1.0 / fps;
+        long[] frameNanos = new long[(int) Math.ceil(path.getDuration() * fps) + 1];
+        long firstFrame = System.nanoTime();
+        for (int i = 0; i < frameNanos.length; i++) {
+            long start = System.nanoTime();
+            path.apply(player, i * deltaTime);
+            player.sampleVelocity(deltaTime);
+            world.prefetch(player);
+            camera.update(player);
+            renderFrame();
+            frameNanos[i] = System.nanoTime() - start;
+            frameTime.record(frameNanos[i]);
+            if (applyDistanceController(frameNanos[i])) {
+                updateCamera();
+            }
+            long wait = firstFrame + (long) ((i + 1) * deltaTime * 1e9) - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+        return frameNanos;
+    }
+
+    /** Chunks drawn in the most recent frame. */
+    public int getRenderedChunkCount() {
+        return lastRenderedChunkCount;
+    }
+
     private void init() {
         GLFWErrorCallback.createPrint(System.err).set();
         if (!glfwInit()) {
@@ -112,6 +280,7 @@ public class WorldRenderer {
         glfwSwapInterval(1);
         glfwSetKeyCallback(window, this::handleKey);
         glfwSetCursorPosCallback(window, this::handleMouse);
+        glfwSetMouseButtonCallback(window, this::handleMouseButton);
         glfwSetInputMode(window, GLFW_CURSOR, GLFW_CURSOR_DISABLED);
         glfwSetFramebufferSizeCallback(window, (win, w, h) -> {
             width = w;
@@ -137,37 +306,70 @@ public class WorldRenderer {
 
     private void loop() {
         double lastTime = glfwGetTime();
+        double startTime = lastTime;
         double fpsTimer = lastTime;
         int frames = 0;
         while (!glfwWindowShouldClose(window)) {
             double now = glfwGetTime();
             double deltaTime = now - lastTime;
             lastTime = now;
+            long frameStart = System.nanoTime();
 
             glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
 
             // Handle continuous movement input each frame.
             handleMovement(deltaTime);
+            player.sampleVelocity(deltaTime);
+            if (recording != null) {
+                recording.record(now - startTime, player);
+            }
+            world.prefetch(player);
 
-            glLoadIdentity();
-            glRotatef((float) Math.toDegrees(-player.getPitch()), 1f, 0f, 0f);
-            glRotatef((float) Math.toDegrees(-player.getYaw()), 0f, 1f, 0f);
-            glTranslatef((float) -player.getX(), (float) -player.getY(), (float) -player.getZ());
-
-            updateFrustum();
-            renderBlocks();
-            ChunkMesh.flushDeletes();
-            lastRenderedChunkCount = renderedChunkCount;
+            camera.update(player);
+            loadMatrix(camera.getView());
+            renderFrame();
+            if (showOverlay) {
+                drawOverlay(now);
+            }
+            long frameNanos = System.nanoTime() - frameStart;
+            frameTime.record(frameNanos);
+            if (applyDistanceController(frameNanos)) {
+                updateProjection();
+            }
 
+            long swapStart = System.nanoTime();
             glfwSwapBuffers(window);
             glfwPollEvents();
+            swapTime.record(System.nanoTime() - swapStart);
 
             frames++;
             if (now - fpsTimer >= 1.0) {
+                lastFps = frames;
                 String title = "Minecraft Clone - FPS: " + frames + " Chunks: " + lastRenderedChunkCount;
                 if (showCoordinates) {
                     title += String.format(" XYZ: %.2f / %.2f / %.2f", player.getX(), player.getY(), player.getZ());
                 }
+                if (world.isDebug()) {
+                    ChunkRequestScheduler requests = world.getRequestScheduler();
+                    LatencyHistogram wait = requests.getQueueLatency();
+                    title += String.format(" Queue: %d (p50 %.1fms p99 %.1fms)", requests.getQueueDepth(),
+                            wait.getPercentile(0.50) / 1e6, wait.getPercentile(0.99) / 1e6);
+                    ChunkPipeline pipeline = world.getPipeline();
+                    title += String.format(" Stages/s: io %.0f gen %.0f mesh %.0f upload %.0f",
+                            pipeline.io().sampleThroughput(), pipeline.generation().sampleThroughput(),
+                            pipeline.meshing().sampleThroughput(), pipeline.upload().sampleThroughput());
+                    title += String.format(" Ready in view: %.0f%%", world.getPredictor().getReadyRatio() * 100);
+                    MeshArena arena = ChunkMesh.getArena();
+                    title += String.format(" Arena: %.0f/%.0fMiB frag %.0f%% draws %d/%d back-faces %d",
+                            arena.getUsedBytes() / 1048576.0, arena.getCapacityBytes() / 1048576.0,
+                            arena.getAllocator().getFragmentation() * 100, arena.getDrawCalls(),
+                            arena.getDrawnMeshes(), arena.getSkippedQuads());
+                    title += " Resident: " + world.getChunkPositions().size() + " Unloaded: " + world.getUnloadedCount();
+                    title += String.format(" Cull: %.2fms p99 %.2fms (%d rebuilds, %d in caves, %d occluded)",
+                            visibilityTime.getPercentile(0.50) / 1e6, visibilityTime.getPercentile(0.99) / 1e6,
+                            candidateRebuilds, caveCulledCount, occlusionCulledCount);
+                    visibilityTime.reset();
+                }
                 glfwSetWindowTitle(window, title);
                 frames = 0;
                 fpsTimer += 1.0;
@@ -175,156 +377,363 @@ public class WorldRenderer {
         }
     }
 
+    /**
+     * Culls, schedules and draws the chunks seen by the camera, then unloads
+     * chunks and frees meshes no longer needed. Issues no OpenGL calls of its
+     * own beyond the mesh backend's and the chunk border outlines.
+     */
+    private void renderFrame() {
+        ChunkEvents.Frame event = new ChunkEvents.Frame();
+        event.begin();
+        long uploads = world.getPipeline().upload().getCompleted();
+        frustum.update(camera.getViewProjection());
+        renderBlocks();
+        long unloadStart = System.nanoTime();
+        world.unloadChunks();
+        ChunkMesh.flushDeletes();
+        unloadTime.record(System.nanoTime() - unloadStart);
+        lastRenderedChunkCount = renderedChunkCount;
+        if (event.shouldCommit()) {
+            event.chunksDrawn = renderedChunkCount;
+            event.uploads = world.getPipeline().upload().getCompleted() - uploads;
+            event.commit();
+        }
+    }
+
+    /** Draws the metrics overlay, refreshing its text a few times a second. */
+    private void drawOverlay(double now) {
+        if (now - overlayRefreshed >= OVERLAY_REFRESH) {
+            List<String> lines = new ArrayList<>();
+            lines.add(String.format("fps %d xyz %.1f %.1f %.1f", lastFps, player.getX(), player.getY(), player.getZ()));
+            lines.addAll(metrics.lines());
+            overlayLines = lines;
+            overlayRefreshed = now;
+        }
+        overlay.draw(overlayLines, width, height);
+    }
+
     private void renderBlocks() {
-        processLodResults();
+        long uploadStart = System.nanoTime();
+        world.getPipeline().uploadReady();
+        uploadTime.record(System.nanoTime() - uploadStart);
         renderedChunkCount = 0;
         int playerChunkX = (int) Math.floor(player.getX() / Chunk.SIZE);
         int playerChunkY = (int) Math.floor(player.getY() / Chunk.SIZE);
         int playerChunkZ = (int) Math.floor(player.getZ() / Chunk.SIZE);
         int radius = renderDistance;
-
-        List<int[]> positions = new ArrayList<>();
-        for (int cx = playerChunkX - radius; cx <= playerChunkX + radius; cx++) {
-            for (int cy = playerChunkY - radius; cy <= playerChunkY + radius; cy++) {
-                for (int cz = playerChunkZ - radius; cz <= playerChunkZ + radius; cz++) {
-                    int dx = cx - playerChunkX;
-                    int dy = cy - playerChunkY;
-                    int dz = cz - playerChunkZ;
-                    int distSq = dx * dx + dy * dy + dz * dz;
-                    positions.add(new int[] { cx, cy, cz, distSq });
-                }
-            }
+        world.updateRequestFocus(player, radius);
+        world.predictChunks(player);
+        world.updatePlayerTicket(player, lod1Start, radius);
+        ChunkPredictor predictor = world.getPredictor();
+        ChunkGrid grid = world.getGrid();
+        grid.recenter(playerChunkX, playerChunkY, playerChunkZ, radius);
+
+        long visibilityStart = System.nanoTime();
+        if (candidatesStale(playerChunkX, playerChunkY, playerChunkZ, radius)) {
+            rebuildCandidates(playerChunkX, playerChunkY, playerChunkZ, radius);
         }
-        positions.sort(Comparator.comparingInt(p -> p[3]));
-
-        for (int[] p : positions) {
-            int cx = p[0];
-            int cy = p[1];
-            int cz = p[2];
-            int baseX = cx * Chunk.SIZE;
-            int baseY = cy * Chunk.SIZE;
-            int baseZ = cz * Chunk.SIZE;
-            if (!boxInFrustum(baseX, baseY, baseZ,
-                    baseX + Chunk.SIZE, baseY + Chunk.SIZE, baseZ + Chunk.SIZE)) {
+        int version = grid.getVersion();
+        if (playerChunkX != searchX || playerChunkY != searchY || playerChunkZ != searchZ
+                || radius != searchRadius || version != searchVersion) {
+            searchVisible(grid, playerChunkX, playerChunkY, playerChunkZ, radius, version);
+        }
+        int caveCulled = 0;
+        frustumCuller.begin(playerChunkX, playerChunkY, playerChunkZ, radius);
+        frameChunkCount = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int cx = playerChunkX + candidates[i * 3];
+            int cy = playerChunkY + candidates[i * 3 + 1];
+            int cz = playerChunkZ + candidates[i * 3 + 2];
+            if (!frustumCuller.isVisible(cx, cy, cz)) {
+                continue;
+            }
+            if (grid.isOccluded(cx, cy, cz)) {
                 continue;
             }
-            if (world.isChunkOccluded(cx, cy, cz)) {
+            if (!isSearchReached(candidates[i * 3], candidates[i * 3 + 1], candidates[i * 3 + 2])) {
+                caveCulled++;
                 continue;
             }
-            world.requestChunk(cx, cy, cz, playerChunkX, playerChunkY, playerChunkZ);
-            Chunk chunk = world.getChunkIfLoaded(cx, cy, cz);
-            if (chunk == null || chunk.isOccluded()) {
+            Chunk chunk = grid.get(cx, cy, cz);
+            predictor.recordVisible(cx, cy, cz, chunk != null, playerChunkX, playerChunkY, playerChunkZ, radius);
+            if (chunk == null) {
+                world.requestChunk(cx, cy, cz);
                 continue;
             }
+            frameChunks[frameChunkCount] = chunk;
+            framePositions[frameChunkCount * 3] = cx;
+            framePositions[frameChunkCount * 3 + 1] = cy;
+            framePositions[frameChunkCount * 3 + 2] = cz;
+            frameChunkCount++;
+        }
+        caveCulledCount = caveCulled;
+        cullOccluded();
+        long drawStart = System.nanoTime();
+        visibilityTime.record(drawStart - visibilityStart);
+        cullTime.record(drawStart - visibilityStart);
+
+        for (int i = 0; i < frameChunkCount; i++) {
+            Chunk chunk = frameChunks[i];
+            int cx = framePositions[i * 3];
+            int cy = framePositions[i * 3 + 1];
+            int cz = framePositions[i * 3 + 2];
+            int baseX = cx * Chunk.SIZE;
+            int baseY = cy * Chunk.SIZE;
+            int baseZ = cz * Chunk.SIZE;
             int dist = Math.max(Math.max(Math.abs(cx - playerChunkX), Math.abs(cy - playerChunkY)),
                     Math.abs(cz - playerChunkZ));
+            ChunkTickets.LoadLevel level = world.getLoadLevel(cx, cy, cz);
             boolean rendered = false;
-            if (dist > lod2Start) {
-                rendered = renderLod(chunk, baseX, baseY, baseZ, LOD2_STEP);
-            } else if (dist > lod1Start) {
-                rendered = renderLod(chunk, baseX, baseY, baseZ, LOD1_STEP);
-            } else {
+            if (level == ChunkTickets.LoadLevel.LOD) {
+                rendered = renderLod(chunk, baseX, baseY, baseZ, dist > lod2Start ? LOD2_STEP : LOD1_STEP);
+            } else if (level == ChunkTickets.LoadLevel.FULL) {
                 if (chunk.isDirty() || chunk.getMesh() == null) {
-                    ChunkMesh old = chunk.getMesh();
-                    if (old != null) {
-                        old.dispose();
-                    }
-                    chunk.setMesh(ChunkMesh.build(world, chunk, baseX, baseY, baseZ));
+                    // keep drawing the previous mesh until the rebuilt one is uploaded
+                    world.getPipeline().requestMesh(chunk, baseX, baseY, baseZ, ChunkPipeline.FULL_DETAIL);
                 }
                 ChunkMesh mesh = chunk.getMesh();
                 if (mesh != null) {
-                    mesh.render();
+                    mesh.render(player.getX(), player.getY(), player.getZ(), baseX, baseY, baseZ);
                     rendered = true;
                 }
             }
             if (rendered) {
                 renderedChunkCount++;
             }
+        }
+        ChunkMesh.drawQueued();
+        // outlines go on top of the terrain, so they are drawn once it is
+        for (int i = 0; i < frameChunkCount; i++) {
             if (showChunkBorders) {
-                renderChunkDebug(chunk, baseX, baseY, baseZ);
+                renderChunkDebug(frameChunks[i], framePositions[i * 3] * Chunk.SIZE,
+                        framePositions[i * 3 + 1] * Chunk.SIZE, framePositions[i * 3 + 2] * Chunk.SIZE);
             }
+            frameChunks[i] = null;
         }
+        drawTime.record(System.nanoTime() - drawStart);
     }
 
-    private boolean renderLod(Chunk chunk, int baseX, int baseY, int baseZ, int step) {
-        if (chunk.isLodStepEmpty(step)) {
-            return false;
-        }
-        ChunkMesh mesh = chunk.getLodMesh(step);
-        boolean dirty = chunk.isLodStepDirty(step);
-        if (mesh != null && !dirty) {
-            mesh.render();
-            return true;
+    /**
+     * Drops chunks hidden behind nearer terrain from this frame's list. The
+     * solid faces of the nearest chunks in view are rasterised as occluders,
+     * then every chunk's box is tested against the resulting depth pyramid.
+     */
+    private void cullOccluded() {
+        occlusion.begin(camera.getViewProjection());
+        int occluderChunks = Math.min(frameChunkCount, MAX_OCCLUDER_CHUNKS);
+        for (int i = 0; i < occluderChunks; i++) {
+            occlusion.addSolidFaces(frameChunks[i], framePositions[i * 3] * Chunk.SIZE,
+                    framePositions[i * 3 + 1] * Chunk.SIZE, framePositions[i * 3 + 2] * Chunk.SIZE);
         }
-        LodKey key = new LodKey(chunk, step);
-        if (pendingLods.add(key)) {
-            lodWorkers.submit(() -> {
-                FloatBuffer buf = ChunkMesh.buildLodBuffer(world, chunk, baseX, baseY, baseZ, step);
-                if (buf.limit() == 0) {
-                    completedLods.add(new LodResult(chunk, step, null));
-                } else {
-                    completedLods.add(new LodResult(chunk, step, buf));
-                }
-                pendingLods.remove(key);
-            });
-        }
-        if (mesh != null) {
-            mesh.render();
-            return true;
+        occlusion.finish();
+        int kept = 0;
+        for (int i = 0; i < frameChunkCount; i++) {
+            float x = framePositions[i * 3] * Chunk.SIZE;
+            float y = framePositions[i * 3 + 1] * Chunk.SIZE;
+            float z = framePositions[i * 3 + 2] * Chunk.SIZE;
+            Chunk chunk = frameChunks[i];
+            frameChunks[i] = null;
+            if (!occlusion.isVisible(x, y, z, x + Chunk.SIZE, y + Chunk.SIZE, z + Chunk.SIZE)) {
+                continue;
+            }
+            frameChunks[kept] = chunk;
+            framePositions[kept * 3] = framePositions[i * 3];
+            framePositions[kept * 3 + 1] = framePositions[i * 3 + 1];
+            framePositions[kept * 3 + 2] = framePositions[i * 3 + 2];
+            kept++;
         }
-        return false;
+        occlusionCulledCount = frameChunkCount - kept;
+        frameChunkCount = kept;
     }
 
-    private void processLodResults() {
-        LodResult res;
-        while ((res = completedLods.poll()) != null) {
-            if (res.buffer == null) {
-                res.chunk.markLodStepEmpty(res.step);
-            } else {
-                ChunkMesh mesh = ChunkMesh.upload(res.buffer);
-                res.chunk.setLodMesh(res.step, mesh);
+    /**
+     * Finds the chunks that could be visible from the player's chunk by a
+     * breadth-first search through the render cube. The search leaves a chunk
+     * only through faces its air connects to the face it came in by, and never
+     * turns back along an axis it already travelled, so the walls of caves
+     * and mountains stop it. Unloaded chunks count as open. A cell may be
+     * entered once through each of its faces, which keeps the search
+     * conservative where several paths meet. The result only depends on the
+     * player's chunk and the grid, so it is reused until either changes.
+     */
+    void searchVisible(ChunkGrid grid, int playerChunkX, int playerChunkY, int playerChunkZ, int radius,
+            int version) {
+        int side = 2 * radius + 1;
+        int count = side * side * side;
+        if (entered.length != count) {
+            entered = new byte[count];
+            // each cell is queued at most once per face
+            searchQueue = new int[count * 6];
+        } else {
+            Arrays.fill(entered, (byte) 0);
+        }
+        int[] steps = { side * side, -side * side, side, -side, 1, -1 };
+        int start = (radius * side + radius) * side + radius;
+        // the player's own chunk is always visible; mark it as entered through every face
+        entered[start] = 0x3f;
+        int head = 0;
+        int tail = 0;
+        // entries pack the cell index, the face it was entered by (6 meaning none) and the directions travelled
+        searchQueue[tail++] = start << 9 | 6 << 6;
+        while (head < tail) {
+            int entry = searchQueue[head++];
+            int index = entry >>> 9;
+            int from = (entry >>> 6) & 7;
+            int travelled = entry & 0x3f;
+            int ox = index / (side * side) - radius;
+            int oy = (index / side) % side - radius;
+            int oz = index % side - radius;
+            Chunk chunk = grid.get(playerChunkX + ox, playerChunkY + oy, playerChunkZ + oz);
+            for (int dir = 0; dir < 6; dir++) {
+                int back = dir ^ 1;
+                if ((travelled & (1 << back)) != 0) {
+                    continue;
+                }
+                int axis = dir >> 1;
+                int offset = axis == 0 ? ox : axis == 1 ? oy : oz;
+                if ((dir & 1) == 0 ? offset == radius : offset == -radius) {
+                    continue;
+                }
+                if (from != 6 && chunk != null && !chunk.canSeeThrough(from, dir)) {
+                    continue;
+                }
+                int next = index + steps[dir];
+                if ((entered[next] & (1 << back)) != 0) {
+                    continue;
+                }
+                entered[next] |= (byte) (1 << back);
+                searchQueue[tail++] = next << 9 | back << 6 | travelled | (1 << dir);
             }
         }
+        searchX = playerChunkX;
+        searchY = playerChunkY;
+        searchZ = playerChunkZ;
+        searchRadius = radius;
+        searchVersion = version;
     }
 
-    private static class LodKey {
-        final Chunk chunk;
-        final int step;
+    /** Returns {@code true} if the last {@link #searchVisible} entered the chunk at the given offset from its centre. */
+    boolean isSearchReached(int ox, int oy, int oz) {
+        int side = 2 * searchRadius + 1;
+        return entered[((ox + searchRadius) * side + oy + searchRadius) * side + oz + searchRadius] != 0;
+    }
 
-        LodKey(Chunk chunk, int step) {
-            this.chunk = chunk;
-            this.step = step;
-        }
+    /**
+     * Returns {@code true} if the candidate list no longer covers what the
+     * player might see: they entered another chunk, turned further than
+     * {@link #CANDIDATE_ANGLE}, or the render distance or window shape changed.
+     */
+    private boolean candidatesStale(int playerChunkX, int playerChunkY, int playerChunkZ, int radius) {
+        double turned = player.getLookX() * candidatesLookX + player.getLookY() * candidatesLookY
+                + player.getLookZ() * candidatesLookZ;
+        return playerChunkX != candidatesX || playerChunkY != candidatesY || playerChunkZ != candidatesZ
+                || radius != offsetsRadius || width != candidatesWidth || height != candidatesHeight
+                || turned < Math.cos(CANDIDATE_ANGLE);
+    }
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (!(o instanceof LodKey other)) return false;
-            return chunk == other.chunk && step == other.step;
+    /**
+     * Sorts every offset in the render cube by distance from the centre once
+     * per render distance, so each frame can walk chunks front to back
+     * without allocating or sorting.
+     */
+    private void rebuildOffsets(int radius) {
+        int side = 2 * radius + 1;
+        int count = side * side * side;
+        // squared distance in the high bits and cube index in the low bits, so one sort orders both
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            int dx = i / (side * side) - radius;
+            int dy = (i / side) % side - radius;
+            int dz = i % side - radius;
+            keys[i] = ((long) (dx * dx + dy * dy + dz * dz) << 32) | i;
         }
-
-        @Override
-        public int hashCode() {
-            return System.identityHashCode(chunk) * 31 + step;
+        Arrays.sort(keys);
+        offsets = new int[count * 3];
+        for (int i = 0; i < count; i++) {
+            int index = (int) keys[i];
+            offsets[i * 3] = index / (side * side) - radius;
+            offsets[i * 3 + 1] = (index / side) % side - radius;
+            offsets[i * 3 + 2] = index % side - radius;
         }
+        offsetsRadius = radius;
+        candidates = new int[count * 3];
+        frameChunks = new Chunk[count];
+        framePositions = new int[count * 3];
     }
 
-    private static class LodResult {
-        final Chunk chunk;
-        final int step;
-        final FloatBuffer buffer;
+    /**
+     * Keeps the offsets whose chunk could enter the view before the list is
+     * next rebuilt: those inside a cone around the look direction covering
+     * the field of view plus {@link #CANDIDATE_ANGLE}, widened by each
+     * chunk's bounding sphere and by how far the player can move inside
+     * their chunk. The exact frustum test still runs every frame.
+     */
+    private void rebuildCandidates(int playerChunkX, int playerChunkY, int playerChunkZ, int radius) {
+        if (radius != offsetsRadius) {
+            rebuildOffsets(radius);
+        }
+        double lookX = player.getLookX();
+        double lookY = player.getLookY();
+        double lookZ = player.getLookZ();
+        double aspect = (double) width / height;
+        double halfFov = Math.atan(Math.tan(Math.toRadians(FOV) / 2) * Math.sqrt(1 + aspect * aspect));
+        double maxAngle = halfFov + CANDIDATE_ANGLE;
+        // chunk bounding sphere plus the player's possible offset from their chunk centre
+        double slack = Chunk.SIZE * Math.sqrt(3);
+        int count = 0;
+        for (int i = 0; i < offsets.length; i += 3) {
+            double ox = offsets[i] * Chunk.SIZE;
+            double oy = offsets[i + 1] * Chunk.SIZE;
+            double oz = offsets[i + 2] * Chunk.SIZE;
+            double dist = Math.sqrt(ox * ox + oy * oy + oz * oz);
+            if (dist > slack) {
+                double cos = (ox * lookX + oy * lookY + oz * lookZ) / dist;
+                double angle = Math.acos(Math.max(-1, Math.min(1, cos)));
+                if (angle > maxAngle + Math.asin(slack / dist)) {
+                    continue;
+                }
+            }
+            candidates[count * 3] = offsets[i];
+            candidates[count * 3 + 1] = offsets[i + 1];
+            candidates[count * 3 + 2] = offsets[i + 2];
+            count++;
+        }
+        candidateCount = count;
+        candidatesX = playerChunkX;
+        candidatesY = playerChunkY;
+        candidatesZ = playerChunkZ;
+        candidatesLookX = lookX;
+        candidatesLookY = lookY;
+        candidatesLookZ = lookZ;
+        candidatesWidth = width;
+        candidatesHeight = height;
+        candidateRebuilds++;
+    }
 
-        LodResult(Chunk chunk, int step, FloatBuffer buffer) {
-            this.chunk = chunk;
-            this.step = step;
-            this.buffer = buffer;
+    private boolean renderLod(Chunk chunk, int baseX, int baseY, int baseZ, int step) {
+        if (chunk.isLodStepEmpty(step)) {
+            return false;
+        }
+        ChunkMesh mesh = chunk.getLodMesh(step);
+        boolean dirty = chunk.isLodStepDirty(step);
+        if (mesh != null && !dirty) {
+            mesh.render();
+            return true;
         }
+        world.getPipeline().requestMesh(chunk, baseX, baseY, baseZ, step);
+        if (mesh != null) {
+            mesh.render();
+            return true;
+        }
+        return false;
     }
 
     private void renderChunkDebug(Chunk chunk, int baseX, int baseY, int baseZ) {
         float r, g, b;
         if (chunk.getOrigin() == Chunk.Origin.LOADED) {
             r = 0f; g = 1f; b = 0f; // green for loaded
+        } else if (chunk.getOrigin() == Chunk.Origin.RESTORED) {
+            r = 1f; g = 1f; b = 0f; // yellow for regenerated with saved edits
         } else {
             r = 1f; g = 0f; b = 0f; // red for generated
         }
@@ -357,116 +766,17 @@ public class WorldRenderer {
         glEnable(GL_DEPTH_TEST);
     }
 
-    /** Extracts the six view frustum planes from the current projection and modelview matrices. */
-    private void updateFrustum() {
-        FloatBuffer proj = BufferUtils.createFloatBuffer(16);
-        FloatBuffer modl = BufferUtils.createFloatBuffer(16);
-        glGetFloatv(GL_PROJECTION_MATRIX, proj);
-        glGetFloatv(GL_MODELVIEW_MATRIX, modl);
-        proj.rewind();
-        modl.rewind();
-        float[] p = new float[16];
-        float[] m = new float[16];
-        proj.get(p);
-        modl.get(m);
-
-        float[] clip = new float[16];
-        clip[0] = m[0] * p[0] + m[1] * p[4] + m[2] * p[8] + m[3] * p[12];
-        clip[1] = m[0] * p[1] + m[1] * p[5] + m[2] * p[9] + m[3] * p[13];
-        clip[2] = m[0] * p[2] + m[1] * p[6] + m[2] * p[10] + m[3] * p[14];
-        clip[3] = m[0] * p[3] + m[1] * p[7] + m[2] * p[11] + m[3] * p[15];
-
-        clip[4] = m[4] * p[0] + m[5] * p[4] + m[6] * p[8] + m[7] * p[12];
-        clip[5] = m[4] * p[1] + m[5] * p[5] + m[6] * p[9] + m[7] * p[13];
-        clip[6] = m[4] * p[2] + m[5] * p[6] + m[6] * p[10] + m[7] * p[14];
-        clip[7] = m[4] * p[3] + m[5] * p[7] + m[6] * p[11] + m[7] * p[15];
-
-        clip[8] = m[8] * p[0] + m[9] * p[4] + m[10] * p[8] + m[11] * p[12];
-        clip[9] = m[8] * p[1] + m[9] * p[5] + m[10] * p[9] + m[11] * p[13];
-        clip[10] = m[8] * p[2] + m[9] * p[6] + m[10] * p[10] + m[11] * p[14];
-        clip[11] = m[8] * p[3] + m[9] * p[7] + m[10] * p[11] + m[11] * p[15];
-
-        clip[12] = m[12] * p[0] + m[13] * p[4] + m[14] * p[8] + m[15] * p[12];
-        clip[13] = m[12] * p[1] + m[13] * p[5] + m[14] * p[9] + m[15] * p[13];
-        clip[14] = m[12] * p[2] + m[13] * p[6] + m[14] * p[10] + m[15] * p[14];
-        clip[15] = m[12] * p[3] + m[13] * p[7] + m[14] * p[11] + m[15] * p[15];
-
-        // Right
-        frustum[0][0] = clip[3] - clip[0];
-        frustum[0][1] = clip[7] - clip[4];
-        frustum[0][2] = clip[11] - clip[8];
-        frustum[0][3] = clip[15] - clip[12];
-        normalizePlane(0);
-        // Left
-        frustum[1][0] = clip[3] + clip[0];
-        frustum[1][1] = clip[7] + clip[4];
-        frustum[1][2] = clip[11] + clip[8];
-        frustum[1][3] = clip[15] + clip[12];
-        normalizePlane(1);
-        // Bottom
-        frustum[2][0] = clip[3] + clip[1];
-        frustum[2][1] = clip[7] + clip[5];
-        frustum[2][2] = clip[11] + clip[9];
-        frustum[2][3] = clip[15] + clip[13];
-        normalizePlane(2);
-        // Top
-        frustum[3][0] = clip[3] - clip[1];
-        frustum[3][1] = clip[7] - clip[5];
-        frustum[3][2] = clip[11] - clip[9];
-        frustum[3][3] = clip[15] - clip[13];
-        normalizePlane(3);
-        // Far
-        frustum[4][0] = clip[3] - clip[2];
-        frustum[4][1] = clip[7] - clip[6];
-        frustum[4][2] = clip[11] - clip[10];
-        frustum[4][3] = clip[15] - clip[14];
-        normalizePlane(4);
-        // Near
-        frustum[5][0] = clip[3] + clip[2];
-        frustum[5][1] = clip[7] + clip[6];
-        frustum[5][2] = clip[11] + clip[10];
-        frustum[5][3] = clip[15] + clip[14];
-        normalizePlane(5);
-    }
-
-    private void normalizePlane(int i) {
-        float a = frustum[i][0];
-        float b = frustum[i][1];
-        float c = frustum[i][2];
-        float t = (float) Math.sqrt(a * a + b * b + c * c);
-        frustum[i][0] /= t;
-        frustum[i][1] /= t;
-        frustum[i][2] /= t;
-        frustum[i][3] /= t;
-    }
-
-    private boolean boxInFrustum(float x1, float y1, float z1, float x2, float y2, float z2) {
-        for (int i = 0; i < 6; i++) {
-            float a = frustum[i][0];
-            float b = frustum[i][1];
-            float c = frustum[i][2];
-            float d = frustum[i][3];
-            if (a * x1 + b * y1 + c * z1 + d < 0 &&
-                a * x2 + b * y1 + c * z1 + d < 0 &&
-                a * x1 + b * y2 + c * z1 + d < 0 &&
-                a * x2 + b * y2 + c * z1 + d < 0 &&
-                a * x1 + b * y1 + c * z2 + d < 0 &&
-                a * x2 + b * y1 + c * z2 + d < 0 &&
-                a * x1 + b * y2 + c * z2 + d < 0 &&
-                a * x2 + b * y2 + c * z2 + d < 0) {
-                return false;
-            }
-        }
-        return true;
-    }
-
     private void handleKey(long window, int key, int scancode, int action, int mods) {
         // Handle F3 separately so we can track key release.
         if (key == GLFW_KEY_F3) {
             if (action == GLFW_PRESS) {
                 debugShortcutActive = true;
+                debugShortcutUsed = false;
             } else if (action == GLFW_RELEASE) {
                 debugShortcutActive = false;
+                if (!debugShortcutUsed) {
+                    showOverlay = !showOverlay;
+                }
             }
             return;
         }
@@ -482,11 +792,13 @@ public class WorldRenderer {
 
         if (key == GLFW_KEY_G && debugShortcutActive) {
             showChunkBorders = !showChunkBorders;
+            debugShortcutUsed = true;
             System.out.println("Chunk borders " + (showChunkBorders ? "enabled" : "disabled"));
             return;
         }
         if (key == GLFW_KEY_C && debugShortcutActive) {
             showCoordinates = !showCoordinates;
+            debugShortcutUsed = true;
             System.out.println("Coordinates " + (showCoordinates ? "shown" : "hidden"));
             return;
         }
@@ -496,6 +808,8 @@ public class WorldRenderer {
             case GLFW_KEY_RIGHT -> player.rotate(-0.1);
             case GLFW_KEY_UP -> player.pitch(0.05);
             case GLFW_KEY_DOWN -> player.pitch(-0.05);
+            case GLFW_KEY_F -> toggleFlying();
+            case GLFW_KEY_1, GLFW_KEY_2, GLFW_KEY_3, GLFW_KEY_4, GLFW_KEY_5 -> selectBlock(PLACEABLE[key - GLFW_KEY_1]);
             case GLFW_KEY_PAGE_UP -> adjustRenderDistance(1);
             case GLFW_KEY_PAGE_DOWN -> adjustRenderDistance(-1);
             case GLFW_KEY_ESCAPE -> glfwSetWindowShouldClose(window, true);
@@ -527,24 +841,43 @@ public class WorldRenderer {
             up -= 1;
         }
 
-        if (forward != 0 || right != 0) {
-            moveRelative(right, forward, deltaTime);
+        double yaw = player.getYaw();
+        double vx = (-forward * Math.sin(yaw) + right * Math.cos(yaw)) * MOVE_SPEED;
+        double vz = (-forward * Math.cos(yaw) - right * Math.sin(yaw)) * MOVE_SPEED;
+        body.setHorizontalVelocity(vx, vz);
+        if (body.isFlying()) {
+            body.setVerticalVelocity(up * MOVE_SPEED);
+        } else if (up > 0 && body.isOnGround()) {
+            body.setVerticalVelocity(JUMP_VELOCITY);
         }
-        if (up != 0) {
-            moveVertical(up, deltaTime);
+        stepPhysics(deltaTime);
+    }
+
+    /**
+     * Runs as many fixed physics ticks as the frame time covers and places
+     * the camera between the last two, so motion stays smooth at any frame
+     * rate.
+     */
+    private void stepPhysics(double deltaTime) {
+        physicsTime = Math.min(physicsTime + deltaTime, MAX_PHYSICS_CATCH_UP);
+        while (physicsTime >= Physics.TICK_SECONDS) {
+            physics.step(body);
+            physicsTime -= Physics.TICK_SECONDS;
         }
+        double alpha = physicsTime / Physics.TICK_SECONDS;
+        player.setPosition(body.getInterpolatedX(alpha), body.getInterpolatedY(alpha) + Player.EYE_HEIGHT,
+                body.getInterpolatedZ(alpha));
     }
 
-    private void moveRelative(double right, double forward, double deltaTime) {
-        double yaw = player.getYaw();
-        double speed = MOVE_SPEED * deltaTime;
-        double dx = (-forward * Math.sin(yaw) + right * Math.cos(yaw)) * speed;
-        double dz = (-forward * Math.cos(yaw) - right * Math.sin(yaw)) * speed;
-        player.move(dx, 0, dz);
+    private void toggleFlying() {
+        body.setFlying(!body.isFlying());
+        body.setVerticalVelocity(0);
+        System.out.println("Flying: " + (body.isFlying() ? "on" : "off"));
     }
 
-    private void moveVertical(double up, double deltaTime) {
-        player.move(0, up * MOVE_SPEED * deltaTime, 0);
+    private void selectBlock(BlockType type) {
+        selectedBlock = type;
+        System.out.println("Placing: " + type);
     }
 
     private void toggleFullscreen() {
@@ -577,6 +910,25 @@ public class WorldRenderer {
         updateProjection();
     }
 
+    /** Breaks the block in view with the left button and places the selected block against it with the right. */
+    private void handleMouseButton(long window, int button, int action, int mods) {
+        if (action != GLFW_PRESS || !world.raycast(player.getX(), player.getY(), player.getZ(), player.getLookX(),
+                player.getLookY(), player.getLookZ(), REACH, target)) {
+            return;
+        }
+        if (button == GLFW_MOUSE_BUTTON_LEFT) {
+            world.setBlock(target.getX(), target.getY(), target.getZ(), BlockType.AIR);
+        } else if (button == GLFW_MOUSE_BUTTON_RIGHT && target.getFace() >= 0) {
+            int[] normal = FACE_NORMALS[target.getFace()];
+            int x = target.getX() + normal[0];
+            int y = target.getY() + normal[1];
+            int z = target.getZ() + normal[2];
+            if (!body.intersectsBlock(x, y, z)) {
+                world.setBlock(x, y, z, selectedBlock);
+            }
+        }
+    }
+
     private void handleMouse(long window, double xpos, double ypos) {
         double dx = xpos - lastMouseX;
         double dy = ypos - lastMouseY;
@@ -586,6 +938,34 @@ public class WorldRenderer {
         player.pitch(-dy * MOUSE_SENSITIVITY);
     }
 
+    /**
+     * Feeds a frame's CPU time to the distance controller and adopts its
+     * distances if they changed. Returns {@code true} if the render distance
+     * changed, in which case the projection needs updating.
+     */
+    private boolean applyDistanceController(long frameNanos) {
+        if (distanceController == null) {
+            return false;
+        }
+        distanceController.recordFrame(frameNanos);
+        // the same published figure as the memory.vram_mib gauge, so the overlay shows what the budget saw
+        if (!distanceController.update(System.nanoTime(), world.getResidentHeapBytes(),
+                ChunkMesh.getArena().getSnapshot().capacityBytes())) {
+            return false;
+        }
+        lod1Start = distanceController.getLod1Start();
+        lod2Start = distanceController.getLod2Start();
+        if (distanceController.getRenderDistance() == renderDistance) {
+            return false;
+        }
+        renderDistance = distanceController.getRenderDistance();
+        if (world.isDebug()) {
+            System.out.printf("Render distance: %d (LOD from %d and %d, budget pressure %.2f)%n", renderDistance,
+                    lod1Start, lod2Start, distanceController.getPressure());
+        }
+        return true;
+    }
+
     private void adjustRenderDistance(int delta) {
         renderDistance = Math.max(1, renderDistance + delta);
         System.out.println("Render distance: " + renderDistance);
@@ -594,17 +974,23 @@ public class WorldRenderer {
 
     private void updateProjection() {
         glViewport(0, 0, width, height);
+        updateCamera();
         glMatrixMode(GL_PROJECTION);
-        glLoadIdentity();
+        loadMatrix(camera.getProjection());
+        glMatrixMode(GL_MODELVIEW);
+    }
+
+    /** Fits the camera's projection to the window shape and render distance. */
+    private void updateCamera() {
         float aspect = (float) width / height;
         float far = (renderDistance + 2) * Chunk.SIZE * (float) Math.sqrt(3);
-        setPerspective(70f, aspect, 0.1f, far);
-        glMatrixMode(GL_MODELVIEW);
+        camera.setPerspective(FOV, aspect, 0.1f, far);
     }
 
-    private void setPerspective(float fov, float aspect, float near, float far) {
-        double y = near * Math.tan(Math.toRadians(fov) / 2.0);
-        double x = y * aspect;
-        glFrustum(-x, x, -y, y, near, far);
+    /** Replaces the current OpenGL matrix with a column-major matrix. */
+    private void loadMatrix(float[] matrix) {
+        matrixBuffer.clear();
+        matrixBuffer.put(matrix).flip();
+        glLoadMatrixf(matrixBuffer);
     }
 }
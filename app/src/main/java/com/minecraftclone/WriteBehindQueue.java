@@ -0,0 +1,361 @@
+package com.minecraftclone;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persists chunks on dedicated I/O threads so disk latency stays off the
+ * generation and edit paths. Saves of a chunk that is already queued are
+ * coalesced, pending chunks are grouped by region so each region file is
+ * opened once per batch, and callers block once {@code capacity} distinct
+ * chunks are waiting. A region is only ever written by one thread at a time.
+ */
+public class WriteBehindQueue {
+    private final ChunkStorage storage;
+    private final int capacity;
+    private final List<Thread> threads = new ArrayList<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    /** Queued chunks per region in the order regions were first queued. */
+    private final LinkedHashMap<RegionPos, Map<ChunkPos, Chunk>> pending = new LinkedHashMap<>();
+    /** Batches currently being written, keyed by region. */
+    private final Map<RegionPos, Map<ChunkPos, Chunk>> writing = new HashMap<>();
+    private int queued;
+    private int inFlight;
+    private boolean closed;
+
+    private final AtomicLong chunksWritten = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong backPressureWaits = new AtomicLong();
+    private volatile int maxDepth;
+    private final LatencyHistogram batchLatency = new LatencyHistogram();
+
+    public WriteBehindQueue(ChunkStorage storage, int ioThreads, int capacity) {
+        this.storage = storage;
+        this.capacity = Math.max(1, capacity);
+        for (int i = 0; i < Math.max(1, ioThreads); i++) {
+            Thread t = new Thread(this::drainLoop, "chunk-io-" + i);
+            t.setDaemon(true);
+            t.start();
+            threads.add(t);
+        }
+    }
+
+    /**
+     * Queues the chunk for saving. Returns immediately if the chunk is already
+     * queued; otherwise waits while the queue is full.
+     */
+    public void enqueue(ChunkPos pos, Chunk chunk) {
+        RegionPos region = RegionPos.ofChunk(pos.x(), pos.y(), pos.z());
+        lock.lock();
+        try {
+            Map<ChunkPos, Chunk> batch = pending.get(region);
+            if (batch != null && batch.containsKey(pos)) {
+                coalesced.incrementAndGet();
+                return;
+            }
+            if (queued >= capacity && !closed) {
+                backPressureWaits.incrementAndGet();
+                boolean interrupted = false;
+                while (queued >= capacity && !closed) {
+                    try {
+                        notFull.await();
+                    } catch (InterruptedException e) {
+                        // never drop a save; finish queueing and restore the flag
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (closed && threads.isEmpty()) {
+                throw new IllegalStateException("Write-behind queue is closed");
+            }
+            batch = pending.computeIfAbsent(region, r -> new HashMap<>());
+            if (batch.putIfAbsent(pos, chunk) != null) {
+                coalesced.incrementAndGet();
+                return;
+            }
+            queued++;
+            if (queued > maxDepth) {
+                maxDepth = queued;
+            }
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues many chunks at once under a single lock acquisition, ignoring the
+     * capacity limit since the caller is about to flush them anyway. Returns
+     * the number of chunks that were not already queued.
+     */
+    public int enqueueAll(Map<ChunkPos, Chunk> chunks) {
+        int added = 0;
+        lock.lock();
+        try {
+            for (Map.Entry<ChunkPos, Chunk> entry : chunks.entrySet()) {
+                ChunkPos pos = entry.getKey();
+                RegionPos region = RegionPos.ofChunk(pos.x(), pos.y(), pos.z());
+                Map<ChunkPos, Chunk> batch = pending.computeIfAbsent(region, r -> new HashMap<>());
+                if (batch.putIfAbsent(pos, entry.getValue()) == null) {
+                    added++;
+                } else {
+                    coalesced.incrementAndGet();
+                }
+            }
+            queued += added;
+            if (queued > maxDepth) {
+                maxDepth = queued;
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return added;
+    }
+
+    /**
+     * Returns the chunk queued or being written at the given position, so a
+     * reload never observes data older than what is waiting to be saved.
+     */
+    public Chunk getPending(ChunkPos pos) {
+        RegionPos region = RegionPos.ofChunk(pos.x(), pos.y(), pos.z());
+        lock.lock();
+        try {
+            Map<ChunkPos, Chunk> batch = pending.get(region);
+            Chunk chunk = batch != null ? batch.get(pos) : null;
+            if (chunk == null) {
+                batch = writing.get(region);
+                chunk = batch != null ? batch.get(pos) : null;
+            }
+            return chunk;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Drops queued saves for a region and waits for any write already in progress. */
+    public void discardRegion(RegionPos region) {
+        lock.lock();
+        try {
+            Map<ChunkPos, Chunk> batch = pending.remove(region);
+            if (batch != null) {
+                queued -= batch.size();
+                notFull.signalAll();
+            }
+            while (writing.containsKey(region)) {
+                idle.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Drops every queued save and waits for writes already in progress. */
+    public void discardAll() {
+        lock.lock();
+        try {
+            pending.clear();
+            queued = 0;
+            notFull.signalAll();
+            while (inFlight > 0) {
+                idle.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Blocks until every queued chunk has been written. */
+    public void flush() {
+        lock.lock();
+        try {
+            while (queued > 0 || inFlight > 0) {
+                idle.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits up to the given time for every queued chunk to be written and
+     * returns whether the queue is now empty.
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (queued > 0 || inFlight > 0) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                try {
+                    nanos = idle.awaitNanos(nanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Writes everything still queued and stops the I/O threads. */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Thread t : threads) {
+            boolean interrupted = false;
+            while (t.isAlive()) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        threads.clear();
+    }
+
+    private void drainLoop() {
+        while (writeNextBatch(true)) {
+            // keep writing until closed and empty
+        }
+    }
+
+    /**
+     * Writes queued batches on the calling thread until every remaining region
+     * is already being written by another thread. Used to add temporary
+     * parallelism when a large number of chunks must be flushed at once.
+     */
+    public void drainAvailable() {
+        while (writeNextBatch(false)) {
+            // keep helping while there is a region nobody else is writing
+        }
+    }
+
+    /**
+     * Takes the oldest region not currently being written and writes its batch.
+     * If none is available, either waits for one or returns {@code false}
+     * straight away. Waiting threads also return {@code false} once the queue
+     * is closed and empty.
+     */
+    private boolean writeNextBatch(boolean wait) {
+        RegionPos region;
+        Map<ChunkPos, Chunk> batch;
+        lock.lock();
+        try {
+            while ((region = nextWritableRegion()) == null) {
+                if (!wait || (closed && queued == 0)) {
+                    return false;
+                }
+                notEmpty.awaitUninterruptibly();
+            }
+            batch = pending.remove(region);
+            writing.put(region, batch);
+            queued -= batch.size();
+            inFlight += batch.size();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        ChunkEvents.Save event = new ChunkEvents.Save();
+        event.begin();
+        long start = System.nanoTime();
+        int written = 0;
+        try {
+            written = storage.writeBatch(region, batch);
+            chunksWritten.addAndGet(written);
+        } finally {
+            batchLatency.record(System.nanoTime() - start);
+            if (event.shouldCommit()) {
+                event.regionX = region.x();
+                event.regionY = region.y();
+                event.regionZ = region.z();
+                event.queued = batch.size();
+                event.written = written;
+                event.commit();
+            }
+            lock.lock();
+            try {
+                writing.remove(region);
+                inFlight -= batch.size();
+                // another thread may be waiting for this region to become writable
+                notEmpty.signalAll();
+                idle.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return true;
+    }
+
+    private RegionPos nextWritableRegion() {
+        for (RegionPos region : pending.keySet()) {
+            if (!writing.containsKey(region)) {
+                return region;
+            }
+        }
+        return null;
+    }
+
+    /** Number of distinct chunks waiting to be written. */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Largest queue depth observed since creation. */
+    public int getMaxQueueDepth() {
+        return maxDepth;
+    }
+
+    public long getChunksWritten() {
+        return chunksWritten.get();
+    }
+
+    /** Number of saves that were merged into an already queued write. */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /** Number of times a caller had to wait because the queue was full. */
+    public long getBackPressureWaits() {
+        return backPressureWaits.get();
+    }
+
+    /** Time taken to write each region batch, in nanoseconds. */
+    public LatencyHistogram getBatchLatency() {
+        return batchLatency;
+    }
+}
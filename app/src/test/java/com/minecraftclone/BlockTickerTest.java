@@ -0,0 +1,83 @@
+package com.minecraftclone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BlockTickerTest {
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @TempDir
+    Path saveDir;
+    private World world;
+
+    /** Loads a single chunk of air with a stone floor at y = 0. */
+    @BeforeEach
+    void setUp() {
+        world = new World(null, saveDir);
+        for (int x = 0; x < Chunk.SIZE; x++) {
+            for (int z = 0; z < Chunk.SIZE; z++) {
+                world.setBlock(x, 0, z, BlockType.STONE);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        world.shutdown();
+    }
+
+    @Test
+    void sourceSpreadsWaterThatWeakensByOnePerBlock() throws InterruptedException {
+        world.setBlock(8, 1, 8, BlockType.WATER);
+
+        awaitIdle();
+
+        Chunk chunk = world.getChunkIfLoaded(0, 0, 0);
+        for (int i = 1; i < 8; i++) {
+            assertEquals(BlockType.FLOWING_WATER, world.getBlock(8 + i, 1, 8), "block " + i + " away");
+            assertEquals(8 - i, chunk.getFluidLevel(8 + i, 1, 8), "block " + i + " away");
+            assertEquals(8 - i, chunk.getFluidLevel(8, 1, 8 - i), "block " + i + " away");
+        }
+        assertEquals(BlockType.AIR, world.getBlock(0, 1, 8), "eight blocks away");
+        assertEquals(BlockType.AIR, world.getBlock(8, 2, 8), "above the source");
+    }
+
+    @Test
+    void waterDriesUpOnceTheSourceIsRemoved() throws InterruptedException {
+        world.setBlock(8, 1, 8, BlockType.WATER);
+        awaitIdle();
+
+        world.setBlock(8, 1, 8, BlockType.AIR);
+        awaitIdle();
+
+        for (int x = 0; x < Chunk.SIZE; x++) {
+            for (int z = 0; z < Chunk.SIZE; z++) {
+                assertEquals(BlockType.AIR, world.getBlock(x, 1, z), "block at " + x + "," + z);
+            }
+        }
+    }
+
+    /** Waits until the edits so far have been picked up and no positions are left waiting for a tick. */
+    private void awaitIdle() throws InterruptedException {
+        BlockTicker ticker = world.getBlockTicks();
+        // an edit only reaches the active set at the next tick
+        Thread.sleep(2000 / BlockTicker.TICKS_PER_SECOND);
+        await(() -> ticker.getActiveCount() == 0);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+}
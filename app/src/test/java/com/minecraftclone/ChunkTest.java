@@ -0,0 +1,133 @@
+package com.minecraftclone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ChunkTest {
+    private static final int POS_X = 0;
+    private static final int NEG_X = 1;
+    private static final int POS_Z = 4;
+    private static final int ALL_FACES = (1 << 6) - 1;
+
+    @Test
+    void solidChunkConnectsNothing() {
+        Chunk chunk = solid();
+
+        chunk.updateConnectivity();
+
+        assertConnects(chunk, 0);
+    }
+
+    @Test
+    void airChunkConnectsEveryFace() {
+        Chunk chunk = new Chunk();
+        chunk.updateConnectivity();
+
+        assertConnects(chunk, ALL_FACES);
+    }
+
+    @Test
+    void straightTunnelConnectsOnlyItsEnds() {
+        Chunk chunk = solid();
+        for (int x = 0; x < Chunk.SIZE; x++) {
+            chunk.setBlock(x, 8, 8, BlockType.AIR);
+        }
+
+        assertTrue(chunk.updateConnectivity());
+
+        assertConnects(chunk, 1 << POS_X | 1 << NEG_X);
+    }
+
+    @Test
+    void waterIsAsOpenAsAir() {
+        Chunk chunk = solid();
+        for (int x = 0; x < Chunk.SIZE; x++) {
+            chunk.setBlock(x, 8, 8, x % 2 == 0 ? BlockType.WATER : BlockType.FLOWING_WATER);
+        }
+        chunk.updateFaceSolidity();
+        chunk.updateConnectivity();
+
+        for (int x = 0; x < Chunk.SIZE; x++) {
+            chunk.setBlock(x, 8, 8, BlockType.AIR);
+        }
+        assertFalse(chunk.updateFaceSolidity());
+        assertFalse(chunk.updateConnectivity());
+        assertConnects(chunk, 1 << POS_X | 1 << NEG_X);
+    }
+
+    @Test
+    void bentTunnelConnectsTheFacesItOpensOnto() {
+        Chunk chunk = solid();
+        for (int x = 0; x <= 8; x++) {
+            chunk.setBlock(x, 8, 8, BlockType.AIR);
+        }
+        for (int z = 8; z < Chunk.SIZE; z++) {
+            chunk.setBlock(8, 8, z, BlockType.AIR);
+        }
+
+        chunk.updateConnectivity();
+
+        assertConnects(chunk, 1 << NEG_X | 1 << POS_Z);
+    }
+
+    @Test
+    void sealedPocketConnectsNothing() {
+        Chunk chunk = solid();
+        for (int x = 6; x < 10; x++) {
+            for (int y = 6; y < 10; y++) {
+                for (int z = 6; z < 10; z++) {
+                    chunk.setBlock(x, y, z, BlockType.AIR);
+                }
+            }
+        }
+
+        chunk.updateConnectivity();
+
+        assertConnects(chunk, 0);
+    }
+
+    @Test
+    void updateConnectivityReportsWhetherAnythingChanged() {
+        Chunk chunk = solid();
+        chunk.updateConnectivity();
+        chunk.setBlock(8, 8, 8, BlockType.AIR);
+        assertFalse(chunk.updateConnectivity());
+
+        for (int x = 0; x < Chunk.SIZE; x++) {
+            chunk.setBlock(x, 8, 8, BlockType.AIR);
+        }
+        assertTrue(chunk.updateConnectivity());
+        assertFalse(chunk.updateConnectivity());
+
+        // splitting the tunnel leaves each end touching only its own face
+        chunk.setBlock(5, 8, 8, BlockType.STONE);
+        assertTrue(chunk.updateConnectivity());
+        assertFalse(chunk.canSeeThrough(POS_X, NEG_X));
+        assertTrue(chunk.canSeeThrough(POS_X, POS_X));
+    }
+
+    static Chunk solid() {
+        Chunk chunk = new Chunk();
+        for (int x = 0; x < Chunk.SIZE; x++) {
+            for (int y = 0; y < Chunk.SIZE; y++) {
+                for (int z = 0; z < Chunk.SIZE; z++) {
+                    chunk.setBlock(x, y, z, BlockType.STONE);
+                }
+            }
+        }
+        return chunk;
+    }
+
+    /** Checks that exactly the faces in {@code faces} see each other, each pair in both directions. */
+    private static void assertConnects(Chunk chunk, int faces) {
+        for (int from = 0; from < 6; from++) {
+            for (int to = 0; to < 6; to++) {
+                boolean expected = (faces & (1 << from)) != 0 && (faces & (1 << to)) != 0;
+                assertEquals(expected, chunk.canSeeThrough(from, to), "faces " + from + " and " + to);
+            }
+        }
+    }
+}
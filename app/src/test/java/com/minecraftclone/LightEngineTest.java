@@ -0,0 +1,153 @@
+package com.minecraftclone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Compares the engine's incremental lighting with a flood fill of the whole
+ * loaded region computed from scratch.
+ */
+class LightEngineTest {
+    private static final int RADIUS = 1;
+    private static final int MIN_CY = -4;
+    private static final int MAX_CY = 3;
+    private static final int MIN_X = -RADIUS * Chunk.SIZE;
+    private static final int MIN_Y = MIN_CY * Chunk.SIZE;
+    private static final int SIZE_XZ = (2 * RADIUS + 1) * Chunk.SIZE;
+    private static final int SIZE_Y = (MAX_CY - MIN_CY + 1) * Chunk.SIZE;
+    private static final int[][] DIRS = { {1,0,0}, {-1,0,0}, {0,1,0}, {0,-1,0}, {0,0,1}, {0,0,-1} };
+
+    @TempDir
+    Path saveDir;
+    private ChunkGenerator generator;
+    private World world;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        generator = new ChunkGenerator(12345L);
+        world = new World(generator, saveDir);
+        for (int cx = -RADIUS; cx <= RADIUS; cx++) {
+            for (int cz = -RADIUS; cz <= RADIUS; cz++) {
+                for (int cy = MAX_CY; cy >= MIN_CY; cy--) {
+                    world.getChunk(cx, cy, cz);
+                }
+            }
+        }
+        world.getLighting().awaitIdle();
+    }
+
+    @AfterEach
+    void tearDown() {
+        world.shutdown();
+    }
+
+    @Test
+    void matchesFloodFillAfterLoading() {
+        assertMatchesFloodFill();
+    }
+
+    @Test
+    void matchesFloodFillAfterEdits() throws InterruptedException {
+        Random random = new Random(7);
+        BlockType[] types = { BlockType.AIR, BlockType.AIR, BlockType.STONE, BlockType.LAMP };
+        for (int i = 0; i < 500; i++) {
+            int x = MIN_X + random.nextInt(SIZE_XZ);
+            int z = MIN_X + random.nextInt(SIZE_XZ);
+            // most edits near the surface, where both kinds of light meet
+            int y = (int) generator.surfaceHeight(x, z) - 4 + random.nextInt(8);
+            world.setBlock(x, Math.max(MIN_Y, Math.min(MIN_Y + SIZE_Y - 1, y)), z,
+                    types[random.nextInt(types.length)]);
+        }
+        world.getLighting().awaitIdle();
+
+        assertMatchesFloodFill();
+    }
+
+    private void assertMatchesFloodFill() {
+        int[] sky = new int[SIZE_XZ * SIZE_Y * SIZE_XZ];
+        int[] block = new int[sky.length];
+        ArrayDeque<Integer> skyQueue = new ArrayDeque<>();
+        ArrayDeque<Integer> blockQueue = new ArrayDeque<>();
+        int top = MIN_Y + SIZE_Y;
+        for (int x = 0; x < SIZE_XZ; x++) {
+            for (int z = 0; z < SIZE_XZ; z++) {
+                // the chunks above the region are not loaded, so the engine asks the generator
+                if (top > generator.surfaceHeight(MIN_X + x, MIN_X + z)) {
+                    for (int y = SIZE_Y - 1; y >= 0 && block(x, y, z).isTransparent(); y--) {
+                        sky[index(x, y, z)] = LightEngine.MAX_LIGHT;
+                        skyQueue.add(index(x, y, z));
+                    }
+                }
+                for (int y = 0; y < SIZE_Y; y++) {
+                    int emission = block(x, y, z).getLightEmission();
+                    if (emission > 0) {
+                        block[index(x, y, z)] = emission;
+                        blockQueue.add(index(x, y, z));
+                    }
+                }
+            }
+        }
+        floodFill(sky, skyQueue, true);
+        floodFill(block, blockQueue, false);
+
+        for (int x = 0; x < SIZE_XZ; x++) {
+            for (int y = 0; y < SIZE_Y; y++) {
+                for (int z = 0; z < SIZE_XZ; z++) {
+                    int wx = MIN_X + x;
+                    int wy = MIN_Y + y;
+                    int wz = MIN_X + z;
+                    Chunk chunk = world.getChunkIfLoaded(Math.floorDiv(wx, Chunk.SIZE), Math.floorDiv(wy, Chunk.SIZE),
+                            Math.floorDiv(wz, Chunk.SIZE));
+                    int lx = Math.floorMod(wx, Chunk.SIZE);
+                    int ly = Math.floorMod(wy, Chunk.SIZE);
+                    int lz = Math.floorMod(wz, Chunk.SIZE);
+                    String at = " at " + wx + "," + wy + "," + wz;
+                    assertEquals(sky[index(x, y, z)], chunk.getSkyLight(lx, ly, lz), "sky light" + at);
+                    assertEquals(block[index(x, y, z)], chunk.getBlockLight(lx, ly, lz), "block light" + at);
+                }
+            }
+        }
+    }
+
+    private void floodFill(int[] light, ArrayDeque<Integer> queue, boolean sky) {
+        while (!queue.isEmpty()) {
+            int index = queue.poll();
+            int x = index / (SIZE_Y * SIZE_XZ);
+            int y = (index / SIZE_XZ) % SIZE_Y;
+            int z = index % SIZE_XZ;
+            int level = light[index];
+            for (int d = 0; d < DIRS.length; d++) {
+                int nx = x + DIRS[d][0];
+                int ny = y + DIRS[d][1];
+                int nz = z + DIRS[d][2];
+                if (nx < 0 || ny < 0 || nz < 0 || nx >= SIZE_XZ || ny >= SIZE_Y || nz >= SIZE_XZ
+                        || !block(nx, ny, nz).isTransparent()) {
+                    continue;
+                }
+                // full sky light travels straight down without fading
+                int next = sky && d == 3 && level == LightEngine.MAX_LIGHT ? level : level - 1;
+                int neighbour = index(nx, ny, nz);
+                if (light[neighbour] < next) {
+                    light[neighbour] = next;
+                    queue.add(neighbour);
+                }
+            }
+        }
+    }
+
+    private BlockType block(int x, int y, int z) {
+        return world.getBlock(MIN_X + x, MIN_Y + y, MIN_X + z);
+    }
+
+    private static int index(int x, int y, int z) {
+        return (x * SIZE_Y + y) * SIZE_XZ + z;
+    }
+}
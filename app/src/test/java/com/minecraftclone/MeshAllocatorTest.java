@@ -0,0 +1,184 @@
+package com.minecraftclone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class MeshAllocatorTest {
+    @Test
+    void allocatesFromTheSmallestFreeRangeThatFits() {
+        MeshAllocator allocator = new MeshAllocator(100);
+        allocator.allocate(10);
+        MeshAllocator.Allocation b = allocator.allocate(30);
+        allocator.allocate(10);
+        MeshAllocator.Allocation d = allocator.allocate(20);
+        allocator.allocate(10);
+        allocator.free(b);
+        allocator.free(d);
+        // free ranges are now 30 at 10, 20 at 50 and 20 at 80
+
+        assertEquals(50, allocator.allocate(18).getOffset());
+        assertEquals(80, allocator.allocate(20).getOffset());
+        assertEquals(10, allocator.allocate(25).getOffset());
+        assertEquals(1, allocator.getPages().size());
+    }
+
+    @Test
+    void freeMergesWithBothFreeNeighbours() {
+        MeshAllocator allocator = new MeshAllocator(100);
+        MeshAllocator.Allocation a = allocator.allocate(10);
+        MeshAllocator.Allocation b = allocator.allocate(10);
+        MeshAllocator.Allocation c = allocator.allocate(10);
+        allocator.allocate(10);
+        allocator.free(a);
+        allocator.free(c);
+        assertEquals(3, allocator.getFreeRangeCount());
+
+        allocator.free(b);
+
+        assertEquals(2, allocator.getFreeRangeCount());
+        assertEquals(60, allocator.getPages().get(0).getLargestFree());
+        assertEquals(0, allocator.allocate(30).getOffset());
+    }
+
+    @Test
+    void releasesEmptyPagesButNeverTheLast() {
+        MeshAllocator allocator = new MeshAllocator(10);
+        MeshAllocator.Allocation a = allocator.allocate(10);
+        MeshAllocator.Allocation b = allocator.allocate(10);
+        assertEquals(2, allocator.getPages().size());
+
+        assertSame(a.getPage(), allocator.free(a));
+        assertEquals(1, allocator.getPages().size());
+        assertNull(allocator.free(b));
+        assertEquals(1, allocator.getPages().size());
+        assertEquals(0, allocator.getUsed());
+        assertEquals(1, allocator.getFreeRangeCount());
+        assertEquals(1, allocator.getPagesReleased());
+    }
+
+    @Test
+    void freeingTwiceDoesNothing() {
+        MeshAllocator allocator = new MeshAllocator(100);
+        MeshAllocator.Allocation a = allocator.allocate(10);
+        allocator.allocate(20);
+        allocator.free(a);
+        long used = allocator.getUsed();
+        int ranges = allocator.getFreeRangeCount();
+
+        assertNull(allocator.free(a));
+
+        assertEquals(used, allocator.getUsed());
+        assertEquals(ranges, allocator.getFreeRangeCount());
+        assertEquals(0, allocator.allocate(10).getOffset());
+        assertEquals(30, allocator.allocate(40).getOffset());
+    }
+
+    @Test
+    void defragmentPacksLiveRangesAndReportsMoves() {
+        MeshAllocator allocator = new MeshAllocator(100);
+        MeshAllocator.Allocation a = allocator.allocate(10);
+        MeshAllocator.Allocation b = allocator.allocate(20);
+        MeshAllocator.Allocation c = allocator.allocate(10);
+        MeshAllocator.Allocation d = allocator.allocate(5);
+        allocator.free(a);
+        allocator.free(c);
+        MeshAllocator.Page page = b.getPage();
+
+        List<MeshAllocator.Move> moves = allocator.defragment(page);
+
+        assertEquals(List.of(new MeshAllocator.Move(10, 0, 20), new MeshAllocator.Move(40, 20, 5)), moves);
+        assertEquals(0, b.getOffset());
+        assertEquals(20, d.getOffset());
+        assertEquals(1, allocator.getFreeRangeCount());
+        assertEquals(75, page.getLargestFree());
+        assertEquals(25, allocator.getMovedVertices());
+        assertEquals(25, allocator.allocate(75).getOffset());
+    }
+
+    @Test
+    void defragmentOfAPackedPageDoesNothing() {
+        MeshAllocator allocator = new MeshAllocator(100);
+        MeshAllocator.Allocation a = allocator.allocate(10);
+        allocator.allocate(10);
+
+        assertTrue(allocator.defragment(a.getPage()).isEmpty());
+        assertEquals(0, allocator.getDefragmentations());
+    }
+
+    @Test
+    void fragmentationIsTheShareOfFreeSpaceOutsideTheLargestRange() {
+        MeshAllocator allocator = new MeshAllocator(100);
+        assertEquals(0, allocator.getFragmentation());
+        allocator.allocate(10);
+        MeshAllocator.Allocation b = allocator.allocate(10);
+        allocator.allocate(10);
+        MeshAllocator.Page page = b.getPage();
+        assertEquals(0, page.getFragmentation(100));
+
+        allocator.free(b);
+        // 10 free at 10 and 70 free at 30
+        assertEquals(0.125, page.getFragmentation(100), 1e-9);
+        assertEquals(0.125, allocator.getFragmentation(), 1e-9);
+        assertSame(page, allocator.mostFragmented(0.1, 0.5));
+        assertNull(allocator.mostFragmented(0.2, 0.5));
+
+        allocator.defragment(page);
+        assertEquals(0, allocator.getFragmentation());
+        allocator.allocate(80);
+        assertEquals(0, page.getFragmentation(100));
+    }
+
+    @Test
+    void liveRangesNeverOverlapUnderChurn() {
+        Random random = new Random(42);
+        MeshAllocator allocator = new MeshAllocator(4096);
+        List<MeshAllocator.Allocation> live = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            live.add(allocator.allocate(1 + random.nextInt(400)));
+        }
+        for (int i = 0; i < 20_000; i++) {
+            int victim = random.nextInt(live.size());
+            allocator.free(live.get(victim));
+            live.set(victim, allocator.allocate(1 + random.nextInt(400)));
+        }
+        assertNoOverlap(allocator, live);
+
+        for (MeshAllocator.Page page : allocator.getPages()) {
+            allocator.defragment(page);
+        }
+        assertNoOverlap(allocator, live);
+        for (MeshAllocator.Page page : allocator.getPages()) {
+            assertEquals(0, page.getFragmentation(allocator.getPageCapacity()));
+        }
+    }
+
+    private static void assertNoOverlap(MeshAllocator allocator, List<MeshAllocator.Allocation> live) {
+        List<MeshAllocator.Allocation> sorted = new ArrayList<>(live);
+        sorted.sort(Comparator.comparingInt((MeshAllocator.Allocation a) -> a.getPage().getId())
+                .thenComparingInt(MeshAllocator.Allocation::getOffset));
+        long used = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            MeshAllocator.Allocation a = sorted.get(i);
+            assertTrue(allocator.getPages().contains(a.getPage()), "allocation on a released page");
+            assertTrue(a.getOffset() + a.getSize() <= allocator.getPageCapacity());
+            used += a.getSize();
+            if (i > 0) {
+                MeshAllocator.Allocation previous = sorted.get(i - 1);
+                assertFalse(previous.getPage() == a.getPage()
+                        && previous.getOffset() + previous.getSize() > a.getOffset(),
+                        "ranges at " + previous.getOffset() + " and " + a.getOffset() + " overlap");
+            }
+        }
+        assertEquals(used, allocator.getUsed());
+    }
+}
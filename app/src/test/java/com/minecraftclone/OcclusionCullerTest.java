@@ -0,0 +1,83 @@
+package com.minecraftclone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OcclusionCullerTest {
+    private final OcclusionCuller culler = new OcclusionCuller(64, 64);
+
+    /** Starts a frame with the eye at the origin looking down -Z through a 90 degree square frustum. */
+    @BeforeEach
+    void setUp() {
+        float near = 0.1f;
+        float far = 200;
+        float[] clip = new float[16];
+        clip[0] = 1;
+        clip[5] = 1;
+        clip[10] = -(far + near) / (far - near);
+        clip[11] = -1;
+        clip[14] = -2 * far * near / (far - near);
+        culler.begin(clip);
+    }
+
+    @Test
+    void wallHidesBoxesBehindItOnly() {
+        assertTrue(addWall(-10));
+        culler.finish();
+
+        assertFalse(culler.isVisible(-1, -1, -20, 1, 1, -18));
+        assertTrue(culler.isVisible(-1, -1, -8, 1, 1, -6), "in front of the wall");
+        assertTrue(culler.isVisible(12, -1, -20, 14, 1, -18), "beside the wall");
+        assertTrue(culler.isVisible(-1, -1, -12, 1, 1, -9), "poking through the wall");
+        assertEquals(1, culler.getCulledCount());
+    }
+
+    @Test
+    void boxCrossingTheNearPlaneIsVisible() {
+        addWall(-10);
+        culler.finish();
+
+        assertTrue(culler.isVisible(-1, -1, -20, 1, 1, 1));
+    }
+
+    @Test
+    void quadSeenFromBehindDoesNotOcclude() {
+        assertFalse(culler.addQuad(-5, -5, -10, -5, 5, -10, 5, 5, -10, 5, -5, -10));
+        culler.finish();
+
+        assertTrue(culler.isVisible(-1, -1, -20, 1, 1, -18));
+        assertEquals(0, culler.getOccluderCount());
+    }
+
+    @Test
+    void solidChunkFacesOcclude() {
+        Chunk chunk = ChunkTest.solid();
+        chunk.updateFaceSolidity();
+
+        assertTrue(culler.addSolidFaces(chunk, -8, -8, -32) > 0);
+        culler.finish();
+
+        assertFalse(culler.isVisible(-1, -1, -50, 1, 1, -48));
+        assertTrue(culler.isVisible(-1, -1, -14, 1, 1, -12));
+    }
+
+    @Test
+    void openChunkFacesDoNotOcclude() {
+        Chunk chunk = new Chunk();
+        chunk.updateFaceSolidity();
+
+        assertEquals(0, culler.addSolidFaces(chunk, -8, -8, -32));
+        culler.finish();
+
+        assertTrue(culler.isVisible(-1, -1, -50, 1, 1, -48));
+    }
+
+    /** Adds a 10 by 10 wall facing the eye at depth {@code z}. */
+    private boolean addWall(float z) {
+        return culler.addQuad(-5, -5, z, 5, -5, z, 5, 5, z, -5, 5, z);
+    }
+}
@@ -0,0 +1,125 @@
+package com.minecraftclone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PhysicsTest {
+    private static final double SPEED = 4;
+
+    @TempDir
+    Path saveDir;
+    private World world;
+    private Physics physics;
+
+    /** Loads a single chunk of air with a stone floor at y = 0; everything around it counts as solid. */
+    @BeforeEach
+    void setUp() {
+        world = new World(null, saveDir);
+        for (int x = 0; x < Chunk.SIZE; x++) {
+            for (int z = 0; z < Chunk.SIZE; z++) {
+                world.setBlock(x, 0, z, BlockType.STONE);
+            }
+        }
+        physics = new Physics(world);
+    }
+
+    @AfterEach
+    void tearDown() {
+        world.shutdown();
+    }
+
+    @Test
+    void fallingBodyLandsOnTheFloor() {
+        PhysicsBody body = player(8.5, 5, 8.5);
+
+        step(body, 60);
+
+        assertEquals(1, body.getY(), 1e-9);
+        assertEquals(0, body.getVelocityY());
+        assertTrue(body.isOnGround());
+        assertEquals(8.5, body.getX(), 1e-9);
+    }
+
+    @Test
+    void bodyWalksUpAOneBlockLedge() {
+        wall(10, 1);
+        PhysicsBody body = player(5.5, 1, 8.5);
+        step(body, 1);
+        body.setHorizontalVelocity(SPEED, 0);
+
+        step(body, 90);
+
+        assertEquals(2, body.getY(), 1e-9);
+        assertTrue(body.getX() > 11, "x " + body.getX());
+        assertTrue(body.isOnGround());
+    }
+
+    @Test
+    void ledgeTallerThanTheStepHeightStopsTheBody() {
+        wall(10, 2);
+        PhysicsBody body = player(5.5, 1, 8.5);
+        step(body, 1);
+        body.setHorizontalVelocity(SPEED, 0);
+
+        step(body, 90);
+
+        assertEquals(1, body.getY(), 1e-9);
+        assertEquals(10 - Player.WIDTH / 2, body.getX(), 1e-9);
+        assertEquals(0, body.getVelocityX());
+    }
+
+    @Test
+    void bodySlidesAlongAWall() {
+        wall(10, 3);
+        PhysicsBody body = player(8.5, 1, 4.5);
+        step(body, 1);
+        body.setHorizontalVelocity(SPEED, SPEED);
+
+        step(body, 30);
+
+        assertEquals(10 - Player.WIDTH / 2, body.getX(), 1e-9);
+        assertEquals(4.5 + SPEED * 30 * Physics.TICK_SECONDS, body.getZ(), 1e-9);
+        assertEquals(SPEED, body.getVelocityZ());
+        assertEquals(1, body.getY(), 1e-9);
+    }
+
+    @Test
+    void flyingBodyIgnoresGravity() {
+        PhysicsBody body = player(8.5, 5, 8.5);
+        body.setFlying(true);
+
+        step(body, 60);
+
+        assertEquals(5, body.getY(), 1e-9);
+        assertFalse(body.isOnGround());
+    }
+
+    private PhysicsBody player(double x, double y, double z) {
+        return new PhysicsBody(Player.WIDTH, Player.HEIGHT, Player.STEP_HEIGHT, x, y, z);
+    }
+
+    private void step(PhysicsBody body, int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            physics.step(body);
+        }
+    }
+
+    /** Fills x from {@code fromX} to the chunk edge, {@code height} blocks above the floor. */
+    private void wall(int fromX, int height) {
+        for (int x = fromX; x < Chunk.SIZE; x++) {
+            for (int y = 1; y <= height; y++) {
+                for (int z = 0; z < Chunk.SIZE; z++) {
+                    world.setBlock(x, y, z, BlockType.STONE);
+                }
+            }
+        }
+    }
+}
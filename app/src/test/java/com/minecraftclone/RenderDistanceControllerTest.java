@@ -0,0 +1,81 @@
+package com.minecraftclone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class RenderDistanceControllerTest {
+    private static final long SECOND = 1_000_000_000L;
+    private static final long BUDGET = 1000;
+
+    @Test
+    void shrinksWhenOverBudgetAndScalesTheLodStarts() {
+        RenderDistanceController controller = controller(2, 12);
+
+        assertTrue(controller.update(10 * SECOND, 2 * BUDGET, 0));
+
+        assertEquals(7, controller.getRenderDistance());
+        assertEquals(4, controller.getLod1Start());
+        assertEquals(5, controller.getLod2Start());
+        assertEquals(2.0, controller.getPressure(), 1e-9);
+        assertFalse(controller.update(10 * SECOND + SECOND / 2, 2 * BUDGET, 0), "decided twice in one interval");
+    }
+
+    @Test
+    void waitsWhileThePressureIsStillFalling() {
+        RenderDistanceController controller = controller(2, 12);
+        controller.update(10 * SECOND, 2 * BUDGET, 0);
+
+        assertFalse(controller.update(11 * SECOND, 1500, 0));
+        assertFalse(controller.update(13 * SECOND, 1400, 0));
+        assertTrue(controller.update(14 * SECOND, 1400, 0));
+
+        assertEquals(6, controller.getRenderDistance());
+        assertEquals(2, controller.getChanges());
+    }
+
+    @Test
+    void growsOnlyWithHeadroomAndAfterTheCooldown() {
+        RenderDistanceController controller = controller(2, 12);
+
+        assertTrue(controller.update(10 * SECOND, 100, 0));
+        assertEquals(9, controller.getRenderDistance());
+        assertFalse(controller.update(11 * SECOND, 100, 0));
+        assertTrue(controller.update(15 * SECOND, 100, 0));
+        assertEquals(10, controller.getRenderDistance());
+
+        // 0.7 of the budget grows past the margin at the next distance
+        assertFalse(controller.update(25 * SECOND, 700, 0));
+        assertEquals(10, controller.getRenderDistance());
+    }
+
+    @Test
+    void staysWithinTheDistanceRange() {
+        RenderDistanceController low = controller(8, 12);
+        assertFalse(low.update(10 * SECOND, 2 * BUDGET, 0));
+        assertEquals(8, low.getRenderDistance());
+
+        RenderDistanceController high = controller(2, 8);
+        assertFalse(high.update(10 * SECOND, 0, 0));
+        assertEquals(8, high.getRenderDistance());
+    }
+
+    @Test
+    void slowFramesShrinkTheDistance() {
+        RenderDistanceController controller = new RenderDistanceController(0, 0, 16, 2, 12, 8, 4, 6);
+        for (int i = 0; i < 100; i++) {
+            controller.recordFrame(30_000_000L);
+        }
+
+        assertTrue(controller.update(10 * SECOND, 0, 0));
+
+        assertEquals(7, controller.getRenderDistance());
+    }
+
+    /** A controller with a heap budget only, starting at distance 8 with LOD starts 4 and 6. */
+    private static RenderDistanceController controller(int min, int max) {
+        return new RenderDistanceController(BUDGET, 0, 0, min, max, 8, 4, 6);
+    }
+}
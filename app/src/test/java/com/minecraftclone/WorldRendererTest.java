@@ -0,0 +1,116 @@
+package com.minecraftclone;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WorldRendererTest {
+    private static final int RADIUS = 2;
+
+    @TempDir
+    Path saveDir;
+    private World world;
+    private WorldRenderer renderer;
+
+    @BeforeEach
+    void setUp() {
+        // without a generator every chunk starts as air
+        world = new World(null, saveDir);
+        int half = RADIUS + 1;
+        for (int cx = -half; cx <= half; cx++) {
+            for (int cy = -half; cy <= half; cy++) {
+                for (int cz = -half; cz <= half; cz++) {
+                    world.getChunk(cx, cy, cz);
+                }
+            }
+        }
+        world.getGrid().recenter(0, 0, 0, RADIUS);
+        renderer = new WorldRenderer(world, new Player(8, 8, 8), RADIUS, RADIUS, RADIUS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        world.shutdown();
+    }
+
+    @Test
+    void openWorldReachesEveryChunk() {
+        search();
+
+        for (int ox = -RADIUS; ox <= RADIUS; ox++) {
+            for (int oy = -RADIUS; oy <= RADIUS; oy++) {
+                for (int oz = -RADIUS; oz <= RADIUS; oz++) {
+                    assertTrue(renderer.isSearchReached(ox, oy, oz), ox + "," + oy + "," + oz);
+                }
+            }
+        }
+    }
+
+    @Test
+    void closedShellHidesEverythingBehindIt() {
+        buildShell();
+
+        search();
+
+        assertTrue(renderer.isSearchReached(0, 0, 0));
+        // the shell itself is visible from inside, but nothing beyond it
+        assertTrue(renderer.isSearchReached(1, 0, 0));
+        assertTrue(renderer.isSearchReached(0, -1, 0));
+        assertFalse(renderer.isSearchReached(2, 0, 0));
+        assertFalse(renderer.isSearchReached(0, 2, 0));
+        assertFalse(renderer.isSearchReached(-2, -2, -2));
+        assertFalse(renderer.isSearchReached(2, 1, -2));
+    }
+
+    @Test
+    void tunnelThroughTheShellLetsTheSearchOut() {
+        buildShell();
+        Chunk tunnel = world.getChunk(1, 0, 0);
+        for (int x = 0; x < Chunk.SIZE; x++) {
+            tunnel.setBlock(x, 8, 8, BlockType.AIR);
+        }
+        world.finishEdits(1, 0, 0, tunnel);
+
+        search();
+
+        assertTrue(renderer.isSearchReached(2, 0, 0));
+        assertTrue(renderer.isSearchReached(2, 1, 0));
+        assertTrue(renderer.isSearchReached(2, 0, -2));
+        // the search never turns back along the axis it left by
+        assertFalse(renderer.isSearchReached(-2, 0, 0));
+        assertFalse(renderer.isSearchReached(0, 2, 0));
+    }
+
+    /** Fills the 26 chunks around the player's chunk with stone. */
+    private void buildShell() {
+        for (int cx = -1; cx <= 1; cx++) {
+            for (int cy = -1; cy <= 1; cy++) {
+                for (int cz = -1; cz <= 1; cz++) {
+                    if (cx == 0 && cy == 0 && cz == 0) {
+                        continue;
+                    }
+                    Chunk chunk = world.getChunk(cx, cy, cz);
+                    for (int x = 0; x < Chunk.SIZE; x++) {
+                        for (int y = 0; y < Chunk.SIZE; y++) {
+                            for (int z = 0; z < Chunk.SIZE; z++) {
+                                chunk.setBlock(x, y, z, BlockType.STONE);
+                            }
+                        }
+                    }
+                    world.finishEdits(cx, cy, cz, chunk);
+                }
+            }
+        }
+    }
+
+    private void search() {
+        ChunkGrid grid = world.getGrid();
+        renderer.searchVisible(grid, 0, 0, 0, RADIUS, grid.getVersion());
+    }
+}
@@ -0,0 +1,143 @@
+package com.minecraftclone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WorldTest {
+    private static final int POS_X = 0;
+    private static final int NEG_X = 1;
+    private static final int POS_Y = 2;
+    private static final int POS_Z = 4;
+
+    @TempDir
+    Path saveDir;
+    private World world;
+    private final RaycastHit hit = new RaycastHit();
+
+    @BeforeEach
+    void setUp() {
+        // without a generator every chunk starts as air
+        world = new World(null, saveDir);
+    }
+
+    @AfterEach
+    void tearDown() {
+        world.shutdown();
+    }
+
+    @Test
+    void raycastReportsTheBlockFaceAndDistance() {
+        world.setBlock(5, 0, 0, BlockType.STONE);
+
+        assertTrue(world.raycast(0.5, 0.5, 0.5, 1, 0, 0, 20, hit));
+
+        assertHit(5, 0, 0, NEG_X, 4.5);
+        assertEquals(BlockType.STONE, hit.getBlock());
+    }
+
+    @Test
+    void raycastEntersThroughTheFaceTowardsTheOrigin() {
+        world.setBlock(0, 2, 0, BlockType.DIRT);
+        world.setBlock(-4, 0, 0, BlockType.STONE);
+        world.setBlock(0, 0, -3, BlockType.STONE);
+
+        assertTrue(world.raycast(0.5, 10.5, 0.5, 0, -1, 0, 20, hit));
+        assertHit(0, 2, 0, POS_Y, 7.5);
+        assertEquals(BlockType.DIRT, hit.getBlock());
+
+        assertTrue(world.raycast(0.5, 0.5, 0.5, -1, 0, 0, 20, hit));
+        assertHit(-4, 0, 0, POS_X, 3.5);
+
+        assertTrue(world.raycast(0.5, 0.5, 0.5, 0, 0, -1, 20, hit));
+        assertHit(0, 0, -3, POS_Z, 2.5);
+    }
+
+    @Test
+    void raycastAtAnAngleNeedsNoUnitDirection() {
+        world.setBlock(4, 2, 0, BlockType.STONE);
+
+        assertTrue(world.raycast(0.5, 0.5, 0.5, 2, 1, 0, 20, hit));
+
+        // the ray reaches x = 4 after 1.75 steps of (2, 1, 0), at y = 2.25
+        assertHit(4, 2, 0, NEG_X, 1.75 * Math.sqrt(5));
+    }
+
+    @Test
+    void raycastStartingInsideABlockHitsItAtOnce() {
+        world.setBlock(0, 0, 0, BlockType.STONE);
+
+        assertTrue(world.raycast(0.5, 0.5, 0.5, 1, 0, 0, 20, hit));
+
+        assertHit(0, 0, 0, -1, 0);
+    }
+
+    @Test
+    void raycastMissesBlocksBeyondItsRange() {
+        world.setBlock(5, 0, 0, BlockType.STONE);
+
+        assertFalse(world.raycast(0.5, 0.5, 0.5, 1, 0, 0, 4, hit));
+
+        assertFalse(hit.isHit());
+        assertEquals(BlockType.AIR, hit.getBlock());
+        assertFalse(world.raycast(0.5, 0.5, 0.5, 0, 0, 0, 20, hit), "zero direction");
+    }
+
+    @Test
+    void raycastCrossesEmptyAndUnloadedChunksInOneStep() {
+        // loads chunk 3 only; chunk 0 is loaded but empty and chunks 1 and 2 are not loaded
+        world.getChunk(0, 0, 0);
+        world.setBlock(50, 0, 0, BlockType.STONE);
+
+        assertTrue(world.raycast(0.5, 0.5, 0.5, 1, 0, 0, 100, hit));
+
+        assertHit(50, 0, 0, NEG_X, 49.5);
+        assertEquals(3, hit.getChunksSkipped());
+    }
+
+    @Test
+    void deltaSavedChunkIsRegeneratedOnTheGenerationStage() throws Exception {
+        Path deltaDir = saveDir.resolve("delta");
+        WorldOptions options = new WorldOptions().saveFormat(WorldOptions.SaveFormat.DELTA);
+        World saved = new World(new ChunkGenerator(0L), deltaDir, options);
+        saved.setBlock(1, 1, 1, BlockType.LAMP);
+        saved.shutdown();
+
+        String[] generatedOn = new String[1];
+        ChunkGenerator generator = new ChunkGenerator(0L) {
+            @Override
+            public Chunk generate(World world, int cx, int cy, int cz, Chunk chunk) {
+                generatedOn[0] = Thread.currentThread().getName();
+                return super.generate(world, cx, cy, cz, chunk);
+            }
+        };
+        World loaded = new World(generator, deltaDir, options);
+        try {
+            Chunk chunk = loaded.getChunkAsync(0, 0, 0).get(10, TimeUnit.SECONDS);
+
+            assertEquals(BlockType.LAMP, chunk.getBlock(1, 1, 1));
+            assertEquals(Chunk.Origin.RESTORED, chunk.getOrigin());
+            assertFalse(chunk.needsSave());
+            assertTrue(generatedOn[0].startsWith("chunk-gen-"), generatedOn[0]);
+        } finally {
+            loaded.shutdown();
+        }
+    }
+
+    private void assertHit(int x, int y, int z, int face, double distance) {
+        assertTrue(hit.isHit());
+        assertEquals(x, hit.getX());
+        assertEquals(y, hit.getY());
+        assertEquals(z, hit.getZ());
+        assertEquals(face, hit.getFace());
+        assertEquals(distance, hit.getDistance(), 1e-9);
+    }
+}